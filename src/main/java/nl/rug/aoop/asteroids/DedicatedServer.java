@@ -0,0 +1,122 @@
+package nl.rug.aoop.asteroids;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+import nl.rug.aoop.asteroids.server.RoomManager;
+import nl.rug.aoop.asteroids.util.SoundEffectPlayer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * entry point of a dedicated server. It hosts one or more rooms for the clients without a window, sound or a player
+ * of its own, and only prints metrics to stdout. Nothing of Swing is loaded, so it starts fast and fits in a small
+ * heap:
+ * <pre>
+ *     java -Xmx64m -cp target/classes:&lt;dependencies&gt; nl.rug.aoop.asteroids.DedicatedServer [port] [rooms]
+ * </pre>
+ * */
+@Log
+public class DedicatedServer {
+    /**
+     * seconds in between two rounds of metrics
+     * */
+    private static final int METRICS_INTERVAL = 10;
+
+    /**
+     * the most workers ticking the rooms. Ticks are short, so a few workers drive many rooms
+     * */
+    private static final int MAX_TICK_THREADS = 4;
+
+    /**
+     * hosts the rooms
+     * */
+    @Getter
+    private final RoomManager roomManager;
+
+    /**
+     * prints the metrics every {@link #METRICS_INTERVAL} seconds
+     * */
+    private final ScheduledExecutorService metricsPrinter;
+
+    /**
+     * the amount of rooms to open
+     * */
+    private final int rooms;
+
+    /**
+     * makes a dedicated server
+     * @param port the port to listen on, 0 for any free port
+     * @param rooms the amount of rooms to open
+     * */
+    public DedicatedServer(int port, int rooms) {
+        this.rooms = rooms;
+        int tickThreads = Math.min(MAX_TICK_THREADS, Runtime.getRuntime().availableProcessors());
+        roomManager = new RoomManager(port, tickThreads);
+        metricsPrinter = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * starts listening for clients and opens the rooms, so their worlds already run before anyone joins
+     * @return whether the server could start
+     * */
+    public boolean start() throws InterruptedException {
+        if (!roomManager.start()) {
+            return false;
+        }
+        for (int i = 0; i < rooms; i++) {
+            roomManager.createRoom();
+        }
+        metricsPrinter.scheduleAtFixedRate(this::printMetrics, METRICS_INTERVAL, METRICS_INTERVAL, TimeUnit.SECONDS);
+        return true;
+    }
+
+    /**
+     * stops the rooms and the server
+     * */
+    public void shutDown() {
+        metricsPrinter.shutdownNow();
+        roomManager.shutDown();
+    }
+
+    /**
+     * @return the port clients connect to
+     * */
+    public int getPort() {
+        return roomManager.getPort();
+    }
+
+    /**
+     * prints a line of metrics for each room and one with the clients reaped so far and the memory in use
+     * */
+    private void printMetrics() {
+        Runtime runtime = Runtime.getRuntime();
+        System.out.print(roomManager.metrics());
+        System.out.printf("rooms=%d reaped=%d heap=%dMB%n", roomManager.getRooms().size(),
+                roomManager.getServer().getReapedSessions(),
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+    }
+
+    /**
+     * starts a dedicated server
+     * @param args optionally the port to listen on and the amount of rooms
+     * */
+    public static void main(String[] args) throws InterruptedException {
+        long start = System.nanoTime();
+        // before anything of AWT is touched, so it never looks for a display
+        System.setProperty("java.awt.headless", "true");
+        SoundEffectPlayer.setMuted(true);
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int rooms = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        DedicatedServer dedicatedServer = new DedicatedServer(port, rooms);
+        if (!dedicatedServer.start()) {
+            System.out.println("Could not start the server on port " + port);
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(dedicatedServer::shutDown));
+        System.out.printf("Dedicated server listening on port %d with %d rooms, started in %d ms%n",
+                dedicatedServer.getPort(), rooms, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,237 @@
+package nl.rug.aoop.asteroids;
+
+import lombok.extern.java.Log;
+import nl.rug.aoop.asteroids.client.BotBehaviour;
+import nl.rug.aoop.asteroids.client.BotClient;
+import nl.rug.aoop.asteroids.control.GameUpdater;
+import nl.rug.aoop.asteroids.model.PlayerSlots;
+import nl.rug.aoop.asteroids.model.connection.HeartbeatSettings;
+import nl.rug.aoop.asteroids.model.connection.NetworkConditions;
+import nl.rug.aoop.asteroids.model.connection.TransportFactory;
+import nl.rug.aoop.asteroids.server.NetworkingMode;
+import nl.rug.aoop.asteroids.server.Room;
+import nl.rug.aoop.asteroids.server.RoomManager;
+import nl.rug.aoop.asteroids.util.SoundEffectPlayer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * puts a host under load with {@link BotClient}s, all in this process, to find the amount of players at which it
+ * falls over. Runs rounds with more and more bots and prints a report of each:
+ * <pre>
+ *     java -cp target/classes:&lt;dependencies&gt; nl.rug.aoop.asteroids.LoadTestHarness [players,players,...] [seconds] [network]
+ * </pre>
+ * the network is one of the {@link NetworkConditions} presets, for example {@code cross-continent}. The host and the
+ * bots then both send as if over that network.
+ * a host falls over when its ticks take longer than the time it has for them, when the bots get noticeably fewer
+ * snapshots than the host ticks, or when not all bots could join.
+ * */
+@Log
+public class LoadTestHarness {
+    /**
+     * the time the host has for a tick in ms
+     * */
+    public static final double TICK_BUDGET_MILLIS = 1000.0 / GameUpdater.PHYSICS_FPS;
+
+    /**
+     * the fraction of the tick rate a bot has to receive snapshots at for the host to keep up
+     * */
+    public static final double MIN_SNAPSHOT_RATIO = 0.9;
+
+    /**
+     * the amount of datagrams a round trip of a bot counts as when estimating how often one gets lost: the package of
+     * the bot, and a snapshot of a few fragments of which losing any loses the snapshot
+     * */
+    private static final int DATAGRAMS_PER_ROUND_TRIP = 4;
+
+    /**
+     * the player counts tried when none are given
+     * */
+    private static final int[] DEFAULT_PLAYERS = {8, 16, 32, 64, 128};
+
+    /**
+     * the seconds each round lasts when not given
+     * */
+    private static final int DEFAULT_SECONDS = 10;
+
+    /**
+     * the workers that tick the rooms of the host
+     * */
+    private static final int TICK_THREADS = 2;
+
+    /**
+     * the results of a round
+     * @param players the amount of bots that tried to join
+     * @param joined the amount of bots that joined
+     * @param rooms the amount of rooms the bots were spread over
+     * @param tickMillis the average time a tick of the busiest room took in ms
+     * @param minSnapshotRate the snapshots per second of the bot that got the fewest
+     * @param averageSnapshotRate the snapshots per second of an average bot
+     * @param clientInKBps the KB per second an average bot received
+     * @param hostOutKBps the KB per second the host sent to all bots together
+     * @param latencyPercentiles the 50th, 95th and 99th percentile of the end to end latency in ms
+     * @param deaths the amount of times a bot died
+     * @param network the network the host and the bots sent over
+     * */
+    public record Report(int players, int joined, int rooms, double tickMillis, double minSnapshotRate,
+                         double averageSnapshotRate, double clientInKBps, double hostOutKBps,
+                         double[] latencyPercentiles, long deaths, NetworkConditions network) {
+        /**
+         * @return whether the host could not keep up with this amount of players. Over a simulated network the
+         * average bot is held to the snapshot rate the network allows, as losses hit single bots at random
+         * */
+        public boolean isOverloaded() {
+            if (joined < players || tickMillis > TICK_BUDGET_MILLIS) {
+                return true;
+            }
+            double snapshotRate = network.isPerfect() ? minSnapshotRate : averageSnapshotRate;
+            return snapshotRate < MIN_SNAPSHOT_RATIO * snapshotRateOver(network);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("players=%d joined=%d rooms=%d tick=%.3fms snapshots/s min=%.1f avg=%.1f "
+                            + "in/client=%.1fKB/s out/host=%.1fKB/s "
+                            + "latency p50=%.2fms p95=%.2fms p99=%.2fms deaths=%d%s",
+                    players, joined, rooms, tickMillis, minSnapshotRate, averageSnapshotRate, clientInKBps,
+                    hostOutKBps, latencyPercentiles[0], latencyPercentiles[1], latencyPercentiles[2], deaths,
+                    isOverloaded() ? " OVERLOADED" : "");
+        }
+    }
+
+    /**
+     * estimates the most snapshots per second a bot can get over a network. A bot waits for the answer to its
+     * package before sending the next, so it gets at most one per round trip, and a lost one costs a heartbeat
+     * interval of waiting.
+     * @param network the network the host and the bots send over
+     * @return the snapshots per second
+     * */
+    public static double snapshotRateOver(NetworkConditions network) {
+        double roundTripMillis = Math.max(TICK_BUDGET_MILLIS, 2.0 * (network.delayMillis() + network.jitterMillis()));
+        double lossMillis = DATAGRAMS_PER_ROUND_TRIP * network.lossRate()
+                * HeartbeatSettings.configured().intervalMillis();
+        return 1000.0 / (roundTripMillis + lossMillis);
+    }
+
+    /**
+     * runs a round over the network picked with {@link NetworkConditions#PROPERTY}
+     * @param players the amount of bots
+     * @param seconds how long the bots play
+     * @param behaviour what the bots do
+     * @return the results
+     * */
+    public static Report run(int players, int seconds, BotBehaviour behaviour) throws IOException,
+            InterruptedException {
+        return run(players, seconds, behaviour, NetworkConditions.configured());
+    }
+
+    /**
+     * runs a round: starts a host, lets the bots join and play, and measures
+     * @param players the amount of bots
+     * @param seconds how long the bots play
+     * @param behaviour what the bots do
+     * @param network the network the host and the bots send over
+     * @return the results
+     * */
+    public static Report run(int players, int seconds, BotBehaviour behaviour, NetworkConditions network)
+            throws IOException, InterruptedException {
+        TransportFactory transports = network.isPerfect() ? TransportFactory.UDP : TransportFactory.simulated(network);
+        int roomCount = Math.max(1, (players + PlayerSlots.MAX_PLAYERS - 1) / PlayerSlots.MAX_PLAYERS);
+        RoomManager manager = new RoomManager(0, TICK_THREADS);
+        ExecutorService botThreads = NetworkingMode.configured().newExecutor();
+        List<BotClient> bots = new ArrayList<>();
+        manager.getServer().setTransports(transports);
+        try {
+            if (!manager.start()) {
+                throw new IOException("Could not start the host");
+            }
+            List<Room> rooms = new ArrayList<>();
+            for (int i = 0; i < roomCount; i++) {
+                rooms.add(manager.createRoom());
+            }
+            for (int i = 0; i < players; i++) {
+                BotClient bot = new BotClient("bot" + i, behaviour, transports);
+                if (bot.join(manager.getPort(), rooms.get(i % roomCount).getId())) {
+                    bots.add(bot);
+                    botThreads.submit(bot);
+                } else {
+                    log.warning("Bot " + i + " could not join");
+                }
+            }
+            TimeUnit.SECONDS.sleep(seconds);
+
+            double tickMillis = rooms.stream().mapToLong(Room::getAverageTickNanos).max().orElse(0) / 1e6;
+            double hostBytesOut = rooms.stream()
+                    .flatMap(room -> manager.getServer().getClientHandlers(room.getId()).stream())
+                    .mapToLong(handler -> handler.getStatistics().getBytesOut()).sum();
+            bots.forEach(BotClient::stop);
+            botThreads.shutdown();
+            botThreads.awaitTermination(seconds + 5L, TimeUnit.SECONDS);
+            return report(players, bots, roomCount, tickMillis, hostBytesOut / seconds, network);
+        } finally {
+            bots.forEach(BotClient::stop);
+            botThreads.shutdownNow();
+            manager.shutDown();
+        }
+    }
+
+    /**
+     * puts together the results of the bots of a round
+     * */
+    private static Report report(int players, List<BotClient> bots, int rooms, double tickMillis,
+                                 double hostBytesOutPerSecond, NetworkConditions network) {
+        double minRate = bots.stream().mapToDouble(BotClient::getSnapshotRate).min().orElse(0);
+        double averageRate = bots.stream().mapToDouble(BotClient::getSnapshotRate).average().orElse(0);
+        double bytesIn = bots.stream().filter(bot -> bot.getPlayingSeconds() > 0)
+                .mapToDouble(bot -> bot.getStatistics().getBytesIn() / bot.getPlayingSeconds()).average().orElse(0);
+        long[] latencies = bots.stream().flatMapToLong(bot -> Arrays.stream(bot.getLatencies())).sorted().toArray();
+        double[] percentiles = {percentile(latencies, 0.50), percentile(latencies, 0.95),
+                percentile(latencies, 0.99)};
+        long deaths = bots.stream().mapToLong(BotClient::getDeaths).sum();
+        return new Report(players, bots.size(), rooms, tickMillis, minRate, averageRate, bytesIn / 1024,
+                hostBytesOutPerSecond / 1024, percentiles, deaths, network);
+    }
+
+    /**
+     * @param sorted latencies in ns, sorted
+     * @param fraction the fraction of latencies that are at most the percentile
+     * @return the percentile in ms, 0 if there are no latencies
+     * */
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    /**
+     * runs rounds with more and more bots until the host falls over
+     * @param args optionally the player counts to try, separated by commas, the seconds each round lasts and the
+     *             network preset to play over
+     * */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        SoundEffectPlayer.setMuted(true);
+        int[] counts = args.length > 0
+                ? Arrays.stream(args[0].split(",")).mapToInt(count -> Integer.parseInt(count.trim())).toArray()
+                : DEFAULT_PLAYERS;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        NetworkConditions network = args.length > 2 ? NetworkConditions.named(args[2]) : NetworkConditions.configured();
+        System.out.println("Playing over " + network);
+        for (int players : counts) {
+            Report report = run(players, seconds, BotBehaviour.hunter(), network);
+            System.out.println(report);
+            if (report.isOverloaded()) {
+                System.out.println("The host falls over at " + players + " players");
+                return;
+            }
+        }
+        System.out.println("The host kept up with all player counts");
+    }
+}
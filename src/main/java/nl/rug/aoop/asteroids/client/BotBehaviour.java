@@ -0,0 +1,76 @@
+package nl.rug.aoop.asteroids.client;
+
+import nl.rug.aoop.asteroids.control.InputEvent;
+import nl.rug.aoop.asteroids.model.Game;
+import nl.rug.aoop.asteroids.model.gameobjects.Asteroid;
+import nl.rug.aoop.asteroids.model.gameobjects.Spaceship;
+
+import java.awt.geom.Point2D;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * decides which keys a {@link BotClient} holds down during a tick
+ * */
+@FunctionalInterface
+public interface BotBehaviour {
+    /**
+     * how far (in radians) the nose of a hunting bot may point away from its target while it still fires
+     * */
+    double AIM_TOLERANCE = 0.2;
+
+    /**
+     * the distance to its target a hunting bot tries to keep
+     * */
+    double HUNTING_DISTANCE = 150;
+
+    /**
+     * @param game the game of the bot, with the remote objects as last received from the host
+     * @param tick the amount of ticks the bot has played
+     * @return the keys held down this tick
+     * */
+    Set<InputEvent.Action> decide(Game game, long tick);
+
+    /**
+     * @param script the keys to hold down each tick, played over and over
+     * @return a behaviour following the script
+     * */
+    static BotBehaviour scripted(List<Set<InputEvent.Action>> script) {
+        return (game, tick) -> script.get((int) (tick % script.size()));
+    }
+
+    /**
+     * @return a behaviour that turns towards the nearest asteroid, flies towards it when far away and fires when it
+     * points at it. Flies in circles while there are no asteroids.
+     * */
+    static BotBehaviour hunter() {
+        return (game, tick) -> {
+            Spaceship own = game.getMainSpaceShip();
+            Point2D.Double location = own.getLocation();
+            Asteroid target = game.getAsteroids().stream()
+                    .min(Comparator.comparingDouble(asteroid -> asteroid.getLocation().distance(location)))
+                    .orElse(null);
+            if (target == null) {
+                return EnumSet.of(InputEvent.Action.TURN_LEFT, InputEvent.Action.ACCELERATE);
+            }
+            double dx = target.getLocation().x - location.x;
+            double dy = target.getLocation().y - location.y;
+            // the nose points along (sin, -cos) of the direction, as the y-axis of the screen is flipped
+            double offset = Math.atan2(dx, -dy) - own.getDirection();
+            offset = Math.atan2(Math.sin(offset), Math.cos(offset));
+            Set<InputEvent.Action> keys = EnumSet.noneOf(InputEvent.Action.class);
+            if (Math.abs(offset) > AIM_TOLERANCE / 2) {
+                keys.add(offset > 0 ? InputEvent.Action.TURN_RIGHT : InputEvent.Action.TURN_LEFT);
+            }
+            if (Math.abs(offset) < AIM_TOLERANCE) {
+                keys.add(InputEvent.Action.FIRE);
+                if (target.getLocation().distance(location) > HUNTING_DISTANCE) {
+                    keys.add(InputEvent.Action.ACCELERATE);
+                }
+            }
+            return keys;
+        };
+    }
+}
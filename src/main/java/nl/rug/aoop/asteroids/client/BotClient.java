@@ -0,0 +1,338 @@
+package nl.rug.aoop.asteroids.client;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+import nl.rug.aoop.asteroids.control.GameUpdater;
+import nl.rug.aoop.asteroids.control.InputEvent;
+import nl.rug.aoop.asteroids.model.Game;
+import nl.rug.aoop.asteroids.model.connection.ConnectionEssentials;
+import nl.rug.aoop.asteroids.model.connection.ControlMessage;
+import nl.rug.aoop.asteroids.model.connection.HeartbeatSettings;
+import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
+import nl.rug.aoop.asteroids.model.connection.Transport;
+import nl.rug.aoop.asteroids.model.connection.TransportFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a client without a window, sound or user, driven by a {@link BotBehaviour}. It plays like a {@link Client}: it runs
+ * its own spaceship with a {@link GameUpdater} and trades packages with the host once every tick. Used to put a host
+ * under load.
+ * <p>
+ * it measures the time from sending its package to receiving the answer of the host, which is the end to end latency
+ * a player feels, and counts the snapshots it receives.
+ * */
+@Log
+public class BotClient extends TrafficHandler implements Runnable {
+    /**
+     * time in between two ticks of the bot in ns
+     * */
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1) / GameUpdater.PHYSICS_FPS;
+
+    /**
+     * the amount of times the bot asks to join before giving up
+     * */
+    private static final int JOIN_ATTEMPTS = 5;
+
+    /**
+     * the amount of times the bot tries to tell the host it leaves
+     * */
+    private static final int LEAVE_ATTEMPTS = 5;
+
+    /**
+     * the most latencies remembered, enough for minutes of play
+     * */
+    private static final int MAX_LATENCY_SAMPLES = 1 << 16;
+
+    /**
+     * the name the bot plays under
+     * */
+    @Getter
+    private final String name;
+
+    /**
+     * decides the keys the bot holds down
+     * */
+    private final BotBehaviour behaviour;
+
+    /**
+     * the game of the bot, with its own spaceship and the remote objects
+     * */
+    @Getter
+    private final Game game;
+
+    /**
+     * moves and fires the own spaceship every tick
+     * */
+    private final GameUpdater updater;
+
+    /**
+     * transport to talk to the host with
+     * */
+    private final Transport s;
+
+    /**
+     * the handler of the bot on the host, null until joined
+     * */
+    private ConnectionEssentials ce;
+
+    /**
+     * indicates whether the bot is playing
+     * */
+    @Getter
+    private volatile boolean running;
+
+    /**
+     * the amount of ticks played
+     * */
+    @Getter
+    private volatile long ticks;
+
+    /**
+     * the amount of snapshots received from the host
+     * */
+    @Getter
+    private volatile long snapshots;
+
+    /**
+     * indicates whether the host kicked the bot
+     * */
+    @Getter
+    private volatile boolean kicked;
+
+    /**
+     * the amount of times the spaceship of the bot was destroyed
+     * */
+    @Getter
+    private volatile int deaths;
+
+    /**
+     * the time (in ns) the bot started and stopped playing
+     * */
+    private volatile long startNanos, stopNanos;
+
+    /**
+     * the end to end latencies measured so far, in ns
+     * */
+    private final long[] latencies;
+
+    /**
+     * the amount of latencies measured so far
+     * */
+    private int latencyCount;
+
+    /**
+     * makes a bot that has not joined a host yet
+     * @param name the name the bot plays under
+     * @param behaviour decides the keys the bot holds down
+     * */
+    public BotClient(String name, BotBehaviour behaviour) throws IOException {
+        this(name, behaviour, TransportFactory.configured());
+    }
+
+    /**
+     * makes a bot that has not joined a host yet
+     * @param name the name the bot plays under
+     * @param behaviour decides the keys the bot holds down
+     * @param transports opens the transport of the bot, for example over a simulated network
+     * */
+    public BotClient(String name, BotBehaviour behaviour, TransportFactory transports) throws IOException {
+        this.name = name;
+        this.behaviour = behaviour;
+        this.game = new Game();
+        game.setType(Game.CLIENT);
+        game.getMainSpaceShip().setUserName(name);
+        this.updater = new GameUpdater(game);
+        this.s = transports.open(0);
+        setClock(transports.clock());
+        s.setSoTimeout(HeartbeatSettings.configured().socketTimeout());
+        this.latencies = new long[MAX_LATENCY_SAMPLES];
+    }
+
+    /**
+     * joins a room of a host on this machine. Asks again when no answer comes, in case the join packet or the answer
+     * got lost
+     * @param port the port the host listens on
+     * @param room the room to join
+     * @return whether the host let the bot in
+     * */
+    public boolean join(int port, int room) throws IOException {
+        ConnectionEssentials server = new ConnectionEssentials(InetAddress.getLoopbackAddress(), port);
+        DatagramPacket answer = null;
+        for (int attempt = 1; answer == null; attempt++) {
+            sendJoinPacket(s, server, room);
+            try {
+                answer = receive(s);
+            } catch (SocketTimeoutException e) {
+                if (attempt == JOIN_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+        if (isRoomFull(answer) || isUnknownRoom(answer)) {
+            return false;
+        }
+        ce = new ConnectionEssentials(answer.getAddress(), answer.getPort());
+        queueControl(ControlMessage.Type.JOIN, 0, name);
+        return true;
+    }
+
+    /**
+     * plays a tick at a time until {@link #stop()} is called or the host is gone, then leaves
+     * */
+    @Override
+    public void run() {
+        running = true;
+        startNanos = System.nanoTime();
+        long nextTick = startNanos;
+        while (running) {
+            try {
+                tick();
+            } catch (SocketTimeoutException e) {
+                // the package or its answer got lost, the next tick sends a new one
+            } catch (IOException | ClassNotFoundException e) {
+                if (running) {
+                    log.warning("Bot " + name + " lost the host: " + e.getMessage());
+                }
+                running = false;
+            }
+            nextTick += TICK_NANOS;
+            long sleep = nextTick - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+            } else {
+                nextTick = System.nanoTime(); // fell behind, do not try to catch up
+            }
+        }
+        stopNanos = System.nanoTime();
+        leave();
+    }
+
+    /**
+     * plays a single tick: moves and fires by the behaviour, sends the own spaceship and applies the answer
+     * */
+    private void tick() throws IOException, ClassNotFoundException {
+        Set<InputEvent.Action> keys = behaviour.decide(game, ticks);
+        for (InputEvent.Action action : InputEvent.Action.values()) {
+            action.apply(game.getMainSpaceShip(), keys.contains(action));
+        }
+        updater.updatePhysics();
+        ticks++;
+
+        long sent = System.nanoTime();
+        sendSinglePlayerGamePackage(SinglePlayerPackage.of(game), s, ce);
+        MultiPlayerGamePackage mp = receiveMultiPlayerGamePackage(s);
+        recordLatency(System.nanoTime() - sent);
+        snapshots++;
+        game.getMainSpaceShip().setNetworkId(mp.getOwnShipId());
+        long now = System.currentTimeMillis();
+        game.getInterpolationBuffer().add(mp, arrivalOf(mp, now));
+        game.interpolateRemoteObjects(now);
+    }
+
+    /**
+     * @param latency an end to end latency in ns
+     * */
+    private synchronized void recordLatency(long latency) {
+        if (latencyCount < latencies.length) {
+            latencies[latencyCount++] = latency;
+        }
+    }
+
+    /**
+     * @return the end to end latencies measured so far, in ns
+     * */
+    public synchronized long[] getLatencies() {
+        return Arrays.copyOf(latencies, latencyCount);
+    }
+
+    /**
+     * @return the snapshots received per second while playing
+     * */
+    public double getSnapshotRate() {
+        double seconds = getPlayingSeconds();
+        return seconds > 0 ? snapshots / seconds : 0;
+    }
+
+    /**
+     * @return the seconds the bot has played, 0 if it has not started
+     * */
+    public double getPlayingSeconds() {
+        if (startNanos == 0) {
+            return 0;
+        }
+        long end = running ? System.nanoTime() : stopNanos;
+        return Math.max(0, end - startNanos) / 1e9;
+    }
+
+    /**
+     * stops playing after the current tick. The bot then tells the host it leaves
+     * */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * handles the events the host sends. A destroyed bot asks for a new spaceship right away, a kicked bot stops
+     * @param message the message of the host
+     * */
+    @Override
+    protected void onControlMessage(ControlMessage message) {
+        boolean own = message.shipId() != 0 && message.shipId() == game.getMainSpaceShip().getNetworkId();
+        switch (message.type()) {
+            case KICK -> {
+                kicked = true;
+                running = false;
+            }
+            case DEATH -> {
+                if (own) {
+                    deaths++;
+                    game.getMainSpaceShip().destroy();
+                    queueControl(ControlMessage.Type.RESPAWN, message.shipId(), name);
+                }
+            }
+            case RESPAWN -> {
+                if (own) {
+                    game.getMainSpaceShip().reset();
+                    game.getMainSpaceShip().setUserName(name);
+                }
+            }
+            default -> { }
+        }
+    }
+
+    /**
+     * tells the host the bot leaves, waiting a few resends for the acknowledgement, then closes the socket
+     * */
+    private void leave() {
+        if (ce != null && !kicked) {
+            queueControl(ControlMessage.Type.LEAVE, game.getMainSpaceShip().getNetworkId(), name);
+            try {
+                for (int attempt = 0; attempt < LEAVE_ATTEMPTS && !getControl().isIdle(); attempt++) {
+                    flushControl(s, ce);
+                    try {
+                        // only an acknowledgement comes back, the wait for a package ends in a timeout
+                        receiveMultiPlayerGamePackage(s);
+                    } catch (SocketTimeoutException | ClassNotFoundException e) {
+                        // checked by the loop
+                    }
+                }
+            } catch (IOException e) {
+                log.warning("Bot " + name + " could not tell the host it leaves");
+            }
+        }
+        s.close();
+    }
+}
@@ -4,20 +4,28 @@ import lombok.Getter;
 import lombok.extern.java.Log;
 import nl.rug.aoop.asteroids.model.Game;
 import nl.rug.aoop.asteroids.model.PanelType;
+import nl.rug.aoop.asteroids.model.PlayerSlots;
 import nl.rug.aoop.asteroids.model.connection.ConnectionEssentials;
+import nl.rug.aoop.asteroids.model.connection.ControlMessage;
+import nl.rug.aoop.asteroids.model.connection.HeartbeatSettings;
+import nl.rug.aoop.asteroids.model.connection.ReliableChannel;
 import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
 import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
+import nl.rug.aoop.asteroids.model.connection.Transport;
+import nl.rug.aoop.asteroids.model.connection.TransportFactory;
 import nl.rug.aoop.asteroids.view.AsteroidsFrame;
 import nl.rug.aoop.asteroids.view.errors.ErrorDialog;
 import nl.rug.aoop.asteroids.view.mainmenu.JoinListener;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * represents a client / player that joins a hosts game
@@ -25,14 +33,29 @@ import java.util.concurrent.Executors;
 @Log
 public class Client extends TrafficHandler implements JoinListener, Runnable {
     /**
-     * time we give the client to connect to the server
+     * the time (in ms) we wait for the host to answer a join packet before asking again
      * */
-    private static final int SLEEP_TIME = 50;
+    private static final int JOIN_TIMEOUT_MILLIS = 250;
+
+    /**
+     * the amount of times we ask the host to let us join before giving up
+     * */
+    private static final int JOIN_ATTEMPTS = 4;
+
+    /**
+     * the longest time (in ms) we keep telling the host we leave before giving up on its acknowledgement
+     * */
+    private static final long LEAVE_TIMEOUT_MILLIS = 1000;
 
     /**
      * socket to connect to server
      * */
-    private final DatagramSocket s;
+    private final Transport s;
+
+    /**
+     * how often we send a heartbeat while the game loop is stuck, and how long the host may stay silent
+     * */
+    private final HeartbeatSettings heartbeat;
 
     /**
      * the frame to manipulate
@@ -44,6 +67,11 @@ public class Client extends TrafficHandler implements JoinListener, Runnable {
      * */
     private int port;
 
+    /**
+     * the room of the server this client joins
+     * */
+    private int room;
+
     /**
      * instance of the game
      * */
@@ -55,14 +83,24 @@ public class Client extends TrafficHandler implements JoinListener, Runnable {
     private ConnectionEssentials ce;
 
     /**
-     * essentials to connect to server
+     * indicates whether the client is running
      * */
-    private ConnectionEssentials quitCE;
+    private volatile boolean running;
 
     /**
-     * indicates whether the client is running
+     * indicates whether the own spaceship is destroyed
      * */
-    private boolean running;
+    private boolean destroyed;
+
+    /**
+     * indicates whether the host told us our spaceship got destroyed, and we did not handle it yet
+     * */
+    private boolean died;
+
+    /**
+     * the name the host knows us by, null until we told it
+     * */
+    private String announcedName;
 
     /**
      * indicates whether the client has joined a game
@@ -70,13 +108,36 @@ public class Client extends TrafficHandler implements JoinListener, Runnable {
     @Getter
     private boolean joined;
 
+    /**
+     * indicates whether the host turned this client away because its game is full
+     * */
+    @Getter
+    private volatile boolean roomFull;
+
+    /**
+     * indicates whether the host turned this client away because the room it picked does not exist
+     * */
+    @Getter
+    private volatile boolean unknownRoom;
+
     /**
      * represents a player
      * @param game the instance of the game to which the client joins
      * */
-    public Client(AsteroidsFrame frame, Game game) throws SocketException {
+    public Client(AsteroidsFrame frame, Game game) throws IOException {
+        this(frame, game, TransportFactory.configured());
+    }
+
+    /**
+     * represents a player on a network of choice, for example a {@link nl.rug.aoop.asteroids.model.connection.LoopbackNetwork}
+     * @param game the instance of the game to which the client joins
+     * @param transports opens the transport to talk to the host with
+     * */
+    public Client(AsteroidsFrame frame, Game game, TransportFactory transports) throws IOException {
         this.game = game;
-        this.s = new DatagramSocket();
+        this.s = transports.open(0);
+        setClock(transports.clock());
+        this.heartbeat = HeartbeatSettings.configured();
         this.running = false;
         joined = false;
         this.frame = frame;
@@ -89,13 +150,17 @@ public class Client extends TrafficHandler implements JoinListener, Runnable {
     @Override
     public void run() {
         running = true;
-        boolean destroyed = false;
+        destroyed = false;
+        game.setNetworkStatistics(getStatistics());
+        ScheduledExecutorService heartbeats = startHeartbeats();
         while (running) {
             try {
                 sendOwnInformation();
                 var mp = receiveMultiPlayerGamePackage(s);
+                game.getMainSpaceShip().setNetworkId(mp.getOwnShipId());
+                game.getMainSpaceShip().setSpaceShipsColor(PlayerSlots.colorOf(mp.getOwnSlot()));
                 if (!destroyed) {
-                    destroyed = mp.isOwnShipDestroyed();
+                    destroyed = died;
                     game.getMainSpaceShip().updateScore(mp.getOwnScore());
                     game.getMainSpaceShip().setUserName(mp.getOwnName());
                     if (destroyed) {
@@ -103,31 +168,113 @@ public class Client extends TrafficHandler implements JoinListener, Runnable {
                         spectateOrQuit();
                     }
                 }
-                game.updateGameElements(mp);
+                game.getInterpolationBuffer().add(mp, arrivalOf(mp, System.currentTimeMillis()));
+            } catch (SocketTimeoutException e) {
+                // our package or the answer got lost, the next round sends ours again
+                if (isSilentFor(heartbeat.timeoutMillis())) {
+                    log.warning("The host has been silent for more than " + heartbeat.timeoutMillis() + " ms");
+                    kicked();
+                }
             } catch (IOException | ClassNotFoundException e) {
-                log.warning("Could not receive information from the client" +
-                        "Please restart the server");
+                if (running) {
+                    log.warning("Could not receive information from the client" +
+                            "Please restart the server");
+                }
                 running = false;
             }
         }
+        heartbeats.shutdownNow();
+    }
+
+    /**
+     * starts sending heartbeats, so the host does not give up on us while the game loop waits for the user, for
+     * example in the game over dialog. Also makes receiving wake up every interval to check on the host.
+     * @return the executor sending the heartbeats
+     * */
+    private ScheduledExecutorService startHeartbeats() {
+        try {
+            s.setSoTimeout(heartbeat.socketTimeout());
+        } catch (SocketException e) {
+            log.warning("Could not set a timeout, a host that disappears will not be noticed");
+        }
+        ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor();
+        heartbeats.scheduleAtFixedRate(() -> {
+            try {
+                if (!s.isClosed()) sendHeartbeat(s, ce, heartbeat.intervalMillis());
+            } catch (IOException e) {
+                log.warning("Could not send a heartbeat to the host");
+            }
+        }, heartbeat.intervalMillis(), heartbeat.intervalMillis(), TimeUnit.MILLISECONDS);
+        return heartbeats;
     }
 
     /**
-     * asks client through dialog whether to quit or spectate
+     * asks client through dialog whether to respawn, quit or spectate
      * */
     private void spectateOrQuit() {
-        String option = ErrorDialog.gameOver();
-        if (option.equals(ErrorDialog.QUIT_TO_MAIN_MENU)) {
-            running = false;
+        String option = ErrorDialog.clientGameOver();
+        if (option.equals(ErrorDialog.RESPAWN)) {
+            queueControl(ControlMessage.Type.RESPAWN, game.getMainSpaceShip().getNetworkId(),
+                    game.getMainSpaceShip().getUserName());
+        } else if (option.equals(ErrorDialog.QUIT_TO_MAIN_MENU)) {
+            shutDown();
             frame.changePanel(PanelType.START);
         }
     }
 
     /**
-     * destroys own ship
+     * handles the events the host sends: being kicked, dying and respawning, and the other players joining, leaving
+     * and changing their name
+     * @param message the message of the host
+     * */
+    @Override
+    protected void onControlMessage(ControlMessage message) {
+        boolean own = message.shipId() != 0 && message.shipId() == game.getMainSpaceShip().getNetworkId();
+        switch (message.type()) {
+            case KICK -> kicked();
+            case DEATH -> {
+                if (own) died = true;
+            }
+            case RESPAWN -> {
+                if (own) respawnOwnShip();
+            }
+            default -> { }
+        }
+        if (!own && message.type() != ControlMessage.Type.KICK) {
+            log.info("Player " + message.name() + ": " + message.type());
+        }
+    }
+
+    /**
+     * stops playing after the host removed us or disappeared, and tells the user
+     * */
+    private void kicked() {
+        running = false;
+        // the kick is already acknowledged, nothing else will come from the host
+        s.close();
+        ExecutorService thread = Executors.newSingleThreadExecutor();
+        thread.submit(() -> {
+            ErrorDialog.kickedFromServer();
+            frame.changePanel(PanelType.START);
+        });
+        thread.shutdown();
+    }
+
+    /**
+     * gives us a fresh spaceship after the host respawned us. It keeps its name
+     * */
+    private void respawnOwnShip() {
+        String userName = game.getMainSpaceShip().getUserName();
+        game.getMainSpaceShip().reset();
+        game.getMainSpaceShip().setUserName(userName);
+        died = false;
+        destroyed = false;
+    }
+
+    /**
+     * destroys own ship. It stays in the game as the first spaceship, so the other ships keep their place.
      * */
     private void destroyOwnShip() {
-        game.removeSpaceShip(0);
         game.getMainSpaceShip().destroy();
     }
 
@@ -135,33 +282,59 @@ public class Client extends TrafficHandler implements JoinListener, Runnable {
      * sends own information to the server
      * */
     private void sendOwnInformation() throws IOException {
-        SinglePlayerPackage singlePlayerPackage = new SinglePlayerPackage(
-                game.getMainSpaceShip().getLocation(),
-                game.getMainSpaceShip().getDirection(),
-                game.getMainSpaceShip().getStepsUntilCollisionPossible(),
-                game.getMainSpaceShip().isAccelerating(),
-                game.getOwnBulletsLocations(),
-                game.getOwnBulletsStepsLeft(),
-                game.getMainSpaceShip().getUserName()
-        );
-        singlePlayerPackage.setDestroyed(game.getMainSpaceShip().isDestroyed());
-        sendSinglePlayerGamePackage(singlePlayerPackage,s, ce);
+        announceName();
+        sendSinglePlayerGamePackage(SinglePlayerPackage.of(game), s, ce);
     }
 
     /**
-     * shuts down the thread responsible for connecting this client to the server
+     * tells the host who we are when we join, and our new name when it changes
+     * */
+    private void announceName() {
+        String userName = game.getMainSpaceShip().getUserName();
+        if (announcedName == null) {
+            queueControl(ControlMessage.Type.JOIN, 0, userName);
+        } else if (!announcedName.equals(userName)) {
+            queueControl(ControlMessage.Type.NAME_CHANGE, game.getMainSpaceShip().getNetworkId(), userName);
+        }
+        announcedName = userName;
+    }
+
+    /**
+     * shuts down the thread responsible for connecting this client to the server. The host is told we leave in the
+     * background, until it acknowledges or {@link #LEAVE_TIMEOUT_MILLIS} passed.
      * */
     public void shutDown() {
         if (running) {
-            try {
-                sendQuit(s, quitCE);
-            } catch (IOException e) {
-                log.warning("Encountered an error while sending the shutting down the server");
-            }
+            running = false;
+            queueControl(ControlMessage.Type.LEAVE, game.getMainSpaceShip().getNetworkId(),
+                    game.getMainSpaceShip().getUserName());
+            ExecutorService thread = Executors.newSingleThreadExecutor();
+            thread.submit(this::leave);
+            thread.shutdown();
         }
         running = false;
     }
 
+    /**
+     * sends the leave message until the host acknowledges it, or until {@link #LEAVE_TIMEOUT_MILLIS} have passed on
+     * the clock of this handler, then closes the socket.
+     * The acknowledgement is received by the loop in {@link #run()}, which is still waiting for a package.
+     * */
+    private void leave() {
+        long deadline = getClock().millis() + LEAVE_TIMEOUT_MILLIS;
+        try {
+            do {
+                flushControl(s, ce);
+                Thread.sleep(ReliableChannel.RESEND_MILLIS);
+            } while (!getControl().isIdle() && getClock().millis() < deadline);
+        } catch (IOException e) {
+            log.warning("Encountered an error while telling the host we leave");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        s.close();
+    }
+
     /**
      * connects the client to server using
      * <li>{@link ConnectionEssentials}</li>
@@ -169,69 +342,52 @@ public class Client extends TrafficHandler implements JoinListener, Runnable {
      * */
     private void connectToServer() throws IOException {
         ce = new ConnectionEssentials(InetAddress.getByName("localhost"), port);
-        sendInitPacket(s, ce);
-        DatagramPacket packet = receive(s);
-        listenForQuitActions(ce);
-
+        s.setSoTimeout(JOIN_TIMEOUT_MILLIS);
+        DatagramPacket packet = null;
+        for (int attempt = 1; packet == null; attempt++) {
+            sendJoinPacket(s, ce, room);
+            try {
+                packet = receive(s);
+            } catch (SocketTimeoutException e) {
+                if (attempt == JOIN_ATTEMPTS) {
+                    log.info("The host at port " + port + " did not answer");
+                    return;
+                }
+            }
+        }
+        if (isRoomFull(packet)) {
+            roomFull = true;
+            log.info("Could not join, the game is full");
+            return;
+        }
+        if (isUnknownRoom(packet)) {
+            unknownRoom = true;
+            log.info("Could not join, there is no room " + room);
+            return;
+        }
         joined = true;
         this.port = packet.getPort();
         ce = new ConnectionEssentials(packet.getAddress(), port);
-        DatagramPacket packet1 = receive(s);
-        quitCE = new ConnectionEssentials(packet1.getAddress(), packet1.getPort());
     }
 
     /**
-     * attempts the client to join a game at the given port
+     * attempts the client to join a game at the given port. Returns once the host answered, or did not answer
+     * {@link #JOIN_ATTEMPTS} times in a row, so afterwards {@link #isJoined()}, {@link #isRoomFull()} and
+     * {@link #isUnknownRoom()} tell how it went.
      * @param port the port to join to
+     * @param room the room to join
      * */
     @Override
-    public void attemptToJoin(int port) {
+    public void attemptToJoin(int port, int room) {
         this.port = port;
-        ExecutorService thread = Executors.newSingleThreadExecutor();
-        thread.submit(() -> {
-            try {
-                connectToServer();
-            } catch (IOException e) {
-                log.warning("Encountered an error while trying to connect to the host" +
-                        "Please notify them to host a new game");
-            }
-        });
-        waitForConnection();
-        if (!joined) {
-            thread.shutdownNow();
-        }
-    }
-
-    /**
-     * makes this thread sleep. which gives time for the client to connect.
-     * Since the method `connectToServer` is a blocking method. If the {@link #SLEEP_TIME}
-     * elapses and a connection has not been established yet. Then the give port is wrong.
-     * */
-    private void waitForConnection() {
+        this.room = room;
+        roomFull = false;
+        unknownRoom = false;
         try {
-            Thread.sleep(SLEEP_TIME);
-        } catch (InterruptedException e) {
-            log.warning("Thread was interrupted" +
-                    "Game might not function properly");
+            connectToServer();
+        } catch (IOException e) {
+            log.warning("Encountered an error while trying to connect to the host" +
+                    "Please notify them to host a new game");
         }
     }
-
-    /**
-     * listens for quit action done by the host
-     * */
-    private void listenForQuitActions(ConnectionEssentials ce) {
-        ExecutorService thread = Executors.newSingleThreadExecutor();
-        thread.submit(() -> {
-            try {
-                DatagramSocket quitSocket = new DatagramSocket();
-                sendInitPacket(quitSocket, ce);
-                receiveQuit(quitSocket);
-                running = false;
-                ErrorDialog.kickedFromServer();
-                frame.changePanel(PanelType.START);
-            } catch (IOException e) {
-                log.warning("Could not listen for a quit action from the host");
-            }
-        });
-    }
 }
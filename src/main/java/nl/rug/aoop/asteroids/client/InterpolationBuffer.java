@@ -0,0 +1,235 @@
+package nl.rug.aoop.asteroids.client;
+
+import lombok.Getter;
+import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.view.AsteroidsFrame;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * keeps the last snapshots received from the host together with the time they arrived at.
+ * <p>
+ * remote objects are drawn a small delay in the past, in between the two snapshots surrounding that moment,
+ * instead of jumping to the newest position every time a packet arrives. The delay follows the measured
+ * interval and jitter of the incoming packets, so a lower send rate or a bad connection still looks smooth.
+ * </p>
+ * */
+public class InterpolationBuffer {
+    /**
+     * the maximum amount of snapshots kept in the buffer
+     * */
+    public static final int CAPACITY = 32;
+
+    /**
+     * the smallest delay (in ms) with which remote objects are drawn
+     * */
+    public static final double MIN_DELAY_MILLIS = 100.0;
+
+    /**
+     * the largest delay (in ms) with which remote objects are drawn
+     * */
+    public static final double MAX_DELAY_MILLIS = 500.0;
+
+    /**
+     * how far (in ms) past the newest snapshot remote objects are moved on when the buffer has run dry
+     * */
+    public static final double MAX_EXTRAPOLATION_MILLIS = 250.0;
+
+    /**
+     * gain of the running averages of the interval and the jitter (same gain as RFC 3550 uses)
+     * */
+    private static final double SMOOTHING = 1.0 / 16.0;
+
+    /**
+     * how many packet intervals the delay should at least cover
+     * */
+    private static final double INTERVAL_MARGIN = 2.0;
+
+    /**
+     * how many times the jitter is added on top of the intervals
+     * */
+    private static final double JITTER_MARGIN = 4.0;
+
+    /**
+     * fraction of the difference between the current and the wanted delay that is applied per snapshot.
+     * Changing the delay at once would make remote objects skip.
+     * */
+    private static final double DELAY_ADAPTATION = 0.1;
+
+    /**
+     * the snapshots ordered from old to new
+     * */
+    private final Deque<Snapshot> snapshots;
+
+    /**
+     * running average of the time between two snapshots
+     * */
+    @Getter
+    private double meanInterval;
+
+    /**
+     * running average of the deviation from {@link #meanInterval}
+     * */
+    @Getter
+    private double jitter;
+
+    /**
+     * arrival time of the last snapshot, or -1 if none has arrived yet
+     * */
+    private long lastArrival;
+
+    /**
+     * the delay (in ms) with which remote objects are currently drawn
+     * */
+    @Getter
+    private double delay;
+
+    /**
+     * makes an empty buffer which draws {@link #MIN_DELAY_MILLIS} in the past
+     * */
+    public InterpolationBuffer() {
+        snapshots = new ArrayDeque<>(CAPACITY);
+        clear();
+    }
+
+    /**
+     * adds a snapshot that just came in and adapts the delay to the measured jitter
+     * @param mp the received snapshot
+     * @param arrivalTime the time (in ms) at which the snapshot arrived
+     * */
+    public synchronized void add(MultiPlayerGamePackage mp, long arrivalTime) {
+        if (lastArrival >= 0) {
+            double interval = arrivalTime - lastArrival;
+            meanInterval += (interval - meanInterval) * SMOOTHING;
+            jitter += (Math.abs(interval - meanInterval) - jitter) * SMOOTHING;
+            double wantedDelay = Math.max(MIN_DELAY_MILLIS,
+                    Math.min(MAX_DELAY_MILLIS, INTERVAL_MARGIN * meanInterval + JITTER_MARGIN * jitter));
+            delay += (wantedDelay - delay) * DELAY_ADAPTATION;
+        }
+        lastArrival = arrivalTime;
+        if (snapshots.size() == CAPACITY) {
+            snapshots.removeFirst();
+        }
+        snapshots.addLast(new Snapshot(mp, arrivalTime));
+    }
+
+    /**
+     * finds the two snapshots surrounding the moment {@link #delay} ms before now.
+     * Snapshots older than the first of the two are thrown away, they are not needed anymore.
+     * <p>
+     * when the buffer has run dry the newest snapshot is held, and the sample tells how far past it the moment is
+     *
+     * @param now the current time in ms
+     * @return the sample to draw, or null if no snapshot has arrived yet
+     * */
+    public synchronized Sample sample(long now) {
+        if (snapshots.isEmpty()) {
+            return null;
+        }
+        double renderTime = now - delay;
+        Snapshot from = snapshots.getFirst();
+        if (renderTime <= from.time()) {
+            return new Sample(from.mp(), from.mp(), 0.0);
+        }
+        Iterator<Snapshot> iterator = snapshots.iterator();
+        iterator.next();
+        while (iterator.hasNext()) {
+            Snapshot to = iterator.next();
+            if (renderTime < to.time()) {
+                while (snapshots.getFirst() != from) {
+                    snapshots.removeFirst();
+                }
+                double alpha = (renderTime - from.time()) / (double) (to.time() - from.time());
+                return new Sample(from.mp(), to.mp(), alpha);
+            }
+            from = to;
+        }
+        while (snapshots.size() > 1) {
+            snapshots.removeFirst();
+        }
+        return new Sample(from.mp(), from.mp(), 0.0, Math.min(MAX_EXTRAPOLATION_MILLIS, renderTime - from.time()));
+    }
+
+    /**
+     * @return the amount of snapshots currently buffered
+     * */
+    public synchronized int size() {
+        return snapshots.size();
+    }
+
+    /**
+     * throws away all snapshots and measurements
+     * */
+    public synchronized void clear() {
+        snapshots.clear();
+        meanInterval = 0.0;
+        jitter = 0.0;
+        lastArrival = -1;
+        delay = MIN_DELAY_MILLIS;
+    }
+
+    /**
+     * a snapshot with the time it arrived at
+     * @param mp the snapshot
+     * @param time the arrival time in ms
+     * */
+    private record Snapshot(MultiPlayerGamePackage mp, long time) {
+    }
+
+    /**
+     * the two snapshots to interpolate between and how far we are in between them
+     * @param from the older snapshot
+     * @param to the newer snapshot, the one whose objects are shown
+     * @param alpha 0 when at {@code from}, 1 when at {@code to}
+     * @param ahead how many ms the moment is past {@code to}, when no newer snapshot has arrived in time
+     * */
+    public record Sample(MultiPlayerGamePackage from, MultiPlayerGamePackage to, double alpha, double ahead) {
+        /**
+         * a sample at or before the newest snapshot
+         * */
+        public Sample(MultiPlayerGamePackage from, MultiPlayerGamePackage to, double alpha) {
+            this(from, to, alpha, 0.0);
+        }
+
+        /**
+         * interpolates between two locations. Objects wrap around the edges of the window, so the shortest way
+         * around is taken.
+         * @param a the location in {@link #from}
+         * @param b the location in {@link #to}
+         * @return the location at {@link #alpha}
+         * */
+        public Point2D.Double interpolate(Point2D.Double a, Point2D.Double b) {
+            return interpolate(a, b, new Point2D.Double());
+        }
+
+        /**
+         * interpolates between two locations and stores the outcome in an existing point
+         * @param a the location in {@link #from}
+         * @param b the location in {@link #to}
+         * @param result the point to store the location at {@link #alpha} in
+         * @return the result point
+         * */
+        public Point2D.Double interpolate(Point2D.Double a, Point2D.Double b, Point2D.Double result) {
+            result.setLocation(
+                    interpolate(a.getX(), b.getX(), AsteroidsFrame.WIDTH),
+                    interpolate(a.getY(), b.getY(), AsteroidsFrame.HEIGHT));
+            return result;
+        }
+
+        /**
+         * interpolates a single coordinate that wraps around at the given size
+         * */
+        private double interpolate(double a, double b, double size) {
+            double difference = b - a;
+            if (difference > size / 2) {
+                difference -= size;
+            } else if (difference < -size / 2) {
+                difference += size;
+            }
+            return (size + a + difference * alpha) % size;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package nl.rug.aoop.asteroids.control;
 
+import lombok.Getter;
 import nl.rug.aoop.asteroids.model.AsteroidSize;
 import nl.rug.aoop.asteroids.model.Game;
+import nl.rug.aoop.asteroids.model.RewindBuffer;
 import nl.rug.aoop.asteroids.model.gameobjects.Asteroid;
 import nl.rug.aoop.asteroids.model.gameobjects.Bullet;
 import nl.rug.aoop.asteroids.model.gameobjects.GameObject;
@@ -12,9 +14,10 @@ import nl.rug.aoop.asteroids.util.database.DatabaseManager;
 import nl.rug.aoop.asteroids.util.database.GameData;
 
 import java.awt.*;
+import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Objects;
+import java.util.EnumSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
@@ -37,7 +40,7 @@ public class GameUpdater implements Runnable {
      * The rate at which the game ticks (how often physics updates are applied), in frames per second. Increasing this
      * number speeds up everything in the game. Ships react faster to input, bullets fly faster, etc.
      */
-    private static final int PHYSICS_FPS = 30;
+    public static final int PHYSICS_FPS = 30;
 
     /**
      * The number of milliseconds in a game tick.
@@ -60,6 +63,18 @@ public class GameUpdater implements Runnable {
      */
     private static final int ASTEROID_SPAWN_RATE = 200;
 
+    /**
+     * The names of the stages of a tick.
+     */
+    public static final String INPUT_STAGE = "input";
+    public static final String MOVEMENT_STAGE = "movement";
+    public static final String FIRING_STAGE = "firing";
+    public static final String ASTEROID_MOVEMENT_STAGE = "asteroidMovement";
+    public static final String COLLISION_STAGE = "collision";
+    public static final String CLEANUP_STAGE = "cleanup";
+    public static final String SPAWN_STAGE = "spawn";
+    public static final String SNAPSHOT_STAGE = "snapshot";
+
     /**
      * The game that this updater works for.
      */
@@ -82,7 +97,35 @@ public class GameUpdater implements Runnable {
     private final ExecutorService service;
 
     /**
-     * Constructs a new game updater with the given game.
+     * Actions whose key was released in the same tick it was pressed in. They are released at the start of the next
+     * tick, so that a short tap still counts for one tick.
+     */
+    private final EnumSet<InputEvent.Action> pendingReleases;
+
+    /**
+     * Where a target of a late bullet was, reused for every check.
+     */
+    private final Point2D.Double rewound = new Point2D.Double();
+
+    /**
+     * The stages of a tick, put together once for the role of the game.
+     */
+    @Getter
+    private final TickPipeline pipeline;
+
+    /**
+     * Whether the game is played alone. Solo games end when the player dies, and their score is saved.
+     */
+    private final boolean solo;
+
+    /**
+     * Whether remote objects are interpolated before each frame, which only a client does.
+     */
+    private final boolean interpolating;
+
+    /**
+     * Constructs a new game updater with the given game. The stages of a tick are chosen here, based on the type of
+     * the game, so that the ticks themselves never have to check it.
      *
      * @param game The game that this updater will update when it's running.
      */
@@ -91,6 +134,42 @@ public class GameUpdater implements Runnable {
         this.service = Executors.newCachedThreadPool();
         updateCounter = 0;
         asteroidsLimit = ASTEROIDS_LIMIT_DEFAULT;
+        pendingReleases = EnumSet.noneOf(InputEvent.Action.class);
+        solo = Game.SOLO.equals(game.getType());
+        interpolating = Game.CLIENT.equals(game.getType());
+        pipeline = buildPipeline(game.getType());
+    }
+
+    /**
+     * Puts together the stages of a tick for a type of game.
+     * <p>
+     * Every game moves and fires its own objects and cleans up. Only a solo game or the host simulates the asteroids
+     * and decides on collisions; a client gets those from the host. The host also takes the snapshot sent to all
+     * clients. A dedicated server has no objects of its own, so it skips taking input, moving and firing.
+     *
+     * @param type The type of the game, {@link Game#SOLO}, {@link Game#HOST} or {@link Game#CLIENT}.
+     *
+     * @return The pipeline to run every tick.
+     */
+    private TickPipeline buildPipeline(String type) {
+        TickPipeline pipeline = new TickPipeline();
+        if (!game.isDedicated()) {
+            pipeline.add(INPUT_STAGE, this::applyInput)
+                    .add(MOVEMENT_STAGE, this::moveOwnObjects)
+                    .add(FIRING_STAGE, this::fireWeapon);
+        }
+        if (!Game.CLIENT.equals(type)) {
+            pipeline.add(ASTEROID_MOVEMENT_STAGE, () -> game.getAsteroids().forEach(GameObject::nextStep));
+            pipeline.add(COLLISION_STAGE, this::checkCollisions);
+        }
+        pipeline.add(CLEANUP_STAGE, this::removeDestroyedObjects);
+        if (!Game.CLIENT.equals(type)) {
+            pipeline.add(SPAWN_STAGE, this::spawnAsteroids);
+        }
+        if (Game.HOST.equals(type)) {
+            pipeline.add(SNAPSHOT_STAGE, game::updateWorldSnapshot); // shared by all clients until the next tick
+        }
+        return pipeline;
     }
 
     /**
@@ -107,7 +186,7 @@ public class GameUpdater implements Runnable {
 
         final double millisecondsPerDisplayFrame = 1000.0 / DISPLAY_FPS;
 
-        while (game.isRunning() && !(game.isGameOver() && game.getType().equals(Game.SOLO))) {
+        while (game.isRunning() && !(solo && game.isGameOver())) {
             long currentTime = System.currentTimeMillis();
             long elapsedTime = currentTime - previousTime;
             timeSinceLastTick += elapsedTime;
@@ -118,6 +197,7 @@ public class GameUpdater implements Runnable {
                 timeSinceLastTick = 0L;
             }
             if (timeSinceLastDisplayFrame >= millisecondsPerDisplayFrame) { // Check if enough time has passed to refresh the display.
+                if (interpolating) game.interpolateRemoteObjects(currentTime);
                 game.notifyListeners(timeSinceLastTick); // Tell the asteroids panel that it should refresh.
                 timeSinceLastDisplayFrame = 0L;
             }
@@ -125,7 +205,7 @@ public class GameUpdater implements Runnable {
             previousTime = currentTime;
         }
 
-        if (Objects.equals(game.getType(), Game.SOLO)) {
+        if (solo) {
             DatabaseManager databaseManager = new DatabaseManager("HighScores");
             String name = game.getMainSpaceShip().getUserName();
             int score = game.getMainSpaceShip().getScore();
@@ -136,7 +216,7 @@ public class GameUpdater implements Runnable {
     }
 
     /**
-     * Called every game tick, to update all of the game's model objects.
+     * Called every game tick, to update all of the game's model objects by running the stages of the {@link #pipeline}.
      * <p>
      * First, each object's movement is updated by calling nextStep() on it.
      * Then, if the player is pressing the key to fire the ship's weapon, a new bullet should spawn.
@@ -144,47 +224,92 @@ public class GameUpdater implements Runnable {
      * And finally, any objects which are destroyed by collisions are removed from the game.
      * <p>
      * Also, every 200 game ticks, if possible, a new random asteroid is added to the game.
+     * <p>
+     * Public so a scheduler can drive the game instead of the game loop, as done for the rooms of a
+     * {@link nl.rug.aoop.asteroids.server.RoomManager}.
+     */
+    public void updatePhysics() {
+        pipeline.tick();
+        updateCounter++;
+        game.countTick();
+    }
+
+    /**
+     * Moves the player's own bullets and spaceship.
      */
-    private void updatePhysics() {
-        Collection<Bullet> bullets = game.getOwnBullets();
-        bullets.forEach(GameObject::nextStep);
+    private void moveOwnObjects() {
+        game.getOwnBullets().forEach(GameObject::nextStep);
         if (!game.isGameOver()) {
-            Spaceship ship = game.getMainSpaceShip();
-            ship.nextStep();
+            game.getMainSpaceShip().nextStep();
+        }
+    }
 
+    /**
+     * Spawns a new bullet if the player is pressing the key to fire the ship's weapon and the weapon is ready.
+     */
+    private void fireWeapon() {
+        if (!game.isGameOver()) {
+            Spaceship ship = game.getMainSpaceShip();
             if (ship.canFireWeapon()) {
                 service.submit(new SoundEffectPlayer(SoundEffectPlayer.FIRE));
                 double direction = ship.getDirection();
                 PolarCoordinate a = new PolarCoordinate(0.0 * PI, Spaceship.SHIP_SIZE + 5);
-                bullets.add(
-                        new Bullet(
-                                ship.getLocation().getX() + Math.sin(direction + a.getAngle()) * a.getRadius(),
-                                ship.getLocation().getY() - Math.cos(direction + a.getAngle()) * a.getRadius(),
-                                ship.getVelocity().x + Math.sin(direction) * 15,
-                                ship.getVelocity().y - Math.cos(direction) * 15
-                        )
+                Bullet bullet = new Bullet(
+                        ship.getLocation().getX() + Math.sin(direction + a.getAngle()) * a.getRadius(),
+                        ship.getLocation().getY() - Math.cos(direction + a.getAngle()) * a.getRadius(),
+                        ship.getVelocity().x + Math.sin(direction) * 15,
+                        ship.getVelocity().y - Math.cos(direction) * 15
                 );
+                game.assignNetworkId(bullet);
+                bullet.setOwnerId(ship.getNetworkId());
+                bullet.setFireTick(game.getShownHostTick());
+                game.getOwnBullets().add(bullet);
                 ship.setFired();
             }
         }
-        Collection<Asteroid> asteroids = game.getAsteroids();
-        if (!game.getType().equals(Game.CLIENT)) asteroids.forEach(GameObject::nextStep); // no client computation needed
-
-        checkCollisions();
-        removeDestroyedObjects();
+    }
 
-        // Every 200 game ticks, try and spawn a new asteroid.
-        if (updateCounter % ASTEROID_SPAWN_RATE == 0 && asteroids.size() < asteroidsLimit) {
+    /**
+     * Every 200 game ticks, tries to spawn a new asteroid.
+     */
+    private void spawnAsteroids() {
+        if (updateCounter % ASTEROID_SPAWN_RATE == 0 && game.getAsteroids().size() < asteroidsLimit) {
             addRandomAsteroid();
         }
-        updateCounter++;
+    }
+
+    /**
+     * Takes all input events that came in since the last tick from the game's input queue, and applies them to the
+     * main spaceship in the order they happened. Since this happens on the updater thread, the ship's key state is only
+     * ever changed by the thread that reads it.
+     * <p>
+     * A key that is pressed and released within the same tick stays pressed for this tick, and is released at the start
+     * of the next one.
+     */
+    private void applyInput() {
+        Spaceship ship = game.getMainSpaceShip();
+        pendingReleases.forEach(action -> action.apply(ship, false));
+        pendingReleases.clear();
+        EnumSet<InputEvent.Action> pressedThisTick = EnumSet.noneOf(InputEvent.Action.class);
+        InputEvent event;
+        while ((event = game.getInputQueue().poll()) != null) {
+            if (game.getInputRecording() != null) game.getInputRecording().add(updateCounter, event);
+            if (event.pressed()) {
+                event.action().apply(ship, true);
+                pressedThisTick.add(event.action());
+                pendingReleases.remove(event.action());
+            } else if (pressedThisTick.contains(event.action())) {
+                pendingReleases.add(event.action());
+            } else {
+                event.action().apply(ship, false);
+            }
+        }
     }
 
     /**
      * Adds a random asteroid at least 50 pixels away from the player's spaceship.
      */
     private void addRandomAsteroid() {
-        if (game.getType().equals(Game.CLIENT)) return; // client does not have to add this
         ThreadLocalRandom rng = ThreadLocalRandom.current();
         Point.Double newAsteroidLocation;
         Point.Double shipLocation = game.getMainSpaceShip().getLocation();
@@ -205,7 +330,9 @@ public class GameUpdater implements Runnable {
         } else { // And finally a 33% chance of spawning a small asteroid.
             randomSize = AsteroidSize.SMALL;
         }
-        game.getAsteroids().add(new Asteroid(newAsteroidLocation, randomVelocity, randomSize));
+        Asteroid asteroid = new Asteroid(newAsteroidLocation, randomVelocity, randomSize);
+        game.assignNetworkId(asteroid);
+        game.getAsteroids().add(asteroid);
     }
 
     /**
@@ -213,7 +340,6 @@ public class GameUpdater implements Runnable {
      * objects of a different type, but not with objects of the same type. I.e. bullets cannot collide with bullets etc.
      */
     private void checkCollisions() {
-        if (game.getType().equals(Game.CLIENT)) return;
         ownBulletsWithGameObjects();
         enemiesBulletsWithGameObjects();
         asteroidsWithSpaceShips();
@@ -243,14 +369,16 @@ public class GameUpdater implements Runnable {
     }
 
     /**
-     * checks enemies bullets collision with asteroids and all other spaceships
+     * checks enemies bullets collision with asteroids and all other spaceships. The bullets of a client are checked
+     * against where the objects were when the client saw them, see {@link RewindBuffer}
      * */
     private void enemiesBulletsWithGameObjects() {
         game.getEnemiesBullets().forEach(bullet -> {
             game.getAsteroids().forEach(asteroid -> { // Check collision with any of the asteroids.
-                if (asteroid.collides(bullet)) {
-                    if (game.getBulletOwner(bullet) != null) {
-                        game.getBulletOwner(bullet).increaseScore();
+                if (hits(bullet, asteroid)) {
+                    Spaceship owner = game.getBulletOwner(bullet);
+                    if (owner != null) {
+                        owner.increaseScore();
                     }
                     asteroid.destroy();
                     bullet.destroy();
@@ -258,9 +386,10 @@ public class GameUpdater implements Runnable {
                 }
             });
             game.getSpaceShips().forEach(spaceship -> {
-                if (!spaceship.isDestroyed() && spaceship.collides(bullet)) { // Check collision with ship.
-                    if (game.getBulletOwner(bullet) != null) {
-                        game.getBulletOwner(bullet).increaseScore();
+                if (!spaceship.isDestroyed() && hits(bullet, spaceship)) { // Check collision with ship.
+                    Spaceship owner = game.getBulletOwner(bullet);
+                    if (owner != null) {
+                        owner.increaseScore();
                     }
                     bullet.destroy();
                     spaceship.destroy();
@@ -270,6 +399,20 @@ public class GameUpdater implements Runnable {
         });
     }
 
+    /**
+     * @param bullet a bullet of a client
+     * @param target an asteroid or spaceship
+     * @return whether the bullet hits the target where it was as many ticks ago as the shooter was behind. Targets
+     * that are not remembered that far back are judged where they are now
+     * */
+    private boolean hits(Bullet bullet, GameObject target) {
+        int rewind = bullet.getRewindTicks();
+        if (rewind > 0 && game.getRewindBuffer().locate(game.getHostTick() - rewind, target.getNetworkId(), rewound)) {
+            return target.collidesAt(rewound, bullet);
+        }
+        return target.collides(bullet);
+    }
+
     /**
      * checks own bullets collision with asteroids and other spaceships
      * */
@@ -315,7 +458,10 @@ public class GameUpdater implements Runnable {
         Collection<Asteroid> newAsteroids = new ArrayList<>(game.getAsteroids().size() * 2);
         game.getAsteroids().forEach(asteroid -> {
             if (asteroid.isDestroyed()) {
-                newAsteroids.addAll(asteroid.getSuccessors());
+                asteroid.getSuccessors().forEach(successor -> {
+                    game.assignNetworkId(successor);
+                    newAsteroids.add(successor);
+                });
             }
         });
         game.getAsteroids().addAll(newAsteroids);
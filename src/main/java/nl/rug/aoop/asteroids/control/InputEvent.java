@@ -0,0 +1,34 @@
+package nl.rug.aoop.asteroids.control;
+
+import nl.rug.aoop.asteroids.model.gameobjects.Spaceship;
+
+import java.io.Serializable;
+
+/**
+ * a key of the player being pressed or released, as pushed by the {@link PlayerKeyListener}
+ * @param time the time the key event happened at, in ms
+ * @param action what the key does
+ * @param pressed true when pressed, false when released
+ * */
+public record InputEvent(long time, Action action, boolean pressed) implements Serializable {
+    /**
+     * the things a player can do with the keys
+     * */
+    public enum Action {
+        ACCELERATE, TURN_LEFT, TURN_RIGHT, FIRE;
+
+        /**
+         * sets the key of this action on the spaceship
+         * @param ship the spaceship controlled by the player
+         * @param pressed whether the key is held down
+         * */
+        public void apply(Spaceship ship, boolean pressed) {
+            switch (this) {
+                case ACCELERATE -> ship.setAccelerateKeyPressed(pressed);
+                case TURN_LEFT -> ship.setTurnLeftKeyPressed(pressed);
+                case TURN_RIGHT -> ship.setTurnRightKeyPressed(pressed);
+                case FIRE -> ship.setFiring(pressed);
+            }
+        }
+    }
+}
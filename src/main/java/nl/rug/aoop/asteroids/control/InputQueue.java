@@ -0,0 +1,85 @@
+package nl.rug.aoop.asteroids.control;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a bounded ring buffer of {@link InputEvent}s from a single producer, the event dispatch thread, to a single
+ * consumer, the {@link GameUpdater}.
+ * <p>
+ * no locks are taken: the producer only writes {@link #tail} and the consumer only writes {@link #head}. Publishing
+ * a new tail after writing the slot makes the event visible to the consumer once it reads that tail.
+ * */
+public class InputQueue {
+    /**
+     * the amount of events the queue can hold. A power of two, so the slot is found with a mask.
+     * Far more than a player can type in between two ticks.
+     * */
+    public static final int CAPACITY = 1024;
+
+    /**
+     * mask to turn a position into a slot
+     * */
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * the slots holding the events
+     * */
+    private final InputEvent[] events;
+
+    /**
+     * position of the next event to take, only written by the consumer
+     * */
+    private final AtomicLong head;
+
+    /**
+     * position of the next free slot, only written by the producer
+     * */
+    private final AtomicLong tail;
+
+    /**
+     * makes an empty queue
+     * */
+    public InputQueue() {
+        events = new InputEvent[CAPACITY];
+        head = new AtomicLong();
+        tail = new AtomicLong();
+    }
+
+    /**
+     * adds an event to the queue. Only to be called by the producer.
+     * @param event the event to add
+     * @return false if the queue was full, in which case the event is not added
+     * */
+    public boolean offer(InputEvent event) {
+        long position = tail.get();
+        if (position - head.get() == CAPACITY) {
+            return false;
+        }
+        events[(int) (position & MASK)] = event;
+        tail.lazySet(position + 1);
+        return true;
+    }
+
+    /**
+     * takes the oldest event from the queue. Only to be called by the consumer.
+     * @return the oldest event, or null if the queue is empty
+     * */
+    public InputEvent poll() {
+        long position = head.get();
+        if (position == tail.get()) {
+            return null;
+        }
+        int slot = (int) (position & MASK);
+        InputEvent event = events[slot];
+        events[slot] = null;
+        head.lazySet(position + 1);
+        return event;
+    }
+
+    /**
+     * @return the amount of events waiting, may be outdated as soon as it is returned
+     * */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+}
@@ -0,0 +1,57 @@
+package nl.rug.aoop.asteroids.control;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * the input events of a game together with the tick they were applied in, so a game can be played again
+ * exactly the same way.
+ * */
+public class InputRecording implements Serializable {
+    /**
+     * the recorded events in the order they were applied
+     * */
+    private final List<Entry> entries;
+
+    /**
+     * makes an empty recording
+     * */
+    public InputRecording() {
+        entries = new ArrayList<>();
+    }
+
+    /**
+     * records an event
+     * @param tick the tick the event was applied in
+     * @param event the event
+     * */
+    public synchronized void add(long tick, InputEvent event) {
+        entries.add(new Entry(tick, event));
+    }
+
+    /**
+     * @return all recorded events in the order they were applied
+     * */
+    public synchronized List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    /**
+     * pushes the events recorded for a tick into a queue, to replay them
+     * @param tick the tick to replay
+     * @param queue the queue the game updater takes its input from
+     * */
+    public synchronized void replay(long tick, InputQueue queue) {
+        entries.stream().filter(entry -> entry.tick() == tick).forEach(entry -> queue.offer(entry.event()));
+    }
+
+    /**
+     * a recorded event
+     * @param tick the tick the event was applied in
+     * @param event the event
+     * */
+    public record Entry(long tick, InputEvent event) implements Serializable {
+    }
+}
@@ -1,14 +1,14 @@
 package nl.rug.aoop.asteroids.control;
 
-import nl.rug.aoop.asteroids.model.gameobjects.Spaceship;
-
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
 /**
- * This class is responsible for handling keyboard input for a single player that is bound to a ship.
+ * This class is responsible for handling keyboard input for a single player. Key presses and releases are not applied
+ * to the ship directly, but pushed into an {@link InputQueue} that the game updater takes them from at the start of
+ * each tick.
  */
-public record PlayerKeyListener(Spaceship ship) implements KeyListener {
+public record PlayerKeyListener(InputQueue inputQueue) implements KeyListener {
     /**
      * The key that, when pressed, causes the ship to accelerate.
      */
@@ -30,40 +30,49 @@ public record PlayerKeyListener(Spaceship ship) implements KeyListener {
     private static final int FIRE_WEAPON_KEY = KeyEvent.VK_SPACE;
 
     /**
-     * Constructs a new player key listener to control the given ship.
+     * Constructs a new player key listener that pushes the player's input into the given queue.
      *
-     * @param ship The ship that this key listener will control.
+     * @param inputQueue The queue that the game updater takes the input from.
      */
     public PlayerKeyListener {
     }
 
     /**
-     * This method is invoked when a key is pressed and sets the corresponding fields in the spaceship to true.
+     * This method is invoked when a key is pressed and pushes a press of the corresponding action.
      *
      * @param event Key event that triggered the method.
      */
     @Override
     public void keyPressed(KeyEvent event) {
-        switch (event.getKeyCode()) {
-            case ACCELERATION_KEY -> ship.setAccelerateKeyPressed(true);
-            case LEFT_KEY -> ship.setTurnLeftKeyPressed(true);
-            case RIGHT_KEY -> ship.setTurnRightKeyPressed(true);
-            case FIRE_WEAPON_KEY -> ship.setFiring(true);
-        }
+        push(event, true);
     }
 
     /**
-     * This method is invoked when a key is released and sets the corresponding fields in the spaceship to false.
+     * This method is invoked when a key is released and pushes a release of the corresponding action.
      *
      * @param event Key event that triggered the method.
      */
     @Override
     public void keyReleased(KeyEvent event) {
-        switch (event.getKeyCode()) {
-            case ACCELERATION_KEY -> ship.setAccelerateKeyPressed(false);
-            case LEFT_KEY -> ship.setTurnLeftKeyPressed(false);
-            case RIGHT_KEY -> ship.setTurnRightKeyPressed(false);
-            case FIRE_WEAPON_KEY -> ship.setFiring(false);
+        push(event, false);
+    }
+
+    /**
+     * Pushes the action of the key into the queue, if the key has one.
+     *
+     * @param event Key event that triggered the method.
+     * @param pressed Whether the key was pressed or released.
+     */
+    private void push(KeyEvent event, boolean pressed) {
+        InputEvent.Action action = switch (event.getKeyCode()) {
+            case ACCELERATION_KEY -> InputEvent.Action.ACCELERATE;
+            case LEFT_KEY -> InputEvent.Action.TURN_LEFT;
+            case RIGHT_KEY -> InputEvent.Action.TURN_RIGHT;
+            case FIRE_WEAPON_KEY -> InputEvent.Action.FIRE;
+            default -> null;
+        };
+        if (action != null) {
+            inputQueue.offer(new InputEvent(event.getWhen(), action, pressed));
         }
     }
 
@@ -0,0 +1,153 @@
+package nl.rug.aoop.asteroids.control;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * the named {@link TickStage}s that make up a game tick, run in the order they were added.
+ * <p>
+ * the {@link GameUpdater} puts together the pipeline for its role once when it starts, so a tick does not have to
+ * check which role the game has. Stages can be replaced or disabled by name, and the time each stage takes is kept.
+ * */
+public class TickPipeline {
+    /**
+     * the stages in the order they run
+     * */
+    private final List<Stage> stages;
+
+    /**
+     * makes an empty pipeline
+     * */
+    public TickPipeline() {
+        stages = new ArrayList<>();
+    }
+
+    /**
+     * adds a stage at the end of the pipeline
+     * @param name the name of the stage, unique within the pipeline
+     * @param stage the stage
+     * @return this pipeline
+     * @throws IllegalArgumentException if there already is a stage with that name
+     * */
+    public TickPipeline add(String name, TickStage stage) {
+        if (find(name) != null) {
+            throw new IllegalArgumentException("Pipeline already has a stage named " + name);
+        }
+        stages.add(new Stage(name, stage));
+        return this;
+    }
+
+    /**
+     * replaces the stage with the given name, keeping its place in the pipeline
+     * @param name the name of the stage
+     * @param stage the new stage
+     * */
+    public void replace(String name, TickStage stage) {
+        get(name).stage = stage;
+    }
+
+    /**
+     * enables or disables the stage with the given name. Disabled stages are skipped.
+     * @param name the name of the stage
+     * @param enabled whether the stage should run
+     * */
+    public void setEnabled(String name, boolean enabled) {
+        get(name).enabled = enabled;
+    }
+
+    /**
+     * @param name the name of a stage
+     * @return whether the pipeline has a stage with that name
+     * */
+    public boolean contains(String name) {
+        return find(name) != null;
+    }
+
+    /**
+     * @return the names of the stages in the order they run
+     * */
+    public List<String> getStageNames() {
+        List<String> names = new ArrayList<>(stages.size());
+        stages.forEach(stage -> names.add(stage.name));
+        return names;
+    }
+
+    /**
+     * runs all enabled stages once, in order
+     * */
+    public void tick() {
+        for (Stage stage : stages) {
+            if (stage.enabled) {
+                long start = System.nanoTime();
+                stage.stage.tick();
+                long duration = System.nanoTime() - start;
+                stage.lastNanos = duration;
+                stage.totalNanos += duration;
+                stage.runs++;
+            }
+        }
+    }
+
+    /**
+     * @return the average time in ns each stage took, by name, in the order they run
+     * */
+    public Map<String, Long> getAverageNanos() {
+        Map<String, Long> averages = new LinkedHashMap<>();
+        stages.forEach(stage -> averages.put(stage.name, stage.runs == 0 ? 0 : stage.totalNanos / stage.runs));
+        return Collections.unmodifiableMap(averages);
+    }
+
+    /**
+     * @return the time in ns each stage took in the last tick it ran, by name, in the order they run
+     * */
+    public Map<String, Long> getLastNanos() {
+        Map<String, Long> last = new LinkedHashMap<>();
+        stages.forEach(stage -> last.put(stage.name, stage.lastNanos));
+        return Collections.unmodifiableMap(last);
+    }
+
+    /**
+     * @return the stage with the given name
+     * @throws IllegalArgumentException if there is none
+     * */
+    private Stage get(String name) {
+        Stage stage = find(name);
+        if (stage == null) {
+            throw new IllegalArgumentException("Pipeline has no stage named " + name);
+        }
+        return stage;
+    }
+
+    /**
+     * @return the stage with the given name, or null if there is none
+     * */
+    private Stage find(String name) {
+        for (Stage stage : stages) {
+            if (stage.name.equals(name)) {
+                return stage;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * a stage in the pipeline with its timings
+     * */
+    private static class Stage {
+        private final String name;
+        private volatile TickStage stage;
+        private volatile boolean enabled;
+        private volatile long lastNanos;
+        private long totalNanos;
+        private long runs;
+
+        private Stage(String name, TickStage stage) {
+            this.name = name;
+            this.stage = stage;
+            this.enabled = true;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package nl.rug.aoop.asteroids.control;
+
+/**
+ * a single step of a game tick, such as moving the objects or checking for collisions.
+ * Stages are put together in a {@link TickPipeline}.
+ * */
+@FunctionalInterface
+public interface TickStage {
+    /**
+     * performs this step for the current tick
+     * */
+    void tick();
+}
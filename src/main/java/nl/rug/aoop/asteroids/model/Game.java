@@ -2,25 +2,40 @@ package nl.rug.aoop.asteroids.model;
 
 import lombok.Getter;
 import lombok.Setter;
+import nl.rug.aoop.asteroids.client.InterpolationBuffer;
 import nl.rug.aoop.asteroids.control.GameUpdater;
+import nl.rug.aoop.asteroids.control.InputQueue;
+import nl.rug.aoop.asteroids.control.InputRecording;
 import nl.rug.aoop.asteroids.gameobserver.ObservableGame;
 import nl.rug.aoop.asteroids.server.ClientHandler;
+import nl.rug.aoop.asteroids.model.connection.DeadReckoning;
 import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.model.connection.NetworkStatistics;
+import nl.rug.aoop.asteroids.model.connection.Quantizer;
 import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.WorldSnapshot;
 import nl.rug.aoop.asteroids.model.gameobjects.Asteroid;
 import nl.rug.aoop.asteroids.model.gameobjects.Bullet;
+import nl.rug.aoop.asteroids.model.gameobjects.GameObject;
 import nl.rug.aoop.asteroids.model.gameobjects.Spaceship;
 import nl.rug.aoop.asteroids.view.AsteroidsFrame;
 import nl.rug.aoop.asteroids.view.errors.ErrorDialog;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -44,6 +59,12 @@ public class Game extends ObservableGame {
     @Getter
     private AsteroidsFrame frame;
 
+    /**
+     * indicates whether this is the game of a dedicated server, which has no player or window of its own
+     * */
+    @Getter
+    private boolean dedicated;
+
     /**
      * The spaceship object that the player is in control of.
      */
@@ -84,16 +105,22 @@ public class Game extends ObservableGame {
      */
     private Thread gameUpdaterThread;
 
+    /**
+     * The game updater of the running game, or null if the game is not running. Gives access to the stages of a tick.
+     */
+    @Getter
+    private GameUpdater gameUpdater;
+
     /**
      * Number of milliseconds to wait for the game updater to exit its game loop.
      */
     private static final int EXIT_TIMEOUT_MILLIS = 100;
 
     /**
-     * colors to color the spaceships with
+     * the slots of the players in a hosted game, which decide their colours and how many players can join
      * */
-    private final Color[] colors = new Color[]{Color.DARK_GRAY, Color.RED, Color.BLUE, Color.ORANGE, Color.GREEN,
-    Color.CYAN, Color.WHITE, Color.MAGENTA, Color.PINK};
+    @Getter
+    private final PlayerSlots playerSlots = new PlayerSlots(PlayerSlots.MAX_PLAYERS);
 
     /**
      * the type of the game being player
@@ -122,6 +149,123 @@ public class Game extends ObservableGame {
      * */
     private ExecutorService optionThread;
 
+    /**
+     * key presses and releases of the player, taken by the {@link GameUpdater} at the start of each tick
+     * */
+    @Getter
+    private final InputQueue inputQueue = new InputQueue();
+
+    /**
+     * when set, every input event applied by the {@link GameUpdater} is recorded in it
+     * */
+    @Getter @Setter
+    private InputRecording inputRecording;
+
+    /**
+     * snapshots received from the host, used by clients to draw the remote objects in between packets
+     * */
+    @Getter
+    private final InterpolationBuffer interpolationBuffer = new InterpolationBuffer();
+
+    /**
+     * statistics of the connection to the host, shown on the HUD of a client. Null when not connected
+     * */
+    @Getter @Setter
+    private NetworkStatistics networkStatistics;
+
+    /**
+     * the clock the snapshots of the host are timed with, the same one its packages are stamped with
+     * */
+    @Getter @Setter
+    private volatile Clock clock = Clock.systemUTC();
+
+    /**
+     * the state of all players on the host, taken once per tick. Each {@link ClientHandler} sends a view of it
+     * */
+    private volatile WorldSnapshot worldSnapshot;
+
+    /**
+     * the tick of the host, counted once per snapshot. Sent along with the snapshots
+     * */
+    @Getter
+    private volatile int hostTick;
+
+    /**
+     * the amount of ticks this game has run. A client stamps its packages with it, so the host can keep them in order
+     * */
+    @Getter
+    private volatile int localTick;
+
+    /**
+     * where the asteroids and spaceships were on the host during the last ticks, to judge hits of late bullets
+     * */
+    @Getter
+    private final RewindBuffer rewindBuffer = new RewindBuffer();
+
+    /**
+     * the tick of the host the remote objects a client draws are from. Bullets fired by the client are tagged with it
+     * */
+    @Getter
+    private volatile int shownHostTick = -1;
+
+    /**
+     * the snapshot whose objects are currently in the game, so they are only rebuilt when a newer one is reached
+     * */
+    private MultiPlayerGamePackage interpolationTarget;
+
+    /**
+     * the snapshot the remote objects are interpolated from
+     * */
+    private MultiPlayerGamePackage interpolationSource;
+
+    /**
+     * the locations in {@link #interpolationSource} by network id
+     * */
+    private final Map<Integer, Point2D.Double> interpolationOrigins = new HashMap<>();
+
+    /**
+     * the next network id to give out. On the host these ids are shared with the clients, a client only uses them
+     * to number its own bullets. It is not reset with the game data, so ids stay unique while a server is running.
+     * */
+    private final AtomicInteger nextNetworkId = new AtomicInteger(1);
+
+    /**
+     * spaceships by network id. On the host these are all spaceships, on a client only those of the other players
+     * */
+    private final Map<Integer, Spaceship> shipsById = new ConcurrentHashMap<>();
+
+    /**
+     * spaceships on the host by the id of the client controlling them
+     * */
+    private final Map<String, Spaceship> shipsByClientId = new ConcurrentHashMap<>();
+
+    /**
+     * the latest package received from each client that has not been applied yet, by client id.
+     * A {@link ClientHandler} overwrites its slot without locking, the host applies all slots once per tick.
+     * */
+    private final Map<String, AtomicReference<SinglePlayerPackage>> clientInputs = new ConcurrentHashMap<>();
+
+    /**
+     * asteroids received from the host by network id
+     * */
+    private final Map<Integer, Asteroid> remoteAsteroids = new HashMap<>();
+
+    /**
+     * bullets of other players by network id
+     * */
+    private final Map<Integer, Bullet> remoteBullets = new HashMap<>();
+
+    /**
+     * where each remote asteroid and bullet was in the last package it was in, and at which tick of the host.
+     * A client moves them on from there with their velocity
+     * */
+    private final Map<Integer, Reckoning> reckonings = new HashMap<>();
+
+    /**
+     * the network ids seen in the package that is being applied, reused to avoid allocating a set every package
+     * */
+    private final Set<Integer> seenIds = new HashSet<>();
+
     /**
      * Constructs a new game, with a new spaceship and all other model data in its default starting state.
      */
@@ -150,6 +294,19 @@ public class Game extends ObservableGame {
      */
     public void initializeGameData() {
         optionThread = null;
+        interpolationBuffer.clear();
+        interpolationTarget = null;
+        interpolationSource = null;
+        interpolationOrigins.clear();
+        shipsById.clear();
+        shipsByClientId.clear();
+        clientInputs.clear();
+        remoteAsteroids.clear();
+        remoteBullets.clear();
+        worldSnapshot = null;
+        rewindBuffer.clear();
+        reckonings.clear();
+        shownHostTick = -1;
         ownBullets = new CopyOnWriteArrayList<>();
         enemiesBullets = new CopyOnWriteArrayList<>();
         asteroids = new CopyOnWriteArrayList<>();
@@ -157,8 +314,22 @@ public class Game extends ObservableGame {
         enemiesScores = new CopyOnWriteArrayList<>();
         spaceShips.add(new Spaceship());
         spaceShips.get(0).reset();
-        getMainSpaceShip().setSpaceShipsColor(colors[0]);
+        getMainSpaceShip().setSpaceShipsColor(PlayerSlots.colorOf(0));
         type = SOLO;
+        if (dedicated) {
+            // the own spaceship only keeps its place in the list, destroyed so it takes no part in the game
+            getMainSpaceShip().destroy();
+            type = HOST;
+        }
+    }
+
+    /**
+     * turns this into the game of a dedicated server. It hosts the clients, but has no player of its own and never
+     * shows a window or dialog. Resets the game.
+     * */
+    public void makeDedicated() {
+        dedicated = true;
+        initializeGameData();
     }
 
     /**
@@ -182,7 +353,8 @@ public class Game extends ObservableGame {
     public void start() {
         if (!running) {
             running = true;
-            gameUpdaterThread = new Thread(new GameUpdater(this));
+            gameUpdater = new GameUpdater(this);
+            gameUpdaterThread = new Thread(gameUpdater);
             gameUpdaterThread.start();
         }
     }
@@ -214,29 +386,207 @@ public class Game extends ObservableGame {
      * <li> {@link #enemiesBullets} </li>
      * <li> {@link #asteroids} </li>
      * <li> {@link #spaceShips} </li>
+     * <p>
+     * when the host had to leave objects out of the package to make it fit, the asteroids and bullets missing
+     * from it are kept. They are removed once the host reports them as despawned.
+     * <p>
+     * when the host left out asteroids the client can move on itself, only asteroids that have not been sent for
+     * longer than the host waits between sending the same asteroid are removed.
      * */
     public synchronized void updateGameElements(MultiPlayerGamePackage mp) {
+        mp.getDespawnedIds().forEach(this::despawn);
         updateEnemies(mp, null);
+        removeAbsent(shipsById, spaceShips, mp.getShipIds());
         updateAsteroids(mp);
-        updateEnemiesBullets(mp.getBullets(), null);
+        updateEnemiesBullets(mp.getBullets(), mp.getBulletIds(), mp.getBulletOwnerIds(), null, null, null,
+                mp.getBulletVelocities(), mp.getHostTick());
+        if (!mp.isTrimmed()) {
+            if (mp.isReckoned()) {
+                removeUnsent(mp.getHostTick() - 2 * DeadReckoning.REFRESH_TICKS);
+            } else {
+                removeAbsent(remoteAsteroids, asteroids, mp.getAsteroidIds());
+            }
+            removeAbsent(remoteBullets, enemiesBullets, mp.getBulletIds());
+        }
+        reckonings.keySet().removeIf(id -> !remoteAsteroids.containsKey(id) && !remoteBullets.containsKey(id));
     }
 
     /**
-     * updates the enemies locations and scores
+     * removes the remote asteroids that have not been in a package since the given tick of the host
+     * @param tick the tick of the host
      * */
-    public synchronized void updateEnemies(MultiPlayerGamePackage mp, List<Integer> spaceshipStepsLeft) {
-        removeDeadSpaceShips(mp);
-        for (int i = spaceShips.size(); i <= mp.getSpaceShips().size(); i++) {
-            Spaceship spaceship = new Spaceship();
-            spaceShips.add(spaceship);
+    private void removeUnsent(int tick) {
+        remoteAsteroids.values().removeIf(asteroid -> {
+            Reckoning reckoning = reckonings.get(asteroid.getNetworkId());
+            if (reckoning == null || reckoning.tick - tick >= 0) {
+                return false;
+            }
+            asteroids.remove(asteroid);
+            return true;
+        });
+    }
+
+    /**
+     * gives an object the next free network id
+     * @param gameObject the object to give an id to
+     * */
+    public void assignNetworkId(GameObject gameObject) {
+        gameObject.setNetworkId(nextNetworkId());
+    }
+
+    /**
+     * @return the next free network id
+     * */
+    public int nextNetworkId() {
+        return nextNetworkId.getAndIncrement();
+    }
+
+    /**
+     * removes the remote object with the given network id from the game
+     * @param networkId the id of the object that is gone
+     * */
+    public synchronized void despawn(int networkId) {
+        Spaceship spaceship = shipsById.remove(networkId);
+        if (spaceship != null) spaceShips.remove(spaceship);
+        Asteroid asteroid = remoteAsteroids.remove(networkId);
+        if (asteroid != null) asteroids.remove(asteroid);
+        Bullet bullet = remoteBullets.remove(networkId);
+        if (bullet != null) enemiesBullets.remove(bullet);
+    }
+
+    /**
+     * removes the remote objects whose id is not in the package anymore. Despawns are sent explicitly, but the
+     * package carrying them might have been lost.
+     * @param objects the remote objects by network id
+     * @param list the list in the game holding the same objects
+     * @param ids the ids in the package
+     * */
+    private <T extends GameObject> void removeAbsent(Map<Integer, T> objects, Collection<T> list, List<Integer> ids) {
+        seenIds.clear();
+        seenIds.addAll(ids);
+        objects.values().removeIf(object -> {
+            if (seenIds.contains(object.getNetworkId())) {
+                return false;
+            }
+            list.remove(object);
+            return true;
+        });
+    }
+
+    /**
+     * moves the remote objects to where they were {@link InterpolationBuffer#getDelay()} ms ago, in between the two
+     * snapshots surrounding that moment. Objects are matched by their network id, objects that are not in the older
+     * snapshot are shown as in the newer one.
+     * <p>
+     * asteroids and bullets are first moved on with their velocity from the last package they were in, so objects
+     * the host left out keep moving, and so do all of them when no newer snapshot has arrived in time.
+     * @param now the current time in ms
+     * */
+    public synchronized void interpolateRemoteObjects(long now) {
+        InterpolationBuffer.Sample sample = interpolationBuffer.sample(now);
+        if (sample == null) {
+            return;
+        }
+        MultiPlayerGamePackage from = sample.from();
+        MultiPlayerGamePackage to = sample.to();
+        shownHostTick = from.getHostTick();
+        if (to != interpolationTarget) {
+            updateGameElements(to);
+            interpolationTarget = to;
+        }
+        double renderTick = from.getHostTick() + sample.alpha() * (to.getHostTick() - from.getHostTick())
+                + sample.ahead() / GameUpdater.MILLISECONDS_PER_TICK;
+        reckon(remoteAsteroids, renderTick);
+        reckon(remoteBullets, renderTick);
+        if (from == to) {
+            return;
+        }
+        if (from != interpolationSource) {
+            interpolationOrigins.clear();
+            addOrigins(from.getShipIds(), from.getSpaceShips());
+            addOrigins(from.getAsteroidIds(), from.getAsteroids());
+            addOrigins(from.getBulletIds(), from.getBullets());
+            interpolationSource = from;
+        }
+        interpolate(sample, to.getShipIds(), to.getSpaceShips(), shipsById);
+        interpolate(sample, to.getAsteroidIds(), to.getAsteroids(), remoteAsteroids);
+        interpolate(sample, to.getBulletIds(), to.getBullets(), remoteBullets);
+    }
+
+    /**
+     * moves remote objects on from where they were in the last package they were in. Objects are never moved back
+     * to before that package
+     * @param objects the remote objects by network id
+     * @param renderTick the tick of the host to show, with a fraction
+     * */
+    private void reckon(Map<Integer, ? extends GameObject> objects, double renderTick) {
+        objects.forEach((id, object) -> {
+            Reckoning reckoning = reckonings.get(id);
+            if (reckoning != null) {
+                object.reckon(reckoning.origin, Math.max(0.0, renderTick - reckoning.tick));
+            }
+        });
+    }
+
+    /**
+     * remembers where a remote object was in a package
+     * @param object the remote object
+     * @param origin its location in the package
+     * @param tick the tick of the host the package is from
+     * */
+    private void remember(GameObject object, Point2D.Double origin, int tick) {
+        Reckoning reckoning = reckonings.computeIfAbsent(object.getNetworkId(), id -> new Reckoning());
+        reckoning.origin.setLocation(origin);
+        reckoning.tick = tick;
+    }
+
+    /**
+     * remembers the locations of objects in the snapshot that is interpolated from
+     * @param ids the network ids of the objects
+     * @param locations the locations of the objects
+     * */
+    private void addOrigins(List<Integer> ids, List<Point2D.Double> locations) {
+        for (int i = 0; i < ids.size(); i++) {
+            interpolationOrigins.put(ids.get(i), locations.get(i));
         }
-        for (int i = 1; i <= mp.getSpaceShips().size(); i++) {
-            this.spaceShips.get(i).setSpaceShipsColor(colors[i]);
+    }
+
+    /**
+     * moves the remote objects in between their location in the older and the newer snapshot
+     * @param sample the sample to interpolate with
+     * @param ids the network ids in the newer snapshot
+     * @param targets the locations in the newer snapshot
+     * @param objects the remote objects by network id
+     * */
+    private void interpolate(InterpolationBuffer.Sample sample, List<Integer> ids, List<Point2D.Double> targets,
+                             Map<Integer, ? extends GameObject> objects) {
+        for (int i = 0; i < ids.size(); i++) {
+            GameObject object = objects.get(ids.get(i));
+            Point2D.Double origin = interpolationOrigins.get(ids.get(i));
+            if (object != null && origin != null) {
+                sample.interpolate(origin, targets.get(i), object.getLocation());
+            }
         }
-        for (int i = 1; i < spaceShips.size(); i++) {
-            Spaceship spaceship = spaceShips.get(i);
-            int j = i - 1;
-            spaceship.setLocation(mp.getSpaceShips().get(j));
+    }
+
+    /**
+     * updates the enemies locations and scores
+     * */
+    public synchronized void updateEnemies(MultiPlayerGamePackage mp, List<Integer> spaceshipStepsLeft) {
+        boolean host = HOST.equals(type);
+        for (int j = 0; j < mp.getSpaceShips().size(); j++) {
+            Spaceship spaceship = shipsById.get(mp.getShipIds().get(j));
+            if (spaceship == null) {
+                spaceship = new Spaceship();
+                spaceship.setNetworkId(mp.getShipIds().get(j));
+                shipsById.put(spaceship.getNetworkId(), spaceship);
+                spaceShips.add(spaceship);
+            }
+            // packages without slots fall back to the order of the spaceships
+            int slot = j < mp.getSlots().size() ? mp.getSlots().get(j) : j + 1;
+            spaceship.setSlot(slot);
+            spaceship.setSpaceShipsColor(PlayerSlots.colorOf(slot));
+            spaceship.getLocation().setLocation(mp.getSpaceShips().get(j));
             spaceship.setDirection(mp.getDirections().get(j));
             spaceship.setAccelerateKeyPressed(mp.getIsAccList().get(j));
 
@@ -247,61 +597,93 @@ public class Game extends ObservableGame {
             if (j < mp.getEnemiesScores().size()) {
                 spaceship.updateScore(mp.getEnemiesScores().get(j));
             }
-            if (type.equals(HOST)) { // only host needs to update the steps left to collide
+            if (host) { // only host needs to update the steps left to collide
                 spaceship.setStepsUntilCollisionPossible(spaceshipStepsLeft.get(j));
             }
         }
     }
 
     /**
-     * removes dead spaceships
-     * @param mp the multiplayer package holding the spaceships
+     * updates the {@link #enemiesBullets}. Known bullets are moved, new ones are spawned.
+     * On the host, new bullets get the steps left until they can collide and how far back their hits are judged.
+     * @param rewindLimits the most ticks the hits of each bullet are judged back in time
      * */
-    private void removeDeadSpaceShips(MultiPlayerGamePackage mp) {
-        if (this.spaceShips.size() > mp.getSpaceShips().size()+1) {
-            spaceShips.removeIf(spaceShip -> spaceShip!=getMainSpaceShip() && !mp.getSpaceShips().contains(spaceShip.getLocation()));
-        }
+    public synchronized void updateEnemiesBullets(List<Point2D.Double> bulletsLocations, List<Integer> bulletIds,
+                                                  List<Integer> ownerIds, List<Integer> stepsLeft,
+                                                  List<Integer> fireTicks, List<Integer> rewindLimits) {
+        updateEnemiesBullets(bulletsLocations, bulletIds, ownerIds, stepsLeft, fireTicks, rewindLimits, null, 0);
     }
 
     /**
-     * updates the {@link #enemiesBullets}.
+     * updates the {@link #enemiesBullets}. Known bullets are moved, new ones are spawned.
+     * On the host, new bullets get the steps left until they can collide and how far back their hits are judged.
+     * On a client, bullets get their velocity so they can be moved on in between packages.
+     * @param rewindLimits the most ticks the hits of each bullet are judged back in time, null on a client
+     * @param velocities the velocities of the bullets, null when they are not moved on
+     * @param tick the tick of the host the locations are from
      * */
-    public synchronized void updateEnemiesBullets(List<Point2D.Double> bulletsLocations, List<Integer> stepsLeft) {
-        if (enemiesBullets.size() > bulletsLocations.size()) {
-            enemiesBullets.clear();
-        }
+    public synchronized void updateEnemiesBullets(List<Point2D.Double> bulletsLocations, List<Integer> bulletIds,
+                                                  List<Integer> ownerIds, List<Integer> stepsLeft,
+                                                  List<Integer> fireTicks, List<Integer> rewindLimits,
+                                                  List<Point2D.Double> velocities, int tick) {
+        boolean host = HOST.equals(type);
         for (int i = 0; i < bulletsLocations.size(); i++) {
-            if (i < enemiesBullets.size()) {
-                enemiesBullets.get(i).setLocation(bulletsLocations.get(i));
-                if(type.equals(HOST)) enemiesBullets.get(i).setStepsUntilCollisionPossible(stepsLeft.get(i));
-            } else  {
-                if (type.equals(HOST)) {
-                    enemiesBullets.add(new Bullet(bulletsLocations.get(i).getX(),
+            Bullet bullet = remoteBullets.get(bulletIds.get(i));
+            if (bullet == null) {
+                if (host) {
+                    bullet = new Bullet(bulletsLocations.get(i).getX(),
                             bulletsLocations.get(i).getY(),0,0,
-                            stepsLeft.get(i)));
+                            stepsLeft.get(i));
                 } else {
-                    enemiesBullets.add(new Bullet(bulletsLocations.get(i).getX(),
-                            bulletsLocations.get(i).getY(),0,0));
+                    bullet = new Bullet(bulletsLocations.get(i).getX(),
+                            bulletsLocations.get(i).getY(),0,0);
                 }
+                bullet.setNetworkId(bulletIds.get(i));
+                bullet.setOwnerId(ownerIds.get(i));
+                if (host && fireTicks != null && rewindLimits != null) {
+                    bullet.setFireTick(fireTicks.get(i));
+                    bullet.setRewindTicks(rewindBuffer.rewindFor(fireTicks.get(i), hostTick, rewindLimits.get(i)));
+                }
+                remoteBullets.put(bullet.getNetworkId(), bullet);
+                enemiesBullets.add(bullet);
+            } else {
+                bullet.getLocation().setLocation(bulletsLocations.get(i));
+                if (host) bullet.setStepsUntilCollisionPossible(stepsLeft.get(i));
+            }
+            if (velocities != null && i < velocities.size()) {
+                bullet.getVelocity().setLocation(velocities.get(i));
+                remember(bullet, bulletsLocations.get(i), tick);
             }
         }
     }
 
     /**
-     * updates the {@link #asteroids}.
+     * updates the {@link #asteroids}. Known asteroids are moved, new ones are spawned.
      * <p>
      * <b> Since we made the asteroids a bit more asteroid like and not basic circles
      * we need an additional field </b>
      * <li>{@link Asteroid#directionAngle}</li>
      * */
     public synchronized void updateAsteroids(MultiPlayerGamePackage mp) {
-        this.asteroids.clear();
         for (int i = 0; i < mp.getAsteroids().size(); i++) {
-            this.asteroids.add(new Asteroid(
-                    mp.getAsteroids().get(i),
-                    new Point2D.Double(0,0),
-                    mp.getAsteroidRadius().get(i),
-                    mp.getAsteroidsDirection().get(i)));
+            Asteroid asteroid = remoteAsteroids.get(mp.getAsteroidIds().get(i));
+            if (asteroid == null) {
+                asteroid = new Asteroid(
+                        mp.getAsteroids().get(i),
+                        new Point2D.Double(0,0),
+                        mp.getAsteroidRadius().get(i),
+                        mp.getAsteroidsDirection().get(i));
+                asteroid.setNetworkId(mp.getAsteroidIds().get(i));
+                remoteAsteroids.put(asteroid.getNetworkId(), asteroid);
+                this.asteroids.add(asteroid);
+            } else {
+                asteroid.getLocation().setLocation(mp.getAsteroids().get(i));
+                asteroid.setDirectionAngle(mp.getAsteroidsDirection().get(i));
+            }
+            if (i < mp.getAsteroidVelocities().size()) {
+                asteroid.getVelocity().setLocation(mp.getAsteroidVelocities().get(i));
+            }
+            remember(asteroid, mp.getAsteroids().get(i), mp.getHostTick());
         }
     }
 
@@ -314,6 +696,33 @@ public class Game extends ObservableGame {
         return bu;
     }
 
+    /**
+     * @return own bullets network ids
+     * */
+    public List<Integer> getOwnBulletIds() {
+        List<Integer> ids = new ArrayList<>();
+        this.ownBullets.forEach(b -> ids.add(b.getNetworkId()));
+        return ids;
+    }
+
+    /**
+     * @return the ticks of the host the own bullets were fired at
+     * */
+    public List<Integer> getOwnBulletFireTicks() {
+        List<Integer> ticks = new ArrayList<>();
+        this.ownBullets.forEach(b -> ticks.add(b.getFireTick()));
+        return ticks;
+    }
+
+    /**
+     * @return the velocities of the own bullets
+     * */
+    public List<Point2D.Double> getOwnBulletVelocities() {
+        List<Point2D.Double> velocities = new ArrayList<>();
+        this.ownBullets.forEach(b -> velocities.add(b.getVelocity()));
+        return velocities;
+    }
+
     /**
      * @return the main spaceship
      * */
@@ -345,12 +754,17 @@ public class Game extends ObservableGame {
      * */
     public void addMainSpaceShip(String mainId) {
         this.spaceShips.get(0).setId(mainId);
+        this.spaceShips.get(0).setSlot(playerSlots.acquire(mainId));
+        assignNetworkId(getMainSpaceShip());
+        shipsById.put(getMainSpaceShip().getNetworkId(), getMainSpaceShip());
+        shipsByClientId.put(mainId, getMainSpaceShip());
         SinglePlayerPackage mainPlayer = new SinglePlayerPackage(
                 getMainSpaceShip().getLocation(),
                 getMainSpaceShip().getDirection(),
                 getMainSpaceShip().getStepsUntilCollisionPossible(),
                 getMainSpaceShip().isAccelerating(),
                 getOwnBulletsLocations(),
+                getOwnBulletIds(),
                 getOwnBulletsStepsLeft(),
                 getMainSpaceShip().getUserName());
         mainPlayer.updateMainPlayer(this);
@@ -359,73 +773,96 @@ public class Game extends ObservableGame {
     }
 
     /**
-     * finds the enemies of a specified client
-     * @param id the id of the client so we can get their enemies
-     * @return a map containing the enemies information
+     * updates players information. The package is applied at the next tick of the host; when several packages of
+     * the same player arrive within one tick, only the one made at the latest tick of the client is applied.
+     * @param id the id of the player to update
+     * @param spp the single player package associated with this player
      * */
-    public List<SinglePlayerPackage> getEnemies (String id) {
-        List<SinglePlayerPackage> singlePlayerPackages = new ArrayList<>();
-        clientsMap.forEach((client, objects) -> {
-            if(!client.equals(id) && !objects.isDestroyed()) {
-                singlePlayerPackages.add(objects);
-            }
-        });
-        return singlePlayerPackages;
+    public void updateInfo(String id, SinglePlayerPackage spp) {
+        AtomicReference<SinglePlayerPackage> input = clientInputs.get(id);
+        if (input != null) {
+            input.accumulateAndGet(spp,
+                    (old, next) -> old == null || next.getTick() - old.getTick() >= 0 ? next : old);
+        }
     }
 
     /**
-     * gives back the bullets of all enemies in the game
-     * @param id the id of client
-     * @return list containing the bullets in the game except for own bullets of client
+     * applies the latest package of every client in one pass. A package made at an earlier tick of the client than
+     * the one applied before it arrived late, and is skipped.
      * */
-    public List<Point2D.Double> getEnemiesBullets (String id) {
-        List<Point2D.Double> bullets = new ArrayList<>();
-        clientsMap.forEach((client, objects) -> {
-            if(!client.equals(id)) {
-                bullets.addAll(objects.getBullets());
+    private synchronized void applyClientInputs() {
+        clientInputs.forEach((id, input) -> {
+            SinglePlayerPackage spp = input.getAndSet(null);
+            SinglePlayerPackage applied = clientsMap.get(id);
+            if (spp != null && (applied == null || spp.getTick() - applied.getTick() >= 0)) {
+                clientsMap.put(id, spp);
             }
         });
-        return bullets;
     }
 
     /**
-     * updates players information
-     * @param id the id of the player to update
-     * @param spp the single player package associated with this player
+     * counts a tick of this game, called by the {@link GameUpdater} after each one
      * */
-    public void updateInfo(String id, SinglePlayerPackage spp) {
-        updateMainSpaceShip();
-        clientsMap.put(id, spp);
-        updateHostsFrame();
+    public void countTick() {
+        localTick++;
     }
 
     /**
-     * updates the hosts frame
+     * applies the packages received from the clients, takes a new {@link WorldSnapshot} of the game on the host
+     * and updates the hosts frame with it.
+     * Called once per tick, so the work of putting together the players is shared by all clients.
+     * <p>
+     * the asteroids are moved to where the clients will see them first, and go on with the velocity the clients
+     * receive, so the host goes on simulating with the same rounded values the clients have. Then the tick is over,
+     * and the world is remembered for judging late hits.
      * */
-    public void updateHostsFrame() {
-        List<Integer> bulletsStepsLeft = new ArrayList<>();
-        List<Integer> spaceshipStepsLeft = new ArrayList<>();
-        getEnemies(mainId).forEach(objects -> {
-            bulletsStepsLeft.addAll(objects.getOwnBulletsStepsLeft());
-            spaceshipStepsLeft.add(objects.getSpaceShipStepsLeft());
+    public void updateWorldSnapshot() {
+        applyClientInputs();
+        updateMainSpaceShip();
+        asteroids.forEach(asteroid -> {
+            Quantizer.snap(asteroid.getLocation());
+            asteroid.setDirectionAngle(Quantizer.snapAngle(asteroid.getDirectionAngle()));
+            Quantizer.snapVelocity(asteroid.getVelocity());
         });
-        MultiPlayerGamePackage mp = new MultiPlayerGamePackage(
-                false,
-                getMainSpaceShip().getUserName(),
-                getEnemiesNames(mainId),
-                getMainSpaceShip().getScore(),
-                getEnemiesScores(mainId),
-                getEnemies(mainId),
-                new ArrayList<>(),
-                getEnemiesBullets(mainId));
-        updateEnemies(mp, spaceshipStepsLeft);
-        updateEnemiesBullets(mp.getBullets(), bulletsStepsLeft);
+        hostTick++;
+        worldSnapshot = new WorldSnapshot(clientsMap, shipsByClientId, asteroids, clock.millis(), hostTick);
+        updateHostsFrame(worldSnapshot);
+        rewindBuffer.record(hostTick, asteroids, spaceShips);
+    }
+
+    /**
+     * @return the latest snapshot of the game on the host, taken now if none has been taken yet
+     * */
+    public WorldSnapshot getWorldSnapshot() {
+        WorldSnapshot snapshot = worldSnapshot;
+        if (snapshot == null) {
+            snapshot = new WorldSnapshot(clientsMap, shipsByClientId, asteroids, clock.millis(), hostTick);
+            worldSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * updates the hosts frame with the spaceships and bullets of the clients
+     * @param snapshot the snapshot to take them from
+     * */
+    private void updateHostsFrame(WorldSnapshot snapshot) {
+        MultiPlayerGamePackage mp = snapshot.viewFor(mainId, false,
+                getMainSpaceShip().getUserName(), getMainSpaceShip().getScore());
+        updateEnemies(mp, snapshot.shipStepsLeftFor(mainId));
+        updateEnemiesBullets(mp.getBullets(), mp.getBulletIds(), mp.getBulletOwnerIds(),
+                snapshot.bulletStepsLeftFor(mainId), snapshot.bulletFireTicksFor(mainId),
+                snapshot.bulletRewindLimitsFor(mainId));
+        removeAbsent(remoteBullets, enemiesBullets, mp.getBulletIds());
     }
 
     /**
      * updates the information of the main spaceship
      * */
     public void updateMainSpaceShip() {
+        if (dedicated) {
+            return;
+        }
         if (!isGameOver()) {
             clientsMap.get(mainId).updateMainPlayer(this);
         } else {
@@ -481,10 +918,16 @@ public class Game extends ObservableGame {
      * removes a client from online to offline
      * @param id the id of client to be removed
      * */
-    public void removeClient(String id) {
+    public synchronized void removeClient(String id) {
+        playerSlots.release(id);
+        clientInputs.remove(id);
         clientsMap.remove(id);
-        removeSpaceShip(getClientIndexById(id));
-        if (isGameOver() && allPlayersAreDead()) {
+        Spaceship spaceship = shipsByClientId.remove(id);
+        if (spaceship != null) {
+            shipsById.remove(spaceship.getNetworkId());
+            spaceShips.remove(spaceship);
+        }
+        if (!dedicated && isGameOver() && allPlayersAreDead()) {
             startOverOrEndGame();
         }
     }
@@ -493,12 +936,7 @@ public class Game extends ObservableGame {
      * @return spaceship holding the id passed as a parameter
      * */
     public Spaceship getClientById(String id) {
-        for (Spaceship spaceShip : spaceShips) {
-            if (spaceShip.getId().equals(id)) {
-                return spaceShip;
-            }
-        }
-        return null;
+        return shipsByClientId.get(id);
     }
 
     /**
@@ -522,59 +960,36 @@ public class Game extends ObservableGame {
     }
 
     /**
-     * @return the shooter of the bullet
+     * @return the shooter of the bullet, or null if that spaceship is not in the game anymore
      * */
     public Spaceship getBulletOwner(Bullet bullet) {
-        AtomicReference<String> ownerId = new AtomicReference<>();
-        clientsMap.forEach((id, info) ->
-            info.getBullets().forEach(b -> {
-                if (bullet.getLocation().equals(b)) {
-                    ownerId.set(id);
-                }
-            })
-        );
-        if (ownerId.get() == null) {
-            return null;
-        }
-        if (getClientById(ownerId.get()) == null) {
-            System.err.println("A black hole has swallowed your spaceship. Please restart the game");
-            System.exit(69);
-        }
-        return getClientById(ownerId.get());
-    }
-
-    /**
-     * @return a list of the enemies scores
-     * */
-    public List<Integer> getEnemiesScores(String id) {
-        List<Integer> scores = new ArrayList<>();
-        clientsMap.forEach((client, objects) -> {
-            if(!client.equals(id) && !objects.isDestroyed()) {
-                scores.add(getClientById(client).getScore());
-            }
-        });
-        return scores;
+        return shipsById.get(bullet.getOwnerId());
     }
 
     /**
-     * adds a new client to the game
+     * adds a new client to the game. The client gets a slot if the server did not already reserve one when it joined.
      * @param spaceship the spaceship of the new client
      * */
-    public void addClient(Spaceship spaceship) {
-        spaceShips.get(0).setId(mainId);
+    public synchronized void addClient(Spaceship spaceship) {
+        spaceship.setSlot(playerSlots.acquire(spaceship.getId()));
+        spaceship.setSpaceShipsColor(PlayerSlots.colorOf(spaceship.getSlot()));
+        if (!dedicated) {
+            spaceShips.get(0).setId(mainId);
+            if (getMainSpaceShip().getNetworkId() == 0) assignNetworkId(getMainSpaceShip());
+            shipsById.put(getMainSpaceShip().getNetworkId(), getMainSpaceShip());
+            shipsByClientId.put(mainId, getMainSpaceShip());
+        }
+        shipsById.put(spaceship.getNetworkId(), spaceship);
+        shipsByClientId.put(spaceship.getId(), spaceship);
+        clientInputs.put(spaceship.getId(), new AtomicReference<>());
         spaceShips.add(spaceship);
     }
 
     /**
-     * @return a list of the enemies names
-     */
-    public List<String> getEnemiesNames(String id) {
-        List<String> names = new ArrayList<>();
-        clientsMap.forEach((client, objects) -> {
-            if(!client.equals(id) && !objects.isDestroyed()) {
-                names.add(objects.getUserName());
-            }
-        });
-        return names;
+     * where a remote object was in the last package it was in
+     * */
+    private static final class Reckoning {
+        private final Point2D.Double origin = new Point2D.Double();
+        private int tick;
     }
 }
@@ -0,0 +1,162 @@
+package nl.rug.aoop.asteroids.model;
+
+import lombok.Getter;
+
+import java.awt.*;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * hands out a slot to every player in a room. Slots are small numbers starting at 0, the lowest free one is always
+ * given out first, so the slots stay compact while players join and leave.
+ * <p>
+ * the slot of a player decides its colour, so every player keeps the same colour for as long as it is in the room,
+ * no matter in which order the spaceships are sent.
+ * */
+public class PlayerSlots {
+    /**
+     * the largest amount of players in a room, the host included
+     * */
+    public static final int MAX_PLAYERS = 64;
+
+    /**
+     * colours of the first slots, the ones the game always had. Slot 0 is the host
+     * */
+    private static final Color[] PRESET_COLORS = new Color[]{Color.DARK_GRAY, Color.RED, Color.BLUE, Color.ORANGE,
+            Color.GREEN, Color.CYAN, Color.WHITE, Color.MAGENTA, Color.PINK};
+
+    /**
+     * the golden ratio conjugate. Stepping the hue by it spreads any amount of colours evenly around the wheel
+     * */
+    private static final float HUE_STEP = 0.618034f;
+
+    /**
+     * the colours of all slots a room can have, made once and shared by all rooms in the process
+     * */
+    private static final Color[] PALETTE = makePalette(MAX_PLAYERS);
+
+    /**
+     * the amount of players this room can hold
+     * */
+    @Getter
+    private final int capacity;
+
+    /**
+     * the slots that are taken
+     * */
+    private final BitSet taken;
+
+    /**
+     * the slot of each player, by id
+     * */
+    private final Map<String, Integer> slots;
+
+    /**
+     * makes an allocator with all slots free
+     * @param capacity the amount of players the room can hold
+     * */
+    public PlayerSlots(int capacity) {
+        this.capacity = capacity;
+        this.taken = new BitSet(capacity);
+        this.slots = new HashMap<>();
+    }
+
+    /**
+     * gives a player the lowest free slot. A player that already has a slot keeps it.
+     * @param id the id of the player
+     * @return the slot of the player, or -1 if the room is full
+     * */
+    public synchronized int acquire(String id) {
+        Integer slot = slots.get(id);
+        if (slot != null) {
+            return slot;
+        }
+        int free = taken.nextClearBit(0);
+        if (free >= capacity) {
+            return -1;
+        }
+        taken.set(free);
+        slots.put(id, free);
+        return free;
+    }
+
+    /**
+     * frees the slot of a player so a new player can take it
+     * @param id the id of the player
+     * */
+    public synchronized void release(String id) {
+        Integer slot = slots.remove(id);
+        if (slot != null) {
+            taken.clear(slot);
+        }
+    }
+
+    /**
+     * @param id the id of the player
+     * @return the slot of the player, or -1 if it has none
+     * */
+    public synchronized int slotOf(String id) {
+        return slots.getOrDefault(id, -1);
+    }
+
+    /**
+     * @return the amount of players that have a slot
+     * */
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    /**
+     * @return whether all slots are taken
+     * */
+    public synchronized boolean isFull() {
+        return slots.size() >= capacity;
+    }
+
+    /**
+     * frees all slots
+     * */
+    public synchronized void clear() {
+        taken.clear();
+        slots.clear();
+    }
+
+    /**
+     * the colour of a slot. The first slots have the colours the game always had, after that the colours are
+     * generated, stepping the hue so that neighbouring slots look different.
+     * @param slot the slot
+     * @return the colour of the slot
+     * */
+    public static Color colorOf(int slot) {
+        if (slot < 0) {
+            return PALETTE[0];
+        }
+        return slot < PALETTE.length ? PALETTE[slot] : makeColor(slot);
+    }
+
+    /**
+     * @param size the amount of slots
+     * @return the colours of the first slots
+     * */
+    private static Color[] makePalette(int size) {
+        Color[] palette = new Color[size];
+        for (int slot = 0; slot < size; slot++) {
+            palette[slot] = makeColor(slot);
+        }
+        return palette;
+    }
+
+    /**
+     * @param slot the slot
+     * @return the colour of the slot
+     * */
+    private static Color makeColor(int slot) {
+        if (slot < PRESET_COLORS.length) {
+            return PRESET_COLORS[slot];
+        }
+        float hue = (slot * HUE_STEP) % 1f;
+        float brightness = slot % 2 == 0 ? 1f : 0.75f;
+        return Color.getHSBColor(hue, 0.8f, brightness);
+    }
+}
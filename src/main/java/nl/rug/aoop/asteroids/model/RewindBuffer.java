@@ -0,0 +1,183 @@
+package nl.rug.aoop.asteroids.model;
+
+import lombok.Getter;
+import nl.rug.aoop.asteroids.client.InterpolationBuffer;
+import nl.rug.aoop.asteroids.control.GameUpdater;
+import nl.rug.aoop.asteroids.model.gameobjects.GameObject;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * the locations of the asteroids and spaceships on the host during the last second of ticks, so hits of bullets of
+ * clients can be judged against the world the shooter was seeing.
+ * <p>
+ * a client sees the world about a round trip late, so a bullet it fires at a spaceship it sees flies through where
+ * the spaceship was a round trip ago. The host remembers how late the shooter was when the bullet arrived, and
+ * checks its hits against the world that many ticks back, up to the maximum rewind. The tick the shooter fired at is
+ * what the shooter claims, so the rewind is also kept within the latency the host measured for the shooter.
+ * <p>
+ * the locations are kept in arrays made once, one row of {@link #MAX_OBJECTS} per tick, used round robin.
+ * The maximum rewind can be changed with the system property {@value #PROPERTY}, in ms.
+ * */
+public class RewindBuffer {
+    /**
+     * the system property to set the maximum rewind with
+     * */
+    public static final String PROPERTY = "asteroids.rewind.max";
+
+    /**
+     * the maximum rewind when none is set
+     * */
+    public static final int DEFAULT_MAX_REWIND_MILLIS = 500;
+
+    /**
+     * the amount of ticks remembered, a second worth of them
+     * */
+    public static final int CAPACITY = GameUpdater.PHYSICS_FPS;
+
+    /**
+     * the most objects remembered per tick. Objects past it are judged where they are now
+     * */
+    public static final int MAX_OBJECTS = 256;
+
+    /**
+     * the tick remembered in each row, -1 if none
+     * */
+    private final int[] ticks = new int[CAPACITY];
+
+    /**
+     * the amount of objects remembered in each row
+     * */
+    private final int[] counts = new int[CAPACITY];
+
+    /**
+     * the network ids of the objects, row after row
+     * */
+    private final int[] ids = new int[CAPACITY * MAX_OBJECTS];
+
+    /**
+     * the x coordinates of the objects, in the same places as their ids
+     * */
+    private final double[] xs = new double[CAPACITY * MAX_OBJECTS];
+
+    /**
+     * the y coordinates of the objects, in the same places as their ids
+     * */
+    private final double[] ys = new double[CAPACITY * MAX_OBJECTS];
+
+    /**
+     * the most ticks a hit is judged back in time
+     * */
+    @Getter
+    private volatile int maxRewindTicks;
+
+    /**
+     * makes an empty buffer with the maximum rewind given with the system property
+     * */
+    public RewindBuffer() {
+        clear();
+        setMaxRewindMillis(Integer.getInteger(PROPERTY, DEFAULT_MAX_REWIND_MILLIS));
+    }
+
+    /**
+     * @param millis the most time a hit is judged back in time, limited to what the buffer remembers
+     * */
+    public void setMaxRewindMillis(int millis) {
+        int rewind = (int) Math.round(millis / GameUpdater.MILLISECONDS_PER_TICK);
+        maxRewindTicks = Math.max(0, Math.min(rewind, CAPACITY - 1));
+    }
+
+    /**
+     * forgets all ticks
+     * */
+    public synchronized void clear() {
+        Arrays.fill(ticks, -1);
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * remembers where the objects are at the end of a tick, in place of the oldest tick
+     * @param tick the tick of the host
+     * @param asteroids the asteroids to remember
+     * @param spaceships the spaceships to remember
+     * */
+    public synchronized void record(int tick, Collection<? extends GameObject> asteroids,
+                                    Collection<? extends GameObject> spaceships) {
+        int row = Math.floorMod(tick, CAPACITY);
+        ticks[row] = tick;
+        counts[row] = 0;
+        add(row, asteroids);
+        add(row, spaceships);
+    }
+
+    /**
+     * adds the objects that still fit to a row
+     * */
+    private void add(int row, Collection<? extends GameObject> objects) {
+        for (GameObject object : objects) {
+            if (counts[row] == MAX_OBJECTS) {
+                return;
+            }
+            int index = row * MAX_OBJECTS + counts[row]++;
+            ids[index] = object.getNetworkId();
+            xs[index] = object.getLocation().getX();
+            ys[index] = object.getLocation().getY();
+        }
+    }
+
+    /**
+     * @param fireTick the tick the shooter was seeing when it fired, -1 if unknown
+     * @param now the tick of the host when the bullet arrived
+     * @return how many ticks back the hits of the bullet are judged
+     * */
+    public int rewindFor(int fireTick, int now) {
+        if (fireTick < 0 || fireTick >= now) {
+            return 0;
+        }
+        return Math.min(now - fireTick, maxRewindTicks);
+    }
+
+    /**
+     * @param fireTick the tick the shooter was seeing when it fired, -1 if unknown
+     * @param now the tick of the host when the bullet arrived
+     * @param measuredTicks the most ticks the shooter can be behind, see {@link #latencyTicks(long)}
+     * @return how many ticks back the hits of the bullet are judged, no further back than the shooter can be behind
+     * */
+    public int rewindFor(int fireTick, int now, int measuredTicks) {
+        return Math.min(rewindFor(fireTick, now), Math.max(0, measuredTicks));
+    }
+
+    /**
+     * a client sees the host a round trip late, and draws the remote objects another interpolation delay in the past.
+     * The host cannot know the delay the client draws with, so the smallest one is taken
+     * @param roundTrip the round trip to the shooter as the host measured it, in ms
+     * @return the most ticks the shooter can be behind the host, rounded up
+     * */
+    public static int latencyTicks(long roundTrip) {
+        return (int) Math.ceil((roundTrip + InterpolationBuffer.MIN_DELAY_MILLIS) / GameUpdater.MILLISECONDS_PER_TICK);
+    }
+
+    /**
+     * finds where an object was at the end of a tick
+     * @param tick the tick of the host
+     * @param networkId the network id of the object
+     * @param into set to the location if it was found
+     * @return false if the tick is not remembered anymore or the object was not there
+     * */
+    public synchronized boolean locate(int tick, int networkId, Point2D.Double into) {
+        int row = Math.floorMod(tick, CAPACITY);
+        if (ticks[row] != tick) {
+            return false;
+        }
+        int start = row * MAX_OBJECTS;
+        for (int index = start; index < start + counts[row]; index++) {
+            if (ids[index] == networkId) {
+                into.setLocation(xs[index], ys[index]);
+                return true;
+            }
+        }
+        return false;
+    }
+}
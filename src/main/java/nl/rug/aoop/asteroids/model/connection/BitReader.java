@@ -0,0 +1,59 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * reads the values written by a {@link BitWriter}, with the same widths in the same order
+ * */
+class BitReader {
+    /**
+     * where the bytes come from
+     * */
+    private final DataInput in;
+
+    /**
+     * the bits read but not used yet, the oldest ones highest
+     * */
+    private long bits;
+
+    /**
+     * the amount of bits read but not used yet
+     * */
+    private int count;
+
+    /**
+     * @param in where the bytes come from
+     * */
+    BitReader(DataInput in) {
+        this.in = in;
+    }
+
+    /**
+     * @param width the amount of bits to read, at most 32
+     * @return the value, without sign
+     * */
+    int read(int width) throws IOException {
+        while (count < width) {
+            bits = bits << Byte.SIZE | in.readUnsignedByte();
+            count += Byte.SIZE;
+        }
+        count -= width;
+        return (int) ((bits >>> count) & (-1L >>> (64 - width)));
+    }
+
+    /**
+     * @return the value of a single bit written by {@link BitWriter#writeBoolean}
+     * */
+    boolean readBoolean() throws IOException {
+        return read(1) == 1;
+    }
+
+    /**
+     * skips the padding of the last byte
+     * */
+    void align() {
+        bits = 0;
+        count = 0;
+    }
+}
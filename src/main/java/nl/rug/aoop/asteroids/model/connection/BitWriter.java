@@ -0,0 +1,63 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * writes values of any amount of bits right after each other, so a value of 10 bits takes 10 bits instead of 2 bytes.
+ * {@link #flush()} pads the last byte with zeros.
+ * */
+class BitWriter {
+    /**
+     * where the full bytes go
+     * */
+    private final DataOutput out;
+
+    /**
+     * the bits not written yet, the oldest ones highest
+     * */
+    private long bits;
+
+    /**
+     * the amount of bits not written yet
+     * */
+    private int count;
+
+    /**
+     * @param out where the full bytes go
+     * */
+    BitWriter(DataOutput out) {
+        this.out = out;
+    }
+
+    /**
+     * @param value the value, only its lowest bits are written
+     * @param width the amount of bits to write, at most 32
+     * */
+    void write(int value, int width) throws IOException {
+        bits = bits << width | (value & (-1L >>> (64 - width)));
+        count += width;
+        while (count >= Byte.SIZE) {
+            count -= Byte.SIZE;
+            out.writeByte((int) (bits >>> count));
+        }
+    }
+
+    /**
+     * @param value the value, written as a single bit
+     * */
+    void writeBoolean(boolean value) throws IOException {
+        write(value ? 1 : 0, 1);
+    }
+
+    /**
+     * writes the bits left, padded to a whole byte
+     * */
+    void flush() throws IOException {
+        if (count > 0) {
+            out.writeByte((int) (bits << (Byte.SIZE - count)));
+        }
+        bits = 0;
+        count = 0;
+    }
+}
@@ -0,0 +1,99 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * hands out direct {@link ByteBuffer}s of a single size and takes them back, so sending and receiving datagrams does
+ * not make garbage. A buffer is only allocated when all buffers are in use, and a buffer given back to a full pool is
+ * left to the garbage collector.
+ * */
+public class BufferPool {
+    /**
+     * the pool all handlers in this process send and receive datagrams with
+     * */
+    public static final BufferPool DATAGRAMS = new BufferPool(Fragmenter.MAX_DATAGRAM_SIZE, 1024);
+
+    /**
+     * the capacity of every buffer in bytes
+     * */
+    private final int bufferSize;
+
+    /**
+     * the buffers that are free, the first {@link #free} of them
+     * */
+    private final ByteBuffer[] buffers;
+
+    /**
+     * the amount of free buffers
+     * */
+    private int free;
+
+    /**
+     * the amount of buffers allocated so far
+     * */
+    private final AtomicLong allocated = new AtomicLong();
+
+    /**
+     * makes an empty pool
+     * @param bufferSize the capacity of every buffer in bytes
+     * @param capacity the largest amount of free buffers kept
+     * */
+    public BufferPool(int bufferSize, int capacity) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ByteBuffer[capacity];
+    }
+
+    /**
+     * @return a cleared buffer, from the pool if there is a free one
+     * */
+    public ByteBuffer acquire() {
+        synchronized (buffers) {
+            if (free > 0) {
+                ByteBuffer buffer = buffers[--free];
+                buffers[free] = null;
+                return buffer.clear();
+            }
+        }
+        allocated.incrementAndGet();
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * gives a buffer back. Buffers that did not come from a pool of this size are ignored
+     * @param buffer the buffer, not to be used anymore by the caller
+     * */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) {
+            return;
+        }
+        synchronized (buffers) {
+            if (free < buffers.length) {
+                buffers[free++] = buffer;
+            }
+        }
+    }
+
+    /**
+     * @return the capacity of every buffer in bytes
+     * */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return the amount of buffers allocated so far, which stops growing once the pool is warm
+     * */
+    public long getAllocated() {
+        return allocated.get();
+    }
+
+    /**
+     * @return the amount of free buffers in the pool
+     * */
+    public int getFree() {
+        synchronized (buffers) {
+            return free;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.Serializable;
+
+/**
+ * the times a package carries so the other side can tell how its clock relates to ours, the way NTP does.
+ * <p>
+ * every package answers the latest package received from the other side: it echoes the time that package was sent at
+ * on the clock of the other side, and tells when it arrived and when this package was sent on our clock. Together
+ * with the time this package arrives, the other side knows the round trip and how far our clock is ahead of its own,
+ * see {@link ClockSync}.
+ * @param echoed the time the latest package of the other side was sent at on its clock, -1 if none has arrived yet
+ * @param received the time that package arrived at on the clock of the sender
+ * @param sent the time this package was sent at on the clock of the sender
+ * */
+public record ClockStamp(long echoed, long received, long sent) implements Serializable {
+    /**
+     * @return whether the stamp answers a package of the other side, so it can be used to compare clocks
+     * */
+    public boolean answers() {
+        return echoed >= 0;
+    }
+}
@@ -0,0 +1,130 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+/**
+ * estimates how far the clock of the other side is ahead of ours and how long packages take to get here, from the
+ * {@link ClockStamp}s of the packages it sends us.
+ * <p>
+ * each stamp gives a sample like an NTP exchange does: with t0 the time our package was sent, t1 the time it
+ * arrived, t2 the time the answer was sent and t3 the time the answer arrived, the round trip is
+ * {@code (t3 - t0) - (t2 - t1)} and the offset is {@code ((t1 - t0) + (t2 - t3)) / 2}. The offset is only off by
+ * half the difference between both ways, so of the last {@link #WINDOW} samples the one with the shortest round
+ * trip is trusted, like the clock filter of NTP does. A late package only makes a sample that is not picked.
+ * */
+public class ClockSync {
+    /**
+     * the amount of samples the best one is picked from
+     * */
+    public static final int WINDOW = 8;
+
+    /**
+     * the offsets of the last samples, round robin
+     * */
+    private final long[] offsets = new long[WINDOW];
+
+    /**
+     * the round trips of the last samples, round robin
+     * */
+    private final long[] roundTrips = new long[WINDOW];
+
+    /**
+     * the amount of samples taken
+     * */
+    private long samples;
+
+    /**
+     * the offset of the best sample in the window
+     * */
+    private long offset;
+
+    /**
+     * the round trip of the best sample in the window
+     * */
+    private long roundTrip;
+
+    /**
+     * takes a sample from a stamp of the other side
+     * @param stamp the stamp of a received package, null if it had none
+     * @param arrived the time the package arrived at on our clock
+     * @return whether the stamp gave a sample
+     * */
+    public synchronized boolean add(ClockStamp stamp, long arrived) {
+        if (stamp == null || !stamp.answers()) {
+            return false;
+        }
+        long held = stamp.sent() - stamp.received();
+        int slot = (int) (samples++ % WINDOW);
+        roundTrips[slot] = Math.max(0, arrived - stamp.echoed() - held);
+        offsets[slot] = Math.floorDiv(stamp.received() - stamp.echoed() + stamp.sent() - arrived, 2);
+        int best = slot;
+        for (int i = 0; i < Math.min(samples, WINDOW); i++) {
+            if (roundTrips[i] < roundTrips[best]) {
+                best = i;
+            }
+        }
+        offset = offsets[best];
+        roundTrip = roundTrips[best];
+        return true;
+    }
+
+    /**
+     * @return whether a sample has been taken, before that the clocks count as the same
+     * */
+    public synchronized boolean isSynchronised() {
+        return samples > 0;
+    }
+
+    /**
+     * @return how many ms the clock of the other side is ahead of ours, 0 if not synchronised yet
+     * */
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the shortest round trip in the window in ms, 0 if not synchronised yet
+     * */
+    public synchronized long getRoundTrip() {
+        return roundTrip;
+    }
+
+    /**
+     * @return the time in ms a package takes to get here when it is not held up, half the round trip
+     * */
+    public synchronized double getOneWayDelay() {
+        return roundTrip / 2.0;
+    }
+
+    /**
+     * @param local a time on our clock
+     * @return the same moment on the clock of the other side
+     * */
+    public synchronized long toRemote(long local) {
+        return local + offset;
+    }
+
+    /**
+     * @param remote a time on the clock of the other side
+     * @return the same moment on our clock
+     * */
+    public synchronized long toLocal(long remote) {
+        return remote - offset;
+    }
+
+    /**
+     * @param stamp the stamp of a received package
+     * @param arrived the time the package arrived at on our clock
+     * @return the time on our clock the package would have arrived at without being held up on the way. The time it
+     * did arrive at when not synchronised yet or when the package has no stamp
+     * */
+    public synchronized long expectedArrival(ClockStamp stamp, long arrived) {
+        if (samples == 0 || stamp == null) {
+            return arrived;
+        }
+        return Math.min(arrived, stamp.sent() - offset + roundTrip / 2);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("offset %d ms, one way %.1f ms", offset, getOneWayDelay());
+    }
+}
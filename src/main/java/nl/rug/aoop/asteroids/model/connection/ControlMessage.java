@@ -0,0 +1,56 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.Serializable;
+
+/**
+ * an event about a player that has to reach the other side, unlike the state in the game packages which is sent
+ * again every tick anyway. Delivered in order and exactly once by a {@link ReliableChannel}.
+ * @param type what happened
+ * @param shipId the network id of the spaceship of the player it is about, 0 if it has none yet
+ * @param name the name of the player it is about
+ * @param sequence the number the sending channel gave this message, -1 until it is queued
+ * */
+public record ControlMessage(Type type, int shipId, String name, int sequence) implements Serializable {
+    /**
+     * the kinds of control messages
+     * */
+    public enum Type {
+        /**
+         * a player joined the room
+         * */
+        JOIN,
+
+        /**
+         * a player left the room
+         * */
+        LEAVE,
+
+        /**
+         * the host removed the player, for example because the host quit
+         * */
+        KICK,
+
+        /**
+         * the spaceship of a player got destroyed
+         * */
+        DEATH,
+
+        /**
+         * a player asks for, or got, a new spaceship after dying
+         * */
+        RESPAWN,
+
+        /**
+         * a player changed its name
+         * */
+        NAME_CHANGE
+    }
+
+    /**
+     * @param sequence the number the sending channel gives this message
+     * @return this message with the given number
+     * */
+    public ControlMessage withSequence(int sequence) {
+        return new ControlMessage(type, shipId, name, sequence);
+    }
+}
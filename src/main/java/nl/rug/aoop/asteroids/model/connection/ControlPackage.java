@@ -0,0 +1,12 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * the package the control messages travel in, next to the game packages on the main channel
+ * @param messages the messages the other side has not acknowledged yet, oldest first. Empty when only acknowledging
+ * @param ack the sequence number of the newest message received in order, -1 if none
+ * */
+public record ControlPackage(List<ControlMessage> messages, int ack) implements Serializable {
+}
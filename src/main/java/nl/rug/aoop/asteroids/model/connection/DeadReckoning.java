@@ -0,0 +1,199 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.view.AsteroidsFrame;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * decides which asteroids the host sends again to a single client. The client moves the asteroids on with the
+ * velocity it last received, and asteroids go in straight lines, so an asteroid only has to be sent again once it is
+ * further than the threshold away from where the client thinks it is.
+ * <p>
+ * only what the client is known to have received counts. Every package answers the latest package of the other side,
+ * see {@link ClockStamp}, so the asteroids in a package count as received once the client echoes the time it was sent
+ * at. Until then they are sent again, so a lost package or a snapshot the client was not sent does not leave it
+ * behind. Every asteroid is sent again once what the client has of it is {@link #REFRESH_TICKS} ticks old.
+ * <p>
+ * the threshold can be set in pixels with the system property {@value #PROPERTY}. When it is 0, as it is by default,
+ * every asteroid is sent every tick.
+ * */
+public class DeadReckoning {
+    /**
+     * the system property to set the threshold with
+     * */
+    public static final String PROPERTY = "asteroids.reckoning.threshold";
+
+    /**
+     * the most ticks what the client has of an asteroid may be old before it is sent again, about a second
+     * */
+    public static final int REFRESH_TICKS = 30;
+
+    /**
+     * the most packages that are remembered while waiting for the client to answer them
+     * */
+    public static final int MAX_PENDING = 64;
+
+    /**
+     * how far (in pixels) an asteroid may be from where the client thinks it is before it is sent again.
+     * 0 to always send
+     * */
+    private final double threshold;
+
+    /**
+     * what the client is known to have received of each asteroid, by network id
+     * */
+    private final Map<Integer, Sent> received = new HashMap<>();
+
+    /**
+     * the asteroids in the packages the client has not answered yet, by the time the package was sent at
+     * */
+    private final LinkedHashMap<Long, Map<Integer, Sent>> pending = new LinkedHashMap<>();
+
+    /**
+     * @param threshold how far (in pixels) an asteroid may be off before it is sent again, 0 to always send
+     * */
+    public DeadReckoning(double threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Reckoning threshold of " + threshold + " pixels cannot be negative");
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return the reckoning with the threshold given with the system property, sending everything if none is given
+     * */
+    public static DeadReckoning configured() {
+        return new DeadReckoning(Double.parseDouble(System.getProperty(PROPERTY, "0")));
+    }
+
+    /**
+     * @return whether asteroids are left out of packages while the client can move them on itself
+     * */
+    public boolean isEnabled() {
+        return threshold > 0;
+    }
+
+    /**
+     * leaves the asteroids the client can move on itself out of a package for it. Asteroids that are gone from the
+     * package are forgotten
+     * @param mp the package for the client, with all asteroids in it
+     * */
+    public synchronized void leaveOut(MultiPlayerGamePackage mp) {
+        if (!isEnabled()) {
+            return;
+        }
+        List<Integer> keep = new ArrayList<>(mp.getAsteroids().size());
+        List<Integer> reckonedIds = new ArrayList<>();
+        Set<Integer> present = new HashSet<>(mp.getAsteroidIds());
+        received.keySet().retainAll(present);
+        for (int i = 0; i < mp.getAsteroids().size(); i++) {
+            int id = mp.getAsteroidIds().get(i);
+            Sent last = received.get(id);
+            if (last != null && last.isOnTrack(mp.getAsteroids().get(i), mp.getAsteroidVelocities().get(i),
+                    mp.getHostTick(), threshold)) {
+                reckonedIds.add(id);
+            } else {
+                keep.add(i);
+            }
+        }
+        if (!reckonedIds.isEmpty()) {
+            mp.leaveOutReckoned(keep, reckonedIds);
+        }
+    }
+
+    /**
+     * remembers the asteroids in a package sent to the client, until the client answers it
+     * @param time the time the package was sent at, as in its {@link ClockStamp}
+     * @param mp the package as it was sent
+     * */
+    public synchronized void sent(long time, MultiPlayerGamePackage mp) {
+        if (!isEnabled()) {
+            return;
+        }
+        Map<Integer, Sent> asteroids = new HashMap<>();
+        for (int i = 0; i < mp.getAsteroids().size(); i++) {
+            asteroids.put(mp.getAsteroidIds().get(i),
+                    new Sent(mp.getAsteroids().get(i), mp.getAsteroidVelocities().get(i), mp.getHostTick()));
+        }
+        pending.remove(time);
+        pending.put(time, asteroids);
+        if (pending.size() > MAX_PENDING) {
+            pending.remove(pending.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * takes in that the client received the package sent at the given time. The client only answers its latest
+     * package, so the packages sent before it are forgotten, they might have been lost
+     * @param echoed the time the package was sent at, as echoed in the {@link ClockStamp} of the client
+     * */
+    public synchronized void acknowledged(long echoed) {
+        Map<Integer, Sent> asteroids = pending.get(echoed);
+        Iterator<Long> times = pending.keySet().iterator();
+        while (times.hasNext() && times.next() - echoed <= 0) {
+            times.remove();
+        }
+        if (asteroids != null) {
+            received.putAll(asteroids);
+        }
+    }
+
+    /**
+     * forgets everything that was sent
+     * */
+    public synchronized void clear() {
+        received.clear();
+        pending.clear();
+    }
+
+    /**
+     * what was sent of an asteroid
+     * */
+    private static final class Sent {
+        private final Point2D.Double location;
+        private final Point2D.Double velocity;
+        private final int tick;
+
+        private Sent(Point2D.Double location, Point2D.Double velocity, int tick) {
+            this.location = new Point2D.Double(location.x, location.y);
+            this.velocity = new Point2D.Double(velocity.x, velocity.y);
+            this.tick = tick;
+        }
+
+        /**
+         * @param actual where the asteroid is
+         * @param actualVelocity the velocity of the asteroid
+         * @param now the tick of the host
+         * @param threshold how far (in pixels) the asteroid may be off
+         * @return whether the client can still move the asteroid on from what was sent
+         * */
+        private boolean isOnTrack(Point2D.Double actual, Point2D.Double actualVelocity, int now, double threshold) {
+            int steps = now - tick;
+            if (steps >= REFRESH_TICKS || !velocity.equals(actualVelocity)) {
+                return false;
+            }
+            double dx = wrap(location.x + velocity.x * steps - actual.x, AsteroidsFrame.WIDTH);
+            double dy = wrap(location.y + velocity.y * steps - actual.y, AsteroidsFrame.HEIGHT);
+            return Math.hypot(dx, dy) <= threshold;
+        }
+
+        /**
+         * @return the difference in between minus and plus half the extent
+         * */
+        private static double wrap(double difference, double extent) {
+            double wrapped = difference % extent;
+            if (wrapped > extent / 2) {
+                return wrapped - extent;
+            }
+            return wrapped < -extent / 2 ? wrapped + extent : wrapped;
+        }
+    }
+}
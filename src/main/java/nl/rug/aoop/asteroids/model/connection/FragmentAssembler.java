@@ -0,0 +1,403 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * puts the fragments made by a {@link Fragmenter} back together.
+ * <p>
+ * every payload sent over the main channel holds the whole state of its sender, so a newer payload makes all older
+ * ones useless. Once a payload is complete, incomplete older payloads are dropped, and older payloads arriving late
+ * are ignored. Payloads that stay incomplete for longer than {@link #REASSEMBLY_TIMEOUT_MILLIS} are dropped as well.
+ * <p>
+ * fragments are kept in the pooled buffers they were received in, and the assembler keeps a fixed amount of
+ * payloads waiting, so putting payloads together makes no garbage.
+ * */
+public class FragmentAssembler {
+    /**
+     * how long (in ms) we wait for the missing fragments of a payload
+     * */
+    public static final long REASSEMBLY_TIMEOUT_MILLIS = 500;
+
+    /**
+     * the most payloads waiting for fragments at once. When another one starts, the oldest is dropped
+     * */
+    public static final int MAX_PENDING = 8;
+
+    /**
+     * the pool the buffers of the fragments go back to
+     * */
+    private final BufferPool pool;
+
+    /**
+     * the payloads that are still missing fragments, and free slots for new ones
+     * */
+    private final Assembly[] assemblies;
+
+    /**
+     * the completed payload handed out last, reused for every payload
+     * */
+    private final Payload payload;
+
+    /**
+     * the sequence number of the newest completed payload
+     * */
+    private int newestSequence;
+
+    /**
+     * whether a payload has been completed yet
+     * */
+    private boolean completedAny;
+
+    /**
+     * amount of payloads that were dropped because they were incomplete, too old or malformed
+     * */
+    @Getter
+    private long droppedPayloads;
+
+    /**
+     * makes an assembler that has not seen any fragment yet, with the buffers of {@link BufferPool#DATAGRAMS}
+     * */
+    public FragmentAssembler() {
+        this(BufferPool.DATAGRAMS);
+    }
+
+    /**
+     * makes an assembler that has not seen any fragment yet
+     * @param pool the pool the buffers of the fragments go back to
+     * */
+    public FragmentAssembler(BufferPool pool) {
+        this.pool = pool;
+        this.assemblies = new Assembly[MAX_PENDING];
+        for (int i = 0; i < MAX_PENDING; i++) {
+            assemblies[i] = new Assembly();
+        }
+        this.payload = new Payload(pool);
+    }
+
+    /**
+     * adds a received fragment, copying it into a buffer of the pool
+     * @param data the buffer holding the datagram
+     * @param length the length of the datagram
+     * @param now the current time in ms
+     * @return the payload if this fragment completed it, null otherwise. Valid until the next fragment is added
+     * */
+    public synchronized Payload accept(byte[] data, int length, long now) {
+        ByteBuffer datagram = pool.acquire();
+        datagram.put(data, 0, Math.min(length, datagram.remaining())).flip();
+        return accept(datagram, now);
+    }
+
+    /**
+     * adds a received fragment. The buffer now belongs to the assembler: it is given back to the pool when the
+     * fragment is dropped, or when the payload it completes is released.
+     * @param datagram the datagram, from its position to its limit
+     * @param now the current time in ms
+     * @return the payload if this fragment completed it, null otherwise. Valid until the next fragment is added
+     * */
+    public synchronized Payload accept(ByteBuffer datagram, long now) {
+        payload.release();
+        dropTimedOut(now);
+        if (datagram.remaining() < Fragmenter.HEADER_SIZE) {
+            return drop(datagram);
+        }
+        int start = datagram.position();
+        int sequence = datagram.getInt(start);
+        int ack = datagram.getInt(start + Integer.BYTES);
+        int index = Short.toUnsignedInt(datagram.getShort(start + 2 * Integer.BYTES));
+        int count = Short.toUnsignedInt(datagram.getShort(start + 2 * Integer.BYTES + Short.BYTES));
+        if (count == 0 || count > Fragmenter.MAX_FRAGMENTS || index >= count
+                || (completedAny && sequence - newestSequence <= 0)) {
+            return drop(datagram);
+        }
+        datagram.position(start + Fragmenter.HEADER_SIZE);
+        if (count == 1) {
+            complete(sequence);
+            return payload.single(sequence, ack, datagram);
+        }
+        Assembly assembly = assemblyOf(sequence, count, now);
+        if (assembly.count != count) {
+            return drop(datagram);
+        }
+        if (assembly.parts[index] != null) {
+            pool.release(datagram); // a duplicate
+            return null;
+        }
+        assembly.parts[index] = datagram;
+        assembly.received++;
+        if (assembly.received < count) {
+            return null;
+        }
+        payload.take(sequence, ack, assembly);
+        complete(sequence);
+        return payload;
+    }
+
+    /**
+     * gives back the buffer of a fragment that is of no use and counts it as a dropped payload
+     * @return null
+     * */
+    private Payload drop(ByteBuffer datagram) {
+        pool.release(datagram);
+        droppedPayloads++;
+        return null;
+    }
+
+    /**
+     * @param sequence the sequence number of a payload
+     * @param count the amount of fragments of the payload
+     * @param now the current time in ms
+     * @return the assembly of the payload, a new one if none has started yet
+     * */
+    private Assembly assemblyOf(int sequence, int count, long now) {
+        Assembly oldest = null;
+        for (Assembly assembly : assemblies) {
+            if (assembly.inUse && assembly.sequence == sequence) {
+                return assembly;
+            }
+        }
+        for (Assembly assembly : assemblies) {
+            if (!assembly.inUse) {
+                assembly.start(sequence, count, now);
+                return assembly;
+            }
+            if (oldest == null || assembly.sequence - oldest.sequence < 0) {
+                oldest = assembly;
+            }
+        }
+        oldest.clear(pool);
+        droppedPayloads++;
+        oldest.start(sequence, count, now);
+        return oldest;
+    }
+
+    /**
+     * @return the amount of payloads still waiting for fragments
+     * */
+    public synchronized int pending() {
+        int pending = 0;
+        for (Assembly assembly : assemblies) {
+            if (assembly.inUse) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * marks a payload as completed and drops all older payloads that are still incomplete
+     * @param sequence the sequence number of the completed payload
+     * */
+    private void complete(int sequence) {
+        newestSequence = sequence;
+        completedAny = true;
+        for (Assembly assembly : assemblies) {
+            if (assembly.inUse && assembly.sequence - sequence < 0) {
+                assembly.clear(pool);
+                droppedPayloads++;
+            }
+        }
+    }
+
+    /**
+     * drops the payloads whose first fragment arrived more than {@link #REASSEMBLY_TIMEOUT_MILLIS} ago
+     * @param now the current time in ms
+     * */
+    private void dropTimedOut(long now) {
+        for (Assembly assembly : assemblies) {
+            if (assembly.inUse && now - assembly.firstArrival > REASSEMBLY_TIMEOUT_MILLIS) {
+                assembly.clear(pool);
+                droppedPayloads++;
+            }
+        }
+    }
+
+    /**
+     * a payload that has been put back together, still in the buffers its fragments were received in. Read it with
+     * a {@link FragmentInputStream} and {@link #release()} it when done.
+     * */
+    public static class Payload {
+        /**
+         * the pool the buffers go back to
+         * */
+        private final BufferPool pool;
+
+        /**
+         * the fragments in order, each from the end of its header to its end
+         * */
+        private final ByteBuffer[] parts = new ByteBuffer[Fragmenter.MAX_FRAGMENTS];
+
+        /**
+         * the amount of fragments
+         * */
+        private int count;
+
+        /**
+         * the sequence number the sender gave the payload
+         * */
+        private int sequence;
+
+        /**
+         * the sequence number of the last payload the sender had received from us, -1 if none
+         * */
+        private int ack;
+
+        private Payload(BufferPool pool) {
+            this.pool = pool;
+        }
+
+        /**
+         * makes this the payload of a single fragment
+         * */
+        private Payload single(int sequence, int ack, ByteBuffer part) {
+            this.sequence = sequence;
+            this.ack = ack;
+            this.parts[0] = part;
+            this.count = 1;
+            return this;
+        }
+
+        /**
+         * makes this the payload of a complete assembly, which is free again afterwards
+         * */
+        private void take(int sequence, int ack, Assembly assembly) {
+            this.sequence = sequence;
+            this.ack = ack;
+            this.count = assembly.count;
+            System.arraycopy(assembly.parts, 0, parts, 0, count);
+            assembly.forget();
+        }
+
+        /**
+         * @return the sequence number the sender gave the payload
+         * */
+        public int sequence() {
+            return sequence;
+        }
+
+        /**
+         * @return the sequence number of the last payload the sender had received from us, -1 if none
+         * */
+        public int ack() {
+            return ack;
+        }
+
+        /**
+         * @return the amount of fragments
+         * */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * @param index the index of a fragment
+         * @return the bytes of the fragment that are left to read
+         * */
+        public ByteBuffer part(int index) {
+            return parts[index];
+        }
+
+        /**
+         * @return the amount of payload bytes left to read
+         * */
+        public int length() {
+            int length = 0;
+            for (int i = 0; i < count; i++) {
+                length += parts[i].remaining();
+            }
+            return length;
+        }
+
+        /**
+         * @return a copy of the bytes left to read, without reading them
+         * */
+        public byte[] data() {
+            byte[] data = new byte[length()];
+            int offset = 0;
+            for (int i = 0; i < count; i++) {
+                ByteBuffer part = parts[i];
+                part.get(part.position(), data, offset, part.remaining());
+                offset += part.remaining();
+            }
+            return data;
+        }
+
+        /**
+         * gives the buffers back to the pool. The payload cannot be read anymore
+         * */
+        public void release() {
+            for (int i = 0; i < count; i++) {
+                pool.release(parts[i]);
+                parts[i] = null;
+            }
+            count = 0;
+        }
+    }
+
+    /**
+     * the fragments of a payload received so far, or a free slot for a payload
+     * */
+    private static class Assembly {
+        /**
+         * the fragments by index, null if not received yet
+         * */
+        private final ByteBuffer[] parts = new ByteBuffer[Fragmenter.MAX_FRAGMENTS];
+
+        /**
+         * whether a payload is being put together in this slot
+         * */
+        private boolean inUse;
+
+        /**
+         * the sequence number of the payload
+         * */
+        private int sequence;
+
+        /**
+         * the amount of fragments of the payload
+         * */
+        private int count;
+
+        /**
+         * the time the first fragment arrived at
+         * */
+        private long firstArrival;
+
+        /**
+         * amount of fragments received
+         * */
+        private int received;
+
+        /**
+         * starts putting a payload together in this slot
+         * */
+        private void start(int sequence, int count, long firstArrival) {
+            this.inUse = true;
+            this.sequence = sequence;
+            this.count = count;
+            this.firstArrival = firstArrival;
+            this.received = 0;
+        }
+
+        /**
+         * frees the slot, giving the buffers of the fragments back
+         * */
+        private void clear(BufferPool pool) {
+            for (int i = 0; i < count; i++) {
+                pool.release(parts[i]);
+            }
+            forget();
+        }
+
+        /**
+         * frees the slot, the buffers of the fragments are someone else's now
+         * */
+        private void forget() {
+            for (int i = 0; i < count; i++) {
+                parts[i] = null;
+            }
+            inUse = false;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * reads a payload put back together by a {@link FragmentAssembler} straight from its fragments, without copying it
+ * into an array first. Can be pointed at a new payload with {@link #of}.
+ * */
+public class FragmentInputStream extends InputStream {
+    /**
+     * the payload being read
+     * */
+    private FragmentAssembler.Payload payload;
+
+    /**
+     * the index of the fragment being read
+     * */
+    private int index;
+
+    /**
+     * the amount of bytes that may still be read, -1 if the whole payload may be read
+     * */
+    private int limit = -1;
+
+    /**
+     * @param payload the payload to read from now on, its fragments are read from their positions
+     * @return this stream
+     * */
+    public FragmentInputStream of(FragmentAssembler.Payload payload) {
+        this.payload = payload;
+        this.index = 0;
+        this.limit = -1;
+        return this;
+    }
+
+    /**
+     * makes the stream end after the given amount of bytes, so a stream reading on top cannot read past them
+     * @param bytes the amount of bytes that may still be read, -1 to read up to the end of the payload again
+     * */
+    public void limit(int bytes) {
+        this.limit = bytes;
+    }
+
+    /**
+     * @return the next byte without reading it, -1 at the end of the payload
+     * */
+    public int peek() {
+        ByteBuffer fragment = current();
+        return fragment == null || limit == 0 ? -1 : fragment.get(fragment.position()) & 0xFF;
+    }
+
+    /**
+     * @return the fragment with bytes left to read, null at the end of the payload
+     * */
+    private ByteBuffer current() {
+        while (payload != null && index < payload.count()) {
+            ByteBuffer fragment = payload.part(index);
+            if (fragment.hasRemaining()) {
+                return fragment;
+            }
+            index++;
+        }
+        return null;
+    }
+
+    @Override
+    public int read() {
+        ByteBuffer fragment = current();
+        if (fragment == null || limit == 0) {
+            return -1;
+        }
+        if (limit > 0) {
+            limit--;
+        }
+        return fragment.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int amount) {
+        if (amount == 0) {
+            return 0;
+        }
+        if (limit >= 0) {
+            amount = Math.min(amount, limit);
+        }
+        int read = 0;
+        ByteBuffer fragment;
+        while (read < amount && (fragment = current()) != null) {
+            int part = Math.min(amount - read, fragment.remaining());
+            fragment.get(bytes, offset + read, part);
+            read += part;
+        }
+        if (limit > 0) {
+            limit -= read;
+        }
+        return read == 0 ? -1 : read;
+    }
+
+    @Override
+    public int available() {
+        int available = 0;
+        for (int i = index; payload != null && i < payload.count(); i++) {
+            available += payload.part(i).remaining();
+        }
+        return limit >= 0 ? Math.min(available, limit) : available;
+    }
+}
@@ -0,0 +1,149 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * writes a payload straight into pooled fragments, leaving room for the header of a {@link Fragmenter} in front of
+ * each, so a package is encoded without copying it into an array first.
+ * <p>
+ * a payload is written after {@link #begin()}, sealed with {@link #finish}, after which its fragments are ready to be
+ * sent, and given back to the pool with {@link #release()}. Bytes past {@link Fragmenter#MAX_PAYLOAD_SIZE} are
+ * counted but not kept, see {@link #isOverflowed()}.
+ * */
+public class FragmentOutputStream extends OutputStream {
+    /**
+     * the pool the fragments come from
+     * */
+    private final BufferPool pool;
+
+    /**
+     * the fragments of the payload, the first {@link #count} of them
+     * */
+    private final ByteBuffer[] fragments = new ByteBuffer[Fragmenter.MAX_FRAGMENTS];
+
+    /**
+     * the amount of fragments in use
+     * */
+    private int count;
+
+    /**
+     * the amount of payload bytes written, including those that did not fit
+     * */
+    private int length;
+
+    /**
+     * @param pool the pool the fragments come from. Its buffers have to fit a whole datagram
+     * */
+    public FragmentOutputStream(BufferPool pool) {
+        if (pool.getBufferSize() < Fragmenter.MAX_DATAGRAM_SIZE) {
+            throw new IllegalArgumentException("Buffers of " + pool.getBufferSize() + " bytes cannot hold a fragment");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * starts a new payload, giving back the fragments of the previous one
+     * */
+    public void begin() {
+        release();
+    }
+
+    @Override
+    public void write(int b) {
+        ByteBuffer fragment = current();
+        if (fragment != null) {
+            fragment.put((byte) b);
+        }
+        length++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int amount) {
+        length += amount;
+        while (amount > 0) {
+            ByteBuffer fragment = current();
+            if (fragment == null) {
+                return;
+            }
+            int part = Math.min(amount, fragment.remaining());
+            fragment.put(bytes, offset, part);
+            offset += part;
+            amount -= part;
+        }
+    }
+
+    /**
+     * @return the fragment to write the next byte into, a new one if the last is full, null if the payload is full
+     * */
+    private ByteBuffer current() {
+        if (count > 0 && fragments[count - 1].hasRemaining()) {
+            return fragments[count - 1];
+        }
+        if (count == fragments.length) {
+            return null;
+        }
+        ByteBuffer fragment = pool.acquire();
+        fragment.limit(Fragmenter.MAX_DATAGRAM_SIZE).position(Fragmenter.HEADER_SIZE);
+        fragments[count++] = fragment;
+        return fragment;
+    }
+
+    /**
+     * writes the headers and makes the fragments ready to be sent. An empty payload still gets a fragment.
+     * @param sequence the sequence number of the payload
+     * @param ack the sequence number of the last payload received from the other side, -1 if none
+     * @return the amount of fragments
+     * */
+    public int finish(int sequence, int ack) {
+        if (count == 0) {
+            current();
+        }
+        for (int index = 0; index < count; index++) {
+            Fragmenter.writeHeader(fragments[index], sequence, ack, index, count);
+            fragments[index].flip();
+        }
+        return count;
+    }
+
+    /**
+     * @param index the index of a fragment
+     * @return the fragment, from its header to its end once finished
+     * */
+    public ByteBuffer fragment(int index) {
+        return fragments[index];
+    }
+
+    /**
+     * @return the amount of payload bytes written, including those that did not fit
+     * */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return whether the payload is larger than {@link Fragmenter#MAX_PAYLOAD_SIZE}, so it cannot be sent
+     * */
+    public boolean isOverflowed() {
+        return length > Fragmenter.MAX_PAYLOAD_SIZE;
+    }
+
+    /**
+     * gives the fragments back to the pool
+     * */
+    public void release() {
+        for (int index = 0; index < count; index++) {
+            pool.release(fragments[index]);
+            fragments[index] = null;
+        }
+        count = 0;
+        length = 0;
+    }
+
+    /**
+     * does nothing, so an {@link java.io.ObjectOutputStream} on top can be closed without losing the fragments
+     * */
+    @Override
+    public void close() {
+    }
+}
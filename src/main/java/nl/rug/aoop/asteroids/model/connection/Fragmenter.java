@@ -0,0 +1,123 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * splits a payload that is too big for a single datagram into fragments that fit in the MTU.
+ * <p>
+ * every fragment starts with a header holding
+ * <li>the sequence number of the payload</li>
+ * <li>the sequence number of the last payload received from the other side, used to measure the round trip time</li>
+ * <li>the index of the fragment</li>
+ * <li>the amount of fragments the payload was split into</li>
+ * so that a {@link FragmentAssembler} on the other side can put the payload back together.
+ * */
+public class Fragmenter {
+    /**
+     * size of the header in front of every fragment: sequence (int), ack (int), index (short) and count (short)
+     * */
+    public static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Short.BYTES;
+
+    /**
+     * the amount of payload bytes in a fragment. Together with the header and the IP and UDP headers this stays
+     * below the minimum MTU of IPv6, so fragments are never split up by the network itself
+     * */
+    public static final int MAX_FRAGMENT_PAYLOAD = 1200;
+
+    /**
+     * the largest datagram sent or received
+     * */
+    public static final int MAX_DATAGRAM_SIZE = HEADER_SIZE + MAX_FRAGMENT_PAYLOAD;
+
+    /**
+     * the maximum amount of fragments a payload can be split into. The more fragments, the more likely it is that
+     * one of them gets lost and the whole payload has to be dropped
+     * */
+    public static final int MAX_FRAGMENTS = 64;
+
+    /**
+     * the largest payload that can be sent
+     * */
+    public static final int MAX_PAYLOAD_SIZE = MAX_FRAGMENTS * MAX_FRAGMENT_PAYLOAD;
+
+    /**
+     * the sequence number of the next payload
+     * */
+    private int nextSequence;
+
+    /**
+     * @return the sequence number the next payload will get
+     * */
+    public synchronized int peekSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * @return the sequence number for the next payload, which the one after gets one higher
+     * */
+    public synchronized int nextSequence() {
+        return nextSequence++;
+    }
+
+    /**
+     * @param datagram a fragment made by a fragmenter, at least {@link #HEADER_SIZE} long
+     * @return the sequence number of the payload the fragment belongs to
+     * */
+    public static int sequenceOf(byte[] datagram) {
+        return ByteBuffer.wrap(datagram).getInt();
+    }
+
+    /**
+     * @param datagram a fragment made by a fragmenter, from its position on, at least {@link #HEADER_SIZE} long
+     * @return the sequence number of the payload the fragment belongs to
+     * */
+    public static int sequenceOf(ByteBuffer datagram) {
+        return datagram.getInt(datagram.position());
+    }
+
+    /**
+     * writes the header at the start of a fragment, without moving its position
+     * @param fragment the buffer holding the fragment from index 0
+     * @param sequence the sequence number of the payload
+     * @param ack the sequence number of the last payload received from the other side, -1 if none
+     * @param index the index of the fragment
+     * @param count the amount of fragments of the payload
+     * */
+    public static void writeHeader(ByteBuffer fragment, int sequence, int ack, int index, int count) {
+        fragment.putInt(0, sequence);
+        fragment.putInt(Integer.BYTES, ack);
+        fragment.putShort(2 * Integer.BYTES, (short) index);
+        fragment.putShort(2 * Integer.BYTES + Short.BYTES, (short) count);
+    }
+
+    /**
+     * splits the payload into fragments, each with a header in front
+     * @param payload the bytes to send
+     * @param ack the sequence number of the last payload received from the other side, -1 if none
+     * @return the datagrams to send, in order
+     * @throws IllegalArgumentException if the payload is larger than {@link #MAX_PAYLOAD_SIZE}
+     * */
+    public synchronized List<byte[]> split(byte[] payload, int ack) {
+        if (payload.length > MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("Payload of " + payload.length + " bytes does not fit in "
+                    + MAX_FRAGMENTS + " fragments");
+        }
+        int count = Math.max(1, (payload.length + MAX_FRAGMENT_PAYLOAD - 1) / MAX_FRAGMENT_PAYLOAD);
+        int sequence = nextSequence++;
+        List<byte[]> fragments = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            int offset = index * MAX_FRAGMENT_PAYLOAD;
+            int length = Math.min(MAX_FRAGMENT_PAYLOAD, payload.length - offset);
+            ByteBuffer fragment = ByteBuffer.allocate(HEADER_SIZE + length);
+            fragment.putInt(sequence);
+            fragment.putInt(ack);
+            fragment.putShort((short) index);
+            fragment.putShort((short) count);
+            fragment.put(payload, offset, length);
+            fragments.add(fragment.array());
+        }
+        return fragments;
+    }
+}
@@ -0,0 +1,56 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+/**
+ * how often a side that has nothing else to send lets the other side know it is still there, and how long a side
+ * may stay silent before it is given up on.
+ * <p>
+ * both can be changed with the system properties {@value #INTERVAL_PROPERTY} and {@value #TIMEOUT_PROPERTY}, in ms.
+ * @param intervalMillis the time in between two heartbeats, also how long a receive waits before checking the timeout
+ * @param timeoutMillis the time without receiving anything after which the other side counts as gone
+ * */
+public record HeartbeatSettings(long intervalMillis, long timeoutMillis) {
+    /**
+     * the system property to set the heartbeat interval with
+     * */
+    public static final String INTERVAL_PROPERTY = "asteroids.heartbeat.interval";
+
+    /**
+     * the system property to set the timeout with
+     * */
+    public static final String TIMEOUT_PROPERTY = "asteroids.heartbeat.timeout";
+
+    /**
+     * the heartbeat interval when none is set
+     * */
+    public static final long DEFAULT_INTERVAL_MILLIS = 250;
+
+    /**
+     * the timeout when none is set. Long enough to ride out a short hiccup of the network
+     * */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * @throws IllegalArgumentException if the interval is not positive or not shorter than the timeout
+     * */
+    public HeartbeatSettings {
+        if (intervalMillis <= 0 || timeoutMillis <= intervalMillis) {
+            throw new IllegalArgumentException("Heartbeat interval " + intervalMillis
+                    + " ms has to be positive and shorter than the timeout of " + timeoutMillis + " ms");
+        }
+    }
+
+    /**
+     * @return the settings given with the system properties, the defaults for the ones not given
+     * */
+    public static HeartbeatSettings configured() {
+        return new HeartbeatSettings(Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL_MILLIS),
+                Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * @return the heartbeat interval as socket timeout
+     * */
+    public int socketTimeout() {
+        return (int) Math.min(Integer.MAX_VALUE, intervalMillis);
+    }
+}
@@ -0,0 +1,174 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.net.BindException;
+import java.net.InetAddress;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a network that only exists in memory, so a host and its clients can play in a single process without sockets,
+ * ports of the OS or waiting for real time to pass.
+ * <p>
+ * datagrams are never lost and arrive in order. Time stands still until {@link #advance} is called: heartbeats are
+ * only due, timeouts only expire and silent clients are only reaped once the time is moved past them. That makes a
+ * test of a host with clients run the same way every time.
+ * */
+public class LoopbackNetwork implements TransportFactory {
+    /**
+     * the time the network starts at. Not 0, as 0 means "never" to the handlers
+     * */
+    private static final Instant START = Instant.parse("2000-01-01T00:00:00Z");
+
+    /**
+     * the first port handed out when any free port is asked for
+     * */
+    private static final int FIRST_FREE_PORT = 49152;
+
+    /**
+     * the address all transports have
+     * */
+    private final InetAddress address = InetAddress.getLoopbackAddress();
+
+    /**
+     * the open transports, by port
+     * */
+    private final Map<Integer, LoopbackTransport> transports = new ConcurrentHashMap<>();
+
+    /**
+     * the port handed out next when any free port is asked for
+     * */
+    private final AtomicInteger nextPort = new AtomicInteger(FIRST_FREE_PORT);
+
+    /**
+     * the time of the network in ms
+     * */
+    private final AtomicLong millis = new AtomicLong(START.toEpochMilli());
+
+    /**
+     * reads the time of the network
+     * */
+    private final Clock clock = new NetworkClock(ZoneOffset.UTC);
+
+    /**
+     * opens a transport on this network
+     * @param port the port to receive on, 0 for any free port
+     * @return the transport
+     * @throws BindException if the port is taken
+     * */
+    @Override
+    public LoopbackTransport open(int port) throws BindException {
+        while (port == 0) {
+            int free = nextPort.getAndIncrement();
+            if (!transports.containsKey(free)) {
+                port = free;
+            }
+        }
+        LoopbackTransport transport = new LoopbackTransport(this, port);
+        if (transports.putIfAbsent(port, transport) != null) {
+            throw new BindException("Port " + port + " is already taken");
+        }
+        return transport;
+    }
+
+    /**
+     * @return the clock the handlers on this network read the time from. It only moves with {@link #advance}
+     * */
+    @Override
+    public Clock clock() {
+        return clock;
+    }
+
+    /**
+     * moves the time forward and wakes up every transport waiting for a datagram, so their timeouts can expire
+     * @param delta the time in ms
+     * */
+    public void advance(long delta) {
+        if (delta < 0) {
+            throw new IllegalArgumentException("Time cannot go back");
+        }
+        millis.addAndGet(delta);
+        transports.values().forEach(LoopbackTransport::wake);
+    }
+
+    /**
+     * @return the address all transports on this network have
+     * */
+    public InetAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * @return the amount of open transports
+     * */
+    public int size() {
+        return transports.size();
+    }
+
+    /**
+     * hands a datagram to the transport on its port. Like on a real network, a datagram to a port nobody
+     * listens on is lost.
+     * @param port the port the datagram is sent to
+     * @param datagram the datagram
+     * */
+    void deliver(int port, LoopbackTransport.Datagram datagram) {
+        LoopbackTransport receiver = transports.get(port);
+        if (receiver != null) {
+            receiver.accept(datagram);
+        }
+    }
+
+    /**
+     * frees the port of a closed transport
+     * @param transport the transport
+     * */
+    void release(LoopbackTransport transport) {
+        transports.remove(transport.getLocalPort(), transport);
+    }
+
+    /**
+     * @return the time of the network in ms
+     * */
+    long millis() {
+        return millis.get();
+    }
+
+    /**
+     * a clock showing the time of the network
+     * */
+    private class NetworkClock extends Clock {
+        /**
+         * the zone the time is shown in
+         * */
+        private final ZoneId zone;
+
+        private NetworkClock(ZoneId zone) {
+            this.zone = zone;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return new NetworkClock(zone);
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+    }
+}
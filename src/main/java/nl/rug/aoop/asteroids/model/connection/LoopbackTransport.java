@@ -0,0 +1,167 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * a transport on a {@link LoopbackNetwork}. Datagrams sent to it wait in a lock-free queue until they are received.
+ * Only one thread should receive at a time, like with a socket.
+ * */
+public class LoopbackTransport implements Transport {
+    /**
+     * a datagram on its way
+     * @param data the bytes, not shared with the sender
+     * @param from the address and port it was sent from
+     * */
+    record Datagram(byte[] data, InetSocketAddress from) {}
+
+    /**
+     * the network this transport is on
+     * */
+    private final LoopbackNetwork network;
+
+    /**
+     * the port this transport receives on
+     * */
+    private final int port;
+
+    /**
+     * the address and port datagrams sent through this transport come from
+     * */
+    private final InetSocketAddress address;
+
+    /**
+     * the datagrams that arrived and were not received yet
+     * */
+    private final Queue<Datagram> inbox = new ConcurrentLinkedQueue<>();
+
+    /**
+     * the thread waiting in {@link #receive}, null if none
+     * */
+    private volatile Thread receiver;
+
+    /**
+     * the longest time in ms {@link #receive} waits, 0 to wait forever
+     * */
+    private volatile int timeout;
+
+    /**
+     * indicates whether the transport is closed
+     * */
+    private volatile boolean closed;
+
+    /**
+     * @param network the network this transport is on
+     * @param port the port this transport receives on
+     * */
+    LoopbackTransport(LoopbackNetwork network, int port) {
+        this.network = network;
+        this.port = port;
+        this.address = new InetSocketAddress(network.getAddress(), port);
+    }
+
+    /**
+     * puts a copy of the datagram in the queue of the transport on its port
+     * @param datagram the datagram to send
+     * @param target the address and port to send to, only the port matters on this network
+     * */
+    @Override
+    public void send(ByteBuffer datagram, InetSocketAddress target) throws SocketException {
+        if (closed) {
+            throw new SocketException("Socket is closed");
+        }
+        byte[] data = new byte[datagram.remaining()];
+        datagram.get(data);
+        network.deliver(target.getPort(), new Datagram(data, address));
+    }
+
+    /**
+     * takes the oldest datagram from the queue, waiting until one arrives, the transport closes or the network time
+     * passed the timeout
+     * @param into the buffer to receive in. A datagram longer than the space left is cut off, like with a socket
+     * */
+    @Override
+    public InetSocketAddress receive(ByteBuffer into) throws IOException {
+        long deadline = timeout == 0 ? Long.MAX_VALUE : network.millis() + timeout;
+        receiver = Thread.currentThread();
+        try {
+            Datagram datagram;
+            while ((datagram = inbox.poll()) == null) {
+                if (closed) {
+                    throw new SocketException("Socket closed");
+                }
+                if (network.millis() >= deadline) {
+                    throw new SocketTimeoutException("Receive timed out");
+                }
+                LockSupport.park(this);
+            }
+            into.put(datagram.data(), 0, Math.min(datagram.data().length, into.remaining()));
+            return datagram.from();
+        } finally {
+            receiver = null;
+        }
+    }
+
+    /**
+     * queues a datagram sent to this transport and wakes up the thread waiting for it
+     * @param datagram the datagram
+     * */
+    void accept(Datagram datagram) {
+        if (!closed) {
+            inbox.offer(datagram);
+            wake();
+        }
+    }
+
+    /**
+     * makes the thread waiting in {@link #receive} look again at the queue, the time and whether it closed
+     * */
+    void wake() {
+        Thread waiting = receiver;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    @Override
+    public void setSoTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public int getLocalPort() {
+        return port;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        network.release(this);
+        wake();
+    }
+
+    /**
+     * @return whether a thread waits in {@link #receive}, so a test knows when moving the time makes it time out
+     * */
+    public boolean isWaiting() {
+        return receiver != null;
+    }
+
+    /**
+     * @return the amount of datagrams waiting to be received
+     * */
+    public int getQueued() {
+        return inbox.size();
+    }
+}
@@ -0,0 +1,59 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * a read only view of a list with a range of elements left out.
+ * <p>
+ * used to give every client a view of the shared {@link WorldSnapshot} without its own objects, without copying.
+ * When sent over, only the elements in the view are written.
+ * */
+class MaskedList<T> extends AbstractList<T> implements Serializable {
+    /**
+     * the list this is a view of
+     * */
+    private final List<T> backing;
+
+    /**
+     * index of the first element left out
+     * */
+    private final int from;
+
+    /**
+     * the amount of elements left out
+     * */
+    private final int length;
+
+    /**
+     * @param backing the list to make a view of
+     * @param from index of the first element to leave out
+     * @param to index after the last element to leave out
+     * */
+    MaskedList(List<T> backing, int from, int to) {
+        this.backing = backing;
+        this.from = from;
+        this.length = to - from;
+    }
+
+    @Override
+    public T get(int index) {
+        return backing.get(index < from ? index : index + length);
+    }
+
+    @Override
+    public int size() {
+        return backing.size() - length;
+    }
+
+    /**
+     * sends a plain copy of the view, instead of the whole backing list
+     * */
+    @Serial
+    private Object writeReplace() {
+        return new ArrayList<>(this);
+    }
+}
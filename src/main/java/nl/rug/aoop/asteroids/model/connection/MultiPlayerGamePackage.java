@@ -1,12 +1,19 @@
 package nl.rug.aoop.asteroids.model.connection;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 import nl.rug.aoop.asteroids.model.gameobjects.Asteroid;
 
 import java.awt.geom.Point2D;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * a package that holds information about more than 1 player
@@ -19,6 +26,18 @@ public class MultiPlayerGamePackage implements Serializable {
      * */
     private final boolean ownShipDestroyed;
 
+    /**
+     * network id of the receivers own spaceship
+     * */
+    @Setter
+    private int ownShipId;
+
+    /**
+     * slot of the receivers own spaceship, which decides its colour
+     * */
+    @Setter
+    private int ownSlot;
+
     /**
      * a list of booleans each of which indicate whether a spaceship
      * is accelerating.
@@ -37,16 +56,51 @@ public class MultiPlayerGamePackage implements Serializable {
      * */
     private List<Point2D.Double> spaceShips;
 
+    /**
+     * a list of each ships' network id
+     * */
+    private List<Integer> shipIds;
+
+    /**
+     * a list of each ships' slot, which decides its colour
+     * */
+    private List<Integer> slots;
+
     /**
      * a list of each bullets' location
      * */
     private List<Point2D.Double> bullets;
 
+    /**
+     * a list of each bullets' network id
+     * */
+    private List<Integer> bulletIds;
+
+    /**
+     * a list of each bullets' velocity, in pixels per tick
+     * */
+    private List<Point2D.Double> bulletVelocities;
+
+    /**
+     * a list of the network ids of the spaceships that fired each bullet
+     * */
+    private List<Integer> bulletOwnerIds;
+
     /**
      * a list of each asteroids' location
      * */
     private List<Point2D.Double> asteroids;
 
+    /**
+     * a list of each asteroids' network id
+     * */
+    private List<Integer> asteroidIds;
+
+    /**
+     * a list of each asteroids' velocity, in pixels per tick
+     * */
+    private List<Point2D.Double> asteroidVelocities;
+
     /**
      * a list of each asteroids' direction.
      * <p>Needed to draw the non basic circle asteroid</p>
@@ -78,7 +132,49 @@ public class MultiPlayerGamePackage implements Serializable {
      */
     private final List<String> enemiesNames;
 
+    /**
+     * network ids of the objects that were in the previous package sent to the same receiver, but are gone now
+     * */
+    private final List<Integer> despawnedIds;
+
+    /**
+     * indicates whether asteroids or bullets were left out to make the package fit in a datagram.
+     * Objects missing from a trimmed package are not gone, they are just not sent this time.
+     * */
+    @Setter(AccessLevel.PACKAGE)
+    private boolean trimmed;
+
+    /**
+     * indicates whether asteroids were left out because the receiver can still move them on with the velocity it
+     * received last, see {@link DeadReckoning}. Asteroids missing from such a package are not gone
+     * */
+    @Setter(AccessLevel.PACKAGE)
+    private boolean reckoned;
+
+    /**
+     * the network ids of the asteroids that were left out because the receiver can move them on itself.
+     * Not sent over.
+     * */
+    private transient List<Integer> reckonedIds;
 
+    /**
+     * the tick of the host the package was made at
+     * */
+    @Setter(AccessLevel.PACKAGE)
+    private int hostTick;
+
+    /**
+     * the times the receiver needs to compare its clock with the clock of the host, set when the package is sent
+     * */
+    @Setter(AccessLevel.PACKAGE)
+    private ClockStamp clockStamp;
+
+    /**
+     * the location of the receivers own spaceship. Objects far away from it are the first ones to be left out.
+     * Not sent over.
+     * */
+    @Setter
+    private transient Point2D.Double focus;
 
     /**
      * creates a multiplayer game package to send to a client
@@ -91,6 +187,8 @@ public class MultiPlayerGamePackage implements Serializable {
      * @param singlePlayerPackages the single player packages to make a multiplayer package from
      * @param asteroids the asteroids of the game
      * @param bullets the bullets of the game
+     * @param bulletIds the network ids of the bullets
+     * @param bulletOwnerIds the network ids of the spaceships that fired the bullets
      * */
     public MultiPlayerGamePackage(boolean ownShipDestroyed,
                                   String ownName,
@@ -99,25 +197,183 @@ public class MultiPlayerGamePackage implements Serializable {
                                   List<Integer> enemiesScores,
                                   List<SinglePlayerPackage> singlePlayerPackages,
                                   List<Asteroid> asteroids,
-                                  List<Point2D.Double> bullets
+                                  List<Point2D.Double> bullets,
+                                  List<Integer> bulletIds,
+                                  List<Integer> bulletOwnerIds
     ) {
         this.ownShipDestroyed = ownShipDestroyed;
         this.ownScore = ownScore;
         this.ownName = ownName;
         extractSpaceShipInfo(singlePlayerPackages);
+        this.slots = new ArrayList<>();
         extractAsteroidsInfo(asteroids);
-        extractBulletsInfo(bullets);
+        extractBulletsInfo(bullets, bulletIds, bulletOwnerIds);
+        this.bulletVelocities = new ArrayList<>(bullets.size());
+        bullets.forEach(bullet -> bulletVelocities.add(new Point2D.Double()));
         this.enemiesScores = enemiesScores;
         this.enemiesNames = enemiesNames;
+        this.despawnedIds = new ArrayList<>();
+    }
+
+    /**
+     * creates a multiplayer game package from lists that were already extracted, used by the {@link WorldSnapshot}
+     * to share its lists between the packages of all clients
+     * */
+    MultiPlayerGamePackage(boolean ownShipDestroyed,
+                           String ownName,
+                           int ownScore,
+                           List<String> enemiesNames,
+                           List<Integer> enemiesScores,
+                           List<Point2D.Double> spaceShips,
+                           List<Integer> shipIds,
+                           List<Integer> slots,
+                           List<Double> directions,
+                           List<Boolean> isAccList,
+                           List<Point2D.Double> asteroids,
+                           List<Integer> asteroidIds,
+                           List<Point2D.Double> asteroidVelocities,
+                           List<Double> asteroidsDirection,
+                           List<Double> asteroidRadius,
+                           List<Point2D.Double> bullets,
+                           List<Integer> bulletIds,
+                           List<Integer> bulletOwnerIds,
+                           List<Point2D.Double> bulletVelocities
+    ) {
+        this.ownShipDestroyed = ownShipDestroyed;
+        this.ownName = ownName;
+        this.ownScore = ownScore;
+        this.enemiesNames = enemiesNames;
+        this.enemiesScores = enemiesScores;
+        this.spaceShips = spaceShips;
+        this.shipIds = shipIds;
+        this.slots = slots;
+        this.directions = directions;
+        this.isAccList = isAccList;
+        this.asteroids = asteroids;
+        this.asteroidIds = asteroidIds;
+        this.asteroidVelocities = asteroidVelocities;
+        this.asteroidsDirection = asteroidsDirection;
+        this.asteroidRadius = asteroidRadius;
+        extractBulletsInfo(bullets, bulletIds, bulletOwnerIds);
+        this.bulletVelocities = bulletVelocities;
+        this.despawnedIds = new ArrayList<>();
+    }
+
+    /**
+     * @return the network ids of all objects in this package, and of the asteroids left out because the receiver can
+     * move them on itself
+     * */
+    public Set<Integer> getNetworkIds() {
+        Set<Integer> ids = new HashSet<>(shipIds.size() + bulletIds.size() + asteroidIds.size());
+        ids.addAll(shipIds);
+        ids.addAll(bulletIds);
+        ids.addAll(asteroidIds);
+        if (reckonedIds != null) {
+            ids.addAll(reckonedIds);
+        }
+        return ids;
+    }
+
+    /**
+     * leaves out the half of the least important objects. Bullets go first, since they live shortly
+     * and are updated again soon, then the asteroids. Objects far away from {@link #focus} are the least important.
+     * Spaceships are never left out.
+     *
+     * @return false if there was nothing left to leave out
+     * */
+    public boolean dropLeastImportant() {
+        if (!bullets.isEmpty()) {
+            List<Integer> keep = nearest(bullets);
+            bullets = select(bullets, keep);
+            bulletIds = select(bulletIds, keep);
+            bulletOwnerIds = select(bulletOwnerIds, keep);
+            bulletVelocities = select(bulletVelocities, keep);
+        } else if (!asteroids.isEmpty()) {
+            List<Integer> keep = nearest(asteroids);
+            asteroids = select(asteroids, keep);
+            asteroidIds = select(asteroidIds, keep);
+            asteroidVelocities = select(asteroidVelocities, keep);
+            asteroidsDirection = select(asteroidsDirection, keep);
+            asteroidRadius = select(asteroidRadius, keep);
+        } else {
+            return false;
+        }
+        trimmed = true;
+        return true;
+    }
+
+    /**
+     * keeps only the bullets and asteroids at the given indices, as picked by a {@link PriorityAccumulator}
+     * @param bulletIndices the indices of the bullets to keep, in their original order
+     * @param asteroidIndices the indices of the asteroids to keep, in their original order
+     * */
+    public void retain(List<Integer> bulletIndices, List<Integer> asteroidIndices) {
+        if (bulletIndices.size() < bullets.size()) {
+            bullets = select(bullets, bulletIndices);
+            bulletIds = select(bulletIds, bulletIndices);
+            bulletOwnerIds = select(bulletOwnerIds, bulletIndices);
+            bulletVelocities = select(bulletVelocities, bulletIndices);
+            trimmed = true;
+        }
+        if (asteroidIndices.size() < asteroids.size()) {
+            asteroids = select(asteroids, asteroidIndices);
+            asteroidIds = select(asteroidIds, asteroidIndices);
+            asteroidVelocities = select(asteroidVelocities, asteroidIndices);
+            asteroidsDirection = select(asteroidsDirection, asteroidIndices);
+            asteroidRadius = select(asteroidRadius, asteroidIndices);
+            trimmed = true;
+        }
+    }
+
+    /**
+     * leaves out the asteroids the receiver can move on itself, as decided by a {@link DeadReckoning}
+     * @param asteroidIndices the indices of the asteroids to keep, in their original order
+     * @param reckonedIds the network ids of the asteroids left out
+     * */
+    void leaveOutReckoned(List<Integer> asteroidIndices, List<Integer> reckonedIds) {
+        asteroids = select(asteroids, asteroidIndices);
+        asteroidIds = select(asteroidIds, asteroidIndices);
+        asteroidVelocities = select(asteroidVelocities, asteroidIndices);
+        asteroidsDirection = select(asteroidsDirection, asteroidIndices);
+        asteroidRadius = select(asteroidRadius, asteroidIndices);
+        this.reckonedIds = reckonedIds;
+        reckoned = true;
+    }
+
+    /**
+     * @param locations the locations of the objects
+     * @return the indices of the nearest half of the locations to {@link #focus}, in their original order
+     * */
+    private List<Integer> nearest(List<Point2D.Double> locations) {
+        Point2D.Double center = focus == null ? new Point2D.Double() : focus;
+        return IntStream.range(0, locations.size())
+                .boxed()
+                .sorted(Comparator.comparingDouble(i -> locations.get(i).distanceSq(center)))
+                .limit(locations.size() / 2)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the elements of the list at the given indices
+     * */
+    private static <T> List<T> select(List<T> list, List<Integer> indices) {
+        List<T> selected = new ArrayList<>(indices.size());
+        indices.forEach(i -> selected.add(list.get(i)));
+        return selected;
     }
 
     /**
      * extracts the bullets' location from the list
      *
      * @param bullets the bullets to add
+     * @param bulletIds the network ids of the bullets
+     * @param bulletOwnerIds the network ids of the spaceships that fired the bullets
      * */
-    private void extractBulletsInfo(List<Point2D.Double> bullets) {
+    private void extractBulletsInfo(List<Point2D.Double> bullets, List<Integer> bulletIds, List<Integer> bulletOwnerIds) {
         this.bullets = bullets;
+        this.bulletIds = bulletIds;
+        this.bulletOwnerIds = bulletOwnerIds;
     }
 
     /**
@@ -128,10 +384,14 @@ public class MultiPlayerGamePackage implements Serializable {
      * */
     private void extractAsteroidsInfo(List<Asteroid> asteroids) {
         this.asteroids = new ArrayList<>();
+        asteroidIds = new ArrayList<>();
+        asteroidVelocities = new ArrayList<>();
         asteroidsDirection = new ArrayList<>();
         asteroidRadius = new ArrayList<>();
         asteroids.forEach(asteroid -> {
             this.asteroids.add(asteroid.getLocation());
+            this.asteroidIds.add(asteroid.getNetworkId());
+            this.asteroidVelocities.add(asteroid.getVelocity());
             this.asteroidRadius.add(asteroid.getRadius());
             this.asteroidsDirection.add(asteroid.getDirectionAngle());
         });
@@ -144,10 +404,12 @@ public class MultiPlayerGamePackage implements Serializable {
      * */
     private void extractSpaceShipInfo(List<SinglePlayerPackage> singlePlayerPackages) {
         spaceShips = new ArrayList<>();
+        shipIds = new ArrayList<>();
         directions = new ArrayList<>();
         isAccList = new ArrayList<>();
         singlePlayerPackages.forEach(player -> {
             spaceShips.add(player.getSpaceShip());
+            shipIds.add(player.getShipId());
             directions.add(player.getDirection());
             isAccList.add(player.isAcc);
         });
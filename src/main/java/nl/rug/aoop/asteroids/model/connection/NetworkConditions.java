@@ -0,0 +1,112 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import lombok.extern.java.Log;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * how bad a network is in one direction, as simulated by a {@link SimulatedTransport}. When both sides simulate the
+ * same conditions, the round trip takes twice the delay.
+ * <p>
+ * the game and the dedicated server play over one of the presets when it is picked with the system property
+ * {@value #PROPERTY}, for example {@code -Dasteroids.network=cross-continent}.
+ * @param delayMillis the time a datagram takes to arrive in ms
+ * @param jitterMillis the most the delay of a datagram differs from {@code delayMillis}, either way
+ * @param lossRate the fraction of datagrams that never arrive
+ * @param duplicateRate the fraction of datagrams that arrive twice
+ * @param reorderRate the fraction of datagrams held back long enough for the next ones to overtake them
+ * */
+@Log
+public record NetworkConditions(long delayMillis, long jitterMillis, double lossRate, double duplicateRate,
+                                double reorderRate) {
+    /**
+     * the system property to pick a preset with
+     * */
+    public static final String PROPERTY = "asteroids.network";
+
+    /**
+     * nothing is delayed, lost, duplicated or reordered
+     * */
+    public static final NetworkConditions PERFECT = new NetworkConditions(0, 0, 0, 0, 0);
+
+    /**
+     * a wired local network
+     * */
+    public static final NetworkConditions LAN = new NetworkConditions(1, 1, 0, 0, 0);
+
+    /**
+     * a home connection to a server in the same country: 30 ms round trip, 0.5% loss
+     * */
+    public static final NetworkConditions BROADBAND = new NetworkConditions(15, 3, 0.005, 0, 0.001);
+
+    /**
+     * a server on another continent: 150 ms round trip, 2% loss
+     * */
+    public static final NetworkConditions CROSS_CONTINENT = new NetworkConditions(75, 10, 0.02, 0.001, 0.01);
+
+    /**
+     * a busy mobile network: 80 ms round trip with a lot of jitter, 5% loss
+     * */
+    public static final NetworkConditions MOBILE = new NetworkConditions(40, 30, 0.05, 0.005, 0.03);
+
+    /**
+     * the presets by name
+     * */
+    private static final Map<String, NetworkConditions> PRESETS = Map.of(
+            "perfect", PERFECT,
+            "lan", LAN,
+            "broadband", BROADBAND,
+            "cross-continent", CROSS_CONTINENT,
+            "mobile", MOBILE);
+
+    /**
+     * @throws IllegalArgumentException if a time is negative or a rate is not in between 0 and 1
+     * */
+    public NetworkConditions {
+        if (delayMillis < 0 || jitterMillis < 0) {
+            throw new IllegalArgumentException("Delay and jitter cannot be negative");
+        }
+        for (double rate : new double[]{lossRate, duplicateRate, reorderRate}) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("Rate " + rate + " is not in between 0 and 1");
+            }
+        }
+    }
+
+    /**
+     * @param name the name of a preset: perfect, lan, broadband, cross-continent or mobile
+     * @return the preset
+     * @throws IllegalArgumentException if there is no preset with that name
+     * */
+    public static NetworkConditions named(String name) {
+        NetworkConditions conditions = PRESETS.get(name.trim().toLowerCase(Locale.ROOT));
+        if (conditions == null) {
+            throw new IllegalArgumentException("No network profile " + name + ", pick one of " + PRESETS.keySet());
+        }
+        return conditions;
+    }
+
+    /**
+     * @return the preset picked with {@link #PROPERTY}, {@link #PERFECT} if none or an unknown one is picked
+     * */
+    public static NetworkConditions configured() {
+        String name = System.getProperty(PROPERTY);
+        if (name == null) {
+            return PERFECT;
+        }
+        try {
+            return named(name);
+        } catch (IllegalArgumentException e) {
+            log.warning(e.getMessage() + ", using the network as it is");
+            return PERFECT;
+        }
+    }
+
+    /**
+     * @return whether datagrams go through untouched
+     * */
+    public boolean isPerfect() {
+        return equals(PERFECT);
+    }
+}
@@ -0,0 +1,370 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.util.Arrays;
+
+/**
+ * statistics about a single connection, kept by its {@link TrafficHandler}.
+ * <p>
+ * measures
+ * <li>the round trip time, by matching the ack in received fragments with the time the acked payload was sent</li>
+ * <li>the jitter, the running average of the change in round trip time between two measurements</li>
+ * <li>the loss, the payloads that never came in</li>
+ * <li>the datagrams that came in out of order</li>
+ * <li>the bytes per second in and out</li>
+ * <li>the distribution of the snapshot sizes, in fragments</li>
+ * */
+public class NetworkStatistics {
+    /**
+     * the amount of sent payloads whose send time is remembered. Acks for older payloads are ignored.
+     * */
+    private static final int SEND_HISTORY = 256;
+
+    /**
+     * gain of the running average of the round trip time (same gain as TCP uses)
+     * */
+    private static final double RTT_SMOOTHING = 1.0 / 8.0;
+
+    /**
+     * gain of the running average of the jitter (same gain as RFC 3550 uses)
+     * */
+    private static final double JITTER_SMOOTHING = 1.0 / 16.0;
+
+    /**
+     * the length of the window over which the bytes per second are measured
+     * */
+    private static final long RATE_WINDOW_MILLIS = 1000;
+
+    /**
+     * the sequence numbers of the last sent payloads
+     * */
+    private final int[] sentSequences;
+
+    /**
+     * the times at which the payloads in {@link #sentSequences} were sent, -1 once acked
+     * */
+    private final long[] sentTimes;
+
+    /**
+     * the amount of snapshots sent or received per amount of fragments
+     * */
+    private final long[] snapshotSizes;
+
+    /**
+     * the smoothed round trip time in ms, 0 until measured
+     * */
+    private double rtt;
+
+    /**
+     * the last round trip time measured in ms, to compare the next one with
+     * */
+    private double lastRtt;
+
+    /**
+     * the running average of the change in round trip time in ms
+     * */
+    private double jitter;
+
+    /**
+     * whether a round trip time has been measured yet
+     * */
+    private boolean measuredRtt;
+
+    /**
+     * the amount of payloads that were put back together
+     * */
+    private long payloadsReceived;
+
+    /**
+     * the sequence number of the first payload received
+     * */
+    private int firstSequence;
+
+    /**
+     * the highest sequence number of a payload received
+     * */
+    private int highestSequence;
+
+    /**
+     * the sequence number of the newest payload a datagram was received of
+     * */
+    private int highestDatagramSequence;
+
+    /**
+     * whether anything has been received yet
+     * */
+    private boolean receivedAny;
+
+    /**
+     * the amount of datagrams that came in after a datagram of a newer payload
+     * */
+    private long outOfOrder;
+
+    /**
+     * the total amount of bytes received
+     * */
+    private long bytesIn;
+
+    /**
+     * the total amount of bytes sent
+     * */
+    private long bytesOut;
+
+    /**
+     * the time in ms the current window started at, -1 before the first datagram
+     * */
+    private long windowStart;
+
+    /**
+     * the bytes received in the current window
+     * */
+    private long windowBytesIn;
+
+    /**
+     * the bytes sent in the current window
+     * */
+    private long windowBytesOut;
+
+    /**
+     * the bytes received per second, measured over the last window
+     * */
+    private double bytesInPerSecond;
+
+    /**
+     * the bytes sent per second, measured over the last window
+     * */
+    private double bytesOutPerSecond;
+
+    /**
+     * the amount of snapshots sent or received
+     * */
+    private long snapshots;
+
+    /**
+     * the total size in bytes of the snapshots sent or received
+     * */
+    private long snapshotBytes;
+
+    /**
+     * the size of the largest snapshot in bytes
+     * */
+    private int largestSnapshot;
+
+    /**
+     * makes empty statistics
+     * */
+    public NetworkStatistics() {
+        sentSequences = new int[SEND_HISTORY];
+        sentTimes = new long[SEND_HISTORY];
+        Arrays.fill(sentTimes, -1);
+        snapshotSizes = new long[Fragmenter.MAX_FRAGMENTS + 1];
+        windowStart = -1;
+    }
+
+    /**
+     * remembers when a payload was sent, so the round trip time can be measured once it is acked
+     * @param sequence the sequence number of the payload
+     * @param now the current time in ms
+     * */
+    public synchronized void onPayloadSent(int sequence, long now) {
+        int slot = Math.floorMod(sequence, SEND_HISTORY);
+        sentSequences[slot] = sequence;
+        sentTimes[slot] = now;
+    }
+
+    /**
+     * counts the bytes of a sent datagram
+     * @param bytes the length of the datagram
+     * @param now the current time in ms
+     * */
+    public synchronized void onDatagramSent(int bytes, long now) {
+        bytesOut += bytes;
+        windowBytesOut += bytes;
+        updateRates(now);
+    }
+
+    /**
+     * counts the bytes of a received datagram, and whether it came in out of order
+     * @param bytes the length of the datagram
+     * @param sequence the sequence number of the payload the datagram belongs to
+     * @param now the current time in ms
+     * */
+    public synchronized void onDatagramReceived(int bytes, int sequence, long now) {
+        bytesIn += bytes;
+        windowBytesIn += bytes;
+        if (receivedAny && sequence - highestDatagramSequence < 0) {
+            outOfOrder++;
+        } else {
+            highestDatagramSequence = sequence;
+        }
+        updateRates(now);
+    }
+
+    /**
+     * counts a payload that was put back together, and measures the round trip time if it acks one of ours
+     * @param sequence the sequence number of the payload
+     * @param ack the sequence number of the last payload the other side received from us, -1 if none
+     * @param now the current time in ms
+     * */
+    public synchronized void onPayloadReceived(int sequence, int ack, long now) {
+        if (!receivedAny) {
+            firstSequence = sequence;
+            highestSequence = sequence;
+            highestDatagramSequence = sequence;
+            receivedAny = true;
+        } else if (sequence - highestSequence > 0) {
+            highestSequence = sequence;
+        }
+        payloadsReceived++;
+        int slot = Math.floorMod(ack, SEND_HISTORY);
+        if (ack >= 0 && sentSequences[slot] == ack && sentTimes[slot] >= 0) {
+            measureRtt(now - sentTimes[slot]);
+            sentTimes[slot] = -1;
+        }
+    }
+
+    /**
+     * adds the size of a snapshot to the distribution
+     * @param bytes the size of the snapshot
+     * */
+    public synchronized void onSnapshot(int bytes) {
+        int fragments = Math.max(1, (bytes + Fragmenter.MAX_FRAGMENT_PAYLOAD - 1) / Fragmenter.MAX_FRAGMENT_PAYLOAD);
+        snapshotSizes[Math.min(fragments, Fragmenter.MAX_FRAGMENTS)]++;
+        snapshots++;
+        snapshotBytes += bytes;
+        largestSnapshot = Math.max(largestSnapshot, bytes);
+    }
+
+    /**
+     * @param sample a new round trip time in ms
+     * */
+    private void measureRtt(double sample) {
+        if (!measuredRtt) {
+            rtt = sample;
+            measuredRtt = true;
+        } else {
+            rtt += (sample - rtt) * RTT_SMOOTHING;
+            jitter += (Math.abs(sample - lastRtt) - jitter) * JITTER_SMOOTHING;
+        }
+        lastRtt = sample;
+    }
+
+    /**
+     * recalculates the bytes per second once a window has passed
+     * @param now the current time in ms
+     * */
+    private void updateRates(long now) {
+        if (windowStart < 0) {
+            windowStart = now;
+            return;
+        }
+        long elapsed = now - windowStart;
+        if (elapsed >= RATE_WINDOW_MILLIS) {
+            bytesInPerSecond = windowBytesIn * 1000.0 / elapsed;
+            bytesOutPerSecond = windowBytesOut * 1000.0 / elapsed;
+            windowBytesIn = 0;
+            windowBytesOut = 0;
+            windowStart = now;
+        }
+    }
+
+    /**
+     * @return the smoothed round trip time in ms, 0 if not measured yet
+     * */
+    public synchronized double getRtt() {
+        return rtt;
+    }
+
+    /**
+     * @return the running average of the change in round trip time in ms
+     * */
+    public synchronized double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return the amount of payloads that were sent to us but never came in
+     * */
+    public synchronized long getLostPayloads() {
+        if (!receivedAny) {
+            return 0;
+        }
+        long expected = (highestSequence - firstSequence) + 1L;
+        return Math.max(0, expected - payloadsReceived);
+    }
+
+    /**
+     * @return the fraction of payloads sent to us that never came in
+     * */
+    public synchronized double getLossRate() {
+        if (!receivedAny) {
+            return 0.0;
+        }
+        return getLostPayloads() / (double) ((highestSequence - firstSequence) + 1L);
+    }
+
+    /**
+     * @return the amount of datagrams that came in after a datagram of a newer payload
+     * */
+    public synchronized long getOutOfOrder() {
+        return outOfOrder;
+    }
+
+    /**
+     * @return the bytes received per second, measured over the last window
+     * */
+    public synchronized double getBytesInPerSecond() {
+        return bytesInPerSecond;
+    }
+
+    /**
+     * @return the bytes sent per second, measured over the last window
+     * */
+    public synchronized double getBytesOutPerSecond() {
+        return bytesOutPerSecond;
+    }
+
+    /**
+     * @return the total amount of bytes received
+     * */
+    public synchronized long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * @return the total amount of bytes sent
+     * */
+    public synchronized long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * @return the amount of snapshots per amount of fragments they took, index 0 is always empty
+     * */
+    public synchronized long[] getSnapshotSizes() {
+        return snapshotSizes.clone();
+    }
+
+    /**
+     * @return the average size of a snapshot in bytes
+     * */
+    public synchronized double getAverageSnapshotSize() {
+        return snapshots == 0 ? 0.0 : snapshotBytes / (double) snapshots;
+    }
+
+    /**
+     * @return the size of the largest snapshot in bytes
+     * */
+    public synchronized int getLargestSnapshot() {
+        return largestSnapshot;
+    }
+
+    /**
+     * @return the statistics as a single line, to log or to draw
+     * */
+    public synchronized String summary() {
+        return String.format("rtt %.1f ms, jitter %.1f ms, loss %.1f%% (%d), out of order %d, "
+                        + "in %.1f kB/s, out %.1f kB/s, snapshots avg %.0f B max %d B",
+                rtt, jitter, getLossRate() * 100, getLostPayloads(), outOfOrder,
+                bytesInPerSecond / 1000, bytesOutPerSecond / 1000, getAverageSnapshotSize(), largestSnapshot);
+    }
+}
@@ -0,0 +1,220 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.awt.geom.Point2D;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * the way the small packages that go out every tick are sent: the {@link SinglePlayerPackage} of a client, and the
+ * {@link ControlPackage}s that carry control messages and their acknowledgements.
+ * <p>
+ * a frame starts with {@link #PLAYER_TAG} or {@link #CONTROL_TAG}, followed by the fields of the package one after
+ * the other, written straight into the pooled fragments instead of being serialized. A list the package may leave
+ * out is written as a length of -1, and a missing name or stamp as a false flag. A serialized package starts with a
+ * different byte, so both can be sent over the same channel.
+ * */
+class PackageFrame {
+    /**
+     * the first byte of a frame holding a {@link SinglePlayerPackage}
+     * */
+    static final int PLAYER_TAG = 'P';
+
+    /**
+     * the first byte of a frame holding a {@link ControlPackage}
+     * */
+    static final int CONTROL_TAG = 'C';
+
+    /**
+     * the kinds of control messages, by the number they are sent as
+     * */
+    private static final ControlMessage.Type[] TYPES = ControlMessage.Type.values();
+
+    private PackageFrame() {
+    }
+
+    /**
+     * writes the frame of a single player package
+     * @param out the stream to write to
+     * @param spp the package to write
+     * */
+    static void writePlayer(DataOutputStream out, SinglePlayerPackage spp) throws IOException {
+        out.write(PLAYER_TAG);
+        writePoint(out, spp.getSpaceShip());
+        out.writeDouble(spp.getDirection());
+        out.writeBoolean(spp.isAcc);
+        out.writeInt(spp.getShipId());
+        out.writeInt(spp.getSpaceShipStepsLeft());
+        out.writeBoolean(spp.isDestroyed());
+        out.writeInt(spp.getTick());
+        writeString(out, spp.getUserName());
+        ClockStamp stamp = spp.getClockStamp();
+        out.writeBoolean(stamp != null);
+        if (stamp != null) {
+            out.writeLong(stamp.echoed());
+            out.writeLong(stamp.received());
+            out.writeLong(stamp.sent());
+        }
+        writePoints(out, spp.getBullets());
+        writeInts(out, spp.getBulletIds());
+        writeInts(out, spp.getOwnBulletsStepsLeft());
+        writePoints(out, spp.getBulletVelocities());
+        writeInts(out, spp.getBulletFireTicks());
+    }
+
+    /**
+     * reads the frame of a single player package
+     * @param in the payload to read, starting with {@link #PLAYER_TAG}
+     * @return the package the frame holds
+     * */
+    static SinglePlayerPackage readPlayer(DataInputStream in) throws IOException {
+        in.read();
+        Point2D.Double spaceShip = readPoint(in);
+        double direction = in.readDouble();
+        boolean accelerating = in.readBoolean();
+        int shipId = in.readInt();
+        int spaceShipStepsLeft = in.readInt();
+        boolean destroyed = in.readBoolean();
+        int tick = in.readInt();
+        String userName = readString(in);
+        ClockStamp stamp = in.readBoolean() ? new ClockStamp(in.readLong(), in.readLong(), in.readLong()) : null;
+        List<Point2D.Double> bullets = readPoints(in);
+        List<Integer> bulletIds = readInts(in);
+        List<Integer> bulletsStepsLeft = readInts(in);
+        SinglePlayerPackage spp = new SinglePlayerPackage(spaceShip, direction, spaceShipStepsLeft, accelerating,
+                bullets, bulletIds, bulletsStepsLeft, userName);
+        spp.setShipId(shipId);
+        spp.setDestroyed(destroyed);
+        spp.setTick(tick);
+        spp.setClockStamp(stamp);
+        spp.setBulletVelocities(readPoints(in));
+        spp.setBulletFireTicks(readInts(in));
+        if (spp.getBullets() == null || spp.getBulletIds() == null) {
+            throw new InvalidObjectException("Player frame holds no bullets");
+        }
+        return spp;
+    }
+
+    /**
+     * writes the frame of a control package
+     * @param out the stream to write to
+     * @param messages the messages the other side has not acknowledged yet, oldest first
+     * @param ack the sequence number of the newest message received in order, -1 if none
+     * */
+    static void writeControl(DataOutputStream out, List<ControlMessage> messages, int ack) throws IOException {
+        out.write(CONTROL_TAG);
+        out.writeInt(ack);
+        out.writeInt(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            ControlMessage message = messages.get(i);
+            out.writeByte(message.type().ordinal());
+            out.writeInt(message.shipId());
+            writeString(out, message.name());
+            out.writeInt(message.sequence());
+        }
+    }
+
+    /**
+     * reads the frame of a control package
+     * @param in the payload to read, starting with {@link #CONTROL_TAG}
+     * @return the package the frame holds
+     * */
+    static ControlPackage readControl(DataInputStream in) throws IOException {
+        in.read();
+        int ack = in.readInt();
+        int count = count(in, Byte.BYTES + 2 * Integer.BYTES + 1);
+        if (count <= 0) {
+            return new ControlPackage(List.of(), ack);
+        }
+        List<ControlMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int type = in.readUnsignedByte();
+            if (type >= TYPES.length) {
+                throw new InvalidObjectException("Unknown control message type " + type);
+            }
+            messages.add(new ControlMessage(TYPES[type], in.readInt(), readString(in), in.readInt()));
+        }
+        return new ControlPackage(messages, ack);
+    }
+
+    private static void writePoint(DataOutputStream out, Point2D.Double point) throws IOException {
+        out.writeDouble(point.x);
+        out.writeDouble(point.y);
+    }
+
+    private static Point2D.Double readPoint(DataInputStream in) throws IOException {
+        return new Point2D.Double(in.readDouble(), in.readDouble());
+    }
+
+    private static void writePoints(DataOutputStream out, List<Point2D.Double> points) throws IOException {
+        out.writeInt(points == null ? -1 : points.size());
+        if (points != null) {
+            for (int i = 0; i < points.size(); i++) {
+                writePoint(out, points.get(i));
+            }
+        }
+    }
+
+    private static List<Point2D.Double> readPoints(DataInputStream in) throws IOException {
+        int count = count(in, 2 * Double.BYTES);
+        if (count < 0) {
+            return null;
+        }
+        List<Point2D.Double> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(readPoint(in));
+        }
+        return points;
+    }
+
+    private static void writeInts(DataOutputStream out, List<Integer> ints) throws IOException {
+        out.writeInt(ints == null ? -1 : ints.size());
+        if (ints != null) {
+            for (int i = 0; i < ints.size(); i++) {
+                out.writeInt(ints.get(i));
+            }
+        }
+    }
+
+    private static List<Integer> readInts(DataInputStream in) throws IOException {
+        int count = count(in, Integer.BYTES);
+        if (count < 0) {
+            return null;
+        }
+        List<Integer> ints = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ints.add(in.readInt());
+        }
+        return ints;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * reads the length of a list
+     * @param in the payload to read
+     * @param size the least amount of bytes each element takes
+     * @return the length, -1 if the list was left out
+     * @throws InvalidObjectException if the payload cannot hold that many elements, so a broken length does not make
+     * a huge list
+     * */
+    private static int count(DataInputStream in, int size) throws IOException {
+        int count = in.readInt();
+        if (count < -1 || (long) count * size > in.available()) {
+            throw new InvalidObjectException("Frame claims " + count + " elements it does not hold");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,180 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.view.AsteroidsFrame;
+
+import java.awt.geom.Point2D;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * the form a {@link WorldSection} is sent in. Positions, velocities, angles and sizes are rounded by the
+ * {@link Quantizer} and packed into as few bits as they need, the names follow as text.
+ * */
+class PackedWorld implements Externalizable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * the bits sent for counts and slots, and for network ids and scores
+     * */
+    private static final int COUNT_BITS = 16;
+    private static final int SLOT_BITS = 8;
+    private static final int INT_BITS = 32;
+
+    /**
+     * the world being sent or received
+     * */
+    private WorldSection world;
+
+    /**
+     * used when reading, the world is read by {@link #readExternal}
+     * */
+    public PackedWorld() {
+    }
+
+    /**
+     * @param world the world to send
+     * */
+    PackedWorld(WorldSection world) {
+        this.world = world;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        BitWriter bits = new BitWriter(out);
+        bits.write(world.tick(), INT_BITS);
+        bits.writeBoolean(world.reckoned());
+        bits.write(world.ships().size(), COUNT_BITS);
+        for (int i = 0; i < world.ships().size(); i++) {
+            bits.write(world.shipIds().get(i), INT_BITS);
+            writeLocation(bits, world.ships().get(i));
+            bits.write(Quantizer.angle(world.directions().get(i)), Quantizer.ANGLE_BITS);
+            bits.writeBoolean(world.accelerating().get(i));
+        }
+        bits.write(world.slots().size(), COUNT_BITS);
+        for (int slot : world.slots()) {
+            bits.write(slot, SLOT_BITS);
+        }
+        bits.write(world.scores().size(), COUNT_BITS);
+        for (int score : world.scores()) {
+            bits.write(score, INT_BITS);
+        }
+        bits.write(world.bullets().size(), COUNT_BITS);
+        for (int i = 0; i < world.bullets().size(); i++) {
+            bits.write(world.bulletIds().get(i), INT_BITS);
+            bits.write(world.bulletOwnerIds().get(i), INT_BITS);
+            writeLocation(bits, world.bullets().get(i));
+            writeVelocity(bits, world.bulletVelocities().get(i));
+        }
+        bits.write(world.asteroids().size(), COUNT_BITS);
+        for (int i = 0; i < world.asteroids().size(); i++) {
+            bits.write(world.asteroidIds().get(i), INT_BITS);
+            writeLocation(bits, world.asteroids().get(i));
+            writeVelocity(bits, world.asteroidVelocities().get(i));
+            bits.write(Quantizer.angle(world.asteroidDirections().get(i)), Quantizer.ANGLE_BITS);
+            bits.write(Quantizer.size(world.asteroidRadius().get(i)), Quantizer.SIZE_BITS);
+        }
+        bits.write(world.names().size(), COUNT_BITS);
+        bits.flush();
+        for (String name : world.names()) {
+            out.writeUTF(name == null ? "" : name);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        BitReader bits = new BitReader(in);
+        int tick = bits.read(INT_BITS);
+        boolean reckoned = bits.readBoolean();
+        int ships = bits.read(COUNT_BITS);
+        List<Point2D.Double> locations = new ArrayList<>(ships);
+        List<Integer> shipIds = new ArrayList<>(ships);
+        List<Double> directions = new ArrayList<>(ships);
+        List<Boolean> accelerating = new ArrayList<>(ships);
+        for (int i = 0; i < ships; i++) {
+            shipIds.add(bits.read(INT_BITS));
+            locations.add(readLocation(bits));
+            directions.add(Quantizer.angleOf(bits.read(Quantizer.ANGLE_BITS)));
+            accelerating.add(bits.readBoolean());
+        }
+        int slotCount = bits.read(COUNT_BITS);
+        List<Integer> slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(bits.read(SLOT_BITS));
+        }
+        int scoreCount = bits.read(COUNT_BITS);
+        List<Integer> scores = new ArrayList<>(scoreCount);
+        for (int i = 0; i < scoreCount; i++) {
+            scores.add(bits.read(INT_BITS));
+        }
+        int bulletCount = bits.read(COUNT_BITS);
+        List<Point2D.Double> bullets = new ArrayList<>(bulletCount);
+        List<Integer> bulletIds = new ArrayList<>(bulletCount);
+        List<Integer> bulletOwnerIds = new ArrayList<>(bulletCount);
+        List<Point2D.Double> bulletVelocities = new ArrayList<>(bulletCount);
+        for (int i = 0; i < bulletCount; i++) {
+            bulletIds.add(bits.read(INT_BITS));
+            bulletOwnerIds.add(bits.read(INT_BITS));
+            bullets.add(readLocation(bits));
+            bulletVelocities.add(readVelocity(bits));
+        }
+        int asteroidCount = bits.read(COUNT_BITS);
+        List<Point2D.Double> asteroids = new ArrayList<>(asteroidCount);
+        List<Integer> asteroidIds = new ArrayList<>(asteroidCount);
+        List<Point2D.Double> asteroidVelocities = new ArrayList<>(asteroidCount);
+        List<Double> asteroidDirections = new ArrayList<>(asteroidCount);
+        List<Double> asteroidRadius = new ArrayList<>(asteroidCount);
+        for (int i = 0; i < asteroidCount; i++) {
+            asteroidIds.add(bits.read(INT_BITS));
+            asteroids.add(readLocation(bits));
+            asteroidVelocities.add(readVelocity(bits));
+            asteroidDirections.add(Quantizer.angleOf(bits.read(Quantizer.ANGLE_BITS)));
+            asteroidRadius.add(Quantizer.radiusOf(bits.read(Quantizer.SIZE_BITS)));
+        }
+        int nameCount = bits.read(COUNT_BITS);
+        bits.align();
+        List<String> names = new ArrayList<>(nameCount);
+        for (int i = 0; i < nameCount; i++) {
+            names.add(in.readUTF());
+        }
+        world = new WorldSection(locations, shipIds, slots, directions, accelerating, names, scores,
+                bullets, bulletIds, bulletOwnerIds, bulletVelocities, asteroids, asteroidIds, asteroidVelocities,
+                asteroidDirections, asteroidRadius, reckoned, tick);
+    }
+
+    private static void writeLocation(BitWriter bits, Point2D.Double location) throws IOException {
+        bits.write(Quantizer.position(location.getX(), AsteroidsFrame.WIDTH), Quantizer.POSITION_BITS);
+        bits.write(Quantizer.position(location.getY(), AsteroidsFrame.HEIGHT), Quantizer.POSITION_BITS);
+    }
+
+    private static Point2D.Double readLocation(BitReader bits) throws IOException {
+        double x = Quantizer.coordinate(bits.read(Quantizer.POSITION_BITS), AsteroidsFrame.WIDTH);
+        double y = Quantizer.coordinate(bits.read(Quantizer.POSITION_BITS), AsteroidsFrame.HEIGHT);
+        return new Point2D.Double(x, y);
+    }
+
+    private static void writeVelocity(BitWriter bits, Point2D.Double velocity) throws IOException {
+        bits.write(Quantizer.velocity(velocity.getX()), Quantizer.VELOCITY_BITS);
+        bits.write(Quantizer.velocity(velocity.getY()), Quantizer.VELOCITY_BITS);
+    }
+
+    private static Point2D.Double readVelocity(BitReader bits) throws IOException {
+        double x = Quantizer.velocityOf(bits.read(Quantizer.VELOCITY_BITS));
+        double y = Quantizer.velocityOf(bits.read(Quantizer.VELOCITY_BITS));
+        return new Point2D.Double(x, y);
+    }
+
+    /**
+     * @return the world that was read
+     * */
+    @Serial
+    private Object readResolve() throws ObjectStreamException {
+        return world;
+    }
+}
@@ -0,0 +1,130 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * picks the objects that go into the snapshots of a single client when not all of them fit in its
+ * {@link SnapshotBudget}.
+ * <p>
+ * every snapshot, each bullet and asteroid adds to its priority: more when it is close to the spaceship of the client,
+ * and more for bullets than for asteroids. The objects with the highest priority are sent until the budget is full,
+ * and start over at zero. So objects that were left out climb up until they are sent, and nothing is left out
+ * forever. Spaceships are always sent, the client takes a missing spaceship as gone.
+ * */
+public class PriorityAccumulator {
+    /**
+     * the priority a bullet right next to the spaceship adds every snapshot
+     * */
+    public static final double BULLET_WEIGHT = 2;
+
+    /**
+     * the priority an asteroid right next to the spaceship adds every snapshot
+     * */
+    public static final double ASTEROID_WEIGHT = 1;
+
+    /**
+     * the distance at which an object adds half of its weight
+     * */
+    public static final double HALF_PRIORITY_DISTANCE = 200;
+
+    /**
+     * about how many bytes an encoded package takes without bullets and asteroids, besides its spaceships
+     * */
+    public static final int PACKAGE_BYTES = 600;
+
+    /**
+     * about how many bytes each object takes in an encoded package, a bit more than measured to be safe.
+     * A spaceship leaves room for a name of 16 characters
+     * */
+    public static final int SHIP_BYTES = 36;
+    public static final int BULLET_BYTES = 16;
+    public static final int ASTEROID_BYTES = 14;
+    public static final int DESPAWN_BYTES = 12;
+
+    /**
+     * the priority of each object that was in the view of the client, by network id
+     * */
+    private final Map<Integer, Double> priorities = new HashMap<>();
+
+    /**
+     * leaves the bullets and asteroids with the lowest priority out of the package until it fits in the budget.
+     * Call once for every package sent to the client.
+     * @param mp the package to send to the client, with its focus set to the spaceship of the client
+     * @param budget the budget of the client
+     * @return the estimated amount of bytes of the package
+     * */
+    public int schedule(MultiPlayerGamePackage mp, SnapshotBudget budget) {
+        Point2D.Double focus = mp.getFocus() == null ? new Point2D.Double() : mp.getFocus();
+        List<Candidate> candidates = new ArrayList<>(mp.getBullets().size() + mp.getAsteroids().size());
+        accrue(candidates, mp.getBulletIds(), mp.getBullets(), focus, BULLET_WEIGHT, BULLET_BYTES, true);
+        accrue(candidates, mp.getAsteroidIds(), mp.getAsteroids(), focus, ASTEROID_WEIGHT, ASTEROID_BYTES, false);
+        forgetGone(candidates);
+        candidates.sort(Comparator.comparingDouble(Candidate::priority).reversed());
+
+        int bytes = PACKAGE_BYTES + mp.getSpaceShips().size() * SHIP_BYTES
+                + mp.getDespawnedIds().size() * DESPAWN_BYTES;
+        List<Integer> bullets = new ArrayList<>();
+        List<Integer> asteroids = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (!budget.fits(bytes + candidate.bytes())) {
+                continue;
+            }
+            bytes += candidate.bytes();
+            priorities.put(candidate.id(), 0.0);
+            (candidate.bullet() ? bullets : asteroids).add(candidate.index());
+        }
+        bullets.sort(null);
+        asteroids.sort(null);
+        mp.retain(bullets, asteroids);
+        return bytes;
+    }
+
+    /**
+     * adds to the priority of each object and makes it a candidate to be sent
+     * */
+    private void accrue(List<Candidate> candidates, List<Integer> ids, List<Point2D.Double> locations,
+                        Point2D.Double focus, double weight, int bytes, boolean bullet) {
+        for (int i = 0; i < ids.size(); i++) {
+            double proximity = 1 / (1 + locations.get(i).distance(focus) / HALF_PRIORITY_DISTANCE);
+            double priority = priorities.merge(ids.get(i), weight * proximity, Double::sum);
+            candidates.add(new Candidate(ids.get(i), i, bullet, bytes, priority));
+        }
+    }
+
+    /**
+     * forgets the priorities of objects that are not in the view anymore
+     * */
+    private void forgetGone(List<Candidate> candidates) {
+        if (priorities.size() == candidates.size()) {
+            return;
+        }
+        Set<Integer> ids = new HashSet<>(candidates.size());
+        candidates.forEach(candidate -> ids.add(candidate.id()));
+        priorities.keySet().retainAll(ids);
+    }
+
+    /**
+     * @param networkId the network id of an object
+     * @return the priority the object has built up, 0 if it was just sent or is unknown
+     * */
+    public double priorityOf(int networkId) {
+        return priorities.getOrDefault(networkId, 0.0);
+    }
+
+    /**
+     * an object that might be sent
+     * @param id its network id
+     * @param index its index in the lists of the package
+     * @param bullet whether it is a bullet, otherwise it is an asteroid
+     * @param bytes about how many bytes it takes
+     * @param priority its priority
+     * */
+    private record Candidate(int id, int index, boolean bullet, int bytes, double priority) {}
+}
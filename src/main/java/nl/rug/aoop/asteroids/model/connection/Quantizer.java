@@ -0,0 +1,208 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.model.AsteroidSize;
+import nl.rug.aoop.asteroids.view.AsteroidsFrame;
+
+import java.awt.geom.Point2D;
+
+/**
+ * rounds the values sent in snapshots to the few bits that are sent of them.
+ * <p>
+ * positions wrap around the world like the objects do, so a coordinate is sent as a fraction of the width or height
+ * in {@link #POSITION_BITS} bits, less than a tenth of a pixel apart. Angles are sent as a fraction of a full turn in
+ * {@link #ANGLE_BITS} bits, and the radius of an asteroid as the index of its {@link AsteroidSize}. Velocities are
+ * sent in {@link #VELOCITY_BITS} bits per axis, up to {@link #MAX_VELOCITY} pixels per tick either way.
+ * <p>
+ * the host rounds its own objects the same way before taking a snapshot, so the host and the clients simulate on
+ * exactly the same values.
+ * */
+public final class Quantizer {
+    /**
+     * the amount of bits a coordinate is sent in
+     * */
+    public static final int POSITION_BITS = 16;
+
+    /**
+     * the amount of bits an angle is sent in
+     * */
+    public static final int ANGLE_BITS = 10;
+
+    /**
+     * the amount of bits the size of an asteroid is sent in, enough for every {@link AsteroidSize}
+     * */
+    public static final int SIZE_BITS = 2;
+
+    /**
+     * the amount of bits a velocity is sent in along each axis
+     * */
+    public static final int VELOCITY_BITS = 12;
+
+    /**
+     * the fastest a velocity sent can be along an axis, in pixels per tick. Bullets of a spaceship at full speed
+     * stay well below it
+     * */
+    public static final double MAX_VELOCITY = 64.0;
+
+    /**
+     * the amount of steps the width or height of the world is divided into
+     * */
+    private static final int POSITION_STEPS = 1 << POSITION_BITS;
+
+    /**
+     * the amount of steps a full turn is divided into
+     * */
+    private static final int ANGLE_STEPS = 1 << ANGLE_BITS;
+
+    /**
+     * the quantized velocity that stands for standing still, half of the steps a velocity is divided into
+     * */
+    private static final int VELOCITY_ZERO = 1 << (VELOCITY_BITS - 1);
+
+    /**
+     * a full turn in radians, angles are sent as a fraction of it
+     * */
+    private static final double FULL_TURN = 2 * Math.PI;
+
+    private Quantizer() {
+    }
+
+    /**
+     * @param value a coordinate, wrapped around the extent if it is outside of it
+     * @param extent the width or height of the world
+     * @return the coordinate in {@link #POSITION_BITS} bits
+     * */
+    public static int position(double value, double extent) {
+        return (int) Math.round(value / extent * POSITION_STEPS) & (POSITION_STEPS - 1);
+    }
+
+    /**
+     * @param quantized a coordinate made by {@link #position}
+     * @param extent the width or height of the world
+     * @return the coordinate it stands for
+     * */
+    public static double coordinate(int quantized, double extent) {
+        return quantized * extent / POSITION_STEPS;
+    }
+
+    /**
+     * @param angle an angle in radians, any amount of turns
+     * @return the angle in {@link #ANGLE_BITS} bits
+     * */
+    public static int angle(double angle) {
+        return (int) Math.round(angle / FULL_TURN * ANGLE_STEPS) & (ANGLE_STEPS - 1);
+    }
+
+    /**
+     * @param quantized an angle made by {@link #angle}
+     * @return the angle it stands for, in between 0 and a full turn
+     * */
+    public static double angleOf(int quantized) {
+        return quantized * FULL_TURN / ANGLE_STEPS;
+    }
+
+    /**
+     * @param radius the radius of an asteroid
+     * @return the index of the nearest {@link AsteroidSize}, in {@link #SIZE_BITS} bits
+     * */
+    public static int size(double radius) {
+        AsteroidSize[] sizes = AsteroidSize.values();
+        int nearest = 0;
+        for (int i = 1; i < sizes.length; i++) {
+            if (Math.abs(sizes[i].getRadius() - radius) < Math.abs(sizes[nearest].getRadius() - radius)) {
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * @param quantized a size made by {@link #size}
+     * @return the radius it stands for, the largest if there is no size with the index
+     * */
+    public static double radiusOf(int quantized) {
+        AsteroidSize[] sizes = AsteroidSize.values();
+        return sizes[Math.min(quantized, sizes.length - 1)].getRadius();
+    }
+
+    /**
+     * @param velocity the velocity along an axis in pixels per tick, limited to {@link #MAX_VELOCITY} either way
+     * @return the velocity in {@link #VELOCITY_BITS} bits
+     * */
+    public static int velocity(double velocity) {
+        int quantized = (int) Math.round(velocity / MAX_VELOCITY * VELOCITY_ZERO) + VELOCITY_ZERO;
+        return Math.max(0, Math.min(quantized, 2 * VELOCITY_ZERO - 1));
+    }
+
+    /**
+     * @param quantized a velocity made by {@link #velocity}
+     * @return the velocity it stands for
+     * */
+    public static double velocityOf(int quantized) {
+        return (quantized - VELOCITY_ZERO) * MAX_VELOCITY / VELOCITY_ZERO;
+    }
+
+    /**
+     * @return the x coordinate as it is after being sent
+     * */
+    public static double snapX(double x) {
+        return coordinate(position(x, AsteroidsFrame.WIDTH), AsteroidsFrame.WIDTH);
+    }
+
+    /**
+     * @return the y coordinate as it is after being sent
+     * */
+    public static double snapY(double y) {
+        return coordinate(position(y, AsteroidsFrame.HEIGHT), AsteroidsFrame.HEIGHT);
+    }
+
+    /**
+     * @return the angle as it is after being sent
+     * */
+    public static double snapAngle(double angle) {
+        return angleOf(angle(angle));
+    }
+
+    /**
+     * @return the radius as it is after being sent
+     * */
+    public static double snapRadius(double radius) {
+        return radiusOf(size(radius));
+    }
+
+    /**
+     * @return the velocity along an axis as it is after being sent
+     * */
+    public static double snapVelocity(double velocity) {
+        return velocityOf(velocity(velocity));
+    }
+
+    /**
+     * moves a location to where it is after being sent
+     * @param location the location, changed in place
+     * */
+    public static void snap(Point2D.Double location) {
+        location.setLocation(snapX(location.getX()), snapY(location.getY()));
+    }
+
+    /**
+     * @return a copy of the location as it is after being sent
+     * */
+    public static Point2D.Double snapped(Point2D location) {
+        return new Point2D.Double(snapX(location.getX()), snapY(location.getY()));
+    }
+
+    /**
+     * changes a velocity to what it is after being sent
+     * @param velocity the velocity, changed in place
+     * */
+    public static void snapVelocity(Point2D.Double velocity) {
+        velocity.setLocation(snapVelocity(velocity.getX()), snapVelocity(velocity.getY()));
+    }
+
+    /**
+     * @return a copy of the velocity as it is after being sent
+     * */
+    public static Point2D.Double snappedVelocity(Point2D velocity) {
+        return new Point2D.Double(snapVelocity(velocity.getX()), snapVelocity(velocity.getY()));
+    }
+}
@@ -0,0 +1,41 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * the part of a snapshot that is made for a single client, sent in front of the shared {@link WorldSection}.
+ * It tells which spaceship and bullets of the world are the client's own, so they are left out of its view.
+ * @param ownShipDestroyed whether the spaceship of the client is destroyed
+ * @param ownShipId the network id of the spaceship of the client
+ * @param ownSlot the slot of the spaceship of the client
+ * @param ownName the user name of the client
+ * @param ownScore the score of the client
+ * @param ownShip the index of the spaceship of the client in the world, -1 if it is not in there
+ * @param ownBulletsFrom the index of the first bullet of the client in the world
+ * @param ownBulletsTo the index after the last bullet of the client in the world
+ * @param despawnedIds the network ids of the objects the client has seen before, but that are gone now
+ * @param trimmed whether objects were left out of the world to make it fit
+ * @param clockStamp the times the client needs to compare its clock with the clock of the host
+ * */
+record RecipientSection(boolean ownShipDestroyed,
+                        int ownShipId,
+                        int ownSlot,
+                        String ownName,
+                        int ownScore,
+                        int ownShip,
+                        int ownBulletsFrom,
+                        int ownBulletsTo,
+                        List<Integer> despawnedIds,
+                        boolean trimmed,
+                        ClockStamp clockStamp) implements Serializable {
+    /**
+     * @param mp a package made for a single client
+     * @return the part of the package that is only meant for the client, for the world made from the package itself
+     * */
+    static RecipientSection of(MultiPlayerGamePackage mp) {
+        return new RecipientSection(mp.isOwnShipDestroyed(), mp.getOwnShipId(), mp.getOwnSlot(), mp.getOwnName(),
+                mp.getOwnScore(), -1, 0, 0, mp.getDespawnedIds(), mp.isTrimmed(),
+                mp.getClockStamp());
+    }
+}
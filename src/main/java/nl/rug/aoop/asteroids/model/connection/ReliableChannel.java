@@ -0,0 +1,130 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * delivers {@link ControlMessage}s over UDP in order and exactly once.
+ * <p>
+ * every queued message gets a sequence number and is sent again every {@link #RESEND_MILLIS} until the other side
+ * acknowledges it. The other side acknowledges the newest message it received in order, which also acknowledges all
+ * older ones. Messages received twice are dropped, messages received too early wait for the ones before them.
+ * */
+public class ReliableChannel {
+    /**
+     * how long (in ms) we wait for an acknowledgement before sending a message again
+     * */
+    public static final long RESEND_MILLIS = 100;
+
+    /**
+     * the queued messages the other side has not acknowledged yet, oldest first
+     * */
+    private final Map<Integer, ControlMessage> pending;
+
+    /**
+     * messages received before the ones in front of them, by sequence number
+     * */
+    private final SortedMap<Integer, ControlMessage> early;
+
+    /**
+     * the sequence number of the next queued message
+     * */
+    private int nextSequence;
+
+    /**
+     * the time the pending messages were last sent at, 0 if they have not been sent yet
+     * */
+    private long lastSent;
+
+    /**
+     * the sequence number of the newest message received in order, -1 if none
+     * */
+    private int delivered;
+
+    /**
+     * the amount of times messages were sent again because they were not acknowledged in time
+     * */
+    @Getter
+    private long resends;
+
+    /**
+     * makes a channel that has not sent or received anything yet
+     * */
+    public ReliableChannel() {
+        pending = new LinkedHashMap<>();
+        early = new TreeMap<>();
+        delivered = -1;
+    }
+
+    /**
+     * queues a message to be sent
+     * @param message the message, its sequence number is replaced
+     * @return the message with its sequence number
+     * */
+    public synchronized ControlMessage queue(ControlMessage message) {
+        ControlMessage numbered = message.withSequence(nextSequence++);
+        pending.put(numbered.sequence(), numbered);
+        lastSent = 0;
+        return numbered;
+    }
+
+    /**
+     * @param now the current time in ms
+     * @return all pending messages if some have not been sent yet or the last send was {@link #RESEND_MILLIS} ago,
+     * an empty list otherwise. The returned messages count as sent now.
+     * */
+    public synchronized List<ControlMessage> due(long now) {
+        if (pending.isEmpty() || (lastSent != 0 && now - lastSent < RESEND_MILLIS)) {
+            return List.of();
+        }
+        if (lastSent != 0) {
+            resends++;
+        }
+        lastSent = now;
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * forgets the messages the other side acknowledged
+     * @param ack the sequence number of the newest message the other side received in order
+     * */
+    public synchronized void acknowledge(int ack) {
+        pending.keySet().removeIf(sequence -> sequence <= ack);
+    }
+
+    /**
+     * takes in received messages
+     * @param messages the received messages, in any order and possibly received before
+     * @return the messages that can be handled now, in order. Each message is returned only once
+     * */
+    public synchronized List<ControlMessage> accept(List<ControlMessage> messages) {
+        messages.stream().filter(message -> message.sequence() > delivered)
+                .forEach(message -> early.put(message.sequence(), message));
+        List<ControlMessage> deliverable = new ArrayList<>();
+        while (!early.isEmpty() && early.firstKey() == delivered + 1) {
+            deliverable.add(early.remove(early.firstKey()));
+            delivered++;
+        }
+        return deliverable;
+    }
+
+    /**
+     * @return the sequence number of the newest message received in order, -1 if none
+     * */
+    public synchronized int getAck() {
+        return delivered;
+    }
+
+    /**
+     * @return whether all queued messages have been acknowledged
+     * */
+    public synchronized boolean isIdle() {
+        return pending.isEmpty();
+    }
+}
@@ -0,0 +1,201 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * wraps a {@link Transport} and sends over it as if over a worse network: datagrams are delayed, lost, duplicated and
+ * reordered as the {@link NetworkConditions} say. Receiving is left alone, so wrap the transports of both sides to
+ * make the network bad both ways.
+ * <p>
+ * delayed datagrams are sent by a single timer thread shared by all simulated transports.
+ * */
+public class SimulatedTransport implements Transport {
+    /**
+     * the least extra time in ms a reordered datagram is held back, so the next ones overtake it even without delay
+     * */
+    private static final long MIN_REORDER_MILLIS = 10;
+
+    /**
+     * sends the delayed datagrams of all simulated transports
+     * */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "simulated-network");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * the transport that actually sends and receives
+     * */
+    private final Transport inner;
+
+    /**
+     * the network to simulate
+     * */
+    @Getter
+    private final NetworkConditions conditions;
+
+    /**
+     * decides which datagrams are lost, duplicated and reordered, and their delay
+     * */
+    private final Random random;
+
+    /**
+     * the amount of datagrams that were dropped on purpose
+     * */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * the amount of datagrams that were sent twice on purpose
+     * */
+    private final AtomicLong duplicated = new AtomicLong();
+
+    /**
+     * the amount of datagrams that were held back on purpose
+     * */
+    private final AtomicLong reordered = new AtomicLong();
+
+    /**
+     * @param inner the transport to send over
+     * @param conditions the network to simulate
+     * */
+    public SimulatedTransport(Transport inner, NetworkConditions conditions) {
+        this(inner, conditions, new Random());
+    }
+
+    /**
+     * @param inner the transport to send over
+     * @param conditions the network to simulate
+     * @param random decides what happens to every datagram, seed it to get the same network every run
+     * */
+    public SimulatedTransport(Transport inner, NetworkConditions conditions, Random random) {
+        this.inner = inner;
+        this.conditions = conditions;
+        this.random = random;
+    }
+
+    /**
+     * sends the datagram, or not, once or twice, after a delay, as the conditions say. The buffer can be reused
+     * right away, the datagram is copied when it is delayed.
+     * @param datagram the datagram to send
+     * @param target the address and port to send to
+     * */
+    @Override
+    public void send(ByteBuffer datagram, InetSocketAddress target) throws IOException {
+        if (conditions.isPerfect()) {
+            inner.send(datagram, target);
+            return;
+        }
+        int copies;
+        synchronized (random) {
+            if (random.nextDouble() < conditions.lossRate()) {
+                dropped.incrementAndGet();
+                return;
+            }
+            copies = random.nextDouble() < conditions.duplicateRate() ? 2 : 1;
+        }
+        if (copies == 2) {
+            duplicated.incrementAndGet();
+        }
+        int start = datagram.position();
+        for (int i = 0; i < copies; i++) {
+            datagram.position(start);
+            long delay = nextDelay();
+            if (delay == 0) {
+                inner.send(datagram, target);
+            } else {
+                ByteBuffer copy = ByteBuffer.allocate(datagram.remaining()).put(datagram).flip();
+                TIMER.schedule(() -> sendLater(copy, target), delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * @return the delay of the next datagram in ms, including jitter and, for some datagrams, being held back
+     * */
+    private long nextDelay() {
+        synchronized (random) {
+            long delay = conditions.delayMillis();
+            if (conditions.jitterMillis() > 0) {
+                delay += (long) (random.nextDouble() * (2 * conditions.jitterMillis() + 1)) - conditions.jitterMillis();
+            }
+            if (random.nextDouble() < conditions.reorderRate()) {
+                reordered.incrementAndGet();
+                delay += Math.max(MIN_REORDER_MILLIS, conditions.delayMillis());
+            }
+            return Math.max(0, delay);
+        }
+    }
+
+    /**
+     * sends a delayed datagram. One that is due after the transport closed is lost, like it would be on a network
+     * @param datagram the datagram
+     * @param target the address and port to send to
+     * */
+    private void sendLater(ByteBuffer datagram, InetSocketAddress target) {
+        if (inner.isClosed()) {
+            return;
+        }
+        try {
+            inner.send(datagram, target);
+        } catch (IOException e) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    @Override
+    public InetSocketAddress receive(ByteBuffer into) throws IOException {
+        return inner.receive(into);
+    }
+
+    @Override
+    public void setSoTimeout(int timeout) throws SocketException {
+        inner.setSoTimeout(timeout);
+    }
+
+    @Override
+    public int getLocalPort() {
+        return inner.getLocalPort();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return inner.isClosed();
+    }
+
+    @Override
+    public void close() {
+        inner.close();
+    }
+
+    /**
+     * @return the amount of datagrams that were dropped on purpose, or because they were due after closing
+     * */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the amount of datagrams that were sent twice on purpose
+     * */
+    public long getDuplicated() {
+        return duplicated.get();
+    }
+
+    /**
+     * @return the amount of datagrams that were held back so later ones overtake them
+     * */
+    public long getReordered() {
+        return reordered.get();
+    }
+}
@@ -17,7 +17,7 @@ import java.util.List;
  * </p>
  * */
 @Getter @Setter
-public class SinglePlayerPackage extends TrafficHandler implements Serializable {
+public class SinglePlayerPackage implements Serializable {
 
     /**
      * direction of the spaceship
@@ -34,11 +34,22 @@ public class SinglePlayerPackage extends TrafficHandler implements Serializable
      * */
     private Point2D.Double spaceShip;
 
+    /**
+     * network id the host gave to the spaceship of this player
+     * */
+    private int shipId;
+
     /**
      * list of locations of other players bullets
      * */
     private List<Point2D.Double> bullets;
 
+    /**
+     * network ids of the bullets. Clients number their own bullets, the host replaces these by its own ids.
+     * All bullets in this package were fired by the spaceship with {@link #shipId}
+     * */
+    private List<Integer> bulletIds;
+
     /**
      * indicates whether the spaceship has been destroyed
      * */
@@ -49,11 +60,38 @@ public class SinglePlayerPackage extends TrafficHandler implements Serializable
      * */
     private List<Integer> ownBulletsStepsLeft;
 
+    /**
+     * velocities of the own bullets, in pixels per tick. Null in packages that do not tell
+     * */
+    private List<Point2D.Double> bulletVelocities;
+
+    /**
+     * the tick of the host the player was seeing when it fired each of its bullets, -1 if unknown.
+     * Null in packages that do not tell
+     * */
+    private List<Integer> bulletFireTicks;
+
+    /**
+     * the most ticks the hits of the bullets in this package are judged back in time, from the latency the host
+     * measured for the player. Set by the host when the package arrives, so not sent. 0 until then
+     * */
+    private transient int maxRewindTicks;
+
     /**
      * steps left of own spaceship till being able to collide
      * */
     private int spaceShipStepsLeft;
 
+    /**
+     * the tick of the player this package was made at, so the host applies the packages of a player in order
+     * */
+    private int tick;
+
+    /**
+     * the times the host needs to compare its clock with the clock of the player, set when the package is sent
+     * */
+    private ClockStamp clockStamp;
+
     /**
      * username of spaceship
      */
@@ -68,20 +106,46 @@ public class SinglePlayerPackage extends TrafficHandler implements Serializable
      * @param spaceShipStepsLeft the steps left until this ship is allowed to collide
      * @param isAcc the fact if this spaceship is accelerating
      * @param bullets the own bullets of the spaceship
+     * @param bulletIds the network ids of the own bullets
      * @param ownBulletsStepsLeft the steps left for the bullets to be able to collide
      * @param userName the username of the client
      * */
     public SinglePlayerPackage(Point2D.Double spaceShip, double direction, int spaceShipStepsLeft, boolean isAcc, List<Point2D.Double> bullets,
-                               List<Integer> ownBulletsStepsLeft, String userName) {
+                               List<Integer> bulletIds, List<Integer> ownBulletsStepsLeft, String userName) {
         this.spaceShip = spaceShip;
         this.direction = direction;
         this.isAcc = isAcc;
         this.bullets = bullets;
+        this.bulletIds = bulletIds;
         this.ownBulletsStepsLeft = ownBulletsStepsLeft;
         this.spaceShipStepsLeft = spaceShipStepsLeft;
         this.userName = userName;
     }
 
+    /**
+     * makes the package a client sends every tick, from its own spaceship and bullets
+     * @param game the game of the client
+     * @return the package describing the main spaceship of the game
+     * */
+    public static SinglePlayerPackage of(Game game) {
+        Spaceship mainSpaceShip = game.getMainSpaceShip();
+        SinglePlayerPackage spp = new SinglePlayerPackage(
+                mainSpaceShip.getLocation(),
+                mainSpaceShip.getDirection(),
+                mainSpaceShip.getStepsUntilCollisionPossible(),
+                mainSpaceShip.isAccelerating(),
+                game.getOwnBulletsLocations(),
+                game.getOwnBulletIds(),
+                game.getOwnBulletsStepsLeft(),
+                mainSpaceShip.getUserName()
+        );
+        spp.setDestroyed(mainSpaceShip.isDestroyed());
+        spp.setBulletFireTicks(game.getOwnBulletFireTicks());
+        spp.setBulletVelocities(game.getOwnBulletVelocities());
+        spp.setTick(game.getLocalTick());
+        return spp;
+    }
+
     /**
      * updates the main player of the game information
      * @param game the game to extract the main spaceship and other info from
@@ -91,9 +155,12 @@ public class SinglePlayerPackage extends TrafficHandler implements Serializable
         List<Point2D.Double> bullets = new ArrayList<>();
         game.getOwnBullets().forEach(bullet -> bullets.add(bullet.getLocation()));
        this.spaceShip = mainSpaceShip.getLocation();
+       this.shipId = mainSpaceShip.getNetworkId();
        this.direction = mainSpaceShip.getDirection();
        this.isAcc = mainSpaceShip.isAccelerating();
        this.bullets = bullets;
+       this.bulletIds = game.getOwnBulletIds();
+       this.bulletVelocities = game.getOwnBulletVelocities();
        this.userName = mainSpaceShip.getUserName();
     }
 }
\ No newline at end of file
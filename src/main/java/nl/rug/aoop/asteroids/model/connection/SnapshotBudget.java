@@ -0,0 +1,45 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+/**
+ * the most bytes a single snapshot sent to a client may take. When the world does not fit, a
+ * {@link PriorityAccumulator} picks the objects that are sent.
+ * <p>
+ * can be changed with the system property {@value #PROPERTY}.
+ * @param bytes the most bytes of a snapshot, at most {@link Fragmenter#MAX_PAYLOAD_SIZE}
+ * */
+public record SnapshotBudget(int bytes) {
+    /**
+     * the system property to set the budget with
+     * */
+    public static final String PROPERTY = "asteroids.snapshot.budget";
+
+    /**
+     * the budget when none is set: as much as fits in a payload
+     * */
+    public static final SnapshotBudget FULL = new SnapshotBudget(Fragmenter.MAX_PAYLOAD_SIZE);
+
+    /**
+     * @throws IllegalArgumentException if the budget is not positive or larger than a payload can be
+     * */
+    public SnapshotBudget {
+        if (bytes <= 0 || bytes > Fragmenter.MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("Snapshot budget of " + bytes + " bytes has to be positive and at most "
+                    + Fragmenter.MAX_PAYLOAD_SIZE);
+        }
+    }
+
+    /**
+     * @return the budget given with the system property, {@link #FULL} if none is given
+     * */
+    public static SnapshotBudget configured() {
+        return new SnapshotBudget(Integer.getInteger(PROPERTY, FULL.bytes()));
+    }
+
+    /**
+     * @param length the length of an encoded snapshot
+     * @return whether it can be sent within the budget
+     * */
+    public boolean fits(int length) {
+        return length <= bytes;
+    }
+}
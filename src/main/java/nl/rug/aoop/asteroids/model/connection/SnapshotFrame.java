@@ -0,0 +1,90 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * the way a snapshot is sent to a client when its world is shared with the other clients.
+ * <p>
+ * a frame starts with {@link #TAG}, followed by the length of the encoded {@link RecipientSection} as 4 bytes, the
+ * encoded recipient section and the {@link WorldSection} encoded once by the {@link WorldSnapshot}. Each section is a
+ * stream of its own, so the world can be copied into the frame of every client as it is. A serialized package starts
+ * with a different byte, so both can be sent over the same channel.
+ * */
+class SnapshotFrame {
+    /**
+     * the first byte of a frame
+     * */
+    static final int TAG = 'S';
+
+    private SnapshotFrame() {
+    }
+
+    /**
+     * @param section the section to encode
+     * @return the section serialized as a stream of its own
+     * */
+    static byte[] encode(Object section) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oo = new ObjectOutputStream(bytes)) {
+            oo.writeObject(section);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * writes the frame of a single client
+     * @param out the stream to write to
+     * @param recipient the part of the snapshot made for the client
+     * @param world the encoded part of the snapshot shared by all clients
+     * */
+    static void write(OutputStream out, RecipientSection recipient, byte[] world) throws IOException {
+        byte[] own = encode(recipient);
+        out.write(TAG);
+        out.write(own.length >>> 24);
+        out.write(own.length >>> 16);
+        out.write(own.length >>> 8);
+        out.write(own.length);
+        out.write(own);
+        out.write(world);
+    }
+
+    /**
+     * reads a frame and puts the view of the client together
+     * @param in the payload to read, starting with {@link #TAG}
+     * @return the package the frame holds
+     * */
+    static MultiPlayerGamePackage read(FragmentInputStream in) throws IOException, ClassNotFoundException {
+        in.read();
+        int length = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            int b = in.read();
+            if (b < 0) {
+                throw new InvalidObjectException("Frame ended in its header");
+            }
+            length = length << 8 | b;
+        }
+        in.limit(length);
+        Object recipient = readSection(in);
+        in.skipNBytes(in.available());
+        in.limit(-1);
+        Object world = readSection(in);
+        if (!(recipient instanceof RecipientSection own) || !(world instanceof WorldSection shared)) {
+            throw new InvalidObjectException("Frame holds unexpected sections");
+        }
+        return WorldSnapshot.view(shared, own);
+    }
+
+    /**
+     * @return the next section of the frame
+     * */
+    private static Object readSection(FragmentInputStream in) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream iStream = new ObjectInputStream(in)) {
+            return iStream.readObject();
+        }
+    }
+}
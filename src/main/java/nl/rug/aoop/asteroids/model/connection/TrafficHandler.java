@@ -1,37 +1,205 @@
 package nl.rug.aoop.asteroids.model.connection;
 
+import lombok.Getter;
 import lombok.extern.java.Log;
 
 import java.io.*;
 import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.List;
 
 /**
  * handles all the traffic going to or out of the server and client
+ * <p>
+ * packages are split into fragments by a {@link Fragmenter} before being sent, and put back together by a
+ * {@link FragmentAssembler} when received. So a package is not limited to the size of a single datagram.
+ * Packages are written straight into and read straight from pooled direct buffers, see {@link BufferPool}. The
+ * packages sent every tick are written field by field, see {@link SnapshotFrame} and {@link PackageFrame}.
+ * <p>
+ * events such as a player leaving are sent as {@link ControlMessage}s on the same channel. A {@link ReliableChannel}
+ * makes sure they arrive, and the other side gets them through {@link #onControlMessage}.
+ * <p>
+ * game packages carry a {@link ClockStamp} answering the latest game package of the other side, from which a
+ * {@link ClockSync} learns how the clocks of both sides relate and how long packages take to get here.
  * */
 @Log
 public abstract class TrafficHandler {
-    public static final int MAX_SIZE = 2024;
+    /**
+     * the largest datagram sent or received
+     * */
+    public static final int MAX_SIZE = Fragmenter.MAX_DATAGRAM_SIZE;
+
+    /**
+     * content of the packet the server answers a join with when there is no free slot left
+     * */
+    private static final byte ROOM_FULL = 1;
+
+    /**
+     * content of the packet the server answers a join with when the room the client picked does not exist
+     * */
+    private static final byte UNKNOWN_ROOM = 2;
+
+    /**
+     * the room of a server made for a single game, and the room clients join when they do not pick one
+     * */
+    public static final int DEFAULT_ROOM = 0;
+
+    /**
+     * size of a join packet: a zero byte followed by the id of the room
+     * */
+    private static final int JOIN_PACKET_SIZE = 1 + Integer.BYTES;
+
+    /**
+     * splits the packages sent by this handler into fragments
+     * */
+    private final Fragmenter fragmenter = new Fragmenter();
+
+    /**
+     * puts the fragments received by this handler back together
+     * */
+    private final FragmentAssembler assembler = new FragmentAssembler(BufferPool.DATAGRAMS);
+
+    /**
+     * the packages sent by this handler are written into, one at a time
+     * */
+    private final FragmentOutputStream output = new FragmentOutputStream(BufferPool.DATAGRAMS);
+
+    /**
+     * the packages received by this handler are read from
+     * */
+    private final FragmentInputStream input = new FragmentInputStream();
+
+    /**
+     * writes the fields of a {@link PackageFrame} into {@link #output}, and reads them from {@link #input}
+     * */
+    private final DataOutputStream frameOutput = new DataOutputStream(output);
+    private final DataInputStream frameInput = new DataInputStream(input);
+
+    /**
+     * the other side packages were sent to last, and its address, so it is not made again for every package
+     * */
+    private ConnectionEssentials lastTarget;
+    private InetSocketAddress lastAddress;
+
+    /**
+     * statistics about the connection of this handler
+     * */
+    @Getter
+    private final NetworkStatistics statistics = new NetworkStatistics();
+
+    /**
+     * sends the control messages of this handler again until they are acknowledged
+     * */
+    @Getter
+    private final ReliableChannel control = new ReliableChannel();
+
+    /**
+     * compares the clock of the other side with ours, from the stamps of the game packages it sends
+     * */
+    @Getter
+    private final ClockSync clockSync = new ClockSync();
+
+    /**
+     * the time the latest game package of the other side was sent at on its clock, -1 if none has arrived yet,
+     * and the time it arrived at on ours. Echoed in the stamp of the next game package sent
+     * */
+    private volatile long peerSent = -1;
+    private volatile long peerArrived;
 
     /**
-     * sends a {@link MultiPlayerGamePackage} from the client to the server
+     * sequence number of the last package received, sent back as ack. -1 if none has been received yet
+     * */
+    private volatile int lastReceivedSequence = -1;
+
+    /**
+     * the clock this handler reads the time from
+     * */
+    @Getter
+    private volatile Clock clock = Clock.systemUTC();
+
+    /**
+     * the time (in ms) a datagram was last received from the other side, the time this handler was made until then
+     * */
+    private volatile long lastHeard = clock.millis();
+
+    /**
+     * the time (in ms) a package was last sent to the other side, 0 if none has been sent yet
+     * */
+    private volatile long lastSent;
+
+    /**
+     * makes this handler read the time from another clock, for example the one of a {@link LoopbackNetwork}.
+     * Counts as having heard from the other side now.
+     * @param clock the clock
+     * */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+        lastHeard = clock.millis();
+    }
+
+    /**
+     * sends a {@link MultiPlayerGamePackage} from the client to the server, as a {@link SnapshotFrame} of its own.
+     * <p>
+     * when the package does not fit in {@link Fragmenter#MAX_FRAGMENTS} fragments, the least important objects are
+     * left out until it does
      * @param mp the multiplayer package to send
      * @param s the socket to send through
      * @param ce the {@link ConnectionEssentials} used to communicate with the other side
      * */
-    public void sendMultiPlayerGamePackage(MultiPlayerGamePackage mp, DatagramSocket s, ConnectionEssentials ce) throws IOException {
-        turnIntoBytesAndSend(mp, s, ce);
+    public void sendMultiPlayerGamePackage(MultiPlayerGamePackage mp, Transport s, ConnectionEssentials ce) throws IOException {
+        flushControl(s, ce);
+        synchronized (output) {
+            mp.setClockStamp(stamp());
+            encodeTrimmed(mp);
+            statistics.onSnapshot(output.getLength());
+            transmit(s, ce);
+        }
+    }
+
+    /**
+     * sends the view of a {@link WorldSnapshot} to a client. The world shared by all clients is encoded once by the
+     * snapshot and copied into the package as it is, only the part made for this client is encoded here.
+     * <p>
+     * when the whole world does not fit in the budget, nothing is sent. The caller then picks the objects to send and
+     * sends the view with {@link #sendMultiPlayerGamePackage}
+     * @param snapshot the snapshot the view was made from
+     * @param client the id of the client
+     * @param view the view made for the client by {@link WorldSnapshot#viewFor}
+     * @param budget the most bytes the package may take
+     * @param s the socket to send through
+     * @param ce the {@link ConnectionEssentials} used to communicate with the other side
+     * @return whether the package fit in the budget and was sent
+     * */
+    public boolean sendSnapshot(WorldSnapshot snapshot, String client, MultiPlayerGamePackage view,
+                                SnapshotBudget budget, Transport s, ConnectionEssentials ce) throws IOException {
+        byte[] world = snapshot.encodedWorld();
+        if (!budget.fits(world.length)) {
+            return false;
+        }
+        flushControl(s, ce);
+        synchronized (output) {
+            view.setClockStamp(stamp());
+            output.begin();
+            SnapshotFrame.write(output, snapshot.recipientFor(client, view), world);
+            if (!budget.fits(output.getLength())) {
+                output.release();
+                return false;
+            }
+            statistics.onSnapshot(output.getLength());
+            transmit(s, ce);
+            return true;
+        }
     }
 
     /**
      * receives a {@link MultiPlayerGamePackage} from the server
      * @param s the socket to send through
      * */
-    public MultiPlayerGamePackage receiveMultiPlayerGamePackage(DatagramSocket s) throws IOException, ClassNotFoundException {
-        DatagramPacket packet = receive(s);
-        ObjectInputStream iStream = new ObjectInputStream(new ByteArrayInputStream(packet.getData()));
-        MultiPlayerGamePackage mp = (MultiPlayerGamePackage) iStream.readObject();
-        iStream.close();
+    public MultiPlayerGamePackage receiveMultiPlayerGamePackage(Transport s) throws IOException, ClassNotFoundException {
+        MultiPlayerGamePackage mp = receivePackage(s, MultiPlayerGamePackage.class);
+        heard(mp.getClockStamp());
         return mp;
     }
 
@@ -41,35 +209,292 @@ public abstract class TrafficHandler {
      * @param s the socket to send through
      * @param ce the {@link ConnectionEssentials} used to communicate with the other side
      * */
-    public void sendSinglePlayerGamePackage(SinglePlayerPackage sp, DatagramSocket s, ConnectionEssentials ce) throws IOException {
-        turnIntoBytesAndSend(sp, s, ce);
+    public void sendSinglePlayerGamePackage(SinglePlayerPackage sp, Transport s, ConnectionEssentials ce) throws IOException {
+        flushControl(s, ce);
+        synchronized (output) {
+            sp.setClockStamp(stamp());
+            output.begin();
+            PackageFrame.writePlayer(frameOutput, sp);
+            transmit(s, ce);
+        }
     }
 
     /**
-     * turns an object calls into bytes. Make sure that that class implements {@link Serializable}
-     * @param sp class to send over
+     * @return the stamp for a game package sent now, answering the latest game package of the other side
+     * */
+    private ClockStamp stamp() {
+        return new ClockStamp(peerSent, peerArrived, clock.millis());
+    }
+
+    /**
+     * samples the clocks from the stamp of a game package that just arrived, and remembers it to answer it
+     * @param stamp the stamp of the package, null if it had none
+     * */
+    private void heard(ClockStamp stamp) {
+        if (stamp == null) {
+            return;
+        }
+        clockSync.add(stamp, lastHeard);
+        peerArrived = lastHeard;
+        peerSent = stamp.sent();
+    }
+
+    /**
+     * @param mp a package that was just received from the other side
+     * @param now the current time in ms on the clock the caller keeps the package by
+     * @return the time on that clock the package would have arrived at without being held up on the way, so the
+     * jitter of the network does not end up in the timeline of the snapshots
+     * */
+    public long arrivalOf(MultiPlayerGamePackage mp, long now) {
+        long arrived = lastHeard;
+        return now - (arrived - clockSync.expectedArrival(mp.getClockStamp(), arrived));
+    }
+
+    /**
+     * queues a control message for the other side. It goes out with the next package, or with {@link #flushControl}
+     * @param type what happened
+     * @param shipId the network id of the spaceship of the player it is about, 0 if it has none yet
+     * @param name the name of the player it is about
+     * */
+    public void queueControl(ControlMessage.Type type, int shipId, String name) {
+        control.queue(new ControlMessage(type, shipId, name, -1));
+    }
+
+    /**
+     * sends the control messages the other side has not acknowledged yet, if it is time to send them (again)
      * @param s the socket to send through
      * @param ce the {@link ConnectionEssentials} used to communicate with the other side
      * */
-    private void turnIntoBytesAndSend(Object sp, DatagramSocket s, ConnectionEssentials ce) throws IOException {
-        ByteArrayOutputStream bStream = new ByteArrayOutputStream();
-        ObjectOutput oo = new ObjectOutputStream(bStream);
-        oo.writeObject(sp);
-        oo.close();
-        byte[] data = bStream.toByteArray();
-        s.send(new DatagramPacket(data, data.length, ce.ipAddress(), ce.port()));
+    public void flushControl(Transport s, ConnectionEssentials ce) throws IOException {
+        List<ControlMessage> due = control.due(clock.millis());
+        if (!due.isEmpty()) {
+            sendControl(due, s, addressOf(ce));
+        }
+    }
+
+    /**
+     * lets the other side know we are still there when nothing else was sent for an interval. Also carries the
+     * control messages that are due to be sent again.
+     * @param s the socket to send through
+     * @param ce the {@link ConnectionEssentials} used to communicate with the other side
+     * @param interval the heartbeat interval in ms
+     * */
+    public void sendHeartbeat(Transport s, ConnectionEssentials ce, long interval) throws IOException {
+        long now = clock.millis();
+        if (now - lastSent >= interval) {
+            sendControl(control.due(now), s, addressOf(ce));
+        }
+    }
+
+    /**
+     * @param timeout the time in ms
+     * @return whether nothing was received from the other side for longer than the given time
+     * */
+    public boolean isSilentFor(long timeout) {
+        return clock.millis() - lastHeard > timeout;
+    }
+
+    /**
+     * called once for every control message from the other side, in the order they were sent
+     * @param message the message
+     * */
+    protected void onControlMessage(ControlMessage message) {
+    }
+
+    /**
+     * handles a received {@link ControlPackage}. New messages are acknowledged right away, to the address they came
+     * from, before they are handled.
+     * @param controlPackage the received package
+     * @param s the socket it was received on
+     * @param from the address and port it came from
+     * */
+    private void handleControl(ControlPackage controlPackage, Transport s, InetSocketAddress from)
+            throws IOException {
+        control.acknowledge(controlPackage.ack());
+        if (controlPackage.messages().isEmpty()) {
+            return;
+        }
+        List<ControlMessage> deliverable = control.accept(controlPackage.messages());
+        sendControl(List.of(), s, from);
+        deliverable.forEach(this::onControlMessage);
+    }
+
+    /**
+     * sends a {@link ControlPackage} with the given messages and the acknowledgement of the messages received
+     * @param messages the messages to send, empty to only acknowledge
+     * @param s the socket to send through
+     * @param target the address and port of the other side
+     * */
+    private void sendControl(List<ControlMessage> messages, Transport s, InetSocketAddress target)
+            throws IOException {
+        synchronized (output) {
+            output.begin();
+            PackageFrame.writeControl(frameOutput, messages, control.getAck());
+            transmit(s, target);
+        }
+    }
+
+    /**
+     * encodes a multiplayer package, leaving out its least important objects until it fits.
+     * Call while holding the lock on {@link #output}
+     * @param mp the multiplayer package to send
+     * */
+    private void encodeTrimmed(MultiPlayerGamePackage mp) throws IOException {
+        encodeFrame(mp);
+        while (output.isOverflowed() && mp.dropLeastImportant()) {
+            encodeFrame(mp);
+        }
+    }
+
+    /**
+     * encodes a multiplayer package as a frame whose world holds just the objects in the package.
+     * Call while holding the lock on {@link #output}
+     * @param mp the multiplayer package to send
+     * */
+    private void encodeFrame(MultiPlayerGamePackage mp) throws IOException {
+        output.begin();
+        SnapshotFrame.write(output, RecipientSection.of(mp), SnapshotFrame.encode(WorldSection.of(mp)));
+    }
+
+    /**
+     * gives the encoded package its headers, sends its fragments and gives them back to the pool.
+     * Call while holding the lock on {@link #output}
+     * @param s the socket to send through
+     * @param ce the {@link ConnectionEssentials} used to communicate with the other side
+     * */
+    private void transmit(Transport s, ConnectionEssentials ce) throws IOException {
+        transmit(s, addressOf(ce));
+    }
+
+    /**
+     * gives the encoded package its headers, sends its fragments and gives them back to the pool.
+     * Call while holding the lock on {@link #output}
+     * @param s the socket to send through
+     * @param target the address and port of the other side
+     * */
+    private void transmit(Transport s, InetSocketAddress target) throws IOException {
+        try {
+            if (output.isOverflowed()) {
+                throw new IOException("Package of " + output.getLength() + " bytes is too large to send");
+            }
+            long now = clock.millis();
+            lastSent = now;
+            int sequence = fragmenter.nextSequence();
+            statistics.onPayloadSent(sequence, now);
+            int count = output.finish(sequence, lastReceivedSequence);
+            for (int index = 0; index < count; index++) {
+                ByteBuffer fragment = output.fragment(index);
+                int length = fragment.remaining();
+                s.send(fragment, target);
+                statistics.onDatagramSent(length, now);
+            }
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * @param ce the other side
+     * @return its address, the same instance as long as the other side stays the same
+     * */
+    private InetSocketAddress addressOf(ConnectionEssentials ce) {
+        if (ce != lastTarget && !ce.equals(lastTarget)) {
+            lastAddress = new InetSocketAddress(ce.ipAddress(), ce.port());
+        }
+        lastTarget = ce;
+        return lastAddress;
     }
 
     /**
      * receives a single {@link SinglePlayerPackage}
      * @param s the socket to send data through
      * */
-    public SinglePlayerPackage receiveSinglePlayerGamePackage(DatagramSocket s) throws IOException, ClassNotFoundException {
-        DatagramPacket packet = receive(s);
-        ObjectInputStream iStream = new ObjectInputStream(new ByteArrayInputStream(packet.getData()));
-        SinglePlayerPackage mp = (SinglePlayerPackage) iStream.readObject();
-        iStream.close();
-        return mp;
+    public SinglePlayerPackage receiveSinglePlayerGamePackage(Transport s) throws IOException, ClassNotFoundException {
+        SinglePlayerPackage spp = receivePackage(s, SinglePlayerPackage.class);
+        heard(spp.getClockStamp());
+        return spp;
+    }
+
+    /**
+     * @param in the payload to read
+     * @return the package in the payload, written as a frame or serialized
+     * */
+    private Object read(FragmentInputStream in) throws IOException, ClassNotFoundException {
+        return switch (in.peek()) {
+            case SnapshotFrame.TAG -> SnapshotFrame.read(in);
+            case PackageFrame.PLAYER_TAG -> PackageFrame.readPlayer(frameInput);
+            case PackageFrame.CONTROL_TAG -> PackageFrame.readControl(frameInput);
+            default -> readObject(in);
+        };
+    }
+
+    /**
+     * @param in the payload to read
+     * @return the package serialized in the payload
+     * */
+    private static Object readObject(InputStream in) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream iStream = new ObjectInputStream(in)) {
+            return iStream.readObject();
+        }
+    }
+
+    /**
+     * receives fragments until a whole package of the given type has come in.
+     * Packages that are broken or of another type are skipped.
+     * @param s the socket to receive from
+     * @param type the class of the package
+     * */
+    private <T> T receivePackage(Transport s, Class<T> type) throws IOException, ClassNotFoundException {
+        while (true) {
+            ByteBuffer datagram = BufferPool.DATAGRAMS.acquire();
+            InetSocketAddress from;
+            try {
+                from = s.receive(datagram);
+            } catch (IOException e) {
+                BufferPool.DATAGRAMS.release(datagram);
+                throw e;
+            }
+            datagram.flip();
+            long now = clock.millis();
+            lastHeard = now;
+            if (datagram.remaining() >= Fragmenter.HEADER_SIZE) {
+                statistics.onDatagramReceived(datagram.remaining(), Fragmenter.sequenceOf(datagram), now);
+            }
+            FragmentAssembler.Payload payload = assembler.accept(datagram, now);
+            if (payload == null) {
+                continue;
+            }
+            lastReceivedSequence = payload.sequence();
+            statistics.onPayloadReceived(payload.sequence(), payload.ack(), now);
+            int length = payload.length();
+            Object object;
+            try {
+                object = read(input.of(payload));
+            } catch (ObjectStreamException | EOFException | UTFDataFormatException e) {
+                log.warning("Skipped a broken package: " + e.getMessage());
+                continue;
+            } finally {
+                payload.release();
+            }
+            if (object instanceof ControlPackage controlPackage) {
+                handleControl(controlPackage, s, from);
+                continue;
+            }
+            if (object instanceof MultiPlayerGamePackage) {
+                statistics.onSnapshot(length);
+            }
+            if (type.isInstance(object)) {
+                return type.cast(object);
+            }
+            log.warning("Skipped a package of unexpected type " + object.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * @return the amount of received packages that were dropped because fragments went missing
+     * */
+    public long getDroppedPackages() {
+        return assembler.getDroppedPayloads();
     }
 
     /**
@@ -77,40 +502,77 @@ public abstract class TrafficHandler {
      * @param s the socket to send through
      * @param ce the {@link ConnectionEssentials} used to communicate with the other side
      * */
-    public void sendInitPacket (DatagramSocket s, ConnectionEssentials ce) throws IOException {
+    public void sendInitPacket (Transport s, ConnectionEssentials ce) throws IOException {
         DatagramPacket packet = new DatagramPacket(new byte[1], 1, ce.ipAddress(), ce.port());
         s.send(packet);
     }
 
     /**
-     * receives a packet from the socket given
+     * sends the first packet of a client to the server, asking to join a room
      * @param s the socket to send through
+     * @param ce the {@link ConnectionEssentials} used to communicate with the server
+     * @param room the id of the room to join
      * */
-    public DatagramPacket receive(DatagramSocket s) throws IOException {
-        byte[] data = new byte[MAX_SIZE];
-        DatagramPacket packet = new DatagramPacket(data, data.length);
-        s.receive(packet);
-        return packet;
+    public void sendJoinPacket(Transport s, ConnectionEssentials ce, int room) throws IOException {
+        byte[] data = ByteBuffer.allocate(JOIN_PACKET_SIZE).put((byte) 0).putInt(room).array();
+        s.send(new DatagramPacket(data, data.length, ce.ipAddress(), ce.port()));
     }
 
     /**
-     * notifies server or client that the other has left
+     * @param packet the first packet of a client
+     * @return the room the client wants to join, the default room if the packet does not say
+     * */
+    public int roomOf(DatagramPacket packet) {
+        if (packet.getLength() < JOIN_PACKET_SIZE) {
+            return DEFAULT_ROOM;
+        }
+        return ByteBuffer.wrap(packet.getData(), packet.getOffset() + 1, Integer.BYTES).getInt();
+    }
+
+    /**
+     * turns a client away because the room it picked does not exist
      * @param s the socket to send through
-     * @param ce the {@link ConnectionEssentials} used to communicate with the other side
+     * @param ce the {@link ConnectionEssentials} used to communicate with the client
      * */
-    public void sendQuit (DatagramSocket s, ConnectionEssentials ce) throws IOException {
-        DatagramPacket packet = new DatagramPacket(new byte[1], 1, ce.ipAddress(), ce.port());
+    public void sendUnknownRoom(Transport s, ConnectionEssentials ce) throws IOException {
+        s.send(new DatagramPacket(new byte[]{UNKNOWN_ROOM}, 1, ce.ipAddress(), ce.port()));
+    }
+
+    /**
+     * @param packet the answer of the server to a join packet
+     * @return whether the server turned the client away because the room does not exist
+     * */
+    public boolean isUnknownRoom(DatagramPacket packet) {
+        return packet.getLength() == 1 && packet.getData()[packet.getOffset()] == UNKNOWN_ROOM;
+    }
+
+    /**
+     * turns a client away because the game it tries to join is full
+     * @param s the socket to send through
+     * @param ce the {@link ConnectionEssentials} used to communicate with the client
+     * */
+    public void sendRoomFull(Transport s, ConnectionEssentials ce) throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[]{ROOM_FULL}, 1, ce.ipAddress(), ce.port());
         s.send(packet);
     }
 
     /**
-     * receives a quit action from either the server or the client
+     * @param packet the answer of the server to an init packet
+     * @return whether the server turned the client away because the game is full
+     * */
+    public boolean isRoomFull(DatagramPacket packet) {
+        return packet.getLength() == 1 && packet.getData()[packet.getOffset()] == ROOM_FULL;
+    }
+
+    /**
+     * receives a packet from the socket given
      * @param s the socket to send through
      * */
-    public void receiveQuit(DatagramSocket s) throws IOException {
-        byte[] data = new byte[1];
+    public DatagramPacket receive(Transport s) throws IOException {
+        byte[] data = new byte[MAX_SIZE];
         DatagramPacket packet = new DatagramPacket(data, data.length);
         s.receive(packet);
+        return packet;
     }
 
 }
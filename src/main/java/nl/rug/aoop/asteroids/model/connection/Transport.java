@@ -0,0 +1,73 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+
+/**
+ * sends and receives datagrams for a {@link TrafficHandler}. Works like a {@link java.net.DatagramSocket}, so the
+ * network underneath can be swapped, for example by a {@link SimulatedTransport} that makes it worse on purpose.
+ * <p>
+ * the game sends and receives through {@link ByteBuffer}s, so datagrams can go straight from and into pooled direct
+ * buffers. The {@link DatagramPacket} methods are there for the few packets of joining a game.
+ * */
+public interface Transport extends AutoCloseable {
+    /**
+     * sends a datagram
+     * @param datagram the bytes from its position to its limit, which are all consumed
+     * @param target the address and port to send to
+     * */
+    void send(ByteBuffer datagram, InetSocketAddress target) throws IOException;
+
+    /**
+     * waits for a datagram and puts it in the buffer from its position on. A datagram longer than the space left is
+     * cut off
+     * @param into the buffer to receive in
+     * @return the address and port the datagram came from
+     * @throws java.net.SocketTimeoutException if nothing came in within the timeout
+     * */
+    InetSocketAddress receive(ByteBuffer into) throws IOException;
+
+    /**
+     * sends a datagram to the address and port in the packet
+     * @param packet the datagram to send
+     * */
+    default void send(DatagramPacket packet) throws IOException {
+        send(ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength()),
+                (InetSocketAddress) packet.getSocketAddress());
+    }
+
+    /**
+     * waits for a datagram and puts it in the packet, with the address and port it came from
+     * @param packet the packet to receive in, its length is set to the length of the datagram
+     * @throws java.net.SocketTimeoutException if nothing came in within the timeout
+     * */
+    default void receive(DatagramPacket packet) throws IOException {
+        ByteBuffer into = ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength());
+        packet.setSocketAddress(receive(into));
+        packet.setLength(into.position() - packet.getOffset());
+    }
+
+    /**
+     * @param timeout the longest time in ms {@link #receive} waits, 0 to wait forever
+     * */
+    void setSoTimeout(int timeout) throws SocketException;
+
+    /**
+     * @return the port this transport receives on
+     * */
+    int getLocalPort();
+
+    /**
+     * @return whether the transport is closed
+     * */
+    boolean isClosed();
+
+    /**
+     * closes the transport. A thread waiting in {@link #receive} gets an exception
+     * */
+    @Override
+    void close();
+}
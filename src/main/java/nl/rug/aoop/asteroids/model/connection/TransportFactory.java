@@ -0,0 +1,46 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.IOException;
+import java.time.Clock;
+
+/**
+ * opens the {@link Transport}s of a server or client. A server opens one to listen on and one for every client
+ * that joins.
+ * */
+@FunctionalInterface
+public interface TransportFactory {
+    /**
+     * opens transports on the real network
+     * */
+    TransportFactory UDP = UdpTransport::new;
+
+    /**
+     * @param port the port to receive on, 0 for any free port
+     * @return a new open transport
+     * */
+    Transport open(int port) throws IOException;
+
+    /**
+     * @return the clock the handlers using these transports read the time from, for heartbeats and timeouts
+     * */
+    default Clock clock() {
+        return Clock.systemUTC();
+    }
+
+    /**
+     * @return a factory for the network picked with {@link NetworkConditions#PROPERTY}, the real network if none is
+     * picked
+     * */
+    static TransportFactory configured() {
+        NetworkConditions conditions = NetworkConditions.configured();
+        return conditions.isPerfect() ? UDP : simulated(conditions);
+    }
+
+    /**
+     * @param conditions the network to simulate
+     * @return a factory opening transports on the real network that send as if over the given network
+     * */
+    static TransportFactory simulated(NetworkConditions conditions) {
+        return port -> new SimulatedTransport(new UdpTransport(port), conditions);
+    }
+}
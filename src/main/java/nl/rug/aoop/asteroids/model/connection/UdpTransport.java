@@ -0,0 +1,134 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * the real network: a {@link DatagramChannel}. Datagrams in direct buffers go to and from the OS without being
+ * copied. Receiving waits on a {@link Selector}, so it can time out like a socket.
+ * */
+public class UdpTransport implements Transport {
+    /**
+     * the channel all datagrams go through
+     * */
+    private final DatagramChannel channel;
+
+    /**
+     * wakes up a receiving thread when a datagram arrives, the timeout passes or the transport closes
+     * */
+    private final Selector selector;
+
+    /**
+     * the port the channel is bound to
+     * */
+    private final int port;
+
+    /**
+     * the longest time in ms {@link #receive} waits, 0 to wait forever
+     * */
+    private volatile int timeout;
+
+    /**
+     * opens a channel on any free port
+     * */
+    public UdpTransport() throws IOException {
+        this(0);
+    }
+
+    /**
+     * opens a channel
+     * @param port the port to receive on, 0 for any free port
+     * */
+    public UdpTransport(int port) throws IOException {
+        channel = DatagramChannel.open();
+        try {
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * sends a datagram. Like a full socket buffer on the way, a full send buffer of the OS loses it
+     * */
+    @Override
+    public void send(ByteBuffer datagram, InetSocketAddress target) throws IOException {
+        if (!channel.isOpen()) {
+            throw new SocketException("Socket is closed");
+        }
+        channel.send(datagram, target);
+    }
+
+    @Override
+    public InetSocketAddress receive(ByteBuffer into) throws IOException {
+        long deadline = timeout == 0 ? 0 : System.currentTimeMillis() + timeout;
+        try {
+            while (true) {
+                InetSocketAddress from = (InetSocketAddress) channel.receive(into);
+                if (from != null) {
+                    return from;
+                }
+                long wait = 0;
+                if (deadline != 0) {
+                    wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        throw new SocketTimeoutException("Receive timed out");
+                    }
+                }
+                selector.select(wait);
+                selector.selectedKeys().clear();
+                if (!channel.isOpen()) {
+                    throw new SocketException("Socket closed");
+                }
+            }
+        } catch (ClosedSelectorException | ClosedChannelException e) {
+            throw new SocketException("Socket closed");
+        }
+    }
+
+    @Override
+    public void setSoTimeout(int timeout) throws SocketException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative");
+        }
+        this.timeout = timeout;
+    }
+
+    @Override
+    public int getLocalPort() {
+        return port;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return !channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+        selector.wakeup();
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import java.awt.geom.Point2D;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * the part of a {@link WorldSnapshot} that is the same for every client: all spaceships, bullets and asteroids.
+ * Encoded once per tick and sent to every client, see {@link SnapshotFrame}. It is sent packed, see {@link PackedWorld}.
+ * @param ships the locations of the spaceships of the players that are alive
+ * @param shipIds the network ids of the spaceships
+ * @param slots the slots of the spaceships, which decide their colour
+ * @param directions the direction angles of the spaceships
+ * @param accelerating whether each spaceship is accelerating
+ * @param names the user names of the players
+ * @param scores the scores of the players
+ * @param bullets the locations of the bullets, grouped per player
+ * @param bulletIds the network ids of the bullets
+ * @param bulletOwnerIds the network ids of the spaceships that fired the bullets
+ * @param bulletVelocities the velocities of the bullets
+ * @param asteroids the locations of the asteroids
+ * @param asteroidIds the network ids of the asteroids
+ * @param asteroidVelocities the velocities of the asteroids
+ * @param asteroidDirections the direction angles of the asteroids
+ * @param asteroidRadius the sizes of the asteroids
+ * @param reckoned whether asteroids were left out because the clients can move them on themselves
+ * @param tick the tick of the host the world is from
+ * */
+record WorldSection(List<Point2D.Double> ships,
+                    List<Integer> shipIds,
+                    List<Integer> slots,
+                    List<Double> directions,
+                    List<Boolean> accelerating,
+                    List<String> names,
+                    List<Integer> scores,
+                    List<Point2D.Double> bullets,
+                    List<Integer> bulletIds,
+                    List<Integer> bulletOwnerIds,
+                    List<Point2D.Double> bulletVelocities,
+                    List<Point2D.Double> asteroids,
+                    List<Integer> asteroidIds,
+                    List<Point2D.Double> asteroidVelocities,
+                    List<Double> asteroidDirections,
+                    List<Double> asteroidRadius,
+                    boolean reckoned,
+                    int tick) implements Serializable {
+    /**
+     * sends the world packed into as few bits as it needs
+     * */
+    @Serial
+    private Object writeReplace() {
+        return new PackedWorld(this);
+    }
+
+    /**
+     * @param mp a package made for a single client
+     * @return the objects in the package, as a world of their own
+     * */
+    static WorldSection of(MultiPlayerGamePackage mp) {
+        return new WorldSection(mp.getSpaceShips(), mp.getShipIds(), mp.getSlots(), mp.getDirections(),
+                mp.getIsAccList(), mp.getEnemiesNames(), mp.getEnemiesScores(), mp.getBullets(), mp.getBulletIds(),
+                mp.getBulletOwnerIds(), mp.getBulletVelocities(), mp.getAsteroids(), mp.getAsteroidIds(),
+                mp.getAsteroidVelocities(), mp.getAsteroidsDirection(), mp.getAsteroidRadius(), mp.isReckoned(),
+                mp.getHostTick());
+    }
+}
@@ -0,0 +1,340 @@
+package nl.rug.aoop.asteroids.model.connection;
+
+import lombok.Getter;
+import nl.rug.aoop.asteroids.model.gameobjects.Asteroid;
+import nl.rug.aoop.asteroids.model.gameobjects.Spaceship;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * the state of all players, bullets and asteroids on the host, taken once per tick.
+ * <p>
+ * every client gets a view of the same snapshot with only its own spaceship and bullets left out, so making the
+ * packages for N clients walks the players once instead of N times. The part all views share is encoded once as well,
+ * see {@link #encodedWorld()}, so sending it to N clients serializes it once instead of N times.
+ * <p>
+ * locations, angles and sizes are taken as they are after being sent, see {@link Quantizer}, so the host sees the
+ * other players exactly like the clients do.
+ * */
+public class WorldSnapshot {
+    /**
+     * the spaceships of the players that are still alive, in the order they are sent
+     * */
+    private final List<Point2D.Double> ships;
+    private final List<Integer> shipIds;
+    private final List<Integer> slots;
+    private final List<Double> directions;
+    private final List<Boolean> accelerating;
+    private final List<String> names;
+    private final List<Integer> scores;
+    private final List<Integer> shipStepsLeft;
+
+    /**
+     * index of each alive player in {@link #ships}, by client id
+     * */
+    private final Map<String, Integer> shipIndices;
+
+    /**
+     * the bullets of all players, grouped per player
+     * */
+    private final List<Point2D.Double> bullets;
+    private final List<Integer> bulletIds;
+    private final List<Integer> bulletOwnerIds;
+    private final List<Point2D.Double> bulletVelocities;
+    private final List<Integer> bulletStepsLeft;
+    private final List<Integer> bulletFireTicks;
+    private final List<Integer> bulletRewindLimits;
+
+    /**
+     * the range of each player's bullets in {@link #bullets}, by client id
+     * */
+    private final Map<String, int[]> bulletRanges;
+
+    /**
+     * the asteroids shared by all views
+     * */
+    private final List<Point2D.Double> asteroids;
+    private final List<Integer> asteroidIds;
+    private final List<Point2D.Double> asteroidVelocities;
+    private final List<Double> asteroidDirections;
+    private final List<Double> asteroidRadius;
+
+    /**
+     * the lists shared by all views
+     * */
+    private final WorldSection world;
+
+    /**
+     * the world encoded by {@link SnapshotFrame#encode}, null until a client needs it
+     * */
+    private byte[] encodedWorld;
+
+    /**
+     * the time the snapshot was taken at
+     * */
+    @Getter
+    private final long time;
+
+    /**
+     * takes a snapshot of the game on the host at tick 0
+     * @param players the latest package of each player, by client id
+     * @param spaceships the spaceship of each player on the host, by client id. Used for the scores
+     * @param asteroids the asteroids in the game
+     * @param time the current time in ms
+     * */
+    public WorldSnapshot(Map<String, SinglePlayerPackage> players, Map<String, Spaceship> spaceships,
+                         List<Asteroid> asteroids, long time) {
+        this(players, spaceships, asteroids, time, 0);
+    }
+
+    /**
+     * takes a snapshot of the game on the host
+     * @param players the latest package of each player, by client id
+     * @param spaceships the spaceship of each player on the host, by client id. Used for the scores
+     * @param asteroids the asteroids in the game
+     * @param time the current time in ms
+     * @param tick the tick of the host
+     * */
+    public WorldSnapshot(Map<String, SinglePlayerPackage> players, Map<String, Spaceship> spaceships,
+                         List<Asteroid> asteroids, long time, int tick) {
+        this.time = time;
+        ships = new ArrayList<>(players.size());
+        shipIds = new ArrayList<>(players.size());
+        slots = new ArrayList<>(players.size());
+        directions = new ArrayList<>(players.size());
+        accelerating = new ArrayList<>(players.size());
+        names = new ArrayList<>(players.size());
+        scores = new ArrayList<>(players.size());
+        shipStepsLeft = new ArrayList<>(players.size());
+        shipIndices = new HashMap<>();
+        bullets = new ArrayList<>();
+        bulletIds = new ArrayList<>();
+        bulletOwnerIds = new ArrayList<>();
+        bulletVelocities = new ArrayList<>();
+        bulletStepsLeft = new ArrayList<>();
+        bulletFireTicks = new ArrayList<>();
+        bulletRewindLimits = new ArrayList<>();
+        bulletRanges = new HashMap<>();
+        players.forEach((client, player) -> {
+            if (!player.isDestroyed()) {
+                shipIndices.put(client, ships.size());
+                ships.add(Quantizer.snapped(player.getSpaceShip()));
+                shipIds.add(player.getShipId());
+                directions.add(Quantizer.snapAngle(player.getDirection()));
+                accelerating.add(player.isAcc);
+                names.add(player.getUserName());
+                Spaceship spaceship = spaceships.get(client);
+                slots.add(spaceship == null ? 0 : spaceship.getSlot());
+                scores.add(spaceship == null ? 0 : spaceship.getScore());
+                shipStepsLeft.add(player.getSpaceShipStepsLeft());
+            }
+            int start = bullets.size();
+            int count = Math.min(player.getBullets().size(), player.getBulletIds().size());
+            for (int i = 0; i < count; i++) {
+                bullets.add(Quantizer.snapped(player.getBullets().get(i)));
+                bulletIds.add(player.getBulletIds().get(i));
+                bulletOwnerIds.add(player.getShipId());
+                bulletVelocities.add(velocity(player, i));
+                bulletStepsLeft.add(stepsLeft(player, i));
+                bulletFireTicks.add(fireTick(player, i));
+                bulletRewindLimits.add(player.getMaxRewindTicks());
+            }
+            bulletRanges.put(client, new int[]{start, bullets.size()});
+        });
+        this.asteroids = new ArrayList<>(asteroids.size());
+        asteroidIds = new ArrayList<>(asteroids.size());
+        asteroidVelocities = new ArrayList<>(asteroids.size());
+        asteroidDirections = new ArrayList<>(asteroids.size());
+        asteroidRadius = new ArrayList<>(asteroids.size());
+        asteroids.forEach(asteroid -> {
+            this.asteroids.add(Quantizer.snapped(asteroid.getLocation()));
+            asteroidIds.add(asteroid.getNetworkId());
+            asteroidVelocities.add(Quantizer.snappedVelocity(asteroid.getVelocity()));
+            asteroidDirections.add(Quantizer.snapAngle(asteroid.getDirectionAngle()));
+            asteroidRadius.add(Quantizer.snapRadius(asteroid.getRadius()));
+        });
+        world = new WorldSection(ships, shipIds, slots, directions, accelerating, names, scores, bullets, bulletIds,
+                bulletOwnerIds, bulletVelocities, this.asteroids, asteroidIds, asteroidVelocities, asteroidDirections,
+                asteroidRadius, false, tick);
+    }
+
+    /**
+     * the package of the host itself does not keep the steps left of its bullets up to date
+     * @return the steps left of the bullet at the index, 0 if unknown
+     * */
+    private static int stepsLeft(SinglePlayerPackage player, int index) {
+        List<Integer> stepsLeft = player.getOwnBulletsStepsLeft();
+        return stepsLeft != null && index < stepsLeft.size() ? stepsLeft.get(index) : 0;
+    }
+
+    /**
+     * the package of the host itself and packages of older clients may not tell the velocities of their bullets
+     * @return the velocity of the bullet at the index as it is sent, standing still if unknown
+     * */
+    private static Point2D.Double velocity(SinglePlayerPackage player, int index) {
+        List<Point2D.Double> velocities = player.getBulletVelocities();
+        if (velocities == null || index >= velocities.size()) {
+            return new Point2D.Double();
+        }
+        return Quantizer.snappedVelocity(velocities.get(index));
+    }
+
+    /**
+     * the package of the host itself and packages of older clients do not tell the fire ticks of their bullets
+     * @return the tick the bullet at the index was fired at, -1 if unknown
+     * */
+    private static int fireTick(SinglePlayerPackage player, int index) {
+        List<Integer> fireTicks = player.getBulletFireTicks();
+        return fireTicks != null && index < fireTicks.size() ? fireTicks.get(index) : -1;
+    }
+
+    /**
+     * makes the package for a single client, holding everything except its own spaceship and bullets
+     * @param client the id of the client
+     * @param ownShipDestroyed whether the spaceship of the client is destroyed
+     * @param ownName the user name of the client
+     * @param ownScore the score of the client
+     * @return the package to send to the client
+     * */
+    public MultiPlayerGamePackage viewFor(String client, boolean ownShipDestroyed, String ownName, int ownScore) {
+        int[] bulletRange = bulletRanges.getOrDefault(client, new int[]{0, 0});
+        return view(world, new RecipientSection(ownShipDestroyed, 0, 0, ownName, ownScore,
+                shipIndices.getOrDefault(client, -1), bulletRange[0], bulletRange[1], List.of(), false, null));
+    }
+
+    /**
+     * @param client the id of the client
+     * @param view the package made for the client by {@link #viewFor}, with its own spaceship and despawned ids set
+     * @return the part of the package that is only meant for the client
+     * */
+    RecipientSection recipientFor(String client, MultiPlayerGamePackage view) {
+        int[] bulletRange = bulletRanges.getOrDefault(client, new int[]{0, 0});
+        return new RecipientSection(view.isOwnShipDestroyed(), view.getOwnShipId(), view.getOwnSlot(),
+                view.getOwnName(), view.getOwnScore(), shipIndices.getOrDefault(client, -1),
+                bulletRange[0], bulletRange[1], view.getDespawnedIds(), view.isTrimmed(), view.getClockStamp());
+    }
+
+    /**
+     * encodes the part of the snapshot that is the same for every client, only the first time it is asked for
+     * @return the encoded world, shared by all clients. Do not change it
+     * */
+    public synchronized byte[] encodedWorld() throws IOException {
+        if (encodedWorld == null) {
+            encodedWorld = SnapshotFrame.encode(world);
+        }
+        return encodedWorld;
+    }
+
+    /**
+     * puts the view of a single client together
+     * @param world the part of the snapshot shared by all clients
+     * @param recipient the part of the snapshot made for the client
+     * @return the package holding everything except the spaceship and bullets of the client
+     * */
+    static MultiPlayerGamePackage view(WorldSection world, RecipientSection recipient) {
+        int ship = recipient.ownShip();
+        int from = recipient.ownBulletsFrom();
+        int to = recipient.ownBulletsTo();
+        MultiPlayerGamePackage mp = new MultiPlayerGamePackage(
+                recipient.ownShipDestroyed(),
+                recipient.ownName(),
+                recipient.ownScore(),
+                maskShip(ship, world.names()),
+                maskShip(ship, world.scores()),
+                maskShip(ship, world.ships()),
+                maskShip(ship, world.shipIds()),
+                maskShip(ship, world.slots()),
+                maskShip(ship, world.directions()),
+                maskShip(ship, world.accelerating()),
+                world.asteroids(),
+                world.asteroidIds(),
+                world.asteroidVelocities(),
+                world.asteroidDirections(),
+                world.asteroidRadius(),
+                maskBullets(from, to, world.bullets()),
+                maskBullets(from, to, world.bulletIds()),
+                maskBullets(from, to, world.bulletOwnerIds()),
+                maskBullets(from, to, world.bulletVelocities()));
+        mp.setOwnShipId(recipient.ownShipId());
+        mp.setOwnSlot(recipient.ownSlot());
+        mp.getDespawnedIds().addAll(recipient.despawnedIds());
+        mp.setTrimmed(recipient.trimmed());
+        mp.setReckoned(world.reckoned());
+        mp.setHostTick(world.tick());
+        mp.setClockStamp(recipient.clockStamp());
+        return mp;
+    }
+
+    /**
+     * @param client the id of the client
+     * @return the steps until collision is possible of the spaceships of all other players
+     * */
+    public List<Integer> shipStepsLeftFor(String client) {
+        return maskShips(client, shipStepsLeft);
+    }
+
+    /**
+     * @param client the id of the client
+     * @return the steps until collision is possible of the bullets of all other players
+     * */
+    public List<Integer> bulletStepsLeftFor(String client) {
+        return maskBullets(client, bulletStepsLeft);
+    }
+
+    /**
+     * @param client the id of the client
+     * @return the ticks the bullets of all other players were fired at, -1 if unknown
+     * */
+    public List<Integer> bulletFireTicksFor(String client) {
+        return maskBullets(client, bulletFireTicks);
+    }
+
+    /**
+     * @param client the id of the client
+     * @return the most ticks the hits of the bullets of all other players are judged back in time
+     * */
+    public List<Integer> bulletRewindLimitsFor(String client) {
+        return maskBullets(client, bulletRewindLimits);
+    }
+
+    /**
+     * @return the tick of the host the snapshot was taken at
+     * */
+    public int getTick() {
+        return world.tick();
+    }
+
+    /**
+     * @return the list without the spaceship of the client
+     * */
+    private <T> List<T> maskShips(String client, List<T> list) {
+        return maskShip(shipIndices.getOrDefault(client, -1), list);
+    }
+
+    /**
+     * @return the list without the element at the index, the whole list if the index is -1
+     * */
+    private static <T> List<T> maskShip(int index, List<T> list) {
+        return index < 0 ? list : new MaskedList<>(list, index, index + 1);
+    }
+
+    /**
+     * @return the list without the bullets of the client
+     * */
+    private <T> List<T> maskBullets(String client, List<T> list) {
+        int[] range = bulletRanges.get(client);
+        return range == null ? list : maskBullets(range[0], range[1], list);
+    }
+
+    /**
+     * @return the list without the elements in the range, the whole list if the range is empty
+     * */
+    private static <T> List<T> maskBullets(int from, int to, List<T> list) {
+        return from >= to ? list : new MaskedList<>(list, from, to);
+    }
+}
@@ -35,6 +35,25 @@ public class Bullet extends GameObject {
     @Getter @Setter
     private int stepsLeft;
 
+    /**
+     * The network id of the spaceship that fired this bullet. Zero if unknown.
+     */
+    @Getter @Setter
+    private int ownerId;
+
+    /**
+     * The tick of the host that the shooter was seeing when it fired this bullet. -1 if unknown.
+     */
+    @Getter @Setter
+    private int fireTick = -1;
+
+    /**
+     * The number of ticks the host looks back in time when judging the hits of this bullet, which is how far behind
+     * its shooter was. Zero for bullets fired on the host itself.
+     */
+    @Getter @Setter
+    private int rewindTicks;
+
     /**
      * Constructs a new bullet using the given location and velocity parameters, and a default number of steps until the
      * bullet is destroyed.
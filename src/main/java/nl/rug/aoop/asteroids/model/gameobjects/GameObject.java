@@ -5,6 +5,7 @@ import nl.rug.aoop.asteroids.view.AsteroidsFrame;
 import lombok.Getter;
 
 import java.awt.*;
+import java.awt.geom.Point2D;
 
 /**
  * This class represents any object that is present in a game, such as a bullet, asteroid, or a player's ship. As an
@@ -44,6 +45,13 @@ public abstract class GameObject {
     @Getter @Setter
     private int stepsUntilCollisionPossible;
 
+    /**
+     * The id the host gave this object, so that it can be recognised in every package sent over the network. Zero if
+     * the object has not been given an id.
+     */
+    @Getter @Setter
+    private int networkId;
+
     /**
      * Constructs a new game object with the specified location, velocity and radius.
      *
@@ -77,13 +85,28 @@ public abstract class GameObject {
      * uniform even when performance may suffer.
      */
     public void nextStep() {
-        location.x = (AsteroidsFrame.WINDOW_SIZE.width + location.x + velocity.x) % AsteroidsFrame.WINDOW_SIZE.width;
-        location.y = (AsteroidsFrame.WINDOW_SIZE.height + location.y + velocity.y) % AsteroidsFrame.WINDOW_SIZE.height;
+        location.x = (AsteroidsFrame.WIDTH + location.x + velocity.x) % AsteroidsFrame.WIDTH;
+        location.y = (AsteroidsFrame.HEIGHT + location.y + velocity.y) % AsteroidsFrame.HEIGHT;
         if (stepsUntilCollisionPossible > 0) {
             stepsUntilCollisionPossible--;
         }
     }
 
+    /**
+     * Moves this object to where it would be the given number of steps after being at the origin, going in a straight
+     * line with its current velocity and wrapping around the edges like {@link #nextStep()} does. The steps do not
+     * need to be whole, so an object received over the network can be moved on between two ticks.
+     *
+     * @param origin Where the object was.
+     * @param steps The number of steps since then, negative to move back in time.
+     */
+    public void reckon(Point2D origin, double steps) {
+        double x = (origin.getX() + velocity.x * steps) % AsteroidsFrame.WIDTH;
+        double y = (origin.getY() + velocity.y * steps) % AsteroidsFrame.HEIGHT;
+        location.x = x < 0 ? x + AsteroidsFrame.WIDTH : x;
+        location.y = y < 0 ? y + AsteroidsFrame.HEIGHT : y;
+    }
+
     /**
      * Flags this object as destroyed, so that the game may deal with it.
      */
@@ -108,7 +131,19 @@ public abstract class GameObject {
      * @return True if object collides with given object, false otherwise.
      */
     public boolean collides(GameObject other) {
-        return getLocation().distance(other.getLocation()) < getRadius() + other.getRadius()
+        return collidesAt(getLocation(), other);
+    }
+
+    /**
+     * Checks whether the given object collides with this object as if this object were at another location, such as
+     * where it was a few ticks ago.
+     *
+     * @param location The location to put this object at.
+     * @param other The other object that it may collide with.
+     * @return True if object collides with given object, false otherwise.
+     */
+    public boolean collidesAt(Point2D location, GameObject other) {
+        return location.distance(other.getLocation()) < getRadius() + other.getRadius()
                 && canCollide() && other.canCollide();
     }
 
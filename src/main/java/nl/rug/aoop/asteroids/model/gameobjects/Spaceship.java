@@ -138,6 +138,12 @@ public class Spaceship extends GameObject {
     @Getter @Setter
     private Color spaceShipsColor;
 
+    /**
+     * The slot of the player in a multiplayer game, which decides the colour of its spaceship. 0 for the host.
+     */
+    @Getter @Setter
+    private int slot;
+
     private final ExecutorService service;
 
     @Setter @Getter
@@ -148,7 +154,7 @@ public class Spaceship extends GameObject {
      * with no velocity.
      */
     public Spaceship() {
-        super(AsteroidsFrame.WINDOW_SIZE.width / 2.0, AsteroidsFrame.WINDOW_SIZE.height / 2.0,
+        super(AsteroidsFrame.WIDTH / 2.0, AsteroidsFrame.HEIGHT / 2.0,
                 0, 0, SHIP_SIZE);
         this.service = Executors.newCachedThreadPool();
         reset();
@@ -159,8 +165,8 @@ public class Spaceship extends GameObject {
      * Resets all parameters to default values, so a new game can be started.
      */
     public void reset() {
-        getLocation().x = AsteroidsFrame.WINDOW_SIZE.width / 2.0;
-        getLocation().y = AsteroidsFrame.WINDOW_SIZE.height / 2.0;
+        getLocation().x = AsteroidsFrame.WIDTH / 2.0;
+        getLocation().y = AsteroidsFrame.HEIGHT / 2.0;
         getVelocity().x = 0;
         getVelocity().y = 0;
         direction = 0;
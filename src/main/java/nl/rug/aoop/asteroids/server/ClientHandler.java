@@ -1,17 +1,31 @@
 package nl.rug.aoop.asteroids.server;
 
+import lombok.Getter;
 import lombok.extern.java.Log;
 import nl.rug.aoop.asteroids.model.Game;
+import nl.rug.aoop.asteroids.model.RewindBuffer;
 import nl.rug.aoop.asteroids.model.connection.ConnectionEssentials;
+import nl.rug.aoop.asteroids.model.connection.ControlMessage;
+import nl.rug.aoop.asteroids.model.connection.DeadReckoning;
+import nl.rug.aoop.asteroids.model.connection.HeartbeatSettings;
 import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.model.connection.PriorityAccumulator;
 import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.SnapshotBudget;
 import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
+import nl.rug.aoop.asteroids.model.connection.Transport;
+import nl.rug.aoop.asteroids.model.connection.TransportFactory;
+import nl.rug.aoop.asteroids.model.connection.WorldSnapshot;
 import nl.rug.aoop.asteroids.model.gameobjects.Spaceship;
 
 import java.io.IOException;
-import java.net.DatagramSocket;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * handles and communicates with the clients separately
@@ -26,17 +40,24 @@ public class ClientHandler extends TrafficHandler implements Runnable {
     /**
      * indicates whether the class is running
      * */
-    private boolean running;
+    @Getter
+    private volatile boolean running;
 
     /**
      * id of the client that we made this class for
      * */
     private final String id;
 
+    /**
+     * the room the client joined
+     * */
+    @Getter
+    private final int room;
+
     /**
      * socket to communicate with
      * */
-    private final DatagramSocket s;
+    private final Transport s;
 
     /**
      * connection essentials needed to communicate
@@ -54,25 +75,81 @@ public class ClientHandler extends TrafficHandler implements Runnable {
      * */
     private Spaceship spaceship;
 
+    /**
+     * indicates whether the spaceship of this client is destroyed
+     * */
+    private volatile boolean destroyed;
+
     /**
      * the user name of the client
      * */
+    @Getter
     private String userName;
 
+    /**
+     * the network ids the host gave to the bullets of this client, by the number the client gave them
+     * */
+    private final Map<Integer, Integer> bulletIds;
+
+    /**
+     * the network ids of the objects in the last package sent to this client
+     * */
+    private Set<Integer> sentIds;
+
+    /**
+     * the server this client joined through, which passes events on to the other clients in the room
+     * */
+    private final Server server;
+
+    /**
+     * how long the client may stay silent before it is reaped
+     * */
+    private final HeartbeatSettings heartbeat;
+
+    /**
+     * the most bytes a snapshot sent to the client may take
+     * */
+    private final SnapshotBudget budget;
+
+    /**
+     * picks the objects sent to the client when the world does not fit in its budget
+     * */
+    private final PriorityAccumulator priorities;
+
+    /**
+     * leaves the asteroids the client can move on itself out of the packages sent to it
+     * */
+    private final DeadReckoning reckoning;
+
     /**
      * makes an instance of this client handler.
      * <p>
      *     communicates separately with each client and sends and receives information from
      *     them
      * </p>
+     * @param server the server the client joined through
      * */
-    public ClientHandler(String id, Game game, ConnectionEssentials ce) throws IOException {
+    public ClientHandler(String id, int room, Game game, ConnectionEssentials ce, Server server)
+            throws IOException {
         this.id = id;
+        this.room = room;
+        this.server = server;
+        this.heartbeat = server.getHeartbeat();
+        this.budget = server.getSnapshotBudget();
+        this.priorities = new PriorityAccumulator();
+        this.reckoning = DeadReckoning.configured();
         this.game = game;
         this.lastScore = 0;
-        running = false;
+        this.bulletIds = new HashMap<>();
+        this.sentIds = new HashSet<>();
+        // counts as running from the start, so the server does not forget about it before it runs
+        running = true;
         this.ce = ce;
-        this.s = new DatagramSocket();
+        TransportFactory transports = server.getTransports();
+        this.s = transports.open(0);
+        setClock(transports.clock());
+        // wake up every interval to check whether the client went silent
+        s.setSoTimeout(heartbeat.socketTimeout());
         // send new init packet so client now communicates with a new separate socket and port
         sendInitPacket(s,ce);
     }
@@ -85,18 +162,19 @@ public class ClientHandler extends TrafficHandler implements Runnable {
     @Override
     public void run() {
         running = true;
-        boolean destroyed = false;
-        listenForQuitActions();
+        destroyed = false;
         assignClientASpaceShip();
         do {
             try {
                 SinglePlayerPackage spp = receiveSinglePlayerGamePackage(s);
+                if (spp.getClockStamp() != null) {
+                    reckoning.acknowledged(spp.getClockStamp().echoed());
+                }
                 this.userName = spp.getUserName();
+                assignNetworkIds(spp);
+                spp.setMaxRewindTicks(RewindBuffer.latencyTicks(getClockSync().getRoundTrip()));
                 if (!destroyed) {
                     game.updateInfo(id, spp);
-                } else {
-                    game.updateMainSpaceShip();
-                    game.updateHostsFrame();
                 }
                 if (!destroyed) {
                     destroyed = this.game.getClientById(id).isDestroyed();
@@ -104,59 +182,193 @@ public class ClientHandler extends TrafficHandler implements Runnable {
                     if(destroyed) {
                         spp.setDestroyed(true);
                         game.removeClient(id);
+                        announce(ControlMessage.Type.DEATH);
                     }
                 }
                 makeAndSendMultiPlayerPackage(destroyed);
+            } catch (SocketTimeoutException e) {
+                if (isSilentFor(heartbeat.timeoutMillis())) {
+                    reap();
+                } else {
+                    flushControl();
+                }
             } catch (IOException | ClassNotFoundException e) {
-                log.warning("Encountered an error while communicating with the client." +
-                        "Clients ships color : " + spaceship.getSpaceShipsColor().toString());
+                if (running) {
+                    log.warning("Encountered an error while communicating with the client." +
+                            "Clients ships color : " + spaceship.getSpaceShipsColor().toString());
+                }
                 running = false;
             }
         } while (running);
     }
 
+    /**
+     * tells the client again which port to talk to, when it asked to join again because the first answer was late or
+     * lost
+     * */
+    public void answerJoin() throws IOException {
+        sendInitPacket(s, ce);
+    }
+
+    /**
+     * stops serving the client, for example because its room is closed. Closes the socket, so the thread waiting
+     * on it is freed.
+     * */
+    public void stop() {
+        running = false;
+        s.close();
+    }
+
+    /**
+     * tells the client it is removed from the game. Sent again by {@link #flushControl()} until the client
+     * acknowledges it.
+     * */
+    public void kick() {
+        queueControl(ControlMessage.Type.KICK, spaceship == null ? 0 : spaceship.getNetworkId(), userName);
+        flushControl();
+    }
+
+    /**
+     * sends the control messages the client has not acknowledged yet, if it is time to send them (again)
+     * */
+    public void flushControl() {
+        try {
+            flushControl(s, ce);
+        } catch (IOException e) {
+            log.warning("Could not send control messages to " + userName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return whether the client acknowledged all control messages sent to it
+     * */
+    public boolean isControlIdle() {
+        return getControl().isIdle();
+    }
+
+    /**
+     * handles the events the client sends: joining, changing its name, asking for a new spaceship and leaving
+     * @param message the message of the client
+     * */
+    @Override
+    protected void onControlMessage(ControlMessage message) {
+        switch (message.type()) {
+            case JOIN, NAME_CHANGE -> {
+                userName = message.name();
+                announce(message.type());
+            }
+            case RESPAWN -> respawn();
+            case LEAVE -> leave();
+            default -> log.warning("Ignored a " + message.type() + " message from client " + userName);
+        }
+    }
+
+    /**
+     * tells the client and the other clients in the room about something that happened to this client
+     * @param type what happened
+     * */
+    private void announce(ControlMessage.Type type) {
+        int shipId = spaceship == null ? 0 : spaceship.getNetworkId();
+        if (type == ControlMessage.Type.DEATH || type == ControlMessage.Type.RESPAWN) {
+            queueControl(type, shipId, userName);
+        }
+        server.broadcast(room, type, shipId, userName, this);
+    }
+
+    /**
+     * gives the client a new spaceship after it died, if there is still room for it
+     * */
+    private void respawn() {
+        if (!destroyed) {
+            return;
+        }
+        if (game.getPlayerSlots().isFull()) {
+            log.info("Could not respawn " + userName + ", room " + room + " is full");
+            return;
+        }
+        assignClientASpaceShip();
+        lastScore = 0;
+        destroyed = false;
+        announce(ControlMessage.Type.RESPAWN);
+    }
+
+    /**
+     * removes a client that has not been heard of for longer than the timeout, as if it left. Its process probably
+     * died or it lost its connection.
+     * */
+    private void reap() {
+        log.info("Reaped " + userName + " in room " + room + ", silent for more than "
+                + heartbeat.timeoutMillis() + " ms");
+        leave();
+        server.reaped(this);
+    }
+
+    /**
+     * removes the client from the game after it left, and stops serving it
+     * */
+    private void leave() {
+        Spaceship ship = game.getClientById(id);
+        if (ship != null) {
+            ship.destroy();
+        }
+        game.removeClient(id);
+        announce(ControlMessage.Type.LEAVE);
+        stop();
+    }
+
     /**
      * assigns this client a spaceship
      * */
     private void assignClientASpaceShip() {
         spaceship = new Spaceship();
         spaceship.setId(id);
+        game.assignNetworkId(spaceship);
         game.addClient(spaceship);
     }
 
     /**
-     * makes and sends the package that hold information about other players
+     * replaces the numbers the client gave its bullets by network ids of the host, and tags the package
+     * with the network id of the clients spaceship
+     * @param spp the package received from the client
      * */
-    private void makeAndSendMultiPlayerPackage(boolean destroyed) throws IOException {
-        MultiPlayerGamePackage mp = new MultiPlayerGamePackage(
-                destroyed,
-                userName,
-        this.game.getEnemiesNames(id),
-        lastScore,
-        this.game.getEnemiesScores(id),
-        this.game.getEnemies(id),
-        this.game.getAsteroids(),
-        this.game.getEnemiesBullets(id));
-        sendMultiPlayerGamePackage(mp, s, ce);
+    private void assignNetworkIds(SinglePlayerPackage spp) {
+        List<Integer> hostIds = new ArrayList<>(spp.getBulletIds().size());
+        spp.getBulletIds().forEach(clientId ->
+                hostIds.add(bulletIds.computeIfAbsent(clientId, newId -> game.nextNetworkId())));
+        bulletIds.keySet().retainAll(new HashSet<>(spp.getBulletIds()));
+        spp.setBulletIds(hostIds);
+        spp.setShipId(spaceship.getNetworkId());
     }
 
     /**
-     * listens for quit actions from the client
+     * adds the ids of the objects this client has seen before, but that are gone now
+     * @param mp the package to send to the client
      * */
-    private void listenForQuitActions() {
-        ExecutorService thread = Executors.newSingleThreadExecutor();
-        thread.submit(() -> {
-            try {
-                DatagramSocket quitSocket = new DatagramSocket();
-                sendInitPacket(quitSocket, ce);
-                receiveQuit(quitSocket);
-                game.getClient(id).setDestroyed(true);
-                this.game.getClientById(id).destroy();
-                game.removeClient(id);
-                running = false;
-            } catch (IOException e) {
-                log.warning("Could not receive message from client quitting the game.");
-            }
-        });
+    private void addDespawnedIds(MultiPlayerGamePackage mp) {
+        Set<Integer> ids = mp.getNetworkIds();
+        sentIds.removeAll(ids);
+        mp.getDespawnedIds().addAll(sentIds);
+        sentIds = ids;
+    }
+
+    /**
+     * makes and sends the package that hold information about other players.
+     * The part of the package shared with the other clients is only encoded once per snapshot. When the world does
+     * not fit in the budget of the client, the objects with the highest priority for this client are sent instead.
+     * Asteroids the client can move on itself are left out of its own package, see {@link DeadReckoning}
+     * */
+    private void makeAndSendMultiPlayerPackage(boolean destroyed) throws IOException {
+        WorldSnapshot snapshot = game.getWorldSnapshot();
+        MultiPlayerGamePackage mp = snapshot.viewFor(id, destroyed, userName, lastScore);
+        mp.setOwnShipId(spaceship.getNetworkId());
+        mp.setOwnSlot(spaceship.getSlot());
+        mp.setFocus(spaceship.getLocation());
+        reckoning.leaveOut(mp);
+        addDespawnedIds(mp);
+        if (mp.isReckoned() || !sendSnapshot(snapshot, id, mp, budget, s, ce)) {
+            priorities.schedule(mp, budget);
+            sendMultiPlayerGamePackage(mp, s, ce);
+        }
+        reckoning.sent(mp.getClockStamp().sent(), mp);
     }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package nl.rug.aoop.asteroids.server;
+
+import lombok.extern.java.Log;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * the threads a {@link Server} runs the receive and send loops of its connections on.
+ * <p>
+ * every connection blocks in {@link nl.rug.aoop.asteroids.model.connection.Transport#receive}, so every connection needs a thread of its own.
+ * With {@link #PLATFORM} threads that is an OS thread with its own stack per connection; {@link #VIRTUAL} threads only
+ * take a small object on the heap while they wait.
+ * <p>
+ * picked with the system property {@value #PROPERTY}, which is either {@code platform} or {@code virtual}.
+ * */
+@Log
+public enum NetworkingMode {
+    /**
+     * a cached pool of OS threads, one per connection
+     * */
+    PLATFORM,
+
+    /**
+     * a new virtual thread per connection. Needs Java 21, on older runtimes {@link #PLATFORM} threads are used instead
+     * */
+    VIRTUAL;
+
+    /**
+     * the system property to pick the mode with
+     * */
+    public static final String PROPERTY = "asteroids.networking";
+
+    /**
+     * makes an executor starting a virtual thread per task, or null if the runtime has no virtual threads.
+     * Looked up when it runs, so the game still builds and runs on runtimes before Java 21.
+     * */
+    private static final MethodHandle VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+
+    /**
+     * @return the mode picked with {@link #PROPERTY}, {@link #PLATFORM} if none or an unknown one is picked
+     * */
+    public static NetworkingMode configured() {
+        String mode = System.getProperty(PROPERTY, PLATFORM.name());
+        try {
+            return valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warning("Unknown networking mode " + mode + ", using platform threads");
+            return PLATFORM;
+        }
+    }
+
+    /**
+     * @return whether the threads of this mode can be made on this runtime
+     * */
+    public boolean isAvailable() {
+        return this == PLATFORM || VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * @return an executor running each submitted connection loop on a thread of this mode
+     * */
+    public ExecutorService newExecutor() {
+        if (this == VIRTUAL) {
+            if (VIRTUAL_THREAD_EXECUTOR != null) {
+                try {
+                    return (ExecutorService) VIRTUAL_THREAD_EXECUTOR.invoke();
+                } catch (Throwable e) {
+                    log.warning("Could not make virtual threads, using platform threads: " + e);
+                }
+            } else {
+                log.warning("Virtual threads need Java 21, using platform threads");
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    /**
+     * @return a handle to {@code Executors.newVirtualThreadPerTaskExecutor()}, or null if there is no such method
+     * */
+    private static MethodHandle findVirtualThreadExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package nl.rug.aoop.asteroids.server;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+import nl.rug.aoop.asteroids.control.GameUpdater;
+import nl.rug.aoop.asteroids.control.TickPipeline;
+import nl.rug.aoop.asteroids.model.Game;
+
+/**
+ * a single match hosted by a {@link RoomManager}. It has its own dedicated {@link Game}, which is not run by a game
+ * loop of its own but ticked by the shared scheduler of the manager.
+ * <p>
+ * a tick that fails only counts against this room. After {@link #MAX_CONSECUTIVE_FAILURES} failed ticks in a row the
+ * room closes itself, the other rooms are not affected.
+ * */
+@Log
+public class Room {
+    /**
+     * the amount of failed ticks in a row after which the room closes
+     * */
+    public static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+    /**
+     * the id clients use to pick this room
+     * */
+    @Getter
+    private final int id;
+
+    /**
+     * the game of this room
+     * */
+    @Getter
+    private final Game game;
+
+    /**
+     * runs the stages of a tick of the {@link #game}
+     * */
+    private final GameUpdater updater;
+
+    /**
+     * the amount of ticks that succeeded
+     * */
+    @Getter
+    private volatile long ticks;
+
+    /**
+     * the amount of ticks that failed
+     * */
+    @Getter
+    private volatile long failures;
+
+    /**
+     * the amount of ticks that failed since the last one that succeeded
+     * */
+    private int consecutiveFailures;
+
+    /**
+     * indicates whether the room has closed because its ticks kept failing
+     * */
+    @Getter
+    private volatile boolean closed;
+
+    /**
+     * makes a room with a new dedicated game
+     * @param id the id clients use to pick this room
+     * */
+    public Room(int id) {
+        this.id = id;
+        this.game = new Game();
+        game.makeDedicated();
+        this.updater = new GameUpdater(game);
+    }
+
+    /**
+     * runs a single tick of the game. Never throws, so a failing room cannot take down the worker that ticks it.
+     * Only called by one worker at a time.
+     * */
+    public void tick() {
+        if (closed) {
+            return;
+        }
+        try {
+            updater.updatePhysics();
+            ticks++;
+            consecutiveFailures = 0;
+        } catch (RuntimeException e) {
+            failures++;
+            consecutiveFailures++;
+            log.warning("Tick of room " + id + " failed: " + e);
+            if (consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+                closed = true;
+                log.warning("Closed room " + id + " after " + consecutiveFailures + " failed ticks in a row");
+            }
+        }
+    }
+
+    /**
+     * @return the stages of a tick of this room, with their timings
+     * */
+    public TickPipeline getPipeline() {
+        return updater.getPipeline();
+    }
+
+    /**
+     * @return the average time a tick of this room takes in ns
+     * */
+    public long getAverageTickNanos() {
+        return getPipeline().getAverageNanos().values().stream().mapToLong(Long::longValue).sum();
+    }
+}
@@ -0,0 +1,186 @@
+package nl.rug.aoop.asteroids.server;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+import nl.rug.aoop.asteroids.control.GameUpdater;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * hosts many independent {@link Room}s in one process.
+ * <p>
+ * all rooms share a single {@link Server}: one socket to join on and one pool of threads serving the clients. The
+ * rooms are ticked by a small shared pool of workers instead of a game loop thread each. The scheduler never runs the
+ * same room on two workers at once, so a room needs no more locking than a game with its own thread.
+ * */
+@Log
+public class RoomManager {
+    /**
+     * time in between two ticks of a room in ns
+     * */
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1) / GameUpdater.PHYSICS_FPS;
+
+    /**
+     * milliseconds to wait in between checks whether the server is running
+     * */
+    private static final int STARTUP_POLL_MILLIS = 5;
+
+    /**
+     * the server all rooms are joined through
+     * */
+    @Getter
+    private final Server server;
+
+    /**
+     * runs the server
+     * */
+    private final ExecutorService service;
+
+    /**
+     * the workers that tick the rooms
+     * */
+    private final ScheduledExecutorService tickScheduler;
+
+    /**
+     * the open rooms, by id
+     * */
+    private final Map<Integer, Room> rooms;
+
+    /**
+     * the scheduled ticks of each open room, by id
+     * */
+    private final Map<Integer, ScheduledFuture<?>> scheduledTicks;
+
+    /**
+     * the id the next room gets
+     * */
+    private int nextRoomId;
+
+    /**
+     * makes a room manager without rooms
+     * @param port the port clients join on, 0 for any free port
+     * @param tickThreads the amount of workers ticking the rooms
+     * */
+    public RoomManager(int port, int tickThreads) {
+        server = new Server(port, room -> log.info("First client joined room " + room),
+                NetworkingMode.configured());
+        service = Executors.newSingleThreadExecutor();
+        tickScheduler = Executors.newScheduledThreadPool(tickThreads);
+        rooms = new ConcurrentSkipListMap<>();
+        scheduledTicks = new ConcurrentSkipListMap<>();
+        nextRoomId = Server.DEFAULT_ROOM;
+    }
+
+    /**
+     * starts listening for clients
+     * @return whether the server could start
+     * */
+    public boolean start() throws InterruptedException {
+        Future<?> serverTask = service.submit(server);
+        while (!server.isRunning() && !serverTask.isDone()) {
+            Thread.sleep(STARTUP_POLL_MILLIS);
+        }
+        return server.isRunning();
+    }
+
+    /**
+     * opens a new room and starts ticking it
+     * @return the new room
+     * */
+    public synchronized Room createRoom() {
+        Room room = new Room(nextRoomId++);
+        rooms.put(room.getId(), room);
+        server.addRoom(room.getId(), room.getGame());
+        scheduledTicks.put(room.getId(),
+                tickScheduler.scheduleAtFixedRate(() -> tick(room), 0, TICK_NANOS, TimeUnit.NANOSECONDS));
+        log.info("Opened room " + room.getId());
+        return room;
+    }
+
+    /**
+     * closes a room. Its clients are no longer served and it is no longer ticked.
+     * @param id the id of the room
+     * */
+    public synchronized void closeRoom(int id) {
+        Room room = rooms.remove(id);
+        if (room == null) {
+            return;
+        }
+        ScheduledFuture<?> scheduledTick = scheduledTicks.remove(id);
+        if (scheduledTick != null) {
+            scheduledTick.cancel(false);
+        }
+        server.removeRoom(id);
+        log.info("Closed room " + id + " after " + room.getTicks() + " ticks");
+    }
+
+    /**
+     * ticks a room, closing it when it failed too often
+     * */
+    private void tick(Room room) {
+        room.tick();
+        if (room.isClosed()) {
+            closeRoom(room.getId());
+        }
+    }
+
+    /**
+     * @param id the id of a room
+     * @return the open room with that id, or null if there is none
+     * */
+    public Room getRoom(int id) {
+        return rooms.get(id);
+    }
+
+    /**
+     * @return the open rooms, ordered by id
+     * */
+    public Collection<Room> getRooms() {
+        return Collections.unmodifiableCollection(rooms.values());
+    }
+
+    /**
+     * @return a line of metrics for every open room: players, asteroids, ticks, tick time, failures and bandwidth
+     * */
+    public String metrics() {
+        StringBuilder metrics = new StringBuilder();
+        rooms.values().forEach(room -> {
+            double bytesOut = server.getClientHandlers(room.getId()).stream()
+                    .mapToDouble(handler -> handler.getStatistics().getBytesOutPerSecond()).sum();
+            metrics.append(String.format("room=%d players=%d asteroids=%d ticks=%d tick=%.3fms failures=%d out=%.1fKB/s%n",
+                    room.getId(),
+                    room.getGame().getPlayerSlots().size(),
+                    room.getGame().getAsteroids().size(),
+                    room.getTicks(),
+                    room.getAverageTickNanos() / 1e6,
+                    room.getFailures(),
+                    bytesOut / 1024));
+        });
+        return metrics.toString();
+    }
+
+    /**
+     * @return the port clients join on
+     * */
+    public int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * stops ticking all rooms and shuts the server down
+     * */
+    public void shutDown() {
+        tickScheduler.shutdownNow();
+        server.shutDown();
+        service.shutdownNow();
+    }
+}
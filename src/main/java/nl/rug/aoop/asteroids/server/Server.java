@@ -1,25 +1,40 @@
 package nl.rug.aoop.asteroids.server;
 
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.java.Log;
 import nl.rug.aoop.asteroids.model.Game;
 import nl.rug.aoop.asteroids.model.PanelType;
 import nl.rug.aoop.asteroids.model.connection.ConnectionEssentials;
+import nl.rug.aoop.asteroids.model.connection.ControlMessage;
+import nl.rug.aoop.asteroids.model.connection.HeartbeatSettings;
+import nl.rug.aoop.asteroids.model.connection.SnapshotBudget;
+import nl.rug.aoop.asteroids.model.connection.ReliableChannel;
 import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
+import nl.rug.aoop.asteroids.model.connection.Transport;
+import nl.rug.aoop.asteroids.model.connection.TransportFactory;
 import nl.rug.aoop.asteroids.view.AsteroidsFrame;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.util.ArrayList;
+import java.time.Clock;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * server created by the host for the client to connect to
+ * <p>
+ * a server can host several rooms, each with its own {@link Game}, on a single socket. Clients say which room they
+ * want to join in their init packet. A server made for a single game hosts it as room {@link #DEFAULT_ROOM}.
  * */
 @Log
 public class Server extends TrafficHandler implements Runnable {
@@ -29,6 +44,16 @@ public class Server extends TrafficHandler implements Runnable {
      * */
     private static final int STATIC_PORT = 0;
 
+    /**
+     * seconds in between two summaries of the network statistics in the log
+     * */
+    private static final int STATISTICS_LOG_INTERVAL = 10;
+
+    /**
+     * the longest time (in ms) we wait for clients to acknowledge being kicked before they are no longer served
+     * */
+    private static final long KICK_TIMEOUT_MILLIS = 500;
+
     /**
      * the port to which we let others connect
      * */
@@ -39,7 +64,13 @@ public class Server extends TrafficHandler implements Runnable {
      * indicates whether the server is running
      * */
     @Getter
-    private boolean running;
+    private volatile boolean running;
+
+    /**
+     * the threads the connections of the clients are served on
+     * */
+    @Getter
+    private final NetworkingMode networkingMode;
 
     /**
      * service to which we submit {@link ClientHandler} so it handles
@@ -48,21 +79,45 @@ public class Server extends TrafficHandler implements Runnable {
     private final ExecutorService service;
 
     /**
-     * indicates whether the game has started
+     * how often the clients send a heartbeat and how long they may stay silent. Applies to clients joining after it
+     * is set
      * */
-    private boolean gameStarted;
+    @Getter
+    @Setter
+    private volatile HeartbeatSettings heartbeat;
 
     /**
-     * the original frame from which we get info and send info to
+     * the most bytes a snapshot sent to a client may take. Applies to clients joining after it is set
      * */
     @Getter
-    private final AsteroidsFrame frame;
+    @Setter
+    private volatile SnapshotBudget snapshotBudget;
 
     /**
-     * instance of game to extract info from and update
+     * the amount of clients that were removed because they went silent
+     * */
+    private final AtomicLong reapedSessions;
+
+    /**
+     * the rooms of which the game has started
+     * */
+    private final Set<Integer> startedRooms;
+
+    /**
+     * the original frame from which we get info and send info to, null on a dedicated server
      * */
     @Getter
-    private final Game game;
+    private final AsteroidsFrame frame;
+
+    /**
+     * gets notified when the game starts
+     * */
+    private final ServerListener listener;
+
+    /**
+     * the game of each room, by room id
+     * */
+    private final Map<Integer, Game> rooms;
 
     /**
      * id specified for the main spaceship
@@ -70,29 +125,160 @@ public class Server extends TrafficHandler implements Runnable {
     public static String mainId;
 
     /**
-     * the quit connection essentials for listening on a different port
+     * the handlers of the clients that joined, used to log their network statistics
      * */
-    private final List<ConnectionEssentials> quitCEs;
+    private final List<ClientHandler> clientHandlers;
 
     /**
-     * the socket used by the server
+     * the handler made for each address a join came from, while it runs. A client asks again when the answer is
+     * late or lost, so a repeated join gets the answer of the same handler instead of another slot
      * */
-    private DatagramSocket s;
+    private final Map<ConnectionEssentials, ClientHandler> joins;
+
+    /**
+     * logs a summary of the network statistics of each client every {@link #STATISTICS_LOG_INTERVAL} seconds
+     * */
+    private final ScheduledExecutorService statisticsLogger;
+
+    /**
+     * opens the transport the server listens on and the transports of the client handlers. Set it before running
+     * the server, for example to simulate a worse network
+     * */
+    @Getter
+    @Setter
+    private volatile TransportFactory transports;
+
+    /**
+     * the transport used by the server
+     * */
+    private Transport s;
 
     /**
      * represents a server that runs when the user wishes to host a game
      * @param frame the frame that should contain the info
      * */
     public Server(AsteroidsFrame frame) {
+        this(frame, STATIC_PORT, room -> frame.changePanel(PanelType.HOSTED_GAME), NetworkingMode.configured());
+        addRoom(DEFAULT_ROOM, frame.getGame());
+    }
+
+    /**
+     * represents a server without a window for a single game, as used by a dedicated server
+     * @param game the game to host. When it is dedicated, the host does not get a spaceship
+     * @param port the port to listen on, 0 for any free port
+     * @param listener gets notified when the game starts
+     * */
+    public Server(Game game, int port, ServerListener listener) {
+        this(null, port, listener, NetworkingMode.configured());
+        addRoom(DEFAULT_ROOM, game);
+    }
+
+    /**
+     * represents a server without a window and without rooms yet. Rooms are added with {@link #addRoom}.
+     * @param port the port to listen on, 0 for any free port
+     * @param listener gets notified when the game of a room starts
+     * @param networkingMode the threads to serve the connections of the clients on
+     * */
+    public Server(int port, ServerListener listener, NetworkingMode networkingMode) {
+        this(null, port, listener, networkingMode);
+    }
+
+    /**
+     * makes the server
+     * @param frame the frame that should contain the info, null on a dedicated server
+     * @param port the port to listen on, 0 for any free port
+     * @param listener gets notified when the game of a room starts
+     * @param networkingMode the threads to serve the connections of the clients on
+     * */
+    private Server(AsteroidsFrame frame, int port, ServerListener listener, NetworkingMode networkingMode) {
         this.frame = frame;
+        this.listener = listener;
+        this.port = port;
         this.running = false;
-        this.game = frame.getGame();
+        this.rooms = new ConcurrentHashMap<>();
+        this.startedRooms = ConcurrentHashMap.newKeySet();
+        this.networkingMode = networkingMode;
+        this.heartbeat = HeartbeatSettings.configured();
+        this.snapshotBudget = SnapshotBudget.configured();
+        this.transports = TransportFactory.configured();
+        this.reapedSessions = new AtomicLong();
+        this.service = networkingMode.newExecutor();
+        this.clientHandlers = new CopyOnWriteArrayList<>();
+        this.joins = new ConcurrentHashMap<>();
+        this.statisticsLogger = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * hosts a game in a room, so clients can join it. The game times its snapshots with the clock of the
+     * {@link #transports}, like the client handlers stamp their packages
+     * @param room the id of the room
+     * @param game the game to host. When it is not dedicated, the host gets a spaceship in it
+     * */
+    public void addRoom(int room, Game game) {
         game.setClientsMap(new ConcurrentHashMap<>());
-        gameStarted = false;
-        this.service = Executors.newCachedThreadPool();
-        mainId = UUID.randomUUID().toString();
-        game.addMainSpaceShip(mainId);
-        this.quitCEs = new ArrayList<>();
+        game.getPlayerSlots().clear();
+        game.setClock(transports.clock());
+        if (!game.isDedicated()) {
+            mainId = UUID.randomUUID().toString();
+            game.addMainSpaceShip(mainId);
+        }
+        rooms.put(room, game);
+    }
+
+    /**
+     * stops hosting a room. The clients in it are kicked and then no longer served.
+     * @param room the id of the room
+     * */
+    public void removeRoom(int room) {
+        rooms.remove(room);
+        startedRooms.remove(room);
+        List<ClientHandler> handlers = getClientHandlers(room);
+        service.submit(() -> kick(handlers));
+    }
+
+    /**
+     * passes an event about a client on to the other clients in its room
+     * @param room the room of the client
+     * @param type what happened
+     * @param shipId the network id of the spaceship of the client
+     * @param name the name of the client
+     * @param from the handler of the client, which is skipped
+     * */
+    public void broadcast(int room, ControlMessage.Type type, int shipId, String name, ClientHandler from) {
+        getClientHandlers(room).stream().filter(handler -> handler != from)
+                .forEach(handler -> handler.queueControl(type, shipId, name));
+    }
+
+    /**
+     * @return the game of the room hosted by a server made for a single game
+     * */
+    public Game getGame() {
+        return rooms.get(DEFAULT_ROOM);
+    }
+
+    /**
+     * @param room the id of a room
+     * @return the handlers of the clients in that room that are still running
+     * */
+    public List<ClientHandler> getClientHandlers(int room) {
+        return clientHandlers.stream().filter(handler -> handler.getRoom() == room && handler.isRunning()).toList();
+    }
+
+    /**
+     * counts a client that was removed because it went silent. Its handler has already stopped.
+     * @param handler the handler of the client
+     * */
+    void reaped(ClientHandler handler) {
+        reapedSessions.incrementAndGet();
+        clientHandlers.remove(handler);
+        joins.values().remove(handler);
+    }
+
+    /**
+     * @return the amount of clients that were removed because they went silent, since the server started
+     * */
+    public long getReapedSessions() {
+        return reapedSessions.get();
     }
 
     /**
@@ -101,9 +287,12 @@ public class Server extends TrafficHandler implements Runnable {
     @Override
     public void run() {
         try {
-            s = new DatagramSocket(STATIC_PORT);
+            s = transports.open(port);
             port = s.getLocalPort();
+            rooms.values().forEach(game -> game.setClock(transports.clock()));
             running = true;
+            statisticsLogger.scheduleAtFixedRate(this::logStatistics,
+                    STATISTICS_LOG_INTERVAL, STATISTICS_LOG_INTERVAL, TimeUnit.SECONDS);
             while (running) {
                 handleRequests(s);
             }
@@ -118,47 +307,94 @@ public class Server extends TrafficHandler implements Runnable {
      * */
     public void shutDown() {
         if (running) {
-            quitCEs.forEach(ce -> {
-                try {
-                    sendQuit(s, ce);
-                } catch (IOException e) {
-                    log.warning("Encountered an error while shutting down the server." +
-                            "Client will not get the shutdown notification");
-                }
-            });
+            kick(clientHandlers.stream().filter(ClientHandler::isRunning).toList());
         }
         running = false;
+        statisticsLogger.shutdownNow();
+        clientHandlers.forEach(ClientHandler::stop);
+        service.shutdownNow();
+        if (s != null) {
+            s.close();
+        }
     }
 
     /**
-     * handles incoming requests by spawning a {@link ClientHandler}
-     * for each new client.
+     * kicks clients and stops serving them once they acknowledged it, or after {@link #KICK_TIMEOUT_MILLIS} on the
+     * clock of the {@link #transports}
+     * @param handlers the handlers of the clients
      * */
-    private void handleRequests(DatagramSocket s) {
+    private void kick(List<ClientHandler> handlers) {
+        handlers.forEach(ClientHandler::kick);
+        Clock clock = transports.clock();
+        long deadline = clock.millis() + KICK_TIMEOUT_MILLIS;
         try {
-            ConnectionEssentials ce = connect(s);
-            if (!gameStarted) frame.changePanel(PanelType.HOSTED_GAME);
-            gameStarted = true;
-            String id = UUID.randomUUID().toString();
-            service.submit(new ClientHandler(id, game, ce));
-            log.info("Client Joined: players joined " + (game.getClientsMap().size() + 1));
-
-            DatagramPacket packet1 = receive(s);
-            quitCEs.add(new ConnectionEssentials(packet1.getAddress(), packet1.getPort()));
-
-        } catch (IOException e) {
-            log.warning("Could not connect with client." +
-                    "Please host a new game");
+            while (clock.millis() < deadline && !handlers.stream().allMatch(ClientHandler::isControlIdle)) {
+                Thread.sleep(ReliableChannel.RESEND_MILLIS);
+                handlers.forEach(ClientHandler::flushControl);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        handlers.forEach(ClientHandler::stop);
+    }
 
+    /**
+     * logs a summary of the network statistics of each connected client
+     * */
+    private void logStatistics() {
+        clientHandlers.removeIf(handler -> !handler.isRunning());
+        joins.values().removeIf(handler -> !handler.isRunning());
+        clientHandlers.forEach(handler -> log.info("Network statistics of " + handler.getUserName()
+                + " in room " + handler.getRoom() + ": " + handler.getStatistics().summary()));
     }
 
     /**
-     * establishes connection with client
-     * @return the connection essentials to be used to communicate with client
+     * handles incoming requests by spawning a {@link ClientHandler}
+     * for each new client. Clients are turned away when the room they pick does not exist or all its slots are taken.
+     * When no handler could be made for the client, its slot is freed again. A client that asks again gets the answer
+     * of the handler already made for it.
      * */
-    private ConnectionEssentials connect(DatagramSocket s) throws IOException {
-        DatagramPacket packet = receive(s);
-        return new ConnectionEssentials(packet.getAddress(), packet.getPort());
+    private void handleRequests(Transport s) {
+        try {
+            DatagramPacket request = receive(s);
+            ConnectionEssentials ce = new ConnectionEssentials(request.getAddress(), request.getPort());
+            int room = roomOf(request);
+            Game game = rooms.get(room);
+            if (game == null) {
+                sendUnknownRoom(s, ce);
+                log.info("Turned a client away, there is no room " + room);
+                return;
+            }
+            ClientHandler joined = joins.get(ce);
+            if (joined != null && joined.isRunning() && joined.getRoom() == room) {
+                joined.answerJoin();
+                return;
+            }
+            String id = UUID.randomUUID().toString();
+            if (game.getPlayerSlots().acquire(id) < 0) {
+                sendRoomFull(s, ce);
+                log.info("Turned a client away, room " + room + " is full with "
+                        + game.getPlayerSlots().size() + " players");
+                return;
+            }
+            ClientHandler clientHandler;
+            try {
+                clientHandler = new ClientHandler(id, room, game, ce, this);
+            } catch (IOException e) {
+                game.getPlayerSlots().release(id);
+                throw e;
+            }
+            if (startedRooms.add(room)) listener.gameStarted(room);
+            clientHandlers.add(clientHandler);
+            joins.put(ce, clientHandler);
+            service.submit(clientHandler);
+            log.info("Client Joined room " + room + ": players joined " + game.getPlayerSlots().size());
+        } catch (IOException e) {
+            if (running) {
+                log.warning("Could not connect with client." +
+                        "Please host a new game");
+            }
+        }
+
     }
 }
@@ -0,0 +1,12 @@
+package nl.rug.aoop.asteroids.server;
+
+/**
+ * gets notified by the {@link Server} about the game it hosts, so the server does not depend on how the game is shown
+ * */
+public interface ServerListener {
+    /**
+     * called when the first client has joined a room, which starts the game of that room
+     * @param room the id of the room
+     * */
+    void gameStarted(int room);
+}
@@ -1,5 +1,7 @@
 package nl.rug.aoop.asteroids.util;
 
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.java.Log;
 import nl.rug.aoop.asteroids.model.AsteroidSize;
 import nl.rug.aoop.asteroids.view.mainmenu.MainMenuPanel;
@@ -21,6 +23,12 @@ public class SoundEffectPlayer implements Runnable {
     public static final String BANG = "bang";
     public static final String EXPLODE = "explode";
 
+    /**
+     * indicates whether sound effects are turned off, as on a dedicated server without speakers
+     * */
+    @Getter @Setter
+    private static volatile boolean muted;
+
     /**
      * the type of sound effect to play
      * */
@@ -72,6 +80,9 @@ public class SoundEffectPlayer implements Runnable {
      * */
     @Override
     public void run() {
+        if (muted) {
+            return;
+        }
         Path path = Path.of("data/sounds/"+ type + ".wav");
         AudioInputStream ais;
         try {
@@ -208,7 +208,7 @@ public class AsteroidsFrame extends JFrame {
      * */
     private void newHostedGame() {
         game.setType(Game.HOST);
-        addKeyListener(new PlayerKeyListener(game.getMainSpaceShip()));
+        addKeyListener(new PlayerKeyListener(game.getInputQueue()));
         game.getMainSpaceShip().setUserName(mainMenuPanel.getField().getText().toUpperCase());
         game.start();
         optionPanel = new AsteroidsPanel(game);
@@ -220,7 +220,7 @@ public class AsteroidsFrame extends JFrame {
      * */
     private void newJoinedGame() {
         game.setType(Game.CLIENT);
-        addKeyListener(new PlayerKeyListener(game.getMainSpaceShip()));
+        addKeyListener(new PlayerKeyListener(game.getInputQueue()));
         game.getMainSpaceShip().setUserName(mainMenuPanel.getField().getText().toUpperCase());
         game.start();
         optionPanel = new AsteroidsPanel(game);
@@ -251,7 +251,7 @@ public class AsteroidsFrame extends JFrame {
         try {
             if(client != null) client.shutDown();
             client = new Client(this, game);
-        } catch (SocketException e) {
+        } catch (IOException e) {
             log.warning("Could not start the game.." +
                     "Please restart the game");
         }
@@ -270,7 +270,7 @@ public class AsteroidsFrame extends JFrame {
         game.getMainSpaceShip().setUserName(mainMenuPanel.getField().getText().toUpperCase());
         game.start();
         optionPanel = new AsteroidsPanel(game);
-        addKeyListener(new PlayerKeyListener(game.getMainSpaceShip()));
+        addKeyListener(new PlayerKeyListener(game.getInputQueue()));
         mainMenuPanel.setInMainMenu(false);
     }
 
@@ -2,12 +2,15 @@ package nl.rug.aoop.asteroids.view;
 
 import nl.rug.aoop.asteroids.gameobserver.GameUpdateListener;
 import nl.rug.aoop.asteroids.model.Game;
+import nl.rug.aoop.asteroids.model.connection.NetworkStatistics;
 import nl.rug.aoop.asteroids.view.viewmodels.AsteroidViewModel;
 import nl.rug.aoop.asteroids.view.viewmodels.BulletViewModel;
 import nl.rug.aoop.asteroids.view.viewmodels.SpaceshipViewModel;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
 
 /**
  * The panel at the center of the game's window which is responsible for the custom drawing of game objects.
@@ -21,6 +24,15 @@ public class AsteroidsPanel extends JPanel implements GameUpdateListener {
      * The x- and y-coordinates of the score indicator.
      */
     private static final Point SCORE_INDICATOR_POSITION = new Point(20, 20);
+    /**
+     * The key that shows or hides the network statistics.
+     */
+    private static final KeyStroke NETWORK_STATISTICS_KEY = KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0);
+    /**
+     * The x-coordinate and the height of a line of the network statistics.
+     */
+    private static final int NETWORK_STATISTICS_X = 20;
+    private static final int NETWORK_STATISTICS_LINE_HEIGHT = 15;
     /**
      * The game model that this panel will draw to the screen.
      */
@@ -32,6 +44,11 @@ public class AsteroidsPanel extends JPanel implements GameUpdateListener {
      */
     private long timeSinceLastTick = 0L;
 
+    /**
+     * Whether the network statistics are drawn. Toggled with {@link #NETWORK_STATISTICS_KEY}.
+     */
+    private boolean showNetworkStatistics = false;
+
     /**
      * Constructs a new game panel, based on the given model. Also starts listening to the game to check for updates, so
      * that it can repaint itself if necessary.
@@ -41,6 +58,13 @@ public class AsteroidsPanel extends JPanel implements GameUpdateListener {
     public AsteroidsPanel(Game game) {
         this.game = game;
         game.addListener(this);
+        getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(NETWORK_STATISTICS_KEY, "toggleNetworkStatistics");
+        getActionMap().put("toggleNetworkStatistics", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent event) {
+                showNetworkStatistics = !showNetworkStatistics;
+            }
+        });
     }
 
     /**
@@ -67,6 +91,33 @@ public class AsteroidsPanel extends JPanel implements GameUpdateListener {
 
         drawGameObjects(graphics2D);
         if (!game.isGameOver()) drawShipInformation(graphics2D);
+        if (showNetworkStatistics) drawNetworkStatistics(graphics2D);
+    }
+
+    /**
+     * Draws the statistics of the connection to the host, when connected to one.
+     *
+     * @param graphics2D The graphics object that provides the drawing methods.
+     */
+    private void drawNetworkStatistics(Graphics2D graphics2D) {
+        NetworkStatistics statistics = game.getNetworkStatistics();
+        if (statistics == null || !Game.CLIENT.equals(game.getType())) return;
+        String[] lines = {
+                String.format("RTT %.1f ms  jitter %.1f ms", statistics.getRtt(), statistics.getJitter()),
+                String.format("loss %.1f%% (%d)  out of order %d", statistics.getLossRate() * 100,
+                        statistics.getLostPayloads(), statistics.getOutOfOrder()),
+                String.format("in %.1f kB/s  out %.1f kB/s", statistics.getBytesInPerSecond() / 1000,
+                        statistics.getBytesOutPerSecond() / 1000),
+                String.format("snapshots avg %.0f B  max %d B", statistics.getAverageSnapshotSize(),
+                        statistics.getLargestSnapshot()),
+                String.format("interpolation delay %.0f ms", game.getInterpolationBuffer().getDelay())
+        };
+        graphics2D.setColor(Color.GREEN);
+        int y = getHeight() - NETWORK_STATISTICS_LINE_HEIGHT * lines.length;
+        for (String line : lines) {
+            graphics2D.drawString(line, NETWORK_STATISTICS_X, y);
+            y += NETWORK_STATISTICS_LINE_HEIGHT;
+        }
     }
 
     /**
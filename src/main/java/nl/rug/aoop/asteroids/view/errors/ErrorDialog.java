@@ -11,7 +11,8 @@ public abstract class ErrorDialog {
      * message to be shown in the error dialog
      * */
     private static final String INCORRECT_FORMAT = "Incorrect Format.\n" +
-            "Only numbers are allowed and less 6 digits";
+            "Only numbers are allowed and less 6 digits.\n" +
+            "A room can be picked as port:room";
 
     private static final String NO_PORT_NUMBER_PROVIDED = "No port number provided";
 
@@ -33,10 +34,16 @@ public abstract class ErrorDialog {
 
     public static final String HOST_A_NEW_GAME = "Host A New Game";
 
+    public static final String RESPAWN = "Respawn";
+
     private static final String NO_NAME = "Please enter a name first.";
 
     public static final String NO_PLAYERS_LEFT = "No players left. All players are dead";
 
+    private static final String ROOM_FULL = "This game is full. Please join another game";
+
+    private static final String UNKNOWN_ROOM = "This room does not exist. Please pick another room";
+
 
     /**
      * shows dialog when player dies in a solo game
@@ -91,6 +98,24 @@ public abstract class ErrorDialog {
         return (String) options[n];
     }
 
+    /**
+     * shows dialog when a client dies in a multiplayer game, letting it respawn, spectate or quit
+     * @return the option chosen
+     * */
+    public static String clientGameOver() {
+        Object[] options = {RESPAWN, "Spectate", QUIT_TO_MAIN_MENU};
+        int n = JOptionPane.showOptionDialog(new JFrame(),
+                GAME_OVER,
+                "Game Over",
+                JOptionPane.YES_NO_CANCEL_OPTION,
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                options,
+                options[0]
+        );
+        return n < 0 ? options[1].toString() : (String) options[n];
+    }
+
 
     /**
      * shows dialog when user enters an incorrect
@@ -135,6 +160,22 @@ public abstract class ErrorDialog {
                 JOptionPane.ERROR_MESSAGE);
     }
 
+    /**
+     * shows dialog when the host turned the client away because the game is full
+     * */
+    public static void roomFull() {
+        JOptionPane.showMessageDialog(new JFrame(), ROOM_FULL, ERROR,
+                JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * shows dialog when the host turned the client away because the room it picked does not exist
+     * */
+    public static void unknownRoom() {
+        JOptionPane.showMessageDialog(new JFrame(), UNKNOWN_ROOM, ERROR,
+                JOptionPane.ERROR_MESSAGE);
+    }
+
     /**
      * shows dialog when host quits
      * */
@@ -4,6 +4,7 @@ import lombok.Getter;
 import lombok.extern.java.Log;
 import nl.rug.aoop.asteroids.client.Client;
 import nl.rug.aoop.asteroids.model.PanelType;
+import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
 import nl.rug.aoop.asteroids.view.AsteroidsFrame;
 import nl.rug.aoop.asteroids.view.errors.ErrorDialog;
 
@@ -16,7 +17,9 @@ import java.util.Set;
 
 /**
  * panel that holds the field to get input from the client and
- * tries to connect them with the server
+ * tries to connect them with the server.
+ * <p>
+ * the field holds the port, optionally followed by a colon and the room to join, like 4242:3
  * */
 @Log
 public class JoinGamePanel extends MainMenuPanel implements ActionListener {
@@ -96,7 +99,8 @@ public class JoinGamePanel extends MainMenuPanel implements ActionListener {
 
     /**
      * if button is pressed try to parse input from field and
-     * try to connect with server
+     * try to connect with server. The host may take a while to answer, so the join is attempted on a thread of the
+     * frame and the button is disabled until the outcome is shown
      * */
     @Override
     public void actionPerformed(ActionEvent e) {
@@ -105,21 +109,39 @@ public class JoinGamePanel extends MainMenuPanel implements ActionListener {
                 ErrorDialog.noPortNumberProvided();
                 return;
             }
-            int port;
             try {
-                port = Integer.parseInt(field.getText());
-                listeners.forEach(listener -> listener.attemptToJoin(port));
-                if (client.isJoined()) {
-                    frame.changePanel(PanelType.JOINED_GAME);
-                    frame.getService().submit(client);
-                } else {
-                    frame.changePanel(PanelType.JOIN_GAME);
-                    ErrorDialog.incorrectPortNumber();
-                }
+                String[] parts = field.getText().split(":", 2);
+                int port = Integer.parseInt(parts[0].trim());
+                int room = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : TrafficHandler.DEFAULT_ROOM;
+                button.setEnabled(false);
+                frame.getService().submit(() -> {
+                    listeners.forEach(listener -> listener.attemptToJoin(port, room));
+                    SwingUtilities.invokeLater(this::showJoinOutcome);
+                });
             } catch (NumberFormatException s) {
                 frame.changePanel(PanelType.JOIN_GAME);
                 ErrorDialog.incorrectFormatForPort();
             }
         }
     }
+
+    /**
+     * moves on to the game when the client joined, or tells the user why it did not
+     * */
+    private void showJoinOutcome() {
+        button.setEnabled(true);
+        if (client.isJoined()) {
+            frame.changePanel(PanelType.JOINED_GAME);
+            frame.getService().submit(client);
+        } else if (client.isRoomFull()) {
+            frame.changePanel(PanelType.JOIN_GAME);
+            ErrorDialog.roomFull();
+        } else if (client.isUnknownRoom()) {
+            frame.changePanel(PanelType.JOIN_GAME);
+            ErrorDialog.unknownRoom();
+        } else {
+            frame.changePanel(PanelType.JOIN_GAME);
+            ErrorDialog.incorrectPortNumber();
+        }
+    }
 }
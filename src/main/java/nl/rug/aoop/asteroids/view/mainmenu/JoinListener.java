@@ -7,9 +7,10 @@ package nl.rug.aoop.asteroids.view.mainmenu;
 public interface JoinListener {
 
     /**
-     * attempts to join to the server hosted on the port given
+     * attempts to join a room of the server hosted on the port given
      *
      * @param port the port to connect to
+     * @param room the room to join
      * */
-    void attemptToJoin(int port);
+    void attemptToJoin(int port, int room);
 }
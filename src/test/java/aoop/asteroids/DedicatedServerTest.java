@@ -0,0 +1,47 @@
+package aoop.asteroids;
+
+import nl.rug.aoop.asteroids.DedicatedServer;
+import nl.rug.aoop.asteroids.control.GameUpdater;
+import nl.rug.aoop.asteroids.model.Game;
+import nl.rug.aoop.asteroids.model.gameobjects.Spaceship;
+import nl.rug.aoop.asteroids.server.Server;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DedicatedServerTest {
+
+    @Test
+    void hostsWithoutOwnPlayer() {
+        Game game = new Game();
+        game.makeDedicated();
+        new Server(game, 0, room -> {});
+        assertEquals(Game.HOST, game.getType());
+        assertTrue(game.getMainSpaceShip().isDestroyed());
+        assertTrue(game.getClientsMap().isEmpty());
+        assertEquals(0, game.getPlayerSlots().size());
+
+        Spaceship client = new Spaceship();
+        client.setId("client");
+        game.assignNetworkId(client);
+        game.addClient(client);
+        assertEquals(0, client.getSlot());
+        assertSame(client, game.getClientById("client"));
+
+        GameUpdater updater = new GameUpdater(game);
+        assertFalse(updater.getPipeline().contains(GameUpdater.INPUT_STAGE));
+        assertTrue(updater.getPipeline().contains(GameUpdater.SNAPSHOT_STAGE));
+
+        game.removeClient("client");
+        assertEquals(0, game.getPlayerSlots().size());
+    }
+
+    @Test
+    void startsAndStops() throws InterruptedException {
+        DedicatedServer server = new DedicatedServer(0, 2);
+        assertTrue(server.start());
+        assertTrue(server.getPort() > 0);
+        assertEquals(2, server.getRoomManager().getRooms().size());
+        server.shutDown();
+    }
+}
@@ -0,0 +1,66 @@
+package aoop.asteroids;
+
+import nl.rug.aoop.asteroids.LoadTestHarness;
+import nl.rug.aoop.asteroids.client.BotBehaviour;
+import nl.rug.aoop.asteroids.control.InputEvent;
+import nl.rug.aoop.asteroids.model.AsteroidSize;
+import nl.rug.aoop.asteroids.model.Game;
+import nl.rug.aoop.asteroids.model.connection.NetworkConditions;
+import nl.rug.aoop.asteroids.model.gameobjects.Asteroid;
+import nl.rug.aoop.asteroids.util.SoundEffectPlayer;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadTestHarnessTest {
+
+    @Test
+    void hunterAimsAtNearestAsteroid() {
+        Game game = new Game();
+        Point2D.Double ship = game.getMainSpaceShip().getLocation();
+        // straight ahead of the nose, which points up
+        game.getAsteroids().add(new Asteroid(new Point2D.Double(ship.x, ship.y - 300),
+                new Point2D.Double(), AsteroidSize.LARGE));
+        Set<InputEvent.Action> keys = BotBehaviour.hunter().decide(game, 0);
+        assertTrue(keys.contains(InputEvent.Action.FIRE));
+        assertTrue(keys.contains(InputEvent.Action.ACCELERATE));
+        assertFalse(keys.contains(InputEvent.Action.TURN_LEFT) || keys.contains(InputEvent.Action.TURN_RIGHT));
+
+        // a closer one to the right
+        game.getAsteroids().add(new Asteroid(new Point2D.Double(ship.x + 50, ship.y),
+                new Point2D.Double(), AsteroidSize.LARGE));
+        assertEquals(EnumSet.of(InputEvent.Action.TURN_RIGHT), BotBehaviour.hunter().decide(game, 0));
+    }
+
+    @Test
+    void botsPlayAgainstLocalHost() throws Exception {
+        SoundEffectPlayer.setMuted(true);
+        BotBehaviour circling = BotBehaviour.scripted(List.of(
+                EnumSet.of(InputEvent.Action.TURN_LEFT, InputEvent.Action.ACCELERATE),
+                EnumSet.of(InputEvent.Action.FIRE)));
+        LoadTestHarness.Report report = LoadTestHarness.run(3, 2, circling);
+        assertEquals(3, report.joined());
+        assertEquals(1, report.rooms());
+        assertTrue(report.averageSnapshotRate() > 0);
+        assertTrue(report.clientInKBps() > 0);
+        assertTrue(report.hostOutKBps() > 0);
+        double[] latency = report.latencyPercentiles();
+        assertTrue(latency[0] > 0 && latency[0] <= latency[1] && latency[1] <= latency[2]);
+    }
+
+    @Test
+    void botsPlayOverCrossContinentNetwork() throws Exception {
+        SoundEffectPlayer.setMuted(true);
+        BotBehaviour idle = BotBehaviour.scripted(List.of(EnumSet.noneOf(InputEvent.Action.class)));
+        LoadTestHarness.Report report = LoadTestHarness.run(2, 2, idle, NetworkConditions.CROSS_CONTINENT);
+        assertEquals(2, report.joined());
+        // both ways take at least the delay minus the jitter
+        assertTrue(report.latencyPercentiles()[0] >= 2 * (75 - 10));
+        assertTrue(report.averageSnapshotRate() < LoadTestHarness.snapshotRateOver(NetworkConditions.PERFECT));
+    }
+}
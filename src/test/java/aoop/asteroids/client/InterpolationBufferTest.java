@@ -0,0 +1,89 @@
+package aoop.asteroids.client;
+
+import nl.rug.aoop.asteroids.client.InterpolationBuffer;
+import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InterpolationBufferTest {
+
+    private static final double DELTA = 0.00001;
+
+    private MultiPlayerGamePackage emptyPackage() {
+        return new MultiPlayerGamePackage(false, "test", new ArrayList<>(), 0, new ArrayList<>(),
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    }
+
+    @Test
+    void sampleEmpty() {
+        assertNull(new InterpolationBuffer().sample(1000));
+    }
+
+    @Test
+    void sampleInBetween() {
+        InterpolationBuffer buffer = new InterpolationBuffer();
+        MultiPlayerGamePackage first = emptyPackage();
+        MultiPlayerGamePackage second = emptyPackage();
+        buffer.add(first, 1000);
+        buffer.add(second, 1100);
+
+        // the delay starts at the minimum delay
+        InterpolationBuffer.Sample sample = buffer.sample((long) (1050 + buffer.getDelay()));
+        assertSame(first, sample.from());
+        assertSame(second, sample.to());
+        assertEquals(0.5, sample.alpha(), 0.01);
+        assertEquals(0.0, sample.ahead());
+    }
+
+    @Test
+    void sampleHoldsNewestWhenStarved() {
+        InterpolationBuffer buffer = new InterpolationBuffer();
+        MultiPlayerGamePackage first = emptyPackage();
+        MultiPlayerGamePackage second = emptyPackage();
+        buffer.add(first, 1000);
+        buffer.add(second, 1100);
+
+        InterpolationBuffer.Sample sample = buffer.sample(5000);
+        assertSame(second, sample.from());
+        assertSame(second, sample.to());
+        // older snapshots are not needed anymore
+        assertEquals(1, buffer.size());
+        // remote objects are only moved on so far past the newest snapshot
+        assertEquals(InterpolationBuffer.MAX_EXTRAPOLATION_MILLIS, sample.ahead(), DELTA);
+        assertEquals(50.0, buffer.sample((long) (1150 + buffer.getDelay())).ahead(), DELTA);
+    }
+
+    @Test
+    void delayFollowsJitter() {
+        InterpolationBuffer steady = new InterpolationBuffer();
+        InterpolationBuffer jittery = new InterpolationBuffer();
+        long steadyTime = 0;
+        long jitteryTime = 0;
+        for (int i = 0; i < 200; i++) {
+            steadyTime += 33;
+            jitteryTime += (i % 2 == 0) ? 5 : 120;
+            steady.add(emptyPackage(), steadyTime);
+            jittery.add(emptyPackage(), jitteryTime);
+        }
+        assertEquals(InterpolationBuffer.MIN_DELAY_MILLIS, steady.getDelay(), 1.0);
+        assertTrue(jittery.getDelay() > steady.getDelay());
+        assertTrue(jittery.getDelay() <= InterpolationBuffer.MAX_DELAY_MILLIS);
+    }
+
+    @Test
+    void interpolateWrapsAround() {
+        InterpolationBuffer.Sample sample = new InterpolationBuffer.Sample(emptyPackage(), emptyPackage(), 0.5);
+        Point2D.Double location = sample.interpolate(new Point2D.Double(10, 400), new Point2D.Double(30, 420));
+        assertEquals(20, location.getX(), DELTA);
+        assertEquals(410, location.getY(), DELTA);
+
+        // crossing the right edge should not travel across the whole screen
+        location = sample.interpolate(new Point2D.Double(1360, 10), new Point2D.Double(10, 790));
+        assertTrue(location.getX() < 10 || location.getX() > 1360);
+        assertTrue(location.getY() < 10 || location.getY() > 790);
+    }
+}
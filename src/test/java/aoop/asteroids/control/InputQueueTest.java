@@ -0,0 +1,67 @@
+package aoop.asteroids.control;
+
+import nl.rug.aoop.asteroids.control.InputEvent;
+import nl.rug.aoop.asteroids.control.InputQueue;
+import nl.rug.aoop.asteroids.control.InputRecording;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputQueueTest {
+
+    private InputEvent event(long time) {
+        return new InputEvent(time, InputEvent.Action.FIRE, time % 2 == 0);
+    }
+
+    @Test
+    void keepsOrderAndBound() {
+        InputQueue queue = new InputQueue();
+        assertNull(queue.poll());
+        for (int i = 0; i < InputQueue.CAPACITY; i++) {
+            assertTrue(queue.offer(event(i)));
+        }
+        assertFalse(queue.offer(event(-1)));
+        assertEquals(InputQueue.CAPACITY, queue.size());
+        for (int i = 0; i < InputQueue.CAPACITY; i++) {
+            assertEquals(i, queue.poll().time());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void singleProducerSingleConsumer() throws InterruptedException {
+        InputQueue queue = new InputQueue();
+        int count = 200_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!queue.offer(event(i))) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+        producer.start();
+        long expected = 0;
+        while (expected < count) {
+            InputEvent event = queue.poll();
+            if (event != null) {
+                assertEquals(expected++, event.time());
+            }
+        }
+        producer.join();
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void replayRecordedTick() {
+        InputRecording recording = new InputRecording();
+        recording.add(3, event(10));
+        recording.add(4, event(11));
+        recording.add(3, event(12));
+
+        InputQueue queue = new InputQueue();
+        recording.replay(3, queue);
+        assertEquals(10, queue.poll().time());
+        assertEquals(12, queue.poll().time());
+        assertNull(queue.poll());
+    }
+}
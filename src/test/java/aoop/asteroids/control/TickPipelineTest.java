@@ -0,0 +1,79 @@
+package aoop.asteroids.control;
+
+import nl.rug.aoop.asteroids.control.GameUpdater;
+import nl.rug.aoop.asteroids.control.TickPipeline;
+import nl.rug.aoop.asteroids.model.Game;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickPipelineTest {
+
+    @Test
+    void runsStagesInOrder() {
+        List<String> ran = new ArrayList<>();
+        TickPipeline pipeline = new TickPipeline()
+                .add("a", () -> ran.add("a"))
+                .add("b", () -> ran.add("b"))
+                .add("c", () -> ran.add("c"));
+        pipeline.tick();
+        assertEquals(List.of("a", "b", "c"), ran);
+        assertEquals(List.of("a", "b", "c"), pipeline.getStageNames());
+        assertThrows(IllegalArgumentException.class, () -> pipeline.add("b", () -> {}));
+    }
+
+    @Test
+    void disableAndReplace() {
+        List<String> ran = new ArrayList<>();
+        TickPipeline pipeline = new TickPipeline()
+                .add("a", () -> ran.add("a"))
+                .add("b", () -> ran.add("b"));
+        pipeline.setEnabled("a", false);
+        pipeline.replace("b", () -> ran.add("other"));
+        pipeline.tick();
+        assertEquals(List.of("other"), ran);
+
+        pipeline.setEnabled("a", true);
+        pipeline.tick();
+        assertEquals(List.of("other", "a", "other"), ran);
+        assertThrows(IllegalArgumentException.class, () -> pipeline.setEnabled("missing", false));
+    }
+
+    @Test
+    void keepsTimings() {
+        TickPipeline pipeline = new TickPipeline().add("sleep", () -> {
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException ignored) {
+            }
+        }).add("never", () -> {});
+        pipeline.setEnabled("never", false);
+        pipeline.tick();
+        assertTrue(pipeline.getLastNanos().get("sleep") >= 1_000_000);
+        assertTrue(pipeline.getAverageNanos().get("sleep") >= 1_000_000);
+        assertEquals(0, pipeline.getAverageNanos().get("never"));
+    }
+
+    @Test
+    void pipelinePerRole() {
+        Game solo = new Game();
+        solo.setType(Game.SOLO);
+        List<String> soloStages = new GameUpdater(solo).getPipeline().getStageNames();
+        assertTrue(soloStages.contains(GameUpdater.COLLISION_STAGE));
+        assertFalse(soloStages.contains(GameUpdater.SNAPSHOT_STAGE));
+
+        Game host = new Game();
+        host.setType(Game.HOST);
+        assertTrue(new GameUpdater(host).getPipeline().contains(GameUpdater.SNAPSHOT_STAGE));
+
+        Game client = new Game();
+        client.setType(Game.CLIENT);
+        TickPipeline clientPipeline = new GameUpdater(client).getPipeline();
+        assertFalse(clientPipeline.contains(GameUpdater.COLLISION_STAGE));
+        assertFalse(clientPipeline.contains(GameUpdater.SPAWN_STAGE));
+        assertFalse(clientPipeline.contains(GameUpdater.ASTEROID_MOVEMENT_STAGE));
+    }
+}
@@ -3,12 +3,28 @@ package aoop.asteroids.model;
 import lombok.extern.java.Log;
 import nl.rug.aoop.asteroids.model.AsteroidSize;
 import nl.rug.aoop.asteroids.model.Game;
+import nl.rug.aoop.asteroids.model.RewindBuffer;
+import nl.rug.aoop.asteroids.client.InterpolationBuffer;
+import nl.rug.aoop.asteroids.control.GameUpdater;
+import nl.rug.aoop.asteroids.model.connection.DeadReckoning;
+import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.Quantizer;
+import nl.rug.aoop.asteroids.model.connection.WorldSnapshot;
 import nl.rug.aoop.asteroids.model.gameobjects.Asteroid;
 import nl.rug.aoop.asteroids.model.gameobjects.Bullet;
+import nl.rug.aoop.asteroids.model.gameobjects.Spaceship;
 import org.junit.jupiter.api.Test;
 
 import java.awt.*;
 import java.lang.reflect.Field;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -126,6 +142,183 @@ class GameTest {
 		assertNull(updaterThread);
 	}
 
+	/**
+	 * Tests that a client keeps the same objects for the same network ids, and removes objects that are despawned or
+	 * no longer in the package.
+	 */
+	@Test
+	void testUpdateGameElementsInPlace() {
+		Game game = new Game();
+		game.setType(Game.CLIENT);
+		Asteroid first = new Asteroid(new Point.Double(100.0, 100.0), new Point.Double(0.0, 0.0), AsteroidSize.LARGE);
+		first.setNetworkId(7);
+		Asteroid second = new Asteroid(new Point.Double(200.0, 200.0), new Point.Double(0.0, 0.0), AsteroidSize.SMALL);
+		second.setNetworkId(8);
+		game.updateGameElements(this.makePackage(List.of(first, second), List.of(new Point.Double(5.0, 5.0)), List.of(9)));
+		assertEquals(2, game.getAsteroids().size());
+		assertEquals(1, game.getEnemiesBullets().size());
+		Asteroid received = game.getAsteroids().get(0);
+		Bullet receivedBullet = game.getEnemiesBullets().get(0);
+
+		// The same ids are updated in place.
+		first.getLocation().setLocation(110.0, 120.0);
+		game.updateGameElements(this.makePackage(List.of(first, second), List.of(new Point.Double(6.0, 6.0)), List.of(9)));
+		assertSame(received, game.getAsteroids().get(0));
+		assertSame(receivedBullet, game.getEnemiesBullets().get(0));
+		assertEquals(110.0, received.getLocation().getX());
+		assertEquals(6.0, receivedBullet.getLocation().getX());
+
+		// An explicit despawn and a missing id both remove the object.
+		MultiPlayerGamePackage mp = this.makePackage(List.of(second), new ArrayList<>(), new ArrayList<>());
+		mp.getDespawnedIds().add(7);
+		game.updateGameElements(mp);
+		assertEquals(1, game.getAsteroids().size());
+		assertEquals(8, game.getAsteroids().get(0).getNetworkId());
+		assertTrue(game.getEnemiesBullets().isEmpty());
+	}
+
+	/**
+	 * Tests that a client keeps an asteroid the host left out of a snapshot, and moves it on with its velocity when
+	 * no newer snapshot arrives in time.
+	 */
+	@Test
+	void testClientReckonsLeftOutAsteroids() {
+		DeadReckoning reckoning = new DeadReckoning(2);
+		Asteroid asteroid = new Asteroid(new Point.Double(100.0, 100.0), new Point.Double(2.0, 1.0), AsteroidSize.LARGE);
+		asteroid.setNetworkId(7);
+		MultiPlayerGamePackage first = new WorldSnapshot(Map.of(), Map.of(), List.of(asteroid), 0, 1)
+				.viewFor("me", false, "me", 0);
+		reckoning.leaveOut(first);
+		reckoning.sent(100, first);
+		reckoning.acknowledged(100);
+		asteroid.nextStep();
+		MultiPlayerGamePackage second = new WorldSnapshot(Map.of(), Map.of(), List.of(asteroid), 0, 2)
+				.viewFor("me", false, "me", 0);
+		reckoning.leaveOut(second);
+		assertEquals(1, first.getAsteroids().size());
+		assertTrue(second.getAsteroids().isEmpty());
+		assertTrue(second.isReckoned());
+		assertTrue(second.getNetworkIds().contains(7));
+
+		Game game = new Game();
+		game.setType(Game.CLIENT);
+		game.updateGameElements(first);
+		game.getInterpolationBuffer().add(second, 1000);
+		game.interpolateRemoteObjects(5000);
+		assertEquals(1, game.getAsteroids().size());
+		// drawn the most it may be ahead of the newest snapshot, which is one tick after the asteroid was sent
+		double steps = 1 + InterpolationBuffer.MAX_EXTRAPOLATION_MILLIS / GameUpdater.MILLISECONDS_PER_TICK;
+		assertEquals(Quantizer.snapX(100.0) + 2.0 * steps, game.getAsteroids().get(0).getLocation().getX(), 1e-9);
+		assertEquals(Quantizer.snapY(100.0) + steps, game.getAsteroids().get(0).getLocation().getY(), 1e-9);
+	}
+
+	/**
+	 * Tests that the host only applies the latest package of a client, once per tick.
+	 */
+	@Test
+	void testClientInputsAppliedPerTick() {
+		Game game = new Game();
+		game.setClientsMap(new ConcurrentHashMap<>());
+		game.addMainSpaceShip("host");
+		game.setType(Game.HOST);
+		Spaceship client = new Spaceship();
+		client.setId("client");
+		game.assignNetworkId(client);
+		game.addClient(client);
+
+		SinglePlayerPackage older = this.makePlayer(new Point.Double(10.0, 10.0));
+		SinglePlayerPackage newer = this.makePlayer(new Point.Double(20.0, 20.0));
+		newer.setShipId(client.getNetworkId()); // Done by the client handler.
+		newer.setTick(2);
+		game.updateInfo("client", older);
+		game.updateInfo("client", newer);
+		assertNull(game.getClient("client"));
+
+		game.updateWorldSnapshot();
+		assertSame(newer, game.getClient("client"));
+		// the host sees the other players as the clients do, rounded like they are sent
+		assertEquals(Quantizer.snapX(20.0), client.getLocation().getX());
+
+		// A package made before the applied one arrived late, and is skipped.
+		SinglePlayerPackage late = this.makePlayer(new Point.Double(30.0, 30.0));
+		late.setTick(1);
+		game.updateInfo("client", late);
+		game.updateWorldSnapshot();
+		assertSame(newer, game.getClient("client"));
+
+		// Packages overtaking each other within one tick do not lose the newest one.
+		SinglePlayerPackage newest = this.makePlayer(new Point.Double(40.0, 40.0));
+		newest.setTick(4);
+		SinglePlayerPackage overtaken = this.makePlayer(new Point.Double(35.0, 35.0));
+		overtaken.setTick(3);
+		game.updateInfo("client", newest);
+		game.updateInfo("client", overtaken);
+		game.setClock(Clock.fixed(Instant.ofEpochMilli(1234), ZoneOffset.UTC));
+		game.updateWorldSnapshot();
+		assertSame(newest, game.getClient("client"));
+		// Snapshots are timed with the same clock the packages are stamped with.
+		assertEquals(1234, game.getWorldSnapshot().getTime());
+
+		// Packages of a client that has left are ignored.
+		game.removeClient("client");
+		game.updateInfo("client", older);
+		game.updateWorldSnapshot();
+		assertNull(game.getClient("client"));
+	}
+
+	/**
+	 * Tests that a client close to the host cannot have its hits judged further back than its latency allows, even
+	 * when it claims to have fired long ago.
+	 */
+	@Test
+	void testRewindLimitedByMeasuredLatency() {
+		Game game = new Game();
+		game.setClientsMap(new ConcurrentHashMap<>());
+		game.addMainSpaceShip("host");
+		game.setType(Game.HOST);
+		Spaceship client = new Spaceship();
+		client.setId("client");
+		game.assignNetworkId(client);
+		game.addClient(client);
+		for (int i = 0; i < 20; i++) {
+			game.updateWorldSnapshot();
+		}
+
+		SinglePlayerPackage shooter = this.makePlayer(new Point.Double(10.0, 10.0));
+		shooter.setShipId(client.getNetworkId());
+		shooter.setBullets(new ArrayList<>(List.of(new Point.Double(50.0, 50.0))));
+		shooter.setBulletIds(new ArrayList<>(List.of(game.nextNetworkId())));
+		shooter.setOwnBulletsStepsLeft(new ArrayList<>(List.of(0)));
+		// The client claims it fired as far back as the host rewinds at most.
+		int claimed = game.getHostTick() - game.getRewindBuffer().getMaxRewindTicks();
+		shooter.setBulletFireTicks(new ArrayList<>(List.of(claimed)));
+		// The host measured a round trip of 10 ms to it. Done by the client handler.
+		int measured = RewindBuffer.latencyTicks(10);
+		shooter.setMaxRewindTicks(measured);
+		game.updateInfo("client", shooter);
+		game.updateWorldSnapshot();
+
+		assertEquals(1, game.getEnemiesBullets().size());
+		assertTrue(measured < game.getRewindBuffer().getMaxRewindTicks());
+		assertEquals(measured, game.getEnemiesBullets().get(0).getRewindTicks());
+	}
+
+	/**
+	 * Makes a package as sent by a client, without any bullets.
+	 */
+	private SinglePlayerPackage makePlayer(Point.Double location) {
+		return new SinglePlayerPackage(location, 0.0, 0, false, new ArrayList<>(), new ArrayList<>(),
+				new ArrayList<>(), "client");
+	}
+
+	/**
+	 * Makes a package as sent by the host, without any other players.
+	 */
+	private MultiPlayerGamePackage makePackage(List<Asteroid> asteroids, List<Point.Double> bullets, List<Integer> bulletIds) {
+		return new MultiPlayerGamePackage(false, "test", new ArrayList<>(), 0, new ArrayList<>(), new ArrayList<>(),
+				asteroids, bullets, bulletIds, bulletIds);
+	}
+
 	/**
 	 * A helper method to gain access to the game updater thread within a Game object, using some reflection methods.
 	 * Although strictly speaking it's not necessary to test private fields, doing so can make us much more certain that
@@ -0,0 +1,40 @@
+package aoop.asteroids.model;
+
+import nl.rug.aoop.asteroids.model.PlayerSlots;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlayerSlotsTest {
+
+    @Test
+    void slotsStayCompact() {
+        PlayerSlots slots = new PlayerSlots(3);
+        assertEquals(0, slots.acquire("host"));
+        assertEquals(1, slots.acquire("a"));
+        assertEquals(2, slots.acquire("b"));
+        assertEquals(1, slots.acquire("a"));
+        assertTrue(slots.isFull());
+        assertEquals(-1, slots.acquire("c"));
+
+        slots.release("a");
+        assertEquals(-1, slots.slotOf("a"));
+        assertEquals(1, slots.acquire("c"));
+        assertEquals(3, slots.size());
+    }
+
+    @Test
+    void everySlotHasItsOwnColour() {
+        Set<Color> colours = new HashSet<>();
+        for (int slot = 0; slot < PlayerSlots.MAX_PLAYERS; slot++) {
+            colours.add(PlayerSlots.colorOf(slot));
+        }
+        assertEquals(PlayerSlots.MAX_PLAYERS, colours.size());
+        assertEquals(Color.DARK_GRAY, PlayerSlots.colorOf(0));
+        assertEquals(Color.RED, PlayerSlots.colorOf(1));
+    }
+}
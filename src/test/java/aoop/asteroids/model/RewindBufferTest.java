@@ -0,0 +1,64 @@
+package aoop.asteroids.model;
+
+import nl.rug.aoop.asteroids.model.AsteroidSize;
+import nl.rug.aoop.asteroids.model.RewindBuffer;
+import nl.rug.aoop.asteroids.model.gameobjects.Asteroid;
+import nl.rug.aoop.asteroids.model.gameobjects.Bullet;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RewindBufferTest {
+    @Test
+    void locatesObjectsWhereTheyWere() {
+        RewindBuffer buffer = new RewindBuffer();
+        Asteroid asteroid = new Asteroid(new Point2D.Double(100, 100), new Point2D.Double(), AsteroidSize.LARGE);
+        asteroid.setNetworkId(7);
+        for (int tick = 1; tick <= 10; tick++) {
+            asteroid.getLocation().setLocation(100 + tick, 100);
+            buffer.record(tick, List.of(asteroid), List.of());
+        }
+        Point2D.Double found = new Point2D.Double();
+        assertTrue(buffer.locate(4, 7, found));
+        assertEquals(new Point2D.Double(104, 100), found);
+        assertFalse(buffer.locate(4, 8, found));
+        assertFalse(buffer.locate(11, 7, found));
+
+        // a second later the row of tick 4 holds another tick
+        buffer.record(4 + RewindBuffer.CAPACITY, List.of(asteroid), List.of());
+        assertFalse(buffer.locate(4, 7, found));
+        buffer.clear();
+        assertFalse(buffer.locate(5, 7, found));
+    }
+
+    @Test
+    void rewindIsLimited() {
+        RewindBuffer buffer = new RewindBuffer();
+        buffer.setMaxRewindMillis(200);
+        assertEquals(6, buffer.getMaxRewindTicks());
+        assertEquals(3, buffer.rewindFor(97, 100));
+        assertEquals(6, buffer.rewindFor(10, 100));
+        assertEquals(0, buffer.rewindFor(-1, 100));
+        assertEquals(0, buffer.rewindFor(100, 100));
+        // a shooter close to the host only gets as far back as its latency
+        assertEquals(4, RewindBuffer.latencyTicks(10));
+        assertEquals(4, buffer.rewindFor(10, 100, RewindBuffer.latencyTicks(10)));
+        assertEquals(3, buffer.rewindFor(97, 100, RewindBuffer.latencyTicks(10)));
+
+        buffer.setMaxRewindMillis(10_000);
+        assertEquals(RewindBuffer.CAPACITY - 1, buffer.getMaxRewindTicks());
+    }
+
+    @Test
+    void collidesAtRewoundLocation() {
+        Asteroid asteroid = new Asteroid(new Point2D.Double(500, 500), new Point2D.Double(), AsteroidSize.SMALL);
+        Bullet bullet = new Bullet(300, 300, 0, 0);
+        bullet.setStepsUntilCollisionPossible(0);
+        asteroid.setStepsUntilCollisionPossible(0);
+        assertFalse(asteroid.collides(bullet));
+        assertTrue(asteroid.collidesAt(new Point2D.Double(300, 300), bullet));
+    }
+}
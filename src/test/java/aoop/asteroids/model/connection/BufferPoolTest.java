@@ -0,0 +1,87 @@
+package aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.model.connection.BufferPool;
+import nl.rug.aoop.asteroids.model.connection.ConnectionEssentials;
+import nl.rug.aoop.asteroids.model.connection.LoopbackNetwork;
+import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
+import nl.rug.aoop.asteroids.model.connection.Transport;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPoolTest {
+    private static final int PACKETS = 2000;
+
+    @Test
+    void buffersAreReused() {
+        BufferPool pool = new BufferPool(64, 2);
+        ByteBuffer first = pool.acquire();
+        assertTrue(first.isDirect());
+        first.putInt(7);
+        pool.release(first);
+        ByteBuffer again = pool.acquire();
+        assertSame(first, again);
+        assertEquals(0, again.position());
+        assertEquals(64, again.limit());
+        pool.release(again);
+        pool.release(ByteBuffer.allocate(64));
+        pool.release(ByteBuffer.allocateDirect(32));
+        assertEquals(1, pool.getAllocated());
+        assertEquals(1, pool.getFree());
+    }
+
+    @Test
+    void playerPackagePathMakesLittleGarbage() throws Exception {
+        LoopbackNetwork network = new LoopbackNetwork();
+        TrafficHandler client = new TrafficHandler() {};
+        TrafficHandler host = new TrafficHandler() {};
+        client.setClock(network.clock());
+        host.setClock(network.clock());
+        SinglePlayerPackage sent = new SinglePlayerPackage(new Point2D.Double(100, 200), 1.5, 3, true,
+                new ArrayList<>(List.of(new Point2D.Double(110, 210), new Point2D.Double(120, 220))),
+                new ArrayList<>(List.of(1, 2)), new ArrayList<>(List.of(0, 4)), "player");
+        sent.setBulletVelocities(new ArrayList<>(List.of(new Point2D.Double(5, 0), new Point2D.Double(0, 5))));
+        sent.setBulletFireTicks(new ArrayList<>(List.of(40, 41)));
+        sent.setTick(7);
+        try (Transport clientSide = network.open(0); Transport hostSide = network.open(0)) {
+            ConnectionEssentials target = new ConnectionEssentials(network.getAddress(), hostSide.getLocalPort());
+            SinglePlayerPackage received = null;
+            for (int i = 0; i < PACKETS; i++) {
+                client.sendSinglePlayerGamePackage(sent, clientSide, target);
+                received = host.receiveSinglePlayerGamePackage(hostSide);
+            }
+            assertEquals(sent.getSpaceShip(), received.getSpaceShip());
+            assertEquals(sent.getBullets(), received.getBullets());
+            assertEquals(sent.getBulletIds(), received.getBulletIds());
+            assertEquals(sent.getOwnBulletsStepsLeft(), received.getOwnBulletsStepsLeft());
+            assertEquals(sent.getBulletVelocities(), received.getBulletVelocities());
+            assertEquals(sent.getBulletFireTicks(), received.getBulletFireTicks());
+            assertEquals(sent.getClockStamp(), received.getClockStamp());
+            assertEquals("player", received.getUserName());
+            assertEquals(7, received.getTick());
+            long allocated = BufferPool.DATAGRAMS.getAllocated();
+
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long thread = Thread.currentThread().getId();
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < PACKETS; i++) {
+                client.sendSinglePlayerGamePackage(sent, clientSide, target);
+                host.receiveSinglePlayerGamePackage(hostSide);
+            }
+            long garbage = threads.getThreadAllocatedBytes(thread) - before;
+
+            assertEquals(allocated, BufferPool.DATAGRAMS.getAllocated());
+            // the package that comes out and the copy the loopback network makes of each datagram, a serialized
+            // package takes ten times that
+            assertTrue(garbage / PACKETS < 2048, garbage / PACKETS + " bytes per package");
+        }
+    }
+}
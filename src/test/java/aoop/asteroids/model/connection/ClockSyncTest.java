@@ -0,0 +1,78 @@
+package aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.model.connection.ClockStamp;
+import nl.rug.aoop.asteroids.model.connection.ClockSync;
+import nl.rug.aoop.asteroids.model.connection.ConnectionEssentials;
+import nl.rug.aoop.asteroids.model.connection.LoopbackNetwork;
+import nl.rug.aoop.asteroids.model.connection.LoopbackTransport;
+import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClockSyncTest {
+    @Test
+    void shortestRoundTripIsTrusted() {
+        ClockSync sync = new ClockSync();
+        assertFalse(sync.add(new ClockStamp(-1, 0, 1000), 50));
+        assertFalse(sync.isSynchronised());
+
+        // the other clock is 1000 ms ahead, 20 ms each way, the answer was held for 5 ms
+        assertTrue(sync.add(new ClockStamp(100, 1120, 1125), 145));
+        assertEquals(1000, sync.getOffset());
+        assertEquals(40, sync.getRoundTrip());
+        assertEquals(20.0, sync.getOneWayDelay());
+
+        // an answer held up on its way back looks like a different offset, but is not trusted
+        sync.add(new ClockStamp(200, 1220, 1225), 345);
+        assertEquals(1000, sync.getOffset());
+        assertEquals(1500, sync.toRemote(500));
+        assertEquals(500, sync.toLocal(1500));
+        // had it not been held up, it would have arrived 20 ms after it was sent
+        assertEquals(245, sync.expectedArrival(new ClockStamp(200, 1220, 1225), 345));
+    }
+
+    @Test
+    void clocksAreComparedBothWays() throws Exception {
+        LoopbackNetwork network = new LoopbackNetwork();
+        TrafficHandler host = new TrafficHandler() {};
+        TrafficHandler client = new TrafficHandler() {};
+        host.setClock(Clock.offset(network.clock(), Duration.ofSeconds(1)));
+        client.setClock(network.clock());
+        try (LoopbackTransport hostSide = network.open(0); LoopbackTransport clientSide = network.open(0)) {
+            ConnectionEssentials toHost = new ConnectionEssentials(network.getAddress(), hostSide.getLocalPort());
+            ConnectionEssentials toClient = new ConnectionEssentials(network.getAddress(), clientSide.getLocalPort());
+
+            SinglePlayerPackage spp = new SinglePlayerPackage(new Point2D.Double(), 0, 0, false, new ArrayList<>(),
+                    new ArrayList<>(), new ArrayList<>(), "client");
+            spp.setTick(7);
+            client.sendSinglePlayerGamePackage(spp, clientSide, toHost);
+            network.advance(20);
+            assertEquals(7, host.receiveSinglePlayerGamePackage(hostSide).getTick());
+            // nothing of the host has been answered yet
+            assertFalse(host.getClockSync().isSynchronised());
+
+            network.advance(5);
+            host.sendMultiPlayerGamePackage(new MultiPlayerGamePackage(false, "client", new ArrayList<>(), 0,
+                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                    new ArrayList<>()), hostSide, toClient);
+            network.advance(20);
+            client.receiveMultiPlayerGamePackage(clientSide);
+            assertEquals(1000, client.getClockSync().getOffset());
+            assertEquals(20.0, client.getClockSync().getOneWayDelay());
+
+            client.sendSinglePlayerGamePackage(spp, clientSide, toHost);
+            network.advance(20);
+            host.receiveSinglePlayerGamePackage(hostSide);
+            assertEquals(-1000, host.getClockSync().getOffset());
+            assertEquals(40, host.getClockSync().getRoundTrip());
+        }
+    }
+}
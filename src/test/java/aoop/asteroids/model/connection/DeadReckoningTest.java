@@ -0,0 +1,118 @@
+package aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.model.AsteroidSize;
+import nl.rug.aoop.asteroids.model.connection.DeadReckoning;
+import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.model.connection.WorldSnapshot;
+import nl.rug.aoop.asteroids.model.gameobjects.Asteroid;
+import nl.rug.aoop.asteroids.view.AsteroidsFrame;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadReckoningTest {
+    private static final int ID = 1;
+
+    private MultiPlayerGamePackage view(int tick, Asteroid... asteroids) {
+        return new WorldSnapshot(Map.of(), Map.of(), List.of(asteroids), 0, tick).viewFor("me", false, "me", 0);
+    }
+
+    private Asteroid asteroid(double x, double y, double vx, double vy) {
+        Asteroid asteroid = new Asteroid(new Point2D.Double(x, y), new Point2D.Double(vx, vy), AsteroidSize.LARGE);
+        asteroid.setNetworkId(ID);
+        return asteroid;
+    }
+
+    /**
+     * sends the view of the given tick at time 1000 + tick, and tells whether the asteroid was in it
+     * */
+    private boolean send(DeadReckoning reckoning, int tick, Asteroid asteroid) {
+        MultiPlayerGamePackage mp = view(tick, asteroid);
+        reckoning.leaveOut(mp);
+        reckoning.sent(1000 + tick, mp);
+        return mp.getAsteroidIds().contains(ID);
+    }
+
+    @Test
+    void resentUntilAnswered() {
+        DeadReckoning reckoning = new DeadReckoning(2);
+        assertTrue(send(reckoning, 1, asteroid(100, 100, 3, 0)));
+        assertTrue(send(reckoning, 2, asteroid(103, 100, 3, 0)));
+        reckoning.acknowledged(1001);
+
+        MultiPlayerGamePackage mp = view(3, asteroid(106, 100, 3, 0));
+        reckoning.leaveOut(mp);
+        assertTrue(mp.getAsteroids().isEmpty());
+        assertTrue(mp.getAsteroidVelocities().isEmpty());
+        assertTrue(mp.isReckoned());
+        // left out, not gone
+        assertTrue(mp.getNetworkIds().contains(ID));
+    }
+
+    @Test
+    void onlyTheAnsweredPackageCounts() {
+        DeadReckoning reckoning = new DeadReckoning(2);
+        assertTrue(send(reckoning, 1, asteroid(100, 100, 3, 0)));
+        // the client answered a later package, the one with the asteroid might have been lost
+        reckoning.acknowledged(1002);
+        assertTrue(send(reckoning, 3, asteroid(106, 100, 3, 0)));
+        reckoning.acknowledged(1001);
+        assertTrue(send(reckoning, 4, asteroid(109, 100, 3, 0)));
+        reckoning.acknowledged(1004);
+        assertFalse(send(reckoning, 5, asteroid(112, 100, 3, 0)));
+    }
+
+    @Test
+    void resentWhenOffTrack() {
+        DeadReckoning reckoning = new DeadReckoning(2);
+        send(reckoning, 1, asteroid(100, 100, 3, 0));
+        reckoning.acknowledged(1001);
+        assertFalse(send(reckoning, 2, asteroid(104.5, 100, 3, 0)));
+        assertTrue(send(reckoning, 3, asteroid(109, 100, 3, 0)));
+        assertTrue(send(reckoning, 4, asteroid(109, 100, 3, 1)));
+    }
+
+    @Test
+    void wrapsAroundAndRefreshes() {
+        DeadReckoning reckoning = new DeadReckoning(2);
+        send(reckoning, 1, asteroid(1, 50, -2, 0));
+        reckoning.acknowledged(1001);
+        int tick = 2;
+        while (!send(reckoning, tick, asteroid(AsteroidsFrame.WIDTH + 3 - 2 * tick, 50, -2, 0))) {
+            tick++;
+        }
+        assertEquals(1 + DeadReckoning.REFRESH_TICKS, tick);
+    }
+
+    @Test
+    void goneAsteroidsAreForgotten() {
+        DeadReckoning reckoning = new DeadReckoning(2);
+        send(reckoning, 1, asteroid(100, 100, 0, 0));
+        reckoning.acknowledged(1001);
+        assertFalse(send(reckoning, 2, asteroid(100, 100, 0, 0)));
+        reckoning.leaveOut(view(3));
+        assertTrue(send(reckoning, 4, asteroid(100, 100, 0, 0)));
+    }
+
+    @Test
+    void offSendsEverything() {
+        DeadReckoning off = new DeadReckoning(0);
+        assertFalse(off.isEnabled());
+        send(off, 1, asteroid(100, 100, 0, 0));
+        off.acknowledged(1001);
+        assertTrue(send(off, 2, asteroid(100, 100, 0, 0)));
+        assertThrows(IllegalArgumentException.class, () -> new DeadReckoning(-1));
+
+        System.setProperty(DeadReckoning.PROPERTY, "0.5");
+        try {
+            assertTrue(DeadReckoning.configured().isEnabled());
+        } finally {
+            System.clearProperty(DeadReckoning.PROPERTY);
+        }
+        assertFalse(DeadReckoning.configured().isEnabled());
+    }
+}
@@ -0,0 +1,78 @@
+package aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.model.connection.FragmentAssembler;
+import nl.rug.aoop.asteroids.model.connection.Fragmenter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FragmentAssemblerTest {
+
+    private byte[] payload(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private byte[] feed(FragmentAssembler assembler, List<byte[]> fragments, long now) {
+        byte[] result = null;
+        for (byte[] fragment : fragments) {
+            FragmentAssembler.Payload payload = assembler.accept(fragment, fragment.length, now);
+            if (payload != null) {
+                result = payload.data();
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void reassemblesOutOfOrder() {
+        Fragmenter fragmenter = new Fragmenter();
+        byte[] data = payload(Fragmenter.MAX_FRAGMENT_PAYLOAD * 3 + 17);
+        List<byte[]> fragments = fragmenter.split(data, -1);
+        assertEquals(4, fragments.size());
+        fragments.forEach(fragment -> assertTrue(fragment.length <= Fragmenter.MAX_DATAGRAM_SIZE));
+
+        Collections.reverse(fragments);
+        assertArrayEquals(data, feed(new FragmentAssembler(), fragments, 0));
+    }
+
+    @Test
+    void dropsIncompleteAfterTimeout() {
+        Fragmenter fragmenter = new Fragmenter();
+        FragmentAssembler assembler = new FragmentAssembler();
+        List<byte[]> fragments = fragmenter.split(payload(Fragmenter.MAX_FRAGMENT_PAYLOAD * 2), -1);
+        assertNull(assembler.accept(fragments.get(0), fragments.get(0).length, 0));
+        assertEquals(1, assembler.pending());
+
+        long late = FragmentAssembler.REASSEMBLY_TIMEOUT_MILLIS + 1;
+        assertNull(assembler.accept(fragments.get(1), fragments.get(1).length, late));
+        assertEquals(1, assembler.getDroppedPayloads());
+    }
+
+    @Test
+    void dropsOlderPayloads() {
+        Fragmenter fragmenter = new Fragmenter();
+        FragmentAssembler assembler = new FragmentAssembler();
+        List<byte[]> older = fragmenter.split(payload(Fragmenter.MAX_FRAGMENT_PAYLOAD * 2), -1);
+        byte[] newest = payload(10);
+        List<byte[]> newer = fragmenter.split(newest, -1);
+
+        assertNull(assembler.accept(older.get(0), older.get(0).length, 0));
+        assertArrayEquals(newest, feed(assembler, newer, 0));
+        // the incomplete older payload is dropped, and its late fragment is ignored
+        assertNull(assembler.accept(older.get(1), older.get(1).length, 0));
+        assertEquals(0, assembler.pending());
+        assertEquals(2, assembler.getDroppedPayloads());
+    }
+
+    @Test
+    void rejectsTooLargePayload() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new Fragmenter().split(new byte[Fragmenter.MAX_PAYLOAD_SIZE + 1], -1));
+    }
+}
@@ -0,0 +1,100 @@
+package aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.model.connection.LoopbackNetwork;
+import nl.rug.aoop.asteroids.model.connection.LoopbackTransport;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.DatagramPacket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoopbackNetworkTest {
+    private final LoopbackNetwork network = new LoopbackNetwork();
+
+    private void send(LoopbackTransport from, LoopbackTransport to, int value) throws IOException {
+        from.send(new DatagramPacket(new byte[]{(byte) value}, 1, network.getAddress(), to.getLocalPort()));
+    }
+
+    private DatagramPacket receive(LoopbackTransport transport) throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[8], 8);
+        transport.receive(packet);
+        return packet;
+    }
+
+    private CompletableFuture<DatagramPacket> receiveLater(LoopbackTransport transport) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return receive(transport);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void deliversInOrder() throws IOException {
+        LoopbackTransport sender = network.open(0);
+        LoopbackTransport receiver = network.open(0);
+        for (int i = 0; i < 3; i++) {
+            send(sender, receiver, i);
+        }
+        assertEquals(3, receiver.getQueued());
+        for (int i = 0; i < 3; i++) {
+            DatagramPacket packet = receive(receiver);
+            assertEquals(i, packet.getData()[0]);
+            assertEquals(1, packet.getLength());
+            assertEquals(sender.getLocalPort(), packet.getPort());
+        }
+    }
+
+    @Test
+    void timeoutExpiresOnlyWhenTimeAdvances() throws Exception {
+        LoopbackTransport receiver = network.open(0);
+        receiver.setSoTimeout(100);
+        long before = network.clock().millis();
+        CompletableFuture<DatagramPacket> waiting = receiveLater(receiver);
+        while (!receiver.isWaiting()) {
+            Thread.onSpinWait();
+        }
+        network.advance(99);
+        assertThrows(TimeoutException.class, () -> waiting.get(50, TimeUnit.MILLISECONDS));
+        network.advance(1);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> waiting.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(SocketTimeoutException.class, e.getCause().getCause());
+        assertEquals(before + 100, network.clock().millis());
+    }
+
+    @Test
+    void wakesReceiverOnDatagramAndClose() throws Exception {
+        LoopbackTransport sender = network.open(0);
+        LoopbackTransport receiver = network.open(0);
+        CompletableFuture<DatagramPacket> waiting = receiveLater(receiver);
+        send(sender, receiver, 7);
+        assertEquals(7, waiting.get(1, TimeUnit.SECONDS).getData()[0]);
+
+        CompletableFuture<DatagramPacket> closing = receiveLater(receiver);
+        receiver.close();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> closing.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(SocketException.class, e.getCause().getCause());
+        // a datagram to a closed port is lost, like on a real network
+        assertDoesNotThrow(() -> send(sender, receiver, 8));
+        assertEquals(1, network.size());
+    }
+
+    @Test
+    void portsAreTakenOnce() throws IOException {
+        LoopbackTransport first = network.open(1234);
+        assertEquals(1234, first.getLocalPort());
+        assertThrows(BindException.class, () -> network.open(1234));
+        first.close();
+        assertEquals(1234, network.open(1234).getLocalPort());
+    }
+}
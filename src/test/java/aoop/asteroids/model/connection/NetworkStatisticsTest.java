@@ -0,0 +1,65 @@
+package aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.model.connection.Fragmenter;
+import nl.rug.aoop.asteroids.model.connection.NetworkStatistics;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkStatisticsTest {
+
+    private static final double DELTA = 0.00001;
+
+    @Test
+    void measuresRttFromAck() {
+        NetworkStatistics statistics = new NetworkStatistics();
+        statistics.onPayloadSent(0, 1000);
+        statistics.onPayloadReceived(0, 0, 1040);
+        assertEquals(40, statistics.getRtt(), DELTA);
+
+        // an ack is only used once
+        statistics.onPayloadReceived(1, 0, 2000);
+        assertEquals(40, statistics.getRtt(), DELTA);
+
+        statistics.onPayloadSent(1, 2000);
+        statistics.onPayloadReceived(2, 1, 2080);
+        assertEquals(45, statistics.getRtt(), DELTA);
+        assertTrue(statistics.getJitter() > 0);
+    }
+
+    @Test
+    void countsLossAndOutOfOrder() {
+        NetworkStatistics statistics = new NetworkStatistics();
+        statistics.onDatagramReceived(100, 0, 0);
+        statistics.onPayloadReceived(0, -1, 0);
+        statistics.onDatagramReceived(100, 3, 0);
+        statistics.onPayloadReceived(3, -1, 0);
+        statistics.onDatagramReceived(100, 2, 0);
+
+        assertEquals(2, statistics.getLostPayloads());
+        assertEquals(0.5, statistics.getLossRate(), DELTA);
+        assertEquals(1, statistics.getOutOfOrder());
+    }
+
+    @Test
+    void measuresBytesPerSecond() {
+        NetworkStatistics statistics = new NetworkStatistics();
+        statistics.onDatagramSent(0, 0);
+        statistics.onDatagramSent(500, 500);
+        statistics.onDatagramReceived(2000, 0, 1000);
+        assertEquals(500, statistics.getBytesOutPerSecond(), DELTA);
+        assertEquals(2000, statistics.getBytesInPerSecond(), DELTA);
+        assertEquals(2000, statistics.getBytesIn());
+    }
+
+    @Test
+    void snapshotSizeDistribution() {
+        NetworkStatistics statistics = new NetworkStatistics();
+        statistics.onSnapshot(100);
+        statistics.onSnapshot(Fragmenter.MAX_FRAGMENT_PAYLOAD + 1);
+        long[] sizes = statistics.getSnapshotSizes();
+        assertEquals(1, sizes[1]);
+        assertEquals(1, sizes[2]);
+        assertEquals(Fragmenter.MAX_FRAGMENT_PAYLOAD + 1, statistics.getLargestSnapshot());
+    }
+}
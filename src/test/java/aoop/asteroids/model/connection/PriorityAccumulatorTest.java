@@ -0,0 +1,112 @@
+package aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.model.connection.ConnectionEssentials;
+import nl.rug.aoop.asteroids.model.connection.LoopbackNetwork;
+import nl.rug.aoop.asteroids.model.connection.LoopbackTransport;
+import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.model.connection.PriorityAccumulator;
+import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.SnapshotBudget;
+import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
+import nl.rug.aoop.asteroids.model.connection.WorldSnapshot;
+import nl.rug.aoop.asteroids.model.gameobjects.Asteroid;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriorityAccumulatorTest {
+    private static final int ASTEROIDS = 40;
+    private static final int BULLETS = 10;
+
+    /**
+     * a player at the origin, and an other player with bullets and asteroids spread out along the x axis
+     * */
+    private WorldSnapshot snapshot() {
+        Map<String, SinglePlayerPackage> players = new HashMap<>();
+        players.put("me", player(1, 0));
+        players.put("other", player(2, BULLETS));
+        List<Asteroid> asteroids = new ArrayList<>();
+        for (int i = 0; i < ASTEROIDS; i++) {
+            Asteroid asteroid = new Asteroid(new Point2D.Double(i * 50, 0), new Point2D.Double(), 30, 0);
+            asteroid.setNetworkId(100 + i);
+            asteroids.add(asteroid);
+        }
+        return new WorldSnapshot(players, new HashMap<>(), asteroids, 0);
+    }
+
+    private SinglePlayerPackage player(int shipId, int bullets) {
+        List<Point2D.Double> locations = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < bullets; i++) {
+            locations.add(new Point2D.Double(i * 100, 10));
+            ids.add(200 + i);
+        }
+        SinglePlayerPackage spp = new SinglePlayerPackage(new Point2D.Double(), 0, 0, false, locations, ids,
+                new ArrayList<>(), "player" + shipId);
+        spp.setShipId(shipId);
+        return spp;
+    }
+
+    private MultiPlayerGamePackage view() {
+        MultiPlayerGamePackage mp = snapshot().viewFor("me", false, "me", 0);
+        mp.setFocus(new Point2D.Double());
+        return mp;
+    }
+
+    private int encodedLength(MultiPlayerGamePackage mp) throws IOException {
+        LoopbackNetwork network = new LoopbackNetwork();
+        TrafficHandler host = new TrafficHandler() {};
+        try (LoopbackTransport from = network.open(0); LoopbackTransport to = network.open(0)) {
+            host.sendMultiPlayerGamePackage(mp, from, new ConnectionEssentials(network.getAddress(), to.getLocalPort()));
+        }
+        return host.getStatistics().getLargestSnapshot();
+    }
+
+    @Test
+    void everythingFitsInFullBudget() {
+        MultiPlayerGamePackage mp = view();
+        new PriorityAccumulator().schedule(mp, SnapshotBudget.FULL);
+        assertEquals(ASTEROIDS, mp.getAsteroids().size());
+        assertEquals(BULLETS, mp.getBullets().size());
+        assertFalse(mp.isTrimmed());
+    }
+
+    @Test
+    void nearAndImportantObjectsGoFirst() throws IOException {
+        SnapshotBudget budget = new SnapshotBudget(700);
+        MultiPlayerGamePackage mp = view();
+        int estimate = new PriorityAccumulator().schedule(mp, budget);
+        assertTrue(mp.isTrimmed());
+        assertTrue(budget.fits(estimate));
+        assertTrue(encodedLength(mp) <= estimate, encodedLength(mp) + " > " + estimate);
+        assertEquals(List.of(2), mp.getShipIds());
+        // bullets weigh more than asteroids at the same distance
+        assertTrue(mp.getBulletIds().contains(200));
+        assertTrue(mp.getAsteroidIds().contains(100));
+        assertFalse(mp.getAsteroidIds().contains(100 + ASTEROIDS - 1));
+    }
+
+    @Test
+    void leftOutObjectsAreSentEventually() {
+        PriorityAccumulator priorities = new PriorityAccumulator();
+        SnapshotBudget budget = new SnapshotBudget(700);
+        Set<Integer> sent = new HashSet<>();
+        for (int round = 0; round < 100; round++) {
+            MultiPlayerGamePackage mp = view();
+            priorities.schedule(mp, budget);
+            sent.addAll(mp.getAsteroidIds());
+            sent.addAll(mp.getBulletIds());
+        }
+        assertEquals(ASTEROIDS + BULLETS, sent.size());
+        assertEquals(0, priorities.priorityOf(999));
+    }
+}
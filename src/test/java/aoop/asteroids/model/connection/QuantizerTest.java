@@ -0,0 +1,109 @@
+package aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.model.AsteroidSize;
+import nl.rug.aoop.asteroids.model.connection.ConnectionEssentials;
+import nl.rug.aoop.asteroids.model.connection.LoopbackNetwork;
+import nl.rug.aoop.asteroids.model.connection.LoopbackTransport;
+import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.model.connection.Quantizer;
+import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.SnapshotBudget;
+import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
+import nl.rug.aoop.asteroids.model.connection.WorldSnapshot;
+import nl.rug.aoop.asteroids.model.gameobjects.Asteroid;
+import nl.rug.aoop.asteroids.view.AsteroidsFrame;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantizerTest {
+
+    @Test
+    void positionsWrapAroundTheWorld() {
+        double step = (double) AsteroidsFrame.WIDTH / (1 << Quantizer.POSITION_BITS);
+        assertEquals(123.4, Quantizer.snapX(123.4), step / 2);
+        assertEquals(0, Quantizer.snapX(AsteroidsFrame.WIDTH));
+        assertEquals(Quantizer.snapX(AsteroidsFrame.WIDTH - 5.0), Quantizer.snapX(-5.0));
+        assertEquals(Quantizer.snapY(7.3), Quantizer.snapY(Quantizer.snapY(7.3)));
+    }
+
+    @Test
+    void anglesAndSizes() {
+        assertEquals(Math.PI, Quantizer.snapAngle(3 * Math.PI), 1e-9);
+        assertEquals(Quantizer.snapAngle(1.0), Quantizer.snapAngle(1.0 - 4 * Math.PI), 1e-9);
+        assertEquals(1.0, Quantizer.snapAngle(1.0), Math.PI / (1 << Quantizer.ANGLE_BITS));
+        for (AsteroidSize size : AsteroidSize.values()) {
+            assertEquals(size.getRadius(), Quantizer.snapRadius(size.getRadius()));
+        }
+        assertEquals(AsteroidSize.MEDIUM.getRadius(), Quantizer.snapRadius(21));
+    }
+
+    @Test
+    void velocities() {
+        double step = Quantizer.MAX_VELOCITY / (1 << (Quantizer.VELOCITY_BITS - 1));
+        assertEquals(0.0, Quantizer.snapVelocity(0.0));
+        assertEquals(-2.5, Quantizer.snapVelocity(-2.5));
+        assertEquals(1.234, Quantizer.snapVelocity(1.234), step / 2);
+        assertEquals(Quantizer.MAX_VELOCITY - step, Quantizer.snapVelocity(1000.0));
+        assertEquals(-Quantizer.MAX_VELOCITY, Quantizer.snapVelocity(-1000.0));
+    }
+
+    @Test
+    void clientReceivesTheValuesTheHostUses() throws Exception {
+        Random random = new Random(3);
+        List<Asteroid> asteroids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Asteroid asteroid = new Asteroid(new Point2D.Double(random.nextDouble() * AsteroidsFrame.WIDTH,
+                    random.nextDouble() * AsteroidsFrame.HEIGHT), new Point2D.Double(random.nextGaussian(),
+                    random.nextGaussian()), AsteroidSize.values()[i % 3]);
+            asteroid.setNetworkId(i);
+            asteroids.add(asteroid);
+        }
+        SinglePlayerPackage other = new SinglePlayerPackage(new Point2D.Double(10.123, 20.456), 7.5, 0, true,
+                new ArrayList<>(List.of(new Point2D.Double(-3.2, 801.7))), new ArrayList<>(List.of(99)),
+                new ArrayList<>(List.of(0)), "other");
+        other.setShipId(-2);
+        other.setBulletVelocities(List.of(new Point2D.Double(12.3, -4.56)));
+        WorldSnapshot snapshot = new WorldSnapshot(Map.of("other", other), Map.of(), asteroids, 0);
+        MultiPlayerGamePackage hostView = snapshot.viewFor("me", false, "me", 0);
+
+        LoopbackNetwork network = new LoopbackNetwork();
+        TrafficHandler host = new TrafficHandler() {};
+        TrafficHandler client = new TrafficHandler() {};
+        try (LoopbackTransport from = network.open(0); LoopbackTransport to = network.open(0)) {
+            ConnectionEssentials target = new ConnectionEssentials(network.getAddress(), to.getLocalPort());
+            assertTrue(host.sendSnapshot(snapshot, "me", hostView, SnapshotBudget.FULL, from, target));
+            MultiPlayerGamePackage received = client.receiveMultiPlayerGamePackage(to);
+            assertEquals(hostView.getSpaceShips(), received.getSpaceShips());
+            assertEquals(hostView.getDirections(), received.getDirections());
+            assertEquals(List.of(true), received.getIsAccList());
+            assertEquals(List.of(-2), received.getShipIds());
+            assertEquals(List.of("other"), received.getEnemiesNames());
+            assertEquals(hostView.getBullets(), received.getBullets());
+            assertEquals(hostView.getBulletVelocities(), received.getBulletVelocities());
+            assertEquals(Quantizer.snappedVelocity(new Point2D.Double(12.3, -4.56)),
+                    received.getBulletVelocities().get(0));
+            assertEquals(hostView.getAsteroids(), received.getAsteroids());
+            assertEquals(hostView.getAsteroidVelocities(), received.getAsteroidVelocities());
+            assertEquals(hostView.getAsteroidsDirection(), received.getAsteroidsDirection());
+            assertEquals(hostView.getAsteroidRadius(), received.getAsteroidRadius());
+            assertEquals(hostView.getAsteroidIds(), received.getAsteroidIds());
+        }
+
+        // the packed world takes a fraction of the package serialized as it is
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(plain)) {
+            out.writeObject(hostView);
+        }
+        assertTrue(snapshot.encodedWorld().length * 3 < plain.size(),
+                snapshot.encodedWorld().length + " vs " + plain.size());
+    }
+}
@@ -0,0 +1,60 @@
+package aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.model.connection.ControlMessage;
+import nl.rug.aoop.asteroids.model.connection.ReliableChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReliableChannelTest {
+
+    private ControlMessage message(ControlMessage.Type type) {
+        return new ControlMessage(type, 1, "player", -1);
+    }
+
+    @Test
+    void resendsUntilAcknowledged() {
+        ReliableChannel sender = new ReliableChannel();
+        sender.queue(message(ControlMessage.Type.JOIN));
+        sender.queue(message(ControlMessage.Type.DEATH));
+
+        assertEquals(2, sender.due(1000).size());
+        assertTrue(sender.due(1000 + ReliableChannel.RESEND_MILLIS - 1).isEmpty());
+        assertEquals(2, sender.due(1000 + ReliableChannel.RESEND_MILLIS).size());
+        assertEquals(1, sender.getResends());
+
+        sender.acknowledge(0);
+        List<ControlMessage> left = sender.due(2000);
+        assertEquals(1, left.size());
+        assertEquals(ControlMessage.Type.DEATH, left.get(0).type());
+        sender.acknowledge(1);
+        assertTrue(sender.isIdle());
+        assertTrue(sender.due(3000).isEmpty());
+    }
+
+    @Test
+    void deliversInOrderAndOnce() {
+        ReliableChannel sender = new ReliableChannel();
+        ReliableChannel receiver = new ReliableChannel();
+        for (ControlMessage.Type type : ControlMessage.Type.values()) {
+            sender.queue(message(type));
+        }
+        List<ControlMessage> sent = sender.due(0);
+        List<ControlMessage> reversed = new ArrayList<>(sent);
+        Collections.reverse(reversed);
+
+        // only the late half arrives first: it waits for the messages in front of it
+        assertTrue(receiver.accept(reversed.subList(0, 3)).isEmpty());
+        assertEquals(-1, receiver.getAck());
+        List<ControlMessage> delivered = receiver.accept(sent);
+        assertEquals(sent, delivered);
+        assertEquals(sent.size() - 1, receiver.getAck());
+
+        // a resend after the acknowledgement got lost is dropped
+        assertTrue(receiver.accept(sent).isEmpty());
+    }
+}
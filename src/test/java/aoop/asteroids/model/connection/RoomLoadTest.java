@@ -0,0 +1,125 @@
+package aoop.asteroids.model.connection;
+
+import lombok.extern.java.Log;
+import nl.rug.aoop.asteroids.control.GameUpdater;
+import nl.rug.aoop.asteroids.model.Game;
+import nl.rug.aoop.asteroids.model.PlayerSlots;
+import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.WorldSnapshot;
+import nl.rug.aoop.asteroids.model.gameobjects.Spaceship;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * fills a hosted game with players and measures the work the host does per tick: taking the snapshot and making
+ * and serializing the package of every client.
+ * */
+@Log
+class RoomLoadTest {
+    private static final int TICKS = 30;
+    private static final int BULLETS_PER_PLAYER = 5;
+
+    private SinglePlayerPackage player(Spaceship ship, int tick) {
+        List<Point2D.Double> bullets = new ArrayList<>();
+        List<Integer> bulletIds = new ArrayList<>();
+        List<Integer> stepsLeft = new ArrayList<>();
+        for (int i = 0; i < BULLETS_PER_PLAYER; i++) {
+            bullets.add(new Point2D.Double(tick + i, ship.getSlot() * 10.0));
+            bulletIds.add(ship.getNetworkId() * 100 + i);
+            stepsLeft.add(0);
+        }
+        SinglePlayerPackage spp = new SinglePlayerPackage(new Point2D.Double(tick, ship.getSlot() * 10.0), 0, 0,
+                false, bullets, bulletIds, stepsLeft, "player" + ship.getSlot());
+        spp.setShipId(ship.getNetworkId());
+        return spp;
+    }
+
+    private int sizeOf(MultiPlayerGamePackage mp) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(mp);
+        }
+        return bytes.size();
+    }
+
+    private void fillRoom(int players) throws IOException {
+        Game game = new Game();
+        game.setClientsMap(new ConcurrentHashMap<>());
+        game.addMainSpaceShip("host");
+        game.setType(Game.HOST);
+        List<Spaceship> clients = new ArrayList<>();
+        for (int i = 1; i < players; i++) {
+            String id = "client" + i;
+            assertTrue(game.getPlayerSlots().acquire(id) >= 0); // done by the server when the client joins
+            Spaceship ship = new Spaceship();
+            ship.setId(id);
+            game.assignNetworkId(ship);
+            game.addClient(ship);
+            clients.add(ship);
+        }
+
+        long tickNanos = 0;
+        long bytes = 0;
+        for (int tick = 0; tick < TICKS; tick++) {
+            for (Spaceship ship : clients) {
+                game.updateInfo(ship.getId(), player(ship, tick));
+            }
+            long start = System.nanoTime();
+            game.updateWorldSnapshot();
+            WorldSnapshot snapshot = game.getWorldSnapshot();
+            for (Spaceship ship : clients) {
+                MultiPlayerGamePackage mp = snapshot.viewFor(ship.getId(), false, ship.getUserName(), 0);
+                assertEquals(players - 1, mp.getShipIds().size());
+                bytes += sizeOf(mp);
+            }
+            tickNanos += System.nanoTime() - start;
+        }
+
+        MultiPlayerGamePackage view = game.getWorldSnapshot().viewFor("client1", false, "", 0);
+        Set<Integer> slots = new HashSet<>(view.getSlots());
+        assertEquals(players - 1, slots.size());
+        assertFalse(slots.contains(1));
+        log.info(String.format("%d players: host tick %.2f ms, %.1f KB per tick, %.1f KB/s to all clients",
+                players, tickNanos / 1e6 / TICKS, bytes / 1024.0 / TICKS, bytes / 1024.0 / TICKS * GameUpdater.PHYSICS_FPS));
+    }
+
+    @Test
+    void sixteenPlayers() throws IOException {
+        fillRoom(16);
+    }
+
+    @Test
+    void thirtyTwoPlayers() throws IOException {
+        fillRoom(32);
+    }
+
+    @Test
+    void sixtyFourPlayers() throws IOException {
+        fillRoom(PlayerSlots.MAX_PLAYERS);
+    }
+
+    @Test
+    void roomIsFullAtCapacity() {
+        Game game = new Game();
+        game.setClientsMap(new ConcurrentHashMap<>());
+        game.addMainSpaceShip("host");
+        for (int i = 1; i < PlayerSlots.MAX_PLAYERS; i++) {
+            assertTrue(game.getPlayerSlots().acquire("client" + i) > 0);
+        }
+        assertEquals(-1, game.getPlayerSlots().acquire("one too many"));
+        game.removeClient("client5");
+        assertEquals(5, game.getPlayerSlots().acquire("one too many"));
+    }
+}
@@ -0,0 +1,102 @@
+package aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.model.connection.NetworkConditions;
+import nl.rug.aoop.asteroids.model.connection.SimulatedTransport;
+import nl.rug.aoop.asteroids.model.connection.Transport;
+import nl.rug.aoop.asteroids.model.connection.UdpTransport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulatedTransportTest {
+    private Transport receiver;
+    private Transport sender;
+
+    @BeforeEach
+    void open() throws IOException {
+        receiver = new UdpTransport();
+        receiver.setSoTimeout(1000);
+        sender = new UdpTransport();
+    }
+
+    @AfterEach
+    void close() {
+        receiver.close();
+        sender.close();
+    }
+
+    private void send(Transport transport, int value) throws IOException {
+        transport.send(new DatagramPacket(new byte[]{(byte) value}, 1, InetAddress.getLoopbackAddress(),
+                receiver.getLocalPort()));
+    }
+
+    private int receive() throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[8], 8);
+        receiver.receive(packet);
+        return packet.getData()[0];
+    }
+
+    @Test
+    void presetsByName() {
+        NetworkConditions crossContinent = NetworkConditions.named(" Cross-Continent");
+        assertEquals(NetworkConditions.CROSS_CONTINENT, crossContinent);
+        assertEquals(150, 2 * crossContinent.delayMillis());
+        assertEquals(0.02, crossContinent.lossRate());
+        assertTrue(NetworkConditions.named("perfect").isPerfect());
+        assertThrows(IllegalArgumentException.class, () -> NetworkConditions.named("dial-up"));
+        assertThrows(IllegalArgumentException.class, () -> new NetworkConditions(0, 0, 1.5, 0, 0));
+    }
+
+    @Test
+    void delaysByLatency() throws IOException {
+        SimulatedTransport slow = new SimulatedTransport(sender, new NetworkConditions(60, 0, 0, 0, 0));
+        long start = System.nanoTime();
+        send(slow, 1);
+        assertEquals(1, receive());
+        assertTrue(System.nanoTime() - start >= 55_000_000L);
+    }
+
+    @Test
+    void dropsAndDuplicates() throws IOException {
+        SimulatedTransport lossy = new SimulatedTransport(sender, new NetworkConditions(0, 0, 1, 0, 0));
+        send(lossy, 1);
+        assertEquals(1, lossy.getDropped());
+        receiver.setSoTimeout(100);
+        assertThrows(SocketTimeoutException.class, this::receive);
+
+        receiver.setSoTimeout(1000);
+        SimulatedTransport echoing = new SimulatedTransport(sender, new NetworkConditions(0, 0, 0, 1, 0));
+        send(echoing, 2);
+        assertEquals(2, receive());
+        assertEquals(2, receive());
+        assertEquals(1, echoing.getDuplicated());
+    }
+
+    @Test
+    void heldBackDatagramIsOvertaken() throws IOException {
+        SimulatedTransport reordering = new SimulatedTransport(sender, new NetworkConditions(0, 0, 0, 0, 1));
+        send(reordering, 1);
+        send(sender, 2);
+        assertEquals(2, receive());
+        assertEquals(1, receive());
+        assertEquals(1, reordering.getReordered());
+    }
+
+    @Test
+    void seededNetworkLosesAboutTheRate() throws IOException {
+        SimulatedTransport lossy = new SimulatedTransport(sender, new NetworkConditions(0, 0, 0.2, 0, 0),
+                new Random(42));
+        for (int i = 0; i < 1000; i++) {
+            send(lossy, i);
+        }
+        assertEquals(200, lossy.getDropped(), 40);
+    }
+}
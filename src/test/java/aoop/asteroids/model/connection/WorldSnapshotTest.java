@@ -0,0 +1,109 @@
+package aoop.asteroids.model.connection;
+
+import nl.rug.aoop.asteroids.model.connection.ConnectionEssentials;
+import nl.rug.aoop.asteroids.model.connection.LoopbackNetwork;
+import nl.rug.aoop.asteroids.model.connection.LoopbackTransport;
+import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.SnapshotBudget;
+import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
+import nl.rug.aoop.asteroids.model.connection.WorldSnapshot;
+import nl.rug.aoop.asteroids.model.gameobjects.Spaceship;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorldSnapshotTest {
+
+    private SinglePlayerPackage player(int shipId, String name, int... bulletIds) {
+        List<Point2D.Double> bullets = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        List<Integer> stepsLeft = new ArrayList<>();
+        for (int bulletId : bulletIds) {
+            bullets.add(new Point2D.Double(bulletId, bulletId));
+            ids.add(bulletId);
+            stepsLeft.add(0);
+        }
+        SinglePlayerPackage spp = new SinglePlayerPackage(new Point2D.Double(shipId, shipId), 0, 0, false,
+                bullets, ids, stepsLeft, name);
+        spp.setShipId(shipId);
+        return spp;
+    }
+
+    private WorldSnapshot snapshot() {
+        Map<String, SinglePlayerPackage> players = new LinkedHashMap<>();
+        players.put("a", player(1, "A", 10, 11));
+        players.put("b", player(2, "B", 20));
+        players.put("c", player(3, "C"));
+        Map<String, Spaceship> ships = new LinkedHashMap<>();
+        return new WorldSnapshot(players, ships, new ArrayList<>(), 0);
+    }
+
+    @Test
+    void viewLeavesOutOwnObjects() {
+        MultiPlayerGamePackage mp = snapshot().viewFor("b", false, "B", 0);
+        assertEquals(List.of(1, 3), mp.getShipIds());
+        assertEquals(List.of("A", "C"), mp.getEnemiesNames());
+        assertEquals(List.of(10, 11), mp.getBulletIds());
+        assertEquals(List.of(1, 1), mp.getBulletOwnerIds());
+
+        mp = snapshot().viewFor("a", false, "A", 0);
+        assertEquals(List.of(2, 3), mp.getShipIds());
+        assertEquals(List.of(20), mp.getBulletIds());
+    }
+
+    @Test
+    void viewSurvivesSerialization() throws Exception {
+        MultiPlayerGamePackage mp = snapshot().viewFor("c", false, "C", 0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(mp);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            MultiPlayerGamePackage received = (MultiPlayerGamePackage) in.readObject();
+            assertEquals(List.of(1, 2), received.getShipIds());
+            assertEquals(List.of(10, 11, 20), received.getBulletIds());
+            assertEquals(ArrayList.class, received.getShipIds().getClass());
+        }
+    }
+
+    @Test
+    void worldIsEncodedOnceForAllClients() throws Exception {
+        WorldSnapshot snapshot = snapshot();
+        LoopbackNetwork network = new LoopbackNetwork();
+        TrafficHandler host = new TrafficHandler() {};
+        TrafficHandler client = new TrafficHandler() {};
+        try (LoopbackTransport from = network.open(0); LoopbackTransport to = network.open(0)) {
+            ConnectionEssentials target = new ConnectionEssentials(network.getAddress(), to.getLocalPort());
+            byte[] world = snapshot.encodedWorld();
+            for (String id : List.of("a", "b")) {
+                MultiPlayerGamePackage view = snapshot.viewFor(id, false, id.toUpperCase(), 7);
+                view.setOwnShipId(id.equals("a") ? 1 : 2);
+                view.getDespawnedIds().add(99);
+                assertTrue(host.sendSnapshot(snapshot, id, view, SnapshotBudget.FULL, from, target));
+
+                MultiPlayerGamePackage received = client.receiveMultiPlayerGamePackage(to);
+                assertEquals(view.getShipIds(), received.getShipIds());
+                assertEquals(view.getEnemiesNames(), received.getEnemiesNames());
+                assertEquals(view.getBulletIds(), received.getBulletIds());
+                assertEquals(view.getOwnShipId(), received.getOwnShipId());
+                assertEquals(7, received.getOwnScore());
+                assertEquals(List.of(99), received.getDespawnedIds());
+            }
+            assertSame(world, snapshot.encodedWorld());
+            assertFalse(host.sendSnapshot(snapshot, "a", snapshot.viewFor("a", false, "A", 0),
+                    new SnapshotBudget(world.length - 1), from, target));
+            assertEquals(0, to.getQueued());
+        }
+    }
+}
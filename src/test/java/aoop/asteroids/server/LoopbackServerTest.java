@@ -0,0 +1,210 @@
+package aoop.asteroids.server;
+
+import nl.rug.aoop.asteroids.client.Client;
+import nl.rug.aoop.asteroids.model.Game;
+import nl.rug.aoop.asteroids.model.connection.ConnectionEssentials;
+import nl.rug.aoop.asteroids.model.connection.ControlMessage;
+import nl.rug.aoop.asteroids.model.connection.HeartbeatSettings;
+import nl.rug.aoop.asteroids.model.connection.LoopbackNetwork;
+import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.model.connection.ReliableChannel;
+import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
+import nl.rug.aoop.asteroids.model.connection.Transport;
+import nl.rug.aoop.asteroids.model.connection.TransportFactory;
+import nl.rug.aoop.asteroids.server.NetworkingMode;
+import nl.rug.aoop.asteroids.server.Room;
+import nl.rug.aoop.asteroids.server.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * plays a host with clients over a {@link LoopbackNetwork}: no sockets, and time only passes when the test says so.
+ * */
+class LoopbackServerTest {
+    private static final HeartbeatSettings HEARTBEAT = new HeartbeatSettings(250, 5000);
+
+    private final LoopbackNetwork network = new LoopbackNetwork();
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private final List<Transport> transports = new ArrayList<>();
+    private final List<TrafficHandler> clients = new ArrayList<>();
+    private Server server;
+    private Room room;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        server = new Server(0, id -> {}, NetworkingMode.PLATFORM);
+        server.setTransports(network);
+        server.setHeartbeat(HEARTBEAT);
+        room = new Room(Server.DEFAULT_ROOM);
+        server.addRoom(room.getId(), room.getGame());
+        threads.submit(server);
+        while (!server.isRunning()) {
+            Thread.sleep(1);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        // keep receiving, so the kicks of the shutdown are acknowledged right away
+        for (int i = 0; i < clients.size(); i++) {
+            TrafficHandler client = clients.get(i);
+            Transport transport = transports.get(i);
+            threads.submit(() -> client.receiveMultiPlayerGamePackage(transport));
+        }
+        // kicks that are not acknowledged time out on the clock of the network
+        Future<?> shutDown = threads.submit(server::shutDown);
+        while (!shutDown.isDone()) {
+            network.advance(ReliableChannel.RESEND_MILLIS);
+            Thread.sleep(ReliableChannel.RESEND_MILLIS);
+        }
+        transports.forEach(Transport::close);
+        threads.shutdownNow();
+    }
+
+    private ConnectionEssentials join(TrafficHandler client, String name) throws Exception {
+        Transport transport = network.open(0);
+        transports.add(transport);
+        clients.add(client);
+        client.setClock(network.clock());
+        client.sendJoinPacket(transport, new ConnectionEssentials(network.getAddress(), server.getPort()),
+                room.getId());
+        DatagramPacket init = client.receive(transport);
+        ConnectionEssentials handler = new ConnectionEssentials(init.getAddress(), init.getPort());
+        client.queueControl(ControlMessage.Type.JOIN, 0, name);
+        play(client, handler, name);
+        return handler;
+    }
+
+    private MultiPlayerGamePackage play(TrafficHandler client, ConnectionEssentials handler, String name)
+            throws Exception {
+        Transport transport = transports.get(clients.indexOf(client));
+        client.sendSinglePlayerGamePackage(new SinglePlayerPackage(new Point2D.Double(), 0, 0, false,
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), name), transport, handler);
+        return client.receiveMultiPlayerGamePackage(transport);
+    }
+
+    @Test
+    void clientJoinsWithoutWaiting() throws Exception {
+        Client joining = new Client(null, new Game(), network);
+        joining.attemptToJoin(server.getPort(), room.getId());
+        assertTrue(joining.isJoined());
+        assertEquals(1, room.getGame().getPlayerSlots().size());
+
+        Client lost = new Client(null, new Game(), network);
+        lost.attemptToJoin(server.getPort(), 42);
+        assertFalse(lost.isJoined());
+        assertTrue(lost.isUnknownRoom());
+    }
+
+    @Test
+    void failedJoinFreesTheSlot() throws Exception {
+        AtomicBoolean failed = new AtomicBoolean();
+        server.setTransports(new TransportFactory() {
+            @Override
+            public Transport open(int port) throws IOException {
+                if (failed.compareAndSet(false, true)) {
+                    throw new IOException("no free ports");
+                }
+                return network.open(port);
+            }
+
+            @Override
+            public Clock clock() {
+                return network.clock();
+            }
+        });
+        try (Transport transport = network.open(0)) {
+            new TrafficHandler() {}.sendJoinPacket(transport,
+                    new ConnectionEssentials(network.getAddress(), server.getPort()), room.getId());
+        }
+
+        // requests are handled in order, so the failed one is done once the next client joined
+        join(new TrafficHandler() {}, "second");
+        assertTrue(failed.get());
+        assertEquals(1, room.getGame().getPlayerSlots().size());
+    }
+
+    @Test
+    void repeatedJoinGetsTheSameHandler() throws Exception {
+        TrafficHandler client = new TrafficHandler() {};
+        Transport transport = network.open(0);
+        transports.add(transport);
+        clients.add(client);
+        ConnectionEssentials host = new ConnectionEssentials(network.getAddress(), server.getPort());
+        // the client asks again, as if the first answer was late
+        client.sendJoinPacket(transport, host, room.getId());
+        client.sendJoinPacket(transport, host, room.getId());
+        DatagramPacket first = client.receive(transport);
+        DatagramPacket second = client.receive(transport);
+
+        assertEquals(first.getPort(), second.getPort());
+        assertEquals(1, room.getGame().getPlayerSlots().size());
+        assertEquals(1, server.getClientHandlers(room.getId()).size());
+    }
+
+    @Test
+    void kickTimesOutOnTheNetworkClock() throws Exception {
+        join(new TrafficHandler() {}, "silent");
+        Future<?> shutDown = threads.submit(server::shutDown);
+        // the client never acknowledges the kick, and longer than the kick timeout passes, but not on the network
+        Thread.sleep(1000);
+        assertFalse(shutDown.isDone());
+        while (!shutDown.isDone()) {
+            network.advance(ReliableChannel.RESEND_MILLIS);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void clientsSeeEachOther() throws Exception {
+        TrafficHandler first = new TrafficHandler() {};
+        TrafficHandler second = new TrafficHandler() {};
+        ConnectionEssentials firstHandler = join(first, "first");
+        ConnectionEssentials secondHandler = join(second, "second");
+        for (int round = 0; round < 10; round++) {
+            room.tick();
+            play(first, firstHandler, "first");
+            play(second, secondHandler, "second");
+        }
+        MultiPlayerGamePackage snapshot = play(first, firstHandler, "first");
+        assertEquals("first", snapshot.getOwnName());
+        // the other player is in it
+        assertFalse(snapshot.getShipIds().isEmpty());
+        assertEquals(2, room.getGame().getPlayerSlots().size());
+    }
+
+    @Test
+    void silentClientIsReapedWhenTimePasses() throws Exception {
+        TrafficHandler player = new TrafficHandler() {};
+        TrafficHandler crashing = new TrafficHandler() {};
+        ConnectionEssentials handler = join(player, "player");
+        join(crashing, "crashing");
+
+        network.advance(HEARTBEAT.timeoutMillis() - 1);
+        assertEquals(0, server.getReapedSessions());
+        play(player, handler, "player");
+        // a heartbeat interval at a time, so a handler that was not waiting yet still wakes up at the next one
+        for (int step = 0; step < 10 && server.getReapedSessions() == 0; step++) {
+            network.advance(HEARTBEAT.intervalMillis());
+            Thread.sleep(10);
+        }
+        assertEquals(1, server.getReapedSessions());
+        assertEquals(1, room.getGame().getPlayerSlots().size());
+        assertEquals(1, server.getClientHandlers(room.getId()).size());
+    }
+}
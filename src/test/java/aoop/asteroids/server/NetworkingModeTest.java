@@ -0,0 +1,165 @@
+package aoop.asteroids.server;
+
+import lombok.extern.java.Log;
+import nl.rug.aoop.asteroids.model.PlayerSlots;
+import nl.rug.aoop.asteroids.model.connection.ConnectionEssentials;
+import nl.rug.aoop.asteroids.model.connection.MultiPlayerGamePackage;
+import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
+import nl.rug.aoop.asteroids.model.connection.Transport;
+import nl.rug.aoop.asteroids.model.connection.UdpTransport;
+import nl.rug.aoop.asteroids.server.NetworkingMode;
+import nl.rug.aoop.asteroids.server.Room;
+import nl.rug.aoop.asteroids.server.Server;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * serves 100 simulated clients with each networking mode and compares the threads, heap and context switches the
+ * server needs for them.
+ * */
+@Log
+class NetworkingModeTest {
+    private static final int CLIENTS = 100;
+    private static final int ROUNDS = 20;
+
+    /**
+     * a simulated client: its traffic, its game socket and the port of its handler on the server
+     * */
+    private record SimulatedClient(TrafficHandler traffic, Transport socket, ConnectionEssentials handler) {}
+
+    @Test
+    void configuredModeDefaultsToPlatform() {
+        System.clearProperty(NetworkingMode.PROPERTY);
+        assertEquals(NetworkingMode.PLATFORM, NetworkingMode.configured());
+        System.setProperty(NetworkingMode.PROPERTY, "Virtual");
+        assertEquals(NetworkingMode.VIRTUAL, NetworkingMode.configured());
+        System.setProperty(NetworkingMode.PROPERTY, "green");
+        assertEquals(NetworkingMode.PLATFORM, NetworkingMode.configured());
+        System.clearProperty(NetworkingMode.PROPERTY);
+    }
+
+    @Test
+    void virtualModeAlwaysGivesAnExecutor() throws InterruptedException {
+        ExecutorService executor = NetworkingMode.VIRTUAL.newExecutor();
+        assertEquals(42, assertDoesNotThrow(() -> executor.submit(() -> 42).get()));
+        executor.shutdownNow();
+    }
+
+    @Test
+    void serveHundredClients() throws Exception {
+        for (NetworkingMode mode : NetworkingMode.values()) {
+            if (!mode.isAvailable()) {
+                log.info(mode + " threads are not available on this runtime, skipped");
+                continue;
+            }
+            serve(mode);
+        }
+    }
+
+    private void serve(NetworkingMode mode) throws Exception {
+        int rooms = (CLIENTS + PlayerSlots.MAX_PLAYERS - 1) / PlayerSlots.MAX_PLAYERS;
+        Server server = new Server(0, room -> {}, mode);
+        List<Room> hosted = new ArrayList<>();
+        for (int i = 0; i < rooms; i++) {
+            Room room = new Room(i);
+            server.addRoom(i, room.getGame());
+            hosted.add(room);
+        }
+        ExecutorService runner = Executors.newSingleThreadExecutor();
+        runner.submit(server);
+        while (!server.isRunning()) {
+            Thread.sleep(5);
+        }
+
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = usedHeap();
+        long switchesBefore = contextSwitches();
+        List<SimulatedClient> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(join(server.getPort(), i % rooms));
+            }
+            for (int round = 0; round < ROUNDS; round++) {
+                hosted.forEach(Room::tick);
+                for (SimulatedClient client : clients) {
+                    play(client, round);
+                }
+            }
+            int threads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+            long heap = usedHeap() - heapBefore;
+            long switches = contextSwitches() - switchesBefore;
+            log.info(String.format("%s: %d clients, %d rounds, threads=+%d heap=%+dKB context switches=%d",
+                    mode, CLIENTS, ROUNDS, threads, heap / 1024, switches));
+            for (int i = 0; i < rooms; i++) {
+                assertEquals(server.getClientHandlers(i).size(), hosted.get(i).getGame().getPlayerSlots().size());
+            }
+            assertEquals(CLIENTS, hosted.stream().mapToInt(room -> room.getGame().getPlayerSlots().size()).sum());
+        } finally {
+            clients.forEach(client -> client.socket().close());
+            server.shutDown();
+            runner.shutdownNow();
+        }
+    }
+
+    private SimulatedClient join(int port, int room) throws IOException {
+        TrafficHandler client = new TrafficHandler() {};
+        ConnectionEssentials server = new ConnectionEssentials(InetAddress.getLoopbackAddress(), port);
+        UdpTransport socket = new UdpTransport();
+        socket.setSoTimeout(2000);
+        client.sendJoinPacket(socket, server, room);
+        DatagramPacket init = client.receive(socket);
+        assertFalse(client.isRoomFull(init));
+        return new SimulatedClient(client, socket, new ConnectionEssentials(init.getAddress(), init.getPort()));
+    }
+
+    private void play(SimulatedClient client, int round) throws IOException, ClassNotFoundException {
+        SinglePlayerPackage spp = new SinglePlayerPackage(new Point2D.Double(round, round), 0, 0, false,
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), "bot");
+        client.traffic().sendSinglePlayerGamePackage(spp, client.socket(), client.handler());
+        MultiPlayerGamePackage mp = client.traffic().receiveMultiPlayerGamePackage(client.socket());
+        assertNotNull(mp);
+    }
+
+    private long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * @return the context switches of all live threads of this process, 0 when the OS does not tell them
+     * */
+    private long contextSwitches() {
+        Path tasks = Path.of("/proc/self/task");
+        if (!Files.isDirectory(tasks)) {
+            return 0;
+        }
+        try (Stream<Path> threads = Files.list(tasks)) {
+            return threads.mapToLong(thread -> {
+                try (Stream<String> lines = Files.lines(thread.resolve("status"))) {
+                    return lines.filter(line -> line.contains("ctxt_switches"))
+                            .mapToLong(line -> Long.parseLong(line.replaceAll("\\D", ""))).sum();
+                } catch (IOException e) {
+                    return 0; // the thread ended while reading
+                }
+            }).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package aoop.asteroids.server;
+
+import nl.rug.aoop.asteroids.control.GameUpdater;
+import nl.rug.aoop.asteroids.model.connection.ConnectionEssentials;
+import nl.rug.aoop.asteroids.model.connection.ControlMessage;
+import nl.rug.aoop.asteroids.model.connection.HeartbeatSettings;
+import nl.rug.aoop.asteroids.model.connection.SinglePlayerPackage;
+import nl.rug.aoop.asteroids.model.connection.TrafficHandler;
+import nl.rug.aoop.asteroids.model.connection.Transport;
+import nl.rug.aoop.asteroids.model.connection.UdpTransport;
+import nl.rug.aoop.asteroids.server.Room;
+import nl.rug.aoop.asteroids.server.RoomManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomManagerTest {
+    private RoomManager manager;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        manager = new RoomManager(0, 2);
+        assertTrue(manager.start());
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.shutDown();
+    }
+
+    @Test
+    void failingRoomDoesNotStopOthers() throws InterruptedException {
+        Room failing = manager.createRoom();
+        Room healthy = manager.createRoom();
+        failing.getPipeline().replace(GameUpdater.COLLISION_STAGE, () -> {
+            throw new IllegalStateException("broken");
+        });
+        Thread.sleep(300);
+        assertTrue(failing.isClosed());
+        assertEquals(Room.MAX_CONSECUTIVE_FAILURES, failing.getFailures());
+        assertNull(manager.getRoom(failing.getId()));
+        assertSame(healthy, manager.getRoom(healthy.getId()));
+        assertTrue(healthy.getTicks() > 2);
+        assertEquals(0, healthy.getFailures());
+        assertTrue(manager.metrics().contains("room=" + healthy.getId()));
+    }
+
+    @Test
+    void clientsPickTheirRoom() throws IOException {
+        Room first = manager.createRoom();
+        Room second = manager.createRoom();
+        TrafficHandler client = new TrafficHandler() {};
+        ConnectionEssentials server = new ConnectionEssentials(InetAddress.getLoopbackAddress(), manager.getPort());
+        try (UdpTransport socket = new UdpTransport()) {
+            socket.setSoTimeout(2000);
+            client.sendJoinPacket(socket, server, second.getId());
+            DatagramPacket answer = client.receive(socket);
+            assertFalse(client.isRoomFull(answer));
+            assertFalse(client.isUnknownRoom(answer));
+            assertEquals(1, second.getGame().getPlayerSlots().size());
+            assertEquals(0, first.getGame().getPlayerSlots().size());
+        }
+        try (UdpTransport socket = new UdpTransport()) {
+            socket.setSoTimeout(2000);
+            client.sendJoinPacket(socket, server, 42);
+            assertTrue(client.isUnknownRoom(client.receive(socket)));
+        }
+    }
+
+    @Test
+    void leavingClientIsRemoved() throws Exception {
+        Room room = manager.createRoom();
+        TrafficHandler client = new TrafficHandler() {};
+        try (UdpTransport socket = new UdpTransport()) {
+            ConnectionEssentials handler = join(client, socket, room);
+            client.queueControl(ControlMessage.Type.LEAVE, 0, "leaver");
+            client.flushControl(socket, handler);
+            // the acknowledgement comes in while waiting for a package that never comes
+            assertThrows(SocketTimeoutException.class, () -> client.receiveMultiPlayerGamePackage(socket));
+            assertTrue(client.getControl().isIdle());
+            assertEquals(0, room.getGame().getPlayerSlots().size());
+            assertTrue(manager.getServer().getClientHandlers(room.getId()).isEmpty());
+        }
+    }
+
+    @Test
+    void closedRoomKicksItsClients() throws Exception {
+        Room room = manager.createRoom();
+        List<ControlMessage> received = new CopyOnWriteArrayList<>();
+        TrafficHandler client = new TrafficHandler() {
+            @Override
+            protected void onControlMessage(ControlMessage message) {
+                received.add(message);
+            }
+        };
+        try (UdpTransport socket = new UdpTransport()) {
+            join(client, socket, room);
+            manager.closeRoom(room.getId());
+            assertThrows(SocketTimeoutException.class, () -> client.receiveMultiPlayerGamePackage(socket));
+            // the join of the client itself is only passed on to the others
+            assertEquals(List.of(ControlMessage.Type.KICK), received.stream().map(ControlMessage::type).toList());
+            assertTrue(manager.getServer().getClientHandlers(room.getId()).isEmpty());
+        }
+    }
+
+    @Test
+    void silentClientIsReaped() throws Exception {
+        manager.getServer().setHeartbeat(new HeartbeatSettings(50, 200));
+        Room room = manager.createRoom();
+        List<ControlMessage> received = new CopyOnWriteArrayList<>();
+        TrafficHandler player = new TrafficHandler() {
+            @Override
+            protected void onControlMessage(ControlMessage message) {
+                received.add(message);
+            }
+        };
+        TrafficHandler crashing = new TrafficHandler() {};
+        try (UdpTransport socket = new UdpTransport(); UdpTransport crashed = new UdpTransport()) {
+            ConnectionEssentials handler = join(player, socket, room);
+            join(crashing, crashed, room);
+            assertEquals(2, room.getGame().getPlayerSlots().size());
+
+            // the crashed client never sends again, the other one keeps playing
+            long end = System.currentTimeMillis() + 600;
+            while (System.currentTimeMillis() < end) {
+                player.sendSinglePlayerGamePackage(new SinglePlayerPackage(new Point2D.Double(), 0, 0, false,
+                        new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), "player"), socket, handler);
+                player.receiveMultiPlayerGamePackage(socket);
+            }
+            assertEquals(1, manager.getServer().getReapedSessions());
+            assertEquals(1, room.getGame().getPlayerSlots().size());
+            assertEquals(1, manager.getServer().getClientHandlers(room.getId()).size());
+            assertTrue(received.stream().anyMatch(message -> message.type() == ControlMessage.Type.LEAVE));
+        }
+    }
+
+    /**
+     * joins a room, introduces the client and plays a single round
+     * @return the handler of the client on the server
+     * */
+    private ConnectionEssentials join(TrafficHandler client, Transport socket, Room room) throws Exception {
+        ConnectionEssentials server = new ConnectionEssentials(InetAddress.getLoopbackAddress(), manager.getPort());
+        socket.setSoTimeout(500);
+        client.sendJoinPacket(socket, server, room.getId());
+        DatagramPacket init = client.receive(socket);
+        ConnectionEssentials handler = new ConnectionEssentials(init.getAddress(), init.getPort());
+        client.queueControl(ControlMessage.Type.JOIN, 0, "player");
+        client.sendSinglePlayerGamePackage(new SinglePlayerPackage(new Point2D.Double(), 0, 0, false,
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), "player"), socket, handler);
+        assertNotNull(client.receiveMultiPlayerGamePackage(socket));
+        assertTrue(client.getControl().isIdle());
+        return handler;
+    }
+}